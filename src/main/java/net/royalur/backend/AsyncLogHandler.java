@@ -0,0 +1,283 @@
+package net.royalur.backend;
+
+import net.royalur.backend.metrics.Counter;
+import net.royalur.backend.metrics.Metrics;
+import net.royalur.backend.util.Checks;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Writes log records to the console from a single background thread,
+ * so that the threads that log never wait on writing to the console.
+ * Records are queued in a bounded ring buffer, and the writer drains
+ * them in batches. If records are logged faster than they can be
+ * written, the {@link OverflowPolicy} decides which records are kept.
+ *
+ * @author Paddy Lamont
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * What to do with records that are logged whilst the buffer is filling up.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Records are dropped only once the buffer is full.
+         */
+        DROP,
+
+        /**
+         * Once the buffer is half full, only one in every sample rate records
+         * below the warning level are kept. Records are dropped once the buffer
+         * is full.
+         */
+        SAMPLE;
+
+        public static OverflowPolicy fromName(String name) {
+            return OverflowPolicy.valueOf(name.trim().toUpperCase());
+        }
+    }
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter
+            .ofPattern("dd/MM/yy HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+    private static final long DROP_REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final Object lock = new Object();
+    private LogRecord[] ring;
+    private int head;
+    private int size;
+    private boolean writerWaiting;
+
+    private volatile OverflowPolicy overflowPolicy;
+    private volatile int sampleRate;
+    private long sampleCount;
+
+    private final Counter droppedRecords = Metrics.counter("logging.records.dropped");
+    private long reportedDrops;
+    private long lastDropReportNanos = System.nanoTime();
+
+    /**
+     * Guards the state used to write records, which
+     * is used by the writer thread and by flushes.
+     */
+    private final Object writeLock = new Object();
+    private LogRecord[] batch;
+    private final StringBuilder outBuilder = new StringBuilder();
+    private final StringBuilder errBuilder = new StringBuilder();
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedTimestamp = "";
+
+    /**
+     * @param capacity The maximum number of records waiting to be written.
+     * @param overflowPolicy Decides which records are kept when records are logged faster than they are written.
+     * @param sampleRate One in this many records are kept when sampling.
+     */
+    public AsyncLogHandler(int capacity, OverflowPolicy overflowPolicy, int sampleRate) {
+        Checks.ensure(capacity > 0, "capacity must be positive");
+        Checks.ensureNonNull(overflowPolicy, "overflowPolicy");
+        Checks.ensure(sampleRate > 0, "sampleRate must be positive");
+
+        this.ring = new LogRecord[capacity];
+        this.batch = new LogRecord[capacity];
+        this.overflowPolicy = overflowPolicy;
+        this.sampleRate = sampleRate;
+
+        Thread writer = new Thread(this::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "log-flush"));
+    }
+
+    /**
+     * Changes the capacity of the buffer to {@param capacity}, and the overflow
+     * policy to {@param overflowPolicy}, keeping the records that are waiting.
+     */
+    public void configure(int capacity, OverflowPolicy overflowPolicy, int sampleRate) {
+        Checks.ensure(capacity > 0, "capacity must be positive");
+        Checks.ensureNonNull(overflowPolicy, "overflowPolicy");
+        Checks.ensure(sampleRate > 0, "sampleRate must be positive");
+
+        synchronized (lock) {
+            if (capacity != ring.length) {
+                LogRecord[] resized = new LogRecord[Math.max(capacity, size)];
+                for (int index = 0; index < size; ++index) {
+                    resized[index] = ring[(head + index) % ring.length];
+                }
+                ring = resized;
+                head = 0;
+            }
+            this.overflowPolicy = overflowPolicy;
+            this.sampleRate = sampleRate;
+        }
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (record == null || !isLoggable(record))
+            return;
+
+        synchronized (lock) {
+            if (!shouldKeep(record)) {
+                droppedRecords.increment();
+                return;
+            }
+
+            ring[(head + size) % ring.length] = record;
+            size += 1;
+            if (writerWaiting) {
+                lock.notify();
+            }
+        }
+    }
+
+    /**
+     * Must be called whilst holding the lock.
+     */
+    private boolean shouldKeep(LogRecord record) {
+        if (size == ring.length)
+            return false;
+        if (overflowPolicy != OverflowPolicy.SAMPLE || size < ring.length / 2)
+            return true;
+        if (record.getLevel().intValue() >= Level.WARNING.intValue())
+            return true;
+
+        sampleCount += 1;
+        return sampleCount % sampleRate == 0;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            try {
+                awaitRecords();
+                synchronized (writeLock) {
+                    writeBatch();
+                }
+            } catch (InterruptedException e) {
+                // Logging continues until the JVM exits.
+            } catch (Exception e) {
+                reportError("Unable to write log records", e, ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+
+    private void awaitRecords() throws InterruptedException {
+        synchronized (lock) {
+            while (size == 0) {
+                writerWaiting = true;
+                try {
+                    lock.wait();
+                } finally {
+                    writerWaiting = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes all the records that are waiting to be written.
+     * Must be called whilst holding the write lock.
+     */
+    private void writeBatch() {
+        int count;
+        synchronized (lock) {
+            if (batch.length < ring.length) {
+                batch = new LogRecord[ring.length];
+            }
+            count = size;
+            for (int index = 0; index < count; ++index) {
+                int ringIndex = (head + index) % ring.length;
+                batch[index] = ring[ringIndex];
+                ring[ringIndex] = null;
+            }
+            head = (head + count) % ring.length;
+            size = 0;
+        }
+
+        for (int index = 0; index < count; ++index) {
+            LogRecord record = batch[index];
+            batch[index] = null;
+            boolean isError = record.getLevel().intValue() >= Level.WARNING.intValue();
+            format(record, isError ? errBuilder : outBuilder);
+        }
+        reportDrops();
+        write(System.out, outBuilder);
+        write(System.err, errBuilder);
+    }
+
+    private void reportDrops() {
+        long dropped = droppedRecords.get();
+        long now = System.nanoTime();
+        if (dropped == reportedDrops || now - lastDropReportNanos < DROP_REPORT_INTERVAL_NANOS)
+            return;
+
+        appendTimestamp(System.currentTimeMillis(), errBuilder);
+        errBuilder.append(' ').append(Level.WARNING).append(" logging: ")
+                .append(dropped - reportedDrops).append(" log records were dropped\n");
+        reportedDrops = dropped;
+        lastDropReportNanos = now;
+    }
+
+    private static void write(PrintStream stream, StringBuilder builder) {
+        if (builder.length() == 0)
+            return;
+
+        stream.append(builder);
+        stream.flush();
+        builder.setLength(0);
+    }
+
+    private void format(LogRecord record, StringBuilder builder) {
+        appendTimestamp(record.getMillis(), builder);
+        builder.append(' ');
+        builder.append(record.getLevel());
+        builder.append(' ');
+        builder.append(record.getLoggerName());
+        builder.append(": ");
+        builder.append(record.getMessage());
+        builder.append('\n');
+
+        if (record.getThrown() != null) {
+            StringWriter stringWriter = new StringWriter();
+            record.getThrown().printStackTrace(new PrintWriter(stringWriter));
+            builder.append(stringWriter);
+        }
+    }
+
+    /**
+     * Timestamps only have a resolution of seconds, so the formatted timestamp is reused within each second.
+     */
+    private void appendTimestamp(long millis, StringBuilder builder) {
+        long second = Math.floorDiv(millis, 1000);
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedTimestamp = DATE_FORMAT.format(Instant.ofEpochSecond(second));
+        }
+        builder.append(cachedTimestamp);
+    }
+
+    /**
+     * Writes the records that are waiting to be written, on the calling thread.
+     */
+    @Override
+    public void flush() {
+        synchronized (writeLock) {
+            writeBatch();
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
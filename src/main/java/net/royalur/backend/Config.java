@@ -1,5 +1,6 @@
 package net.royalur.backend;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -8,6 +9,8 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,6 +21,9 @@ public class Config {
 
     private static final String DEBUG_MODE = "debug-mode";
 
+    private static final String WEB_PORT_KEY = "web-port";
+    private static final String SECURE_PORT_KEY = "secure-port";
+
     private static final String RUN_DISCORD_BOT_KEY = "run-discord-bot";
     private static final String DISCORD_BOT_TOKEN = "discord-bot-token";
 
@@ -25,6 +31,125 @@ public class Config {
     private static final String SSL_CERT_FILE_KEY = "ssl-cert-file";
     private static final String SSL_PRIVATE_KEY_FILE_KEY = "ssl-private-key-file";
     private static final String SSL_PASSWORD_KEY = "ssl-password";
+    private static final String SSL_ECDSA_CERT_FILE_KEY = "ssl-ecdsa-cert-file";
+    private static final String SSL_ECDSA_PRIVATE_KEY_FILE_KEY = "ssl-ecdsa-private-key-file";
+    private static final String SSL_SESSION_CACHE_SIZE_KEY = "ssl-session-cache-size";
+    private static final String SSL_SESSION_TIMEOUT_SECS_KEY = "ssl-session-timeout-secs";
+    private static final String SSL_SESSION_TICKETS_KEY = "ssl-session-tickets";
+    private static final String SSL_TICKET_KEY_ROTATION_SECS_KEY = "ssl-ticket-key-rotation-secs";
+
+    private static final String MAX_CONNECTIONS_KEY = "max-connections";
+    private static final String MAX_CONNECTIONS_PER_IP_KEY = "max-connections-per-ip";
+    private static final String MAX_HANDSHAKES_PER_SECOND_KEY = "max-handshakes-per-second";
+    private static final String CONNECTION_RETRY_JITTER_SECS_KEY = "connection-retry-jitter-secs";
+    private static final String MAX_MALFORMED_PACKETS_PER_CONNECTION_KEY = "max-malformed-packets-per-connection";
+    private static final String MAX_MALFORMED_PACKETS_PER_IP_KEY = "max-malformed-packets-per-ip";
+    private static final String MALFORMED_PACKET_WINDOW_SECS_KEY = "malformed-packet-window-secs";
+
+    private static final String USE_COMPRESSION_KEY = "use-compression";
+    private static final String COMPRESSION_THRESHOLD_BYTES_KEY = "compression-threshold-bytes";
+    private static final String COMPRESSION_LEVEL_KEY = "compression-level";
+    private static final String MAX_POOLED_DEFLATERS_KEY = "max-pooled-deflaters";
+    private static final String USE_PER_MESSAGE_DEFLATE_KEY = "use-permessage-deflate";
+
+    private static final String SPECTATOR_THREADS_KEY = "spectator-threads";
+    private static final String SPECTATOR_CHUNK_SIZE_KEY = "spectator-chunk-size";
+    private static final String SPECTATOR_CADENCE_MS_KEY = "spectator-cadence-ms";
+
+    private static final String BOT_THREADS_KEY = "bot-threads";
+    private static final String BOT_MOVE_TIME_MS_KEY = "bot-move-time-ms";
+    private static final String BOT_TARGET_MOVES_PER_SEC_KEY = "bot-target-moves-per-sec";
+    private static final String BOT_THINK_DELAY_MS_KEY = "bot-think-delay-ms";
+    private static final String BOT_DIFFICULTY_KEY = "bot-difficulty";
+    private static final String BOT_MATCH_DELAY_SECS_KEY = "bot-match-delay-secs";
+    private static final String SOLVED_TABLE_FILE_KEY = "solved-table-file";
+
+    private static final String DICE_WINDOW_ROLLS_KEY = "dice-window-rolls";
+    private static final String DICE_ALERT_P_VALUE_KEY = "dice-alert-p-value";
+
+    private static final String REPLAY_KEYFRAME_INTERVAL_KEY = "replay-keyframe-interval";
+    private static final String REPLAY_MAX_FINISHED_GAMES_KEY = "replay-max-finished-games";
+    private static final String REPLAY_ALLOWED_ORIGINS_KEY = "replay-allowed-origins";
+    private static final String REPLAY_MAX_STATES_KEY = "replay-max-states";
+    private static final String REPLAY_MAX_REQUESTS_PER_MIN_KEY = "replay-max-requests-per-min";
+
+    private static final String USE_CLUSTER_KEY = "use-cluster";
+    private static final String CLUSTER_NODE_ID_KEY = "cluster-node-id";
+    private static final String CLUSTER_HOST_KEY = "cluster-host";
+    private static final String CLUSTER_PORT_KEY = "cluster-port";
+    private static final String CLUSTER_PUBLIC_URL_KEY = "cluster-public-url";
+    private static final String CLUSTER_PEERS_KEY = "cluster-peers";
+    private static final String CLUSTER_SECRET_KEY = "cluster-secret";
+    private static final String CLUSTER_HEARTBEAT_INTERVAL_MS_KEY = "cluster-heartbeat-interval-ms";
+    private static final String CLUSTER_FAILURE_TIMEOUT_MS_KEY = "cluster-failure-timeout-ms";
+
+    private static final String SESSION_STORE_KEY = "session-store";
+    private static final String SESSION_STORE_FILE_KEY = "session-store-file";
+    private static final String SESSION_CACHE_MS_KEY = "session-cache-ms";
+
+    private static final String SNAPSHOT_FILE_KEY = "snapshot-file";
+
+    private static final String LOG_BUFFER_SIZE_KEY = "log-buffer-size";
+    private static final String LOG_OVERFLOW_POLICY_KEY = "log-overflow-policy";
+    private static final String LOG_SAMPLE_RATE_KEY = "log-sample-rate";
+
+    public static final String SESSION_STORE_MEMORY = "memory";
+    public static final String SESSION_STORE_FILE = "file";
+
+    private static final int DEFAULT_WEB_PORT = 9112;
+    private static final int DEFAULT_SECURE_PORT = 9113;
+
+    private static final int DEFAULT_SSL_SESSION_CACHE_SIZE = 20480;
+    private static final int DEFAULT_SSL_SESSION_TIMEOUT_SECS = 24 * 60 * 60;
+    private static final int DEFAULT_SSL_TICKET_KEY_ROTATION_SECS = 60 * 60;
+
+    private static final int DEFAULT_MAX_CONNECTIONS = 20000;
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_IP = 32;
+    private static final int DEFAULT_MAX_HANDSHAKES_PER_SECOND = 200;
+    private static final int DEFAULT_CONNECTION_RETRY_JITTER_SECS = 10;
+    private static final int DEFAULT_MAX_MALFORMED_PACKETS_PER_CONNECTION = 3;
+    private static final int DEFAULT_MAX_MALFORMED_PACKETS_PER_IP = 20;
+    private static final int DEFAULT_MALFORMED_PACKET_WINDOW_SECS = 60;
+
+    private static final int DEFAULT_COMPRESSION_THRESHOLD_BYTES = 512;
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    private static final int DEFAULT_MAX_POOLED_DEFLATERS = 16;
+
+    private static final int DEFAULT_SPECTATOR_THREADS = 2;
+    private static final int DEFAULT_SPECTATOR_CHUNK_SIZE = 256;
+    private static final int DEFAULT_SPECTATOR_CADENCE_MS = 0;
+
+    // Zero sizes the bot threads and move time from the processors and the target moves per second.
+    private static final int DEFAULT_BOT_THREADS = 0;
+    private static final int DEFAULT_BOT_MOVE_TIME_MS = 0;
+    private static final int DEFAULT_BOT_TARGET_MOVES_PER_SEC = 500;
+    private static final int DEFAULT_BOT_THINK_DELAY_MS = 700;
+    private static final String DEFAULT_BOT_DIFFICULTY = "medium";
+    private static final int DEFAULT_BOT_MATCH_DELAY_SECS = 20;
+    private static final String DEFAULT_SOLVED_TABLE_FILE = "";
+
+    private static final int DEFAULT_DICE_WINDOW_ROLLS = 4096;
+    private static final double DEFAULT_DICE_ALERT_P_VALUE = 1e-4;
+
+    private static final int DEFAULT_REPLAY_KEYFRAME_INTERVAL = 32;
+    private static final int DEFAULT_REPLAY_MAX_FINISHED_GAMES = 1000;
+    private static final List<String> DEFAULT_REPLAY_ALLOWED_ORIGINS = List.of("https://royalur.net");
+    private static final int DEFAULT_REPLAY_MAX_STATES = 1000;
+    private static final int DEFAULT_REPLAY_MAX_REQUESTS_PER_MIN = 60;
+
+    private static final String DEFAULT_CLUSTER_HOST = "localhost";
+    private static final int DEFAULT_CLUSTER_PORT = 9120;
+    private static final int DEFAULT_CLUSTER_HEARTBEAT_INTERVAL_MS = 1000;
+    private static final int DEFAULT_CLUSTER_FAILURE_TIMEOUT_MS = 5000;
+
+    private static final String DEFAULT_SESSION_STORE_FILE = "sessions.txt";
+    private static final int DEFAULT_SESSION_CACHE_MS = 200;
+
+    private static final String DEFAULT_SNAPSHOT_FILE = "snapshot.bin";
+
+    private static final int DEFAULT_LOG_BUFFER_SIZE = Logging.DEFAULT_BUFFER_SIZE;
+    private static final String DEFAULT_LOG_OVERFLOW_POLICY = Logging.DEFAULT_OVERFLOW_POLICY.name().toLowerCase();
+    private static final int DEFAULT_LOG_SAMPLE_RATE = Logging.DEFAULT_SAMPLE_RATE;
 
     private static final Logger logger = Logging.getLogger("config");
 
@@ -42,6 +167,14 @@ public class Config {
         return contents.has(DEBUG_MODE) && contents.getBoolean(DEBUG_MODE);
     }
 
+    public int getWebPort() {
+        return contents.has(WEB_PORT_KEY) ? contents.getInt(WEB_PORT_KEY) : DEFAULT_WEB_PORT;
+    }
+
+    public int getSecurePort() {
+        return contents.has(SECURE_PORT_KEY) ? contents.getInt(SECURE_PORT_KEY) : DEFAULT_SECURE_PORT;
+    }
+
     public boolean runDiscordBot() {
         return contents.has(RUN_DISCORD_BOT_KEY) && contents.getBoolean(RUN_DISCORD_BOT_KEY);
     }
@@ -66,14 +199,345 @@ public class Config {
         return contents.has(SSL_PASSWORD_KEY) ? contents.getString(SSL_PASSWORD_KEY) : "";
     }
 
+    public String getSSLECDSACertFile() {
+        return contents.has(SSL_ECDSA_CERT_FILE_KEY) ? contents.getString(SSL_ECDSA_CERT_FILE_KEY) : "";
+    }
+
+    public String getSSLECDSAPrivateKeyFile() {
+        return contents.has(SSL_ECDSA_PRIVATE_KEY_FILE_KEY) ? contents.getString(SSL_ECDSA_PRIVATE_KEY_FILE_KEY) : "";
+    }
+
+    public int getSSLSessionCacheSize() {
+        return contents.has(SSL_SESSION_CACHE_SIZE_KEY)
+                ? contents.getInt(SSL_SESSION_CACHE_SIZE_KEY) : DEFAULT_SSL_SESSION_CACHE_SIZE;
+    }
+
+    public int getSSLSessionTimeoutSecs() {
+        return contents.has(SSL_SESSION_TIMEOUT_SECS_KEY)
+                ? contents.getInt(SSL_SESSION_TIMEOUT_SECS_KEY) : DEFAULT_SSL_SESSION_TIMEOUT_SECS;
+    }
+
+    public boolean useSSLSessionTickets() {
+        return !contents.has(SSL_SESSION_TICKETS_KEY) || contents.getBoolean(SSL_SESSION_TICKETS_KEY);
+    }
+
+    public int getSSLTicketKeyRotationSecs() {
+        return contents.has(SSL_TICKET_KEY_ROTATION_SECS_KEY)
+                ? contents.getInt(SSL_TICKET_KEY_ROTATION_SECS_KEY) : DEFAULT_SSL_TICKET_KEY_ROTATION_SECS;
+    }
+
+    public int getMaxConnections() {
+        return contents.has(MAX_CONNECTIONS_KEY) ? contents.getInt(MAX_CONNECTIONS_KEY) : DEFAULT_MAX_CONNECTIONS;
+    }
+
+    public int getMaxConnectionsPerIP() {
+        return contents.has(MAX_CONNECTIONS_PER_IP_KEY)
+                ? contents.getInt(MAX_CONNECTIONS_PER_IP_KEY) : DEFAULT_MAX_CONNECTIONS_PER_IP;
+    }
+
+    public int getMaxHandshakesPerSecond() {
+        return contents.has(MAX_HANDSHAKES_PER_SECOND_KEY)
+                ? contents.getInt(MAX_HANDSHAKES_PER_SECOND_KEY) : DEFAULT_MAX_HANDSHAKES_PER_SECOND;
+    }
+
+    public int getConnectionRetryJitterSecs() {
+        return contents.has(CONNECTION_RETRY_JITTER_SECS_KEY)
+                ? contents.getInt(CONNECTION_RETRY_JITTER_SECS_KEY) : DEFAULT_CONNECTION_RETRY_JITTER_SECS;
+    }
+
+    public int getMaxMalformedPacketsPerConnection() {
+        return contents.has(MAX_MALFORMED_PACKETS_PER_CONNECTION_KEY)
+                ? contents.getInt(MAX_MALFORMED_PACKETS_PER_CONNECTION_KEY)
+                : DEFAULT_MAX_MALFORMED_PACKETS_PER_CONNECTION;
+    }
+
+    public int getMaxMalformedPacketsPerIP() {
+        return contents.has(MAX_MALFORMED_PACKETS_PER_IP_KEY)
+                ? contents.getInt(MAX_MALFORMED_PACKETS_PER_IP_KEY) : DEFAULT_MAX_MALFORMED_PACKETS_PER_IP;
+    }
+
+    public int getMalformedPacketWindowSecs() {
+        return contents.has(MALFORMED_PACKET_WINDOW_SECS_KEY)
+                ? contents.getInt(MALFORMED_PACKET_WINDOW_SECS_KEY) : DEFAULT_MALFORMED_PACKET_WINDOW_SECS;
+    }
+
+    public boolean useCompression() {
+        return !contents.has(USE_COMPRESSION_KEY) || contents.getBoolean(USE_COMPRESSION_KEY);
+    }
+
+    public int getCompressionThresholdBytes() {
+        return contents.has(COMPRESSION_THRESHOLD_BYTES_KEY)
+                ? contents.getInt(COMPRESSION_THRESHOLD_BYTES_KEY) : DEFAULT_COMPRESSION_THRESHOLD_BYTES;
+    }
+
+    public int getCompressionLevel() {
+        return contents.has(COMPRESSION_LEVEL_KEY)
+                ? contents.getInt(COMPRESSION_LEVEL_KEY) : DEFAULT_COMPRESSION_LEVEL;
+    }
+
+    public int getMaxPooledDeflaters() {
+        return contents.has(MAX_POOLED_DEFLATERS_KEY)
+                ? contents.getInt(MAX_POOLED_DEFLATERS_KEY) : DEFAULT_MAX_POOLED_DEFLATERS;
+    }
+
+    public boolean usePerMessageDeflate() {
+        return contents.has(USE_PER_MESSAGE_DEFLATE_KEY) && contents.getBoolean(USE_PER_MESSAGE_DEFLATE_KEY);
+    }
+
+    public int getSpectatorThreads() {
+        return contents.has(SPECTATOR_THREADS_KEY)
+                ? contents.getInt(SPECTATOR_THREADS_KEY) : DEFAULT_SPECTATOR_THREADS;
+    }
+
+    public int getSpectatorChunkSize() {
+        return contents.has(SPECTATOR_CHUNK_SIZE_KEY)
+                ? contents.getInt(SPECTATOR_CHUNK_SIZE_KEY) : DEFAULT_SPECTATOR_CHUNK_SIZE;
+    }
+
+    public int getSpectatorCadenceMs() {
+        return contents.has(SPECTATOR_CADENCE_MS_KEY)
+                ? contents.getInt(SPECTATOR_CADENCE_MS_KEY) : DEFAULT_SPECTATOR_CADENCE_MS;
+    }
+
+    public int getBotThreads() {
+        return contents.has(BOT_THREADS_KEY) ? contents.getInt(BOT_THREADS_KEY) : DEFAULT_BOT_THREADS;
+    }
+
+    public int getBotMoveTimeMs() {
+        return contents.has(BOT_MOVE_TIME_MS_KEY) ? contents.getInt(BOT_MOVE_TIME_MS_KEY) : DEFAULT_BOT_MOVE_TIME_MS;
+    }
+
+    public int getBotTargetMovesPerSec() {
+        return contents.has(BOT_TARGET_MOVES_PER_SEC_KEY)
+                ? contents.getInt(BOT_TARGET_MOVES_PER_SEC_KEY) : DEFAULT_BOT_TARGET_MOVES_PER_SEC;
+    }
+
+    public int getBotThinkDelayMs() {
+        return contents.has(BOT_THINK_DELAY_MS_KEY)
+                ? contents.getInt(BOT_THINK_DELAY_MS_KEY) : DEFAULT_BOT_THINK_DELAY_MS;
+    }
+
+    public String getBotDifficulty() {
+        return contents.has(BOT_DIFFICULTY_KEY) ? contents.getString(BOT_DIFFICULTY_KEY) : DEFAULT_BOT_DIFFICULTY;
+    }
+
+    /**
+     * @return The number of seconds a player waits in the match-making
+     *         queue before they are matched with a bot, or 0 to never do so.
+     */
+    public int getBotMatchDelaySecs() {
+        return contents.has(BOT_MATCH_DELAY_SECS_KEY)
+                ? contents.getInt(BOT_MATCH_DELAY_SECS_KEY) : DEFAULT_BOT_MATCH_DELAY_SECS;
+    }
+
+    /**
+     * @return The table file written by the solved table generator that perfect
+     *         bots look up their moves in, or blank if it is not used.
+     */
+    public String getSolvedTableFile() {
+        return contents.has(SOLVED_TABLE_FILE_KEY)
+                ? contents.getString(SOLVED_TABLE_FILE_KEY) : DEFAULT_SOLVED_TABLE_FILE;
+    }
+
+    /** @return The number of recent rolls of the dice that are tested for fairness together. **/
+    public int getDiceWindowRolls() {
+        return contents.has(DICE_WINDOW_ROLLS_KEY) ? contents.getInt(DICE_WINDOW_ROLLS_KEY) : DEFAULT_DICE_WINDOW_ROLLS;
+    }
+
+    /** @return The p-value below which a window of rolls of the dice is reported as anomalous. **/
+    public double getDiceAlertPValue() {
+        return contents.has(DICE_ALERT_P_VALUE_KEY)
+                ? contents.getDouble(DICE_ALERT_P_VALUE_KEY) : DEFAULT_DICE_ALERT_P_VALUE;
+    }
+
+    public int getReplayKeyframeInterval() {
+        return contents.has(REPLAY_KEYFRAME_INTERVAL_KEY)
+                ? contents.getInt(REPLAY_KEYFRAME_INTERVAL_KEY) : DEFAULT_REPLAY_KEYFRAME_INTERVAL;
+    }
+
+    public int getReplayMaxFinishedGames() {
+        return contents.has(REPLAY_MAX_FINISHED_GAMES_KEY)
+                ? contents.getInt(REPLAY_MAX_FINISHED_GAMES_KEY) : DEFAULT_REPLAY_MAX_FINISHED_GAMES;
+    }
+
+    /**
+     * @return The origins of the web pages that are allowed to read replays.
+     */
+    public List<String> getReplayAllowedOrigins() {
+        if (!contents.has(REPLAY_ALLOWED_ORIGINS_KEY))
+            return DEFAULT_REPLAY_ALLOWED_ORIGINS;
+
+        List<String> origins = new ArrayList<>();
+        JSONArray array = contents.getJSONArray(REPLAY_ALLOWED_ORIGINS_KEY);
+        for (int index = 0; index < array.length(); ++index) {
+            origins.add(array.getString(index));
+        }
+        return origins;
+    }
+
+    /** @return The maximum number of game states served in response to one replay request. **/
+    public int getReplayMaxStates() {
+        return contents.has(REPLAY_MAX_STATES_KEY) ? contents.getInt(REPLAY_MAX_STATES_KEY) : DEFAULT_REPLAY_MAX_STATES;
+    }
+
+    public int getReplayMaxRequestsPerMin() {
+        return contents.has(REPLAY_MAX_REQUESTS_PER_MIN_KEY)
+                ? contents.getInt(REPLAY_MAX_REQUESTS_PER_MIN_KEY) : DEFAULT_REPLAY_MAX_REQUESTS_PER_MIN;
+    }
+
+    public boolean useCluster() {
+        return contents.has(USE_CLUSTER_KEY) && contents.getBoolean(USE_CLUSTER_KEY);
+    }
+
+    public String getClusterNodeID() {
+        return contents.has(CLUSTER_NODE_ID_KEY)
+                ? contents.getString(CLUSTER_NODE_ID_KEY) : "node-" + getClusterPort();
+    }
+
+    public String getClusterHost() {
+        return contents.has(CLUSTER_HOST_KEY) ? contents.getString(CLUSTER_HOST_KEY) : DEFAULT_CLUSTER_HOST;
+    }
+
+    public int getClusterPort() {
+        return contents.has(CLUSTER_PORT_KEY) ? contents.getInt(CLUSTER_PORT_KEY) : DEFAULT_CLUSTER_PORT;
+    }
+
+    public String getClusterPublicURL() {
+        return contents.has(CLUSTER_PUBLIC_URL_KEY) ? contents.getString(CLUSTER_PUBLIC_URL_KEY) : "";
+    }
+
+    /**
+     * @return The cluster addresses of the other nodes, in the form "host:port".
+     */
+    public List<String> getClusterPeers() {
+        List<String> peers = new ArrayList<>();
+        if (contents.has(CLUSTER_PEERS_KEY)) {
+            JSONArray array = contents.getJSONArray(CLUSTER_PEERS_KEY);
+            for (int index = 0; index < array.length(); ++index) {
+                peers.add(array.getString(index));
+            }
+        }
+        return peers;
+    }
+
+    /**
+     * @return The secret shared by the nodes of the cluster, used to sign their messages.
+     */
+    public String getClusterSecret() {
+        return contents.has(CLUSTER_SECRET_KEY) ? contents.getString(CLUSTER_SECRET_KEY) : "";
+    }
+
+    public int getClusterHeartbeatIntervalMs() {
+        return contents.has(CLUSTER_HEARTBEAT_INTERVAL_MS_KEY)
+                ? contents.getInt(CLUSTER_HEARTBEAT_INTERVAL_MS_KEY) : DEFAULT_CLUSTER_HEARTBEAT_INTERVAL_MS;
+    }
+
+    public int getClusterFailureTimeoutMs() {
+        return contents.has(CLUSTER_FAILURE_TIMEOUT_MS_KEY)
+                ? contents.getInt(CLUSTER_FAILURE_TIMEOUT_MS_KEY) : DEFAULT_CLUSTER_FAILURE_TIMEOUT_MS;
+    }
+
+    /**
+     * @return The type of store used to resume the sessions of clients, either "memory" or "file".
+     */
+    public String getSessionStore() {
+        return contents.has(SESSION_STORE_KEY) ? contents.getString(SESSION_STORE_KEY) : SESSION_STORE_MEMORY;
+    }
+
+    public String getSessionStoreFile() {
+        return contents.has(SESSION_STORE_FILE_KEY)
+                ? contents.getString(SESSION_STORE_FILE_KEY) : DEFAULT_SESSION_STORE_FILE;
+    }
+
+    public int getSessionCacheMs() {
+        return contents.has(SESSION_CACHE_MS_KEY) ? contents.getInt(SESSION_CACHE_MS_KEY) : DEFAULT_SESSION_CACHE_MS;
+    }
+
+    /**
+     * @return The file that games are written to when restarting, and restored from on start up.
+     */
+    public String getSnapshotFile() {
+        return contents.has(SNAPSHOT_FILE_KEY) ? contents.getString(SNAPSHOT_FILE_KEY) : DEFAULT_SNAPSHOT_FILE;
+    }
+
+    public int getLogBufferSize() {
+        return contents.has(LOG_BUFFER_SIZE_KEY) ? contents.getInt(LOG_BUFFER_SIZE_KEY) : DEFAULT_LOG_BUFFER_SIZE;
+    }
+
+    /**
+     * @return What to do with log records when they are logged faster than
+     *         they can be written, either "drop" or "sample".
+     */
+    public String getLogOverflowPolicy() {
+        return contents.has(LOG_OVERFLOW_POLICY_KEY)
+                ? contents.getString(LOG_OVERFLOW_POLICY_KEY) : DEFAULT_LOG_OVERFLOW_POLICY;
+    }
+
+    public int getLogSampleRate() {
+        return contents.has(LOG_SAMPLE_RATE_KEY) ? contents.getInt(LOG_SAMPLE_RATE_KEY) : DEFAULT_LOG_SAMPLE_RATE;
+    }
+
     public JSONObject write() {
         JSONObject output = new JSONObject();
+        output.put(WEB_PORT_KEY, getWebPort());
+        output.put(SECURE_PORT_KEY, getSecurePort());
         output.put(RUN_DISCORD_BOT_KEY, runDiscordBot());
         output.put(DISCORD_BOT_TOKEN, getDiscordToken());
         output.put(USE_SSL_KEY, useSSL());
         output.put(SSL_CERT_FILE_KEY, getSSLCertFile());
         output.put(SSL_PRIVATE_KEY_FILE_KEY, getSSLPrivateKeyFile());
         output.put(SSL_PASSWORD_KEY, getSSLPassword());
+        output.put(SSL_ECDSA_CERT_FILE_KEY, getSSLECDSACertFile());
+        output.put(SSL_ECDSA_PRIVATE_KEY_FILE_KEY, getSSLECDSAPrivateKeyFile());
+        output.put(SSL_SESSION_CACHE_SIZE_KEY, getSSLSessionCacheSize());
+        output.put(SSL_SESSION_TIMEOUT_SECS_KEY, getSSLSessionTimeoutSecs());
+        output.put(SSL_SESSION_TICKETS_KEY, useSSLSessionTickets());
+        output.put(SSL_TICKET_KEY_ROTATION_SECS_KEY, getSSLTicketKeyRotationSecs());
+        output.put(MAX_CONNECTIONS_KEY, getMaxConnections());
+        output.put(MAX_CONNECTIONS_PER_IP_KEY, getMaxConnectionsPerIP());
+        output.put(MAX_HANDSHAKES_PER_SECOND_KEY, getMaxHandshakesPerSecond());
+        output.put(CONNECTION_RETRY_JITTER_SECS_KEY, getConnectionRetryJitterSecs());
+        output.put(MAX_MALFORMED_PACKETS_PER_CONNECTION_KEY, getMaxMalformedPacketsPerConnection());
+        output.put(MAX_MALFORMED_PACKETS_PER_IP_KEY, getMaxMalformedPacketsPerIP());
+        output.put(MALFORMED_PACKET_WINDOW_SECS_KEY, getMalformedPacketWindowSecs());
+        output.put(USE_COMPRESSION_KEY, useCompression());
+        output.put(COMPRESSION_THRESHOLD_BYTES_KEY, getCompressionThresholdBytes());
+        output.put(COMPRESSION_LEVEL_KEY, getCompressionLevel());
+        output.put(MAX_POOLED_DEFLATERS_KEY, getMaxPooledDeflaters());
+        output.put(USE_PER_MESSAGE_DEFLATE_KEY, usePerMessageDeflate());
+        output.put(SPECTATOR_THREADS_KEY, getSpectatorThreads());
+        output.put(SPECTATOR_CHUNK_SIZE_KEY, getSpectatorChunkSize());
+        output.put(SPECTATOR_CADENCE_MS_KEY, getSpectatorCadenceMs());
+        output.put(BOT_THREADS_KEY, getBotThreads());
+        output.put(BOT_MOVE_TIME_MS_KEY, getBotMoveTimeMs());
+        output.put(BOT_TARGET_MOVES_PER_SEC_KEY, getBotTargetMovesPerSec());
+        output.put(BOT_THINK_DELAY_MS_KEY, getBotThinkDelayMs());
+        output.put(BOT_DIFFICULTY_KEY, getBotDifficulty());
+        output.put(BOT_MATCH_DELAY_SECS_KEY, getBotMatchDelaySecs());
+        output.put(SOLVED_TABLE_FILE_KEY, getSolvedTableFile());
+        output.put(DICE_WINDOW_ROLLS_KEY, getDiceWindowRolls());
+        output.put(DICE_ALERT_P_VALUE_KEY, getDiceAlertPValue());
+        output.put(REPLAY_KEYFRAME_INTERVAL_KEY, getReplayKeyframeInterval());
+        output.put(REPLAY_MAX_FINISHED_GAMES_KEY, getReplayMaxFinishedGames());
+        output.put(REPLAY_ALLOWED_ORIGINS_KEY, new JSONArray(getReplayAllowedOrigins()));
+        output.put(REPLAY_MAX_STATES_KEY, getReplayMaxStates());
+        output.put(REPLAY_MAX_REQUESTS_PER_MIN_KEY, getReplayMaxRequestsPerMin());
+        output.put(USE_CLUSTER_KEY, useCluster());
+        output.put(CLUSTER_NODE_ID_KEY, getClusterNodeID());
+        output.put(CLUSTER_HOST_KEY, getClusterHost());
+        output.put(CLUSTER_PORT_KEY, getClusterPort());
+        output.put(CLUSTER_PUBLIC_URL_KEY, getClusterPublicURL());
+        output.put(CLUSTER_PEERS_KEY, new JSONArray(getClusterPeers()));
+        output.put(CLUSTER_SECRET_KEY, getClusterSecret());
+        output.put(CLUSTER_HEARTBEAT_INTERVAL_MS_KEY, getClusterHeartbeatIntervalMs());
+        output.put(CLUSTER_FAILURE_TIMEOUT_MS_KEY, getClusterFailureTimeoutMs());
+        output.put(SESSION_STORE_KEY, getSessionStore());
+        output.put(SESSION_STORE_FILE_KEY, getSessionStoreFile());
+        output.put(SESSION_CACHE_MS_KEY, getSessionCacheMs());
+        output.put(SNAPSHOT_FILE_KEY, getSnapshotFile());
+        output.put(LOG_BUFFER_SIZE_KEY, getLogBufferSize());
+        output.put(LOG_OVERFLOW_POLICY_KEY, getLogOverflowPolicy());
+        output.put(LOG_SAMPLE_RATE_KEY, getLogSampleRate());
         return output;
     }
 
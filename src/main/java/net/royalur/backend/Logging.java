@@ -1,63 +1,50 @@
 package net.royalur.backend;
 
-import net.royalur.backend.game.GameID;
-
-import java.io.PrintWriter;
-import java.io.StringWriter;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.logging.*;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
 
 /**
- * Adds detail to messages logged to console.
+ * Adds detail to messages logged to console, and writes
+ * them to the console asynchronously.
  *
  * @author Paddy Lamont
  */
 public class Logging {
 
-    private static final SimpleDateFormat defaultDateFormatter = new SimpleDateFormat("dd/MM/yy HH:mm:ss");
-    private static final Formatter defaultLogFormatter = new Formatter() {
-        @Override
-        public String format(LogRecord record) {
-            StringBuilder builder = new StringBuilder();
-
-            Date date = new Date(record.getMillis());
-
-            builder.append(defaultDateFormatter.format(date));
-            builder.append(' ');
-            builder.append(record.getLevel());
-            builder.append(' ');
-            builder.append(record.getLoggerName());
-            builder.append(": ");
-            builder.append(record.getMessage());
-            builder.append('\n');
-
-            if(record.getThrown() != null) {
-                builder.append(format(record.getThrown()));
-            }
-
-            return builder.toString();
-        }
-
-        private String format(Throwable throwable) {
-            StringWriter stringWriter = new StringWriter();
-            PrintWriter printWriter = new PrintWriter(stringWriter);
+    /**
+     * The settings used until the config is read, which are also the defaults in the config.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    public static final AsyncLogHandler.OverflowPolicy DEFAULT_OVERFLOW_POLICY = AsyncLogHandler.OverflowPolicy.DROP;
+    public static final int DEFAULT_SAMPLE_RATE = 10;
 
-            throwable.printStackTrace(printWriter);
+    /**
+     * All loggers share one handler, so that records are written in the order they are logged.
+     */
+    private static final AsyncLogHandler handler = new AsyncLogHandler(
+            DEFAULT_BUFFER_SIZE, DEFAULT_OVERFLOW_POLICY, DEFAULT_SAMPLE_RATE
+    );
 
-            return stringWriter.toString();
-        }
-    };
+    /**
+     * Applies the logging settings in {@param config}, which is read after the first loggers are created.
+     */
+    public static void configure(Config config) {
+        handler.configure(
+                config.getLogBufferSize(),
+                AsyncLogHandler.OverflowPolicy.fromName(config.getLogOverflowPolicy()),
+                config.getLogSampleRate()
+        );
+    }
 
     /**
-     * @return A logger for the game with the given ID.
+     * Writes any log records that are waiting to be written.
      */
-    public static Logger getGameLogger(GameID gameID) {
-        return getLogger("Game " + gameID);
+    public static void flush() {
+        handler.flush();
     }
 
     /**
-     * @return A logger with the given name and a custom log formatter.
+     * @return A logger with the given name that logs through the shared asynchronous handler.
      */
     public static Logger getLogger(String name) {
         Logger logger = Logger.getLogger(name);
@@ -66,24 +53,6 @@ public class Logging {
             logger.removeHandler(handler);
         }
 
-        Handler handler = new Handler() {
-            @Override
-            public void publish(LogRecord record) {
-                String formatted = getFormatter().format(record);
-
-                if(record.getLevel().intValue() >= Level.WARNING.intValue()) {
-                    System.err.print(formatted);
-                } else {
-                    System.out.print(formatted);
-                }
-            }
-
-            public void flush() {}
-            public void close() throws SecurityException {}
-        };
-
-        handler.setFormatter(defaultLogFormatter);
-
         logger.addHandler(handler);
         logger.setUseParentHandlers(false);
         return logger;
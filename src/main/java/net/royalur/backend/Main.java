@@ -11,28 +11,55 @@ import java.util.Scanner;
  */
 public class Main {
 
+    /**
+     * A system property that makes the server exit as soon as it has started.
+     */
+    public static final String EXIT_AFTER_STARTUP_PROPERTY = "royalur.exitAfterStartup";
+
     public static void main(String[] args) {
         // Set SLF4J-Simple to have the INFO log level.
         System.setProperty(SimpleLogger.DEFAULT_LOG_LEVEL_KEY, "INFO");
 
 
         RoyalUr.logger.info("Starting RoyalUr.net server v" + RoyalUr.VERSION);
-        RoyalUr game = new RoyalUr();
+        // Used to record the classes loaded during start up, to create an AppCDS archive.
+        boolean exitAfterStartup = Boolean.getBoolean(EXIT_AFTER_STARTUP_PROPERTY);
+        RoyalUr game = new RoyalUr(exitAfterStartup);
+        if (exitAfterStartup) {
+            game.shutdown();
+            System.exit(0);
+        }
 
+        boolean restart = false;
         try(Scanner scanner = new Scanner(System.in)) {
             while(true) {
                 String input = scanner.nextLine();
                 if(input.equalsIgnoreCase("stop"))
                     break;
 
+                // Keeps the games being played, to be restored when the server is started again.
+                if(input.equalsIgnoreCase("restart")) {
+                    restart = true;
+                    break;
+                }
+
                 game.onConsoleInput(input);
             }
         } finally {
             try {
-                game.shutdown();
+                if (restart) {
+                    game.shutdownForRestart();
+                } else {
+                    game.shutdown();
+                }
             } finally {
                 new ThreadPurger().start();
             }
         }
+
+        // The snapshot has been written, so there's no need to wait for threads to finish.
+        if (restart) {
+            System.exit(0);
+        }
     }
 }
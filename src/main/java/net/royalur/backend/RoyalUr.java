@@ -1,22 +1,56 @@
 package net.royalur.backend;
 
+import net.royalur.backend.ai.BotDifficulty;
+import net.royalur.backend.ai.BotEngine;
+import net.royalur.backend.ai.SolvedTable;
+import net.royalur.backend.cluster.ClusterMembership;
+import net.royalur.backend.cluster.ClusterNode;
+import net.royalur.backend.console.Console;
+import net.royalur.backend.console.DiagnosticCommands;
 import net.royalur.backend.discord.DiscordBot;
 import net.royalur.backend.game.GameID;
 import net.royalur.backend.management.GameManager;
 import net.royalur.backend.management.GameRepository;
 import net.royalur.backend.management.ManagedGame;
 import net.royalur.backend.management.MatchMaker;
+import net.royalur.backend.management.SpectatorDelivery;
+import net.royalur.backend.metrics.DiceFairnessMonitor;
 import net.royalur.backend.network.Client;
+import net.royalur.backend.network.GameServer;
+import net.royalur.backend.network.ProtocolViolation;
 import net.royalur.backend.network.RoyalUrServer;
 import net.royalur.backend.network.incoming.*;
 import net.royalur.backend.network.outgoing.PacketOutGameInvalid;
+import net.royalur.backend.network.outgoing.PacketOutRedirect;
+import net.royalur.backend.replay.ReplayLibrary;
+import net.royalur.backend.session.SessionRecord;
+import net.royalur.backend.snapshot.ServerSnapshot;
+import net.royalur.backend.ssl.CertbotHook;
+import net.royalur.backend.ssl.CertificateFiles;
 import net.royalur.backend.ssl.KeyInfo;
 import net.royalur.backend.ssl.LetsEncryptSSL;
+import net.royalur.backend.ssl.TLSSessionSettings;
 import net.royalur.backend.util.Checks;
+import net.royalur.backend.util.StartupTimer;
 
 import javax.annotation.Nullable;
 import javax.security.auth.login.LoginException;
 import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,39 +64,187 @@ public class RoyalUr {
     public static final String VERSION = "3.0.0-SNAPSHOT";
     public static final Logger logger = Logging.getLogger("main");
 
+    private static final long QUIESCE_TIMEOUT_MS = 2000;
+
+    /** The number of games that each client may look up on other nodes within each window. **/
+    private static final int MAX_HOST_LOOKUPS_PER_WINDOW = 20;
+    private static final long HOST_LOOKUP_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
     private final Config config;
+    private final @Nullable ClusterMembership cluster;
+    private final ReplayLibrary replays;
     private final RoyalUrServer server;
     private final GameRepository gameRepository;
     private final GameManager gameManager;
+    private final BotEngine bots;
     private final MatchMaker matchmaker;
-    private final @Nullable DiscordBot bot;
+    private final CompletableFuture<DiscordBot> bot;
+    private final Console console = new Console();
+    private final Map<Client, HostLookups> hostLookups = new ConcurrentHashMap<>();
 
-    public RoyalUr() {
-        this.config = Config.read();
-        this.server = new RoyalUrServer(this, maybeLoadSSLKey());
-        this.gameRepository = new GameRepository();
-        this.gameManager = new GameManager(gameRepository);
-        this.matchmaker = new MatchMaker(gameRepository, gameManager);
+    /**
+     * @param exitAfterStartup Whether the server is only being started to record the classes
+     *                         it loads, in which case it leaves any snapshot where it is, does
+     *                         not join the cluster or log in the Discord bot, and binds to free
+     *                         loopback ports instead of its configured ports.
+     */
+    public RoyalUr(boolean exitAfterStartup) {
+        StartupTimer timer = new StartupTimer(logger::info);
+        this.config = timer.time("config", Config::read);
+        Logging.configure(config);
+        ExecutorService startupExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "startup");
+            thread.setDaemon(true);
+            return thread;
+        });
 
-        this.server.start();
+        // The SSL keys are parsed whilst the rest of the server is set up.
+        TLSSessionSettings tlsSessionSettings = readTLSSessionSettings();
+        CompletableFuture<KeyInfo> sslKey;
+        if (config.useSSL()) {
+            tlsSessionSettings.applyToJVM();
+            sslKey = timer.timeAsync("ssl", this::loadSSLKey, startupExecutor);
+        } else {
+            sslKey = CompletableFuture.completedFuture(null);
+        }
+
+        this.cluster = (config.useCluster() ? createClusterMembership() : null);
+        this.replays = new ReplayLibrary(config.getReplayKeyframeInterval(), config.getReplayMaxFinishedGames());
+        this.gameRepository = (cluster != null ? new GameRepository(cluster::isOwnedLocally) : new GameRepository());
+        DiceFairnessMonitor diceMonitor = new DiceFairnessMonitor(
+                config.getDiceWindowRolls(), config.getDiceAlertPValue()
+        );
+        diceMonitor.registerGauges();
+        this.gameManager = timer.time("games", () -> new GameManager(gameRepository, new SpectatorDelivery(
+                config.getSpectatorThreads(),
+                config.getSpectatorChunkSize(),
+                config.getSpectatorCadenceMs()
+        ), replays, diceMonitor));
+        this.bots = new BotEngine(
+                config.getBotThreads(), config.getBotMoveTimeMs(),
+                config.getBotTargetMovesPerSec(), config.getBotThinkDelayMs(),
+                timer.time("solved-table", this::loadSolvedTable)
+        );
+        this.matchmaker = new MatchMaker(
+                gameRepository, gameManager, bots,
+                BotDifficulty.fromName(config.getBotDifficulty()), config.getBotMatchDelaySecs()
+        );
+        this.server = timer.time("server", () -> new RoyalUrServer(
+                this, config, replays, sslKey.join(), tlsSessionSettings, exitAfterStartup
+        ));
+        if (!exitAfterStartup) {
+            timer.run("snapshot", this::restoreSnapshot);
+        }
+
+        if (cluster != null && !exitAfterStartup) {
+            timer.run("cluster", cluster::start);
+        }
+        timer.run("jetty", server::start);
         this.gameManager.start();
-        this.bot = maybeStartDiscordBot();
+        new DiagnosticCommands(gameManager, gameRepository, server.getGameServer()).register(console);
+        logger.info(timer.report());
+
+        // The server can play games without the bot, so the bot logs in after the server is ready.
+        this.bot = (config.runDiscordBot() && !exitAfterStartup
+                ? timer.timeAsync("discord", this::maybeStartDiscordBot, startupExecutor)
+                : CompletableFuture.completedFuture(null));
+        startupExecutor.shutdown();
+
+        if (config.useSSL()) {
+            CertbotHook.setupHook(this::reloadSSL);
+        }
+    }
+
+    private ClusterMembership createClusterMembership() {
+        String publicURL = config.getClusterPublicURL();
+        if (publicURL.isBlank()) {
+            publicURL = config.useSSL()
+                    ? "https://" + config.getClusterHost() + ":" + config.getSecurePort()
+                    : "http://" + config.getClusterHost() + ":" + config.getWebPort();
+        }
+        ClusterNode self = new ClusterNode(
+                config.getClusterNodeID(),
+                config.getClusterHost(),
+                config.getClusterPort(),
+                publicURL
+        );
+
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (String peer : config.getClusterPeers()) {
+            int separator = peer.lastIndexOf(':');
+            if (separator < 0)
+                throw new IllegalArgumentException("Expected cluster peer " + peer + " to be of the form host:port");
+
+            String host = peer.substring(0, separator);
+            int port = Integer.parseInt(peer.substring(separator + 1));
+            peers.add(new InetSocketAddress(host, port));
+        }
+        String secret = config.getClusterSecret();
+        Checks.ensure(!secret.isBlank(), "A cluster-secret must be configured for nodes to authenticate each other");
+        return new ClusterMembership(
+                self, peers, secret,
+                config.getClusterHeartbeatIntervalMs(),
+                config.getClusterFailureTimeoutMs(),
+                this::hostsGame
+        );
+    }
+
+    /** @return Whether the game or reservation {@param gameID} is hosted by this process. **/
+    private boolean hostsGame(GameID gameID) {
+        return gameRepository.get(gameID) != null;
+    }
+
+    /** @return The solved table for perfect bots, or null if it is not configured or cannot be read. **/
+    private @Nullable SolvedTable loadSolvedTable() {
+        if (config.getSolvedTableFile().isBlank())
+            return null;
+
+        Path file = Path.of(config.getSolvedTableFile());
+        try {
+            return SolvedTable.open(file);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to load the solved table, perfect bots will search instead", e);
+            return null;
+        }
     }
 
-    private @Nullable KeyInfo maybeLoadSSLKey() {
-        return config.useSSL() ? loadSSLKey() : null;
+    private TLSSessionSettings readTLSSessionSettings() {
+        return new TLSSessionSettings(
+                config.getSSLSessionCacheSize(),
+                config.getSSLSessionTimeoutSecs(),
+                config.useSSLSessionTickets(),
+                config.getSSLTicketKeyRotationSecs()
+        );
     }
 
     private KeyInfo loadSSLKey() {
-        File certFile = new File(config.getSSLCertFile());
-        File privateKeyFile = new File(config.getSSLPrivateKeyFile());
+        List<CertificateFiles> certificates = new ArrayList<>();
+        certificates.add(new CertificateFiles(
+                new File(config.getSSLCertFile()),
+                new File(config.getSSLPrivateKeyFile())
+        ));
+
+        // An ECDSA certificate can be served alongside the RSA certificate.
+        if (!config.getSSLECDSACertFile().isBlank()) {
+            certificates.add(new CertificateFiles(
+                    new File(config.getSSLECDSACertFile()),
+                    new File(config.getSSLECDSAPrivateKeyFile())
+            ));
+        }
+
         String password = config.getSSLPassword();
-        return LetsEncryptSSL.loadKey(certFile, privateKeyFile, password);
+        KeyInfo key = LetsEncryptSSL.loadKeys(certificates, password);
+        logger.info("Loaded SSL keys " + key.keyAlgorithms);
+        return key;
     }
 
     public void reloadSSL() {
-        server.reloadSSL(loadSSLKey());
-        logger.info("SSL encryption has been reloaded");
+        try {
+            server.reloadSSL(loadSSLKey());
+            logger.info("SSL encryption has been reloaded");
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Unable to reload SSL encryption", e);
+        }
     }
 
     /** Starts the Discord bot if it is enabled. **/
@@ -80,17 +262,114 @@ public class RoyalUr {
         }
     }
 
+    /**
+     * Restores the games and sessions from the snapshot written by
+     * {@link #shutdownForRestart()}, if there is one.
+     */
+    private void restoreSnapshot() {
+        Path file = Path.of(config.getSnapshotFile());
+        if (!Files.exists(file))
+            return;
+
+        long start = System.nanoTime();
+        try {
+            ServerSnapshot snapshot = ServerSnapshot.read(file);
+
+            long now = System.currentTimeMillis();
+            Map<UUID, Client> clients = new HashMap<>();
+            List<SessionRecord> sessions = new ArrayList<>();
+            for (SessionRecord session : snapshot.sessions()) {
+                if (session.isExpired(now))
+                    continue;
+
+                sessions.add(session);
+                clients.put(session.sessionID(), Client.restore(session, now));
+            }
+
+            // Every player of a restored game is registered as disconnected, so that they time out as usual.
+            int games = gameManager.restoreGames(snapshot.games(), clients);
+            server.getGameServer().restoreSessions(clients.values(), sessions);
+
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            logger.info(
+                    "Restored " + games + " of " + snapshot.games().size() + " games and "
+                            + sessions.size() + " sessions in " + durationMs + "ms"
+            );
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Unable to restore the snapshot " + file, e);
+        } finally {
+            // Each snapshot is only restored once, so that later restarts don't bring back finished games.
+            try {
+                Files.move(file, file.resolveSibling(file.getFileName() + ".restored"),
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Unable to move the restored snapshot " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Shutdown the RoyalUr application for a planned restart. Rather than ending
+     * the games being played, they are written to the snapshot file along with
+     * the sessions of the clients, to be restored when the server starts again.
+     */
+    public void shutdownForRestart() {
+        long start = System.nanoTime();
+        GameServer gameServer = server.getGameServer();
+        try {
+            if (!gameServer.quiesce(QUIESCE_TIMEOUT_MS)) {
+                logger.warning("Timed out waiting for packets to be handled before restarting");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Path file = Path.of(config.getSnapshotFile());
+        ServerSnapshot snapshot = new ServerSnapshot(
+                gameManager.snapshotGames(),
+                gameServer.getReconnectableSessions()
+        );
+        try {
+            snapshot.write(file);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Unable to write the snapshot " + file + ", ending all games instead", e);
+            shutdown();
+            return;
+        }
+
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        logger.info(
+                "Wrote " + snapshot.games().size() + " games and " + snapshot.sessions().size()
+                        + " sessions to " + file + " in " + durationMs + "ms"
+        );
+        shutdownServices();
+    }
+
     /** Shutdown the RoyalUr application. **/
     public void shutdown() {
         try {
             gameManager.stopAll("Server is restarting");
         } finally {
-            try {
-                if (bot != null) {
-                    bot.shutdown();
+            shutdownServices();
+        }
+    }
+
+    private void shutdownServices() {
+        try {
+            // If the bot is still logging in, it is shutdown once it has logged in.
+            bot.thenAccept(discordBot -> {
+                if (discordBot != null) {
+                    discordBot.shutdown();
                 }
-            } finally {
+            });
+        } finally {
+            try {
                 server.stop();
+            } finally {
+                bots.stop();
+                if (cluster != null) {
+                    cluster.stop();
+                }
             }
         }
     }
@@ -102,6 +381,8 @@ public class RoyalUr {
         // Remove all non-ascii characters.
         input = input.replaceAll("[^\\x00-\\x7F]", "");
         logger.info("Input: " + input);
+
+        console.execute(input);
     }
 
     /** Handle the connection of the client {@param client}. **/
@@ -111,6 +392,25 @@ public class RoyalUr {
         logger.info(client + " " + (isReconnect ? "reopen" : "open"));
     }
 
+    /**
+     * Handle the client {@param client} resuming the session {@param session}
+     * that was stored by this or another process, so that they take back
+     * their seats in the games hosted here.
+     */
+    public void onSessionRestored(Client client, SessionRecord session) {
+        Checks.ensureNonNull(client, "client");
+        Checks.ensureNonNull(session, "session");
+
+        logger.info(client + " restored session with games " + session.games());
+        gameManager.rebindClient(client, session.games());
+    }
+
+    /** @return The IDs of the games that {@param client} is a player in. **/
+    public List<GameID> getActiveGameIDs(Client client) {
+        Checks.ensureNonNull(client, "client");
+        return gameManager.getActiveGameIDs(client);
+    }
+
     /** Handle the disconnection of the client {@param client}. **/
     public void onDisconnect(Client client) {
         Checks.ensureNonNull(client, "client");
@@ -118,6 +418,7 @@ public class RoyalUr {
         logger.info(client + " close");
         gameManager.onClientDisconnect(client);
         matchmaker.onClientDisconnect(client);
+        hostLookups.remove(client);
     }
 
     /**
@@ -136,13 +437,22 @@ public class RoyalUr {
     public void onMessage(Client client, PacketIn packet) {
         Checks.ensureNonNull(client, "client");
         Checks.ensureNonNull(packet, "packet");
+        handleMessage(client, packet, true);
+    }
 
+    /**
+     * @param lookUpRemote Whether games that are not hosted here may be looked up on other nodes.
+     */
+    private void handleMessage(Client client, PacketIn packet, boolean lookUpRemote) {
         if (packet instanceof GamePacketIn) {
             GamePacketIn gamePacket = (GamePacketIn) packet;
+            if (lookUpRemote && redirectIfRemote(client, packet, gamePacket.gameID))
+                return;
+
             ManagedGame game = gameManager.getGameOrNull(gamePacket.gameID);
             if (game == null) {
                 client.error("Unable to find the game " + gamePacket.gameID);
-                throw new IllegalStateException(
+                throw new ProtocolViolation(
                         "Unable to find game " + gamePacket.gameID + " for " + client + " who sent " + packet
                 );
             }
@@ -160,6 +470,8 @@ public class RoyalUr {
             case JOIN_GAME -> {
                 PacketInJoinGame joinGamePacket = (PacketInJoinGame) packet;
                 GameID gameID = joinGamePacket.gameID;
+                if (lookUpRemote && redirectIfRemote(client, packet, gameID))
+                    return;
 
                 if (gameManager.containsGame(gameID)) {
                     gameManager.joinGame(gameID, client, true);
@@ -173,8 +485,71 @@ public class RoyalUr {
             case CREATE_GAME -> matchmaker.createPendingGame(client, (PacketInCreateGame) packet);
             default -> {
                 client.error("Unexpected packet " + packet.type + " while not in game");
-                throw new IllegalStateException(client + " not in game but sent " + packet);
+                throw new ProtocolViolation(client + " not in game but sent " + packet);
+            }
+        }
+    }
+
+    /**
+     * Games and reservations stay on the node they were created on, even
+     * if the cluster has since been rebalanced, so games that are not known
+     * here are looked up on the other nodes, rather than only on the ring.
+     * The lookup does not block, and {@param packet} is handled here once
+     * it finishes if no other node hosts the game. Each client may only look
+     * up a limited number of games, after which they are treated as missing.
+     *
+     * @return Whether {@param packet} will be handled once the host of the game {@param gameID} is found.
+     */
+    private boolean redirectIfRemote(Client client, PacketIn packet, GameID gameID) {
+        if (cluster == null || hostsGame(gameID))
+            return false;
+
+        HostLookups lookups = hostLookups.computeIfAbsent(client, key -> new HostLookups());
+        if (!lookups.tryAdd(System.nanoTime())) {
+            logger.fine(client + " has looked up too many games to look up " + gameID);
+            return false;
+        }
+
+        cluster.findHost(gameID).whenComplete((host, error) -> {
+            if (error != null) {
+                onError(client, error instanceof Exception ? (Exception) error : new RuntimeException(error));
+                return;
             }
+            if (host != null && !host.equals(cluster.getSelf())) {
+                logger.info("Redirecting " + client + " to " + host.id() + " for game " + gameID);
+                client.send(new PacketOutRedirect(gameID, host.publicURL()));
+                return;
+            }
+            try {
+                handleMessage(client, packet, false);
+            } catch (ProtocolViolation violation) {
+                logger.fine(violation.getMessage());
+            } catch (Exception e) {
+                onError(client, e);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * The number of games that a client has looked up on other nodes in the current window.
+     */
+    private static class HostLookups {
+
+        private long windowStartNanos;
+        private int count;
+
+        /** @return Whether another lookup is allowed at {@param now}, in which case it is counted. **/
+        synchronized boolean tryAdd(long now) {
+            if (count == 0 || now - windowStartNanos >= HOST_LOOKUP_WINDOW_NANOS) {
+                windowStartNanos = now;
+                count = 0;
+            }
+            if (count >= MAX_HOST_LOOKUPS_PER_WINDOW)
+                return false;
+
+            count += 1;
+            return true;
         }
     }
 
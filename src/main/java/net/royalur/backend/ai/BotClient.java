@@ -0,0 +1,81 @@
+package net.royalur.backend.ai;
+
+import net.royalur.backend.management.ManagedGame;
+import net.royalur.backend.network.Client;
+import net.royalur.backend.network.outgoing.PacketOut;
+
+import javax.annotation.Nonnull;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A player that is played by the server. Bots take the seat of a client
+ * in a {@link ManagedGame}, and play through the same packets as clients,
+ * but they have no connection, and so the packets sent to them are dropped.
+ *
+ * @author Paddy Lamont
+ */
+public class BotClient extends Client {
+
+    private final BotEngine engine;
+    private final BotDifficulty difficulty;
+    private final AtomicBoolean turnScheduled = new AtomicBoolean();
+
+    BotClient(@Nonnull BotEngine engine, @Nonnull BotDifficulty difficulty) {
+        super(difficulty.getBotName(), UUID.randomUUID(), null);
+        this.engine = engine;
+        this.difficulty = difficulty;
+    }
+
+    /** @return How well this bot plays. **/
+    public @Nonnull BotDifficulty getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * Let this bot know that it is its turn in {@param game}. The bot
+     * plays its turn later, and repeated calls before then are ignored.
+     */
+    public void onTurn(@Nonnull ManagedGame game) {
+        if (turnScheduled.compareAndSet(false, true)) {
+            engine.scheduleTurn(this, game);
+        }
+    }
+
+    /** Record that the turn that was scheduled for this bot has started. **/
+    void onTurnStarted() {
+        turnScheduled.set(false);
+    }
+
+    /** Bots are always present in their games. **/
+    @Override
+    public boolean isConnected() {
+        return true;
+    }
+
+    /** Bots never time out, and so a game with a bot ends once its other player times out. **/
+    @Override
+    public boolean isTimedOut() {
+        return false;
+    }
+
+    @Override
+    public void error(@Nonnull String error) {
+        engine.onBotError(this, error);
+    }
+
+    @Override
+    public void trySend(PacketOut packet) {
+        // Bots read the state of their games directly.
+    }
+
+    @Override
+    public void send(PacketOut packet) {
+        // Bots read the state of their games directly.
+    }
+
+    @Override
+    public String toString() {
+        return "BotClient(id=" + getSessionID().toString().substring(0, 8) + ", difficulty=" + difficulty + ")";
+    }
+}
@@ -0,0 +1,66 @@
+package net.royalur.backend.ai;
+
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import java.util.Locale;
+
+/**
+ * How well a bot plays, which limits how far ahead it searches,
+ * and how often it makes a random move instead of its best move.
+ * Perfect bots look up their moves in the {@link SolvedTable} when
+ * one is loaded, and otherwise play the same as hard bots.
+ *
+ * @author Paddy Lamont
+ */
+public enum BotDifficulty {
+    EASY("Easy Bot", 1, 0.3, false),
+    MEDIUM("Medium Bot", 3, 0.05, false),
+    HARD("Hard Bot", BotSearch.MAX_DEPTH, 0, false),
+    PERFECT("Perfect Bot", BotSearch.MAX_DEPTH, 0, true);
+
+    private final String botName;
+    private final int maxDepth;
+    private final double mistakeChance;
+    private final boolean usesSolvedTable;
+
+    BotDifficulty(String botName, int maxDepth, double mistakeChance, boolean usesSolvedTable) {
+        Checks.ensureNonNull(botName, "botName");
+        Checks.ensure(maxDepth > 0 && maxDepth <= BotSearch.MAX_DEPTH, "maxDepth is out of range");
+        Checks.ensure(mistakeChance >= 0 && mistakeChance < 1, "mistakeChance must be between 0 and 1");
+        this.botName = botName;
+        this.maxDepth = maxDepth;
+        this.mistakeChance = mistakeChance;
+        this.usesSolvedTable = usesSolvedTable;
+    }
+
+    /** @return The name shown to the opponents of bots with this difficulty. **/
+    public String getBotName() {
+        return botName;
+    }
+
+    /** @return The maximum number of turns that bots with this difficulty search ahead. **/
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /** @return The chance that bots with this difficulty make a random move instead of their best move. **/
+    public double getMistakeChance() {
+        return mistakeChance;
+    }
+
+    /** @return Whether bots with this difficulty look up their moves in the solved table, if it is loaded. **/
+    public boolean usesSolvedTable() {
+        return usesSolvedTable;
+    }
+
+    /** @return The difficulty with the name {@param name}, ignoring case. **/
+    public static @Nonnull BotDifficulty fromName(@Nonnull String name) {
+        Checks.ensureNonNull(name, "name");
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown bot difficulty " + name);
+        }
+    }
+}
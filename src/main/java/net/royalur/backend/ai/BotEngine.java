@@ -0,0 +1,262 @@
+package net.royalur.backend.ai;
+
+import net.royalur.Game;
+import net.royalur.backend.Logging;
+import net.royalur.backend.game.DiceValue;
+import net.royalur.backend.game.GameTables;
+import net.royalur.backend.game.RoyalUrNetDiceRoll;
+import net.royalur.backend.management.ManagedGame;
+import net.royalur.backend.metrics.Counter;
+import net.royalur.backend.metrics.Histogram;
+import net.royalur.backend.metrics.Metrics;
+import net.royalur.backend.network.incoming.PacketInGameMove;
+import net.royalur.backend.network.incoming.PacketInGameRoll;
+import net.royalur.backend.util.Checks;
+import net.royalur.model.Move;
+import net.royalur.model.Player;
+import net.royalur.model.PlayerState;
+import net.royalur.model.Tile;
+import net.royalur.model.state.WaitingForMoveGameState;
+import net.royalur.rules.simple.SimplePiece;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Plays the turns of bots on a small pool of low priority threads, so
+ * that bots cannot take more CPU than the pool has, however many bots
+ * are playing. Each thread searches for moves using its own {@link BotSearch}
+ * and move buffer, unless the bot plays perfectly and the {@link SolvedTable}
+ * is loaded.
+ * <p>
+ * The number of moves the pool can play each second is its number of threads
+ * divided by the time budget of each move. By default, the pool is given a
+ * quarter of the processors, and the budget is set so that the pool keeps up
+ * with the target moves per second. A bot game with a human opponent needs a
+ * bot move every few seconds, so the default target of 500 moves per second
+ * allows for a couple of thousand concurrent bot games.
+ *
+ * @author Paddy Lamont
+ */
+public class BotEngine {
+
+    private static final Logger logger = Logging.getLogger("bots");
+
+    /** The processors available for each thread sized automatically. **/
+    private static final int PROCESSORS_PER_THREAD = 4;
+    private static final long MAX_MOVE_TIME_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MIN_MOVE_TIME_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final ThreadLocal<BotSearch> searches = ThreadLocal.withInitial(BotSearch::new);
+    private final ThreadLocal<int[]> moveBuffers = ThreadLocal.withInitial(() -> new int[BotPosition.PIECES + 1]);
+    private final @Nullable SolvedTable solvedTable;
+    private final long moveTimeNanos;
+    private final long thinkDelayMs;
+
+    private final Counter gamesCounter = Metrics.counter("bots.games");
+    private final Counter turnsCounter = Metrics.counter("bots.turns");
+    private final Counter errorsCounter = Metrics.counter("bots.errors");
+    private final Histogram searchHistogram = Metrics.histogram(
+            "bots.search-us", Histogram.exponentialBounds(1, 10_000_000)
+    );
+
+    /**
+     * @param threads The number of threads used to play the turns of bots, or 0 to size them from the processors.
+     * @param moveTimeMs The time budget for bots to search for each move,
+     *                   or 0 to size it from {@param targetMovesPerSec}.
+     * @param targetMovesPerSec The number of moves per second that bots should be able to play.
+     * @param thinkDelayMs The delay before bots play each turn, so that their opponents can follow the game.
+     * @param solvedTable The table that perfect bots look up their moves in, or null if it is not loaded.
+     */
+    public BotEngine(
+            int threads, long moveTimeMs, int targetMovesPerSec,
+            long thinkDelayMs, @Nullable SolvedTable solvedTable
+    ) {
+        Checks.ensure(threads >= 0, "threads must be non-negative");
+        Checks.ensure(moveTimeMs >= 0, "moveTimeMs must be non-negative");
+        Checks.ensure(targetMovesPerSec > 0, "targetMovesPerSec must be positive");
+        Checks.ensure(thinkDelayMs >= 0, "thinkDelayMs must be non-negative");
+
+        if (threads == 0) {
+            threads = Math.max(1, Runtime.getRuntime().availableProcessors() / PROCESSORS_PER_THREAD);
+        }
+        if (moveTimeMs == 0) {
+            long budget = threads * TimeUnit.SECONDS.toNanos(1) / targetMovesPerSec;
+            this.moveTimeNanos = Math.max(MIN_MOVE_TIME_NANOS, Math.min(MAX_MOVE_TIME_NANOS, budget));
+        } else {
+            this.moveTimeNanos = TimeUnit.MILLISECONDS.toNanos(moveTimeMs);
+        }
+        this.thinkDelayMs = thinkDelayMs;
+        this.solvedTable = solvedTable;
+
+        long capacity = threads * TimeUnit.SECONDS.toNanos(1) / moveTimeNanos;
+        logger.info(
+                "Bots play on " + threads + " threads with " + TimeUnit.NANOSECONDS.toMicros(moveTimeNanos)
+                + " us to search each move, for at least " + capacity + " moves per second"
+                + (capacity < targetMovesPerSec ? ", below the target of " + targetMovesPerSec : "")
+        );
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bot-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /** @return A new bot that plays with the difficulty {@param difficulty}. **/
+    public @Nonnull BotClient createBot(@Nonnull BotDifficulty difficulty) {
+        Checks.ensureNonNull(difficulty, "difficulty");
+        gamesCounter.increment();
+        return new BotClient(this, difficulty);
+    }
+
+    /** Run {@param runnable} on the threads of this engine after {@param delay}. **/
+    public void scheduleIn(@Nonnull Runnable runnable, long delay, @Nonnull TimeUnit units) {
+        Checks.ensureNonNull(runnable, "runnable");
+        Checks.ensureNonNull(units, "units");
+        executor.schedule(() -> {
+            try {
+                runnable.run();
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Exception running bot task", e);
+            }
+        }, delay, units);
+    }
+
+    /** Schedule {@param bot} to play its turn in {@param game}. **/
+    void scheduleTurn(@Nonnull BotClient bot, @Nonnull ManagedGame game) {
+        scheduleIn(() -> playTurn(bot, game), thinkDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Record that the game rejected a packet from {@param bot} with the error {@param error}. **/
+    void onBotError(@Nonnull BotClient bot, @Nonnull String error) {
+        errorsCounter.increment();
+        logger.warning(bot + " was sent the error: " + error);
+    }
+
+    private void playTurn(BotClient bot, ManagedGame game) {
+        bot.onTurnStarted();
+
+        Player player;
+        boolean rolling;
+        Tile source = null;
+        int roll = 0;
+        long position = -1;
+        synchronized (game) {
+            Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> state = game.savedGame.game;
+            player = game.getPlayer(bot);
+            if (player == null || state.isFinished() || state.getTurnPlayer().player != player)
+                return;
+
+            rolling = state.isWaitingForRoll();
+            if (!rolling) {
+                if (!state.isWaitingForMove())
+                    return;
+
+                WaitingForMoveGameState<?, ?, RoyalUrNetDiceRoll> waiting = (
+                        (WaitingForMoveGameState<?, ?, RoyalUrNetDiceRoll>) state.getCurrentState()
+                );
+                roll = DiceValue.count(waiting.roll.values);
+                position = readPosition(game, state);
+                if (position < 0) {
+                    source = chooseRandomMove(game, player, state.findAvailableMoves());
+                    if (source == null)
+                        return;
+                }
+            }
+        }
+        turnsCounter.increment();
+
+        if (rolling) {
+            PacketInGameRoll packet = new PacketInGameRoll();
+            packet.gameID = game.getID();
+            game.onPacket(bot, packet);
+            return;
+        }
+        if (source == null) {
+            // The search is done outside the lock on the game, as the
+            // other player cannot change the game during the bot's turn.
+            source = chooseMove(bot, game, player, position, roll);
+            if (source == null)
+                return;
+        }
+
+        PacketInGameMove packet = new PacketInGameMove();
+        packet.gameID = game.getID();
+        packet.setFrom(source);
+        game.onPacket(bot, packet);
+    }
+
+    /**
+     * @return The position of {@param state}, or -1 if bots cannot search the game,
+     *         in which case they play random moves instead.
+     */
+    private static long readPosition(ManagedGame game, Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> state) {
+        try {
+            return BotPosition.of(state);
+        } catch (IllegalArgumentException e) {
+            game.diagnostics.warning("Bots cannot search this game: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /** @return The tile of the piece to move in a random move out of {@param moves}, or null if there are none. **/
+    private static @Nullable Tile chooseRandomMove(ManagedGame game, Player player, List<Move<SimplePiece>> moves) {
+        if (moves.isEmpty())
+            return null;
+
+        Move<SimplePiece> move = moves.get(ThreadLocalRandom.current().nextInt(moves.size()));
+        return move.isIntroducingPiece()
+                ? game.savedGame.settings.getTables().getStartTile(player)
+                : move.getSource();
+    }
+
+    /**
+     * @return The tile of the piece that {@param bot} moves by {@param roll} in {@param position},
+     *         or null if there are no moves available.
+     */
+    private @Nullable Tile chooseMove(BotClient bot, ManagedGame game, Player player, long position, int roll) {
+        int[] sources = moveBuffers.get();
+        int count = BotPosition.findMoves(position, roll, sources);
+        if (count == 0)
+            return null;
+
+        int index = 0;
+        if (count > 1) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            BotDifficulty difficulty = bot.getDifficulty();
+            long start = System.nanoTime();
+            if (random.nextDouble() < difficulty.getMistakeChance()) {
+                index = random.nextInt(count);
+            } else if (difficulty.usesSolvedTable() && solvedTable != null) {
+                index = solvedTable.findBestMove(position, roll, sources, count);
+            } else {
+                index = searches.get().search(
+                        position, roll, sources, count, difficulty.getMaxDepth(), moveTimeNanos
+                );
+            }
+            searchHistogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+
+        GameTables tables = game.savedGame.settings.getTables();
+        int pathIndex = sources[index];
+        return pathIndex == BotPosition.INTRODUCE
+                ? tables.getStartTile(player)
+                : tables.getPathTile(player, pathIndex);
+    }
+
+    /** Stop playing the turns of bots. **/
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
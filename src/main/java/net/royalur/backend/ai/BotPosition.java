@@ -0,0 +1,262 @@
+package net.royalur.backend.ai;
+
+import net.royalur.Game;
+import net.royalur.backend.game.RoyalUrNetDice;
+import net.royalur.backend.game.RoyalUrNetDiceRoll;
+import net.royalur.backend.util.Checks;
+import net.royalur.model.Board;
+import net.royalur.model.Piece;
+import net.royalur.model.Player;
+import net.royalur.model.PlayerState;
+import net.royalur.rules.simple.SimplePiece;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Packs the state of a game on the standard board with the Bell paths into
+ * a single long, so that bots can search through positions without allocating.
+ * <p>
+ * Each player's pieces are stored as a mask of the indices along their path
+ * that they occupy, followed by their score, and the player whose turn it is.
+ * Path indices 4 to 11 are shared by both players.
+ *
+ * @author Paddy Lamont
+ */
+public final class BotPosition {
+
+    /** The number of tiles on each player's path. **/
+    public static final int PATH_LENGTH = 14;
+
+    /** The number of pieces each player starts with. **/
+    public static final int PIECES = 7;
+
+    /** The path index used as the source of moves that introduce a piece. **/
+    public static final int INTRODUCE = -1;
+
+    public static final int SHARED_START = 4;
+    public static final int SHARED_END = 11;
+    public static final int CENTRAL_ROSETTE = 7;
+
+    private static final int ROSETTES = (1 << 3) | (1 << CENTRAL_ROSETTE) | (1 << 13);
+    private static final int PATH_MASK = (1 << PATH_LENGTH) - 1;
+    private static final int SHARED_MASK = ((1 << (SHARED_END + 1)) - 1) & ~((1 << SHARED_START) - 1);
+
+    private static final int DARK_PATH_SHIFT = PATH_LENGTH;
+    private static final int LIGHT_SCORE_SHIFT = 2 * PATH_LENGTH;
+    private static final int DARK_SCORE_SHIFT = LIGHT_SCORE_SHIFT + 3;
+    private static final int TURN_SHIFT = DARK_SCORE_SHIFT + 3;
+
+    /**
+     * The tiles of the light player's path, as x and y indices. The dark
+     * player's path is mirrored in x. Each path runs up their side of
+     * the board, down the middle, and back up their side.
+     */
+    private static final int[] LIGHT_PATH_X = {0, 0, 0, 0, 1, 1, 1, 1, 1, 1, 1, 1, 0, 0};
+    private static final int[] PATH_Y = {3, 2, 1, 0, 0, 1, 2, 3, 4, 5, 6, 7, 7, 6};
+    private static final int BOARD_WIDTH = 3;
+    private static final int BOARD_HEIGHT = 8;
+
+    /**
+     * The weight of each roll, from 0 to the number of dice, out of
+     * {@link #ROLL_WEIGHT_TOTAL}. Each dice is up half of the time.
+     */
+    public static final int[] ROLL_WEIGHTS = binomialWeights(RoyalUrNetDice.DICE_COUNT);
+    public static final int ROLL_WEIGHT_TOTAL = 1 << RoyalUrNetDice.DICE_COUNT;
+
+    private BotPosition() {}
+
+    private static int[] binomialWeights(int dice) {
+        int[] weights = new int[dice + 1];
+        weights[0] = 1;
+        for (int roll = 1; roll <= dice; ++roll) {
+            weights[roll] = weights[roll - 1] * (dice - roll + 1) / roll;
+        }
+        return weights;
+    }
+
+    /** @return The x index of the tile at {@param pathIndex} along the path of {@param light}'s player. **/
+    public static int getTileX(boolean light, int pathIndex) {
+        int x = LIGHT_PATH_X[pathIndex];
+        return light || x == 1 ? x : BOARD_WIDTH - 1 - x;
+    }
+
+    /** @return The y index of the tile at {@param pathIndex}. **/
+    public static int getTileY(int pathIndex) {
+        return PATH_Y[pathIndex];
+    }
+
+    /**
+     * @return The index of the tile at {@param x}, {@param y} along the path
+     *         of the light or dark player, or -1 if it is not on their path.
+     */
+    public static int getPathIndex(boolean light, int x, int y) {
+        for (int index = 0; index < PATH_LENGTH; ++index) {
+            if (getTileX(light, index) == x && PATH_Y[index] == y)
+                return index;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The position where the light and dark players occupy the path indices in
+     *         the masks {@param lightPath} and {@param darkPath}, and have the scores
+     *         {@param lightScore} and {@param darkScore}.
+     */
+    public static long create(int lightPath, int darkPath, int lightScore, int darkScore, boolean lightTurn) {
+        Checks.ensure((lightPath & ~PATH_MASK) == 0 && (darkPath & ~PATH_MASK) == 0, "The paths are out of range");
+        Checks.ensure((lightPath & darkPath & SHARED_MASK) == 0, "The players cannot share a tile");
+        Checks.ensure(
+                Integer.bitCount(lightPath) + lightScore <= PIECES && Integer.bitCount(darkPath) + darkScore <= PIECES,
+                "The players have too many pieces"
+        );
+        Checks.ensure(lightScore >= 0 && darkScore >= 0, "The scores must be non-negative");
+        return (long) lightPath
+                | (long) darkPath << DARK_PATH_SHIFT
+                | (long) lightScore << LIGHT_SCORE_SHIFT
+                | (long) darkScore << DARK_SCORE_SHIFT
+                | (lightTurn ? 0L : 1L) << TURN_SHIFT;
+    }
+
+    /**
+     * @return The position of {@param game}.
+     * @throws IllegalArgumentException If the game is not played on the standard board with the Bell paths.
+     */
+    public static long of(@Nonnull Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game) {
+        Board<SimplePiece> board = game.getBoard();
+        if (board.shape.width != BOARD_WIDTH || board.shape.height != BOARD_HEIGHT)
+            throw new IllegalArgumentException("Bots can only play on the standard board");
+
+        int lightMask = 0;
+        int darkMask = 0;
+        for (int index = 0; index < PATH_LENGTH; ++index) {
+            lightMask |= occupancy(board, getTileX(true, index), PATH_Y[index], Player.LIGHT) << index;
+            darkMask |= occupancy(board, getTileX(false, index), PATH_Y[index], Player.DARK) << index;
+        }
+
+        PlayerState light = game.getLightPlayer();
+        PlayerState dark = game.getDarkPlayer();
+        if (Integer.bitCount(lightMask) + light.score + light.pieceCount != PIECES
+                || Integer.bitCount(darkMask) + dark.score + dark.pieceCount != PIECES)
+            throw new IllegalArgumentException("Bots can only play with " + PIECES + " pieces and the Bell paths");
+
+        boolean lightTurn = (game.getTurnPlayer().player == Player.LIGHT);
+        return create(lightMask, darkMask, light.score, dark.score, lightTurn);
+    }
+
+    private static int occupancy(Board<SimplePiece> board, int x, int y, Player player) {
+        Piece piece = board.get(x, y);
+        return piece != null && piece.owner == player ? 1 : 0;
+    }
+
+    /** @return Whether it is the light player's turn in {@param position}. **/
+    public static boolean isLightTurn(long position) {
+        return ((position >>> TURN_SHIFT) & 1) == 0;
+    }
+
+    /** @return The path mask of the light or dark player. **/
+    public static int getPath(long position, boolean light) {
+        return (int) ((position >>> (light ? 0 : DARK_PATH_SHIFT)) & PATH_MASK);
+    }
+
+    /** @return The number of pieces the light or dark player has scored. **/
+    public static int getScore(long position, boolean light) {
+        return (int) ((position >>> (light ? LIGHT_SCORE_SHIFT : DARK_SCORE_SHIFT)) & 7);
+    }
+
+    /** @return The number of pieces the light or dark player has yet to introduce. **/
+    public static int getPiecesInHand(long position, boolean light) {
+        return PIECES - Integer.bitCount(getPath(position, light)) - getScore(position, light);
+    }
+
+    /** @return Whether either player has won in {@param position}. **/
+    public static boolean isFinished(long position) {
+        return getScore(position, true) == PIECES || getScore(position, false) == PIECES;
+    }
+
+    /**
+     * @return {@param position} with the pieces and scores of the players
+     *         swapped, and the turn given to the other player.
+     */
+    public static long mirror(long position) {
+        long lightPath = position & PATH_MASK;
+        long darkPath = (position >>> DARK_PATH_SHIFT) & PATH_MASK;
+        long lightScore = (position >>> LIGHT_SCORE_SHIFT) & 7;
+        long darkScore = (position >>> DARK_SCORE_SHIFT) & 7;
+        long turn = (position >>> TURN_SHIFT) & 1;
+        return darkPath
+                | lightPath << DARK_PATH_SHIFT
+                | darkScore << LIGHT_SCORE_SHIFT
+                | lightScore << DARK_SCORE_SHIFT
+                | (turn ^ 1) << TURN_SHIFT;
+    }
+
+    /** @return {@param position} with the turn passed to the other player. **/
+    public static long pass(long position) {
+        return position ^ (1L << TURN_SHIFT);
+    }
+
+    /**
+     * Writes the source path indices of the moves available with the roll {@param roll}
+     * into {@param sources}, which must have room for {@link #PIECES} + 1 moves.
+     *
+     * @return The number of moves available.
+     */
+    public static int findMoves(long position, int roll, int[] sources) {
+        if (roll <= 0)
+            return 0;
+
+        boolean light = isLightTurn(position);
+        int own = getPath(position, light);
+        int other = getPath(position, !light);
+
+        int count = 0;
+        if (getPiecesInHand(position, light) > 0 && isDestinationFree(own, other, roll - 1)) {
+            sources[count++] = INTRODUCE;
+        }
+        for (int remaining = own; remaining != 0; remaining &= remaining - 1) {
+            int source = Integer.numberOfTrailingZeros(remaining);
+            int destination = source + roll;
+            // Pieces must be moved off the end of the path with an exact roll.
+            boolean scores = (destination == PATH_LENGTH);
+            if (scores || (destination < PATH_LENGTH && isDestinationFree(own, other, destination))) {
+                sources[count++] = source;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isDestinationFree(int own, int other, int destination) {
+        if ((own & (1 << destination)) != 0)
+            return false;
+        // Pieces on the central rosette cannot be captured.
+        return destination != CENTRAL_ROSETTE || (other & (1 << destination)) == 0;
+    }
+
+    /**
+     * @return The position after the player to move moves the piece at {@param source}
+     *         by {@param roll}. The move must be one found by {@link #findMoves}.
+     */
+    public static long applyMove(long position, int roll, int source) {
+        boolean light = isLightTurn(position);
+        int ownShift = (light ? 0 : DARK_PATH_SHIFT);
+        int otherShift = (light ? DARK_PATH_SHIFT : 0);
+
+        int destination = source + roll;
+        if (source != INTRODUCE) {
+            position &= ~(1L << (source + ownShift));
+        }
+
+        if (destination == PATH_LENGTH) {
+            position += 1L << (light ? LIGHT_SCORE_SHIFT : DARK_SCORE_SHIFT);
+        } else {
+            position |= 1L << (destination + ownShift);
+            if (destination >= SHARED_START && destination <= SHARED_END) {
+                // Captured pieces return to their owner's hand.
+                position &= ~(1L << (destination + otherShift));
+            }
+        }
+
+        boolean rosette = (destination < PATH_LENGTH && (ROSETTES & (1 << destination)) != 0);
+        return rosette ? position : pass(position);
+    }
+}
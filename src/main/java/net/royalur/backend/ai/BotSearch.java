@@ -0,0 +1,172 @@
+package net.royalur.backend.ai;
+
+import net.royalur.backend.util.Checks;
+
+/**
+ * Searches for the best move for bots using expectiminimax, where the
+ * player to move picks their best move, and each roll of the dice is
+ * weighted by its probability. The search deepens one turn at a time
+ * until its time budget runs out, and remembers the values of positions
+ * it has searched in a fixed-size transposition table.
+ * <p>
+ * Searching does not allocate, so that many bots can play at once without
+ * adding to the work of the garbage collector. Each search object is not
+ * thread-safe, and so each thread that plays for bots should use its own.
+ *
+ * @author Paddy Lamont
+ */
+public class BotSearch {
+
+    /** The maximum number of turns that can be searched ahead. **/
+    public static final int MAX_DEPTH = 8;
+
+    /** The value of a position that light has won, from light's perspective. **/
+    public static final int WIN_VALUE = 1_000_000;
+
+    private static final int SCORED_PIECE_VALUE = 20;
+    private static final int CENTRAL_ROSETTE_VALUE = 4;
+
+    private static final int MAX_MOVES = BotPosition.PIECES + 1;
+    private static final int TABLE_BITS = 16;
+    private static final int DEADLINE_CHECK_MASK = 1023;
+
+    private final long[] tableKeys = new long[1 << TABLE_BITS];
+    private final int[] tableValues = new int[1 << TABLE_BITS];
+    /** The depth each entry was searched to plus one, or 0 if the entry is empty. **/
+    private final byte[] tableDepths = new byte[1 << TABLE_BITS];
+
+    private final int[][] moveBuffers = new int[MAX_DEPTH + 1][MAX_MOVES];
+
+    private long deadlineNanos;
+    private boolean aborted;
+    private long nodes;
+    private int completedDepth;
+
+    /**
+     * Searches for the best of the {@param count} moves in {@param sources} for the player
+     * to move in {@param position}, who rolled {@param roll}. Searching stops once it has
+     * searched {@param maxDepth} turns ahead, or after roughly {@param budgetNanos}.
+     * At least one turn ahead is always searched.
+     *
+     * @return The index into {@param sources} of the best move.
+     */
+    public int search(long position, int roll, int[] sources, int count, int maxDepth, long budgetNanos) {
+        Checks.ensure(count > 0, "There must be at least one move");
+        Checks.ensure(maxDepth > 0 && maxDepth <= MAX_DEPTH, "maxDepth is out of range");
+
+        this.deadlineNanos = System.nanoTime() + budgetNanos;
+        this.aborted = false;
+        this.nodes = 0;
+        this.completedDepth = 0;
+        if (count == 1)
+            return 0;
+
+        boolean light = BotPosition.isLightTurn(position);
+        int bestIndex = 0;
+        for (int depth = 1; depth <= maxDepth; ++depth) {
+            int depthBestIndex = 0;
+            int depthBestValue = 0;
+            for (int index = 0; index < count; ++index) {
+                long next = BotPosition.applyMove(position, roll, sources[index]);
+                int value = chance(next, depth - 1);
+                if (index == 0 || (light ? value > depthBestValue : value < depthBestValue)) {
+                    depthBestIndex = index;
+                    depthBestValue = value;
+                }
+            }
+            if (aborted)
+                break;
+
+            bestIndex = depthBestIndex;
+            completedDepth = depth;
+            // There is no better move than one that is certain to win.
+            if (light ? depthBestValue >= WIN_VALUE : depthBestValue <= -WIN_VALUE)
+                break;
+        }
+        return bestIndex;
+    }
+
+    /** @return The number of positions visited by the last search. **/
+    public long getNodes() {
+        return nodes;
+    }
+
+    /** @return The number of turns ahead that the last search completed. **/
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * @return The value of {@param position} from light's perspective, before
+     *         the dice are rolled, searching {@param depth} turns ahead.
+     */
+    private int chance(long position, int depth) {
+        if (BotPosition.isFinished(position))
+            return BotPosition.getScore(position, true) == BotPosition.PIECES ? WIN_VALUE : -WIN_VALUE;
+        if (depth == 0)
+            return evaluate(position);
+
+        int slot = (int) ((position * 0x9E3779B97F4A7C15L) >>> (64 - TABLE_BITS));
+        if (tableDepths[slot] > depth && tableKeys[slot] == position)
+            return tableValues[slot];
+
+        if ((++nodes & DEADLINE_CHECK_MASK) == 0 && System.nanoTime() > deadlineNanos) {
+            aborted = true;
+        }
+        if (aborted)
+            return 0;
+
+        long total = 0;
+        for (int roll = 0; roll < BotPosition.ROLL_WEIGHTS.length; ++roll) {
+            total += (long) BotPosition.ROLL_WEIGHTS[roll] * decide(position, roll, depth);
+        }
+        int value = (int) (total / BotPosition.ROLL_WEIGHT_TOTAL);
+
+        // The values of partial searches are not kept, as they are incomplete.
+        if (!aborted) {
+            tableKeys[slot] = position;
+            tableValues[slot] = value;
+            tableDepths[slot] = (byte) (depth + 1);
+        }
+        return value;
+    }
+
+    /**
+     * @return The value of {@param position} from light's perspective, after the
+     *         player to move rolled {@param roll}, searching {@param depth} turns ahead.
+     */
+    private int decide(long position, int roll, int depth) {
+        int[] moves = moveBuffers[depth];
+        int count = BotPosition.findMoves(position, roll, moves);
+        if (count == 0)
+            return chance(BotPosition.pass(position), depth - 1);
+
+        boolean light = BotPosition.isLightTurn(position);
+        int best = (light ? Integer.MIN_VALUE : Integer.MAX_VALUE);
+        for (int index = 0; index < count; ++index) {
+            int value = chance(BotPosition.applyMove(position, roll, moves[index]), depth - 1);
+            best = (light ? Math.max(best, value) : Math.min(best, value));
+        }
+        return best;
+    }
+
+    /**
+     * @return An estimate of the value of {@param position} from light's
+     *         perspective, from how far each player's pieces have progressed.
+     */
+    public static int evaluate(long position) {
+        return evaluateSide(position, true) - evaluateSide(position, false);
+    }
+
+    private static int evaluateSide(long position, boolean light) {
+        int path = BotPosition.getPath(position, light);
+        int value = BotPosition.getScore(position, light) * SCORED_PIECE_VALUE;
+        for (int remaining = path; remaining != 0; remaining &= remaining - 1) {
+            value += Integer.numberOfTrailingZeros(remaining) + 1;
+        }
+        if ((path & (1 << BotPosition.CENTRAL_ROSETTE)) != 0) {
+            value += CENTRAL_ROSETTE_VALUE;
+        }
+        return value;
+    }
+}
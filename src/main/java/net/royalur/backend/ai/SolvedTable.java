@@ -0,0 +1,129 @@
+package net.royalur.backend.ai;
+
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The chance that light wins from every position of the standard game,
+ * when both players play perfectly, read from a table file written by
+ * {@link SolvedTableGenerator}. The file is memory-mapped rather than read
+ * onto the heap, so that it is shared with the page cache and only the
+ * parts of it that are used are loaded.
+ * <p>
+ * Each position where it is light's turn is stored at its index from
+ * {@link SolvedTableIndex}, as a 16-bit fraction of one. Positions where it
+ * is dark's turn are looked up through their mirror.
+ *
+ * @author Paddy Lamont
+ */
+public final class SolvedTable {
+
+    /** The first bytes of table files, "URST". **/
+    public static final int MAGIC = 0x55525354;
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+
+    /** The stored value that represents a certain win for light. **/
+    public static final int MAX_VALUE = Character.MAX_VALUE;
+
+    private final CharBuffer values;
+
+    private SolvedTable(@Nonnull CharBuffer values) {
+        this.values = values;
+    }
+
+    /**
+     * @return The table in the file {@param file}, which is memory-mapped.
+     * @throws IOException If the file cannot be read, or is not a table file for this version.
+     */
+    public static @Nonnull SolvedTable open(@Nonnull Path file) throws IOException {
+        Checks.ensureNonNull(file, "file");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long expectedSize = HEADER_BYTES + 2 * SolvedTableIndex.SIZE;
+            if (channel.size() != expectedSize)
+                throw new IOException(file + " has " + channel.size() + " bytes, expected " + expectedSize);
+
+            // The mapping stays valid after the channel is closed.
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, expectedSize);
+            if (buffer.getInt(0) != MAGIC)
+                throw new IOException(file + " is not a solved table file");
+            if (buffer.getInt(4) != VERSION)
+                throw new IOException(file + " is version " + buffer.getInt(4) + ", expected " + VERSION);
+            if (buffer.getLong(8) != SolvedTableIndex.SIZE)
+                throw new IOException(file + " has " + buffer.getLong(8) + " positions");
+
+            ByteBuffer values = buffer.slice(HEADER_BYTES, (int) (expectedSize - HEADER_BYTES));
+            return new SolvedTable(values.asCharBuffer());
+        }
+    }
+
+    /** @return The chance that light wins from {@param position}, before the dice are rolled. **/
+    public double getLightWinProbability(long position) {
+        if (BotPosition.isFinished(position))
+            return BotPosition.getScore(position, true) == BotPosition.PIECES ? 1 : 0;
+        if (BotPosition.isLightTurn(position))
+            return getStoredValue(SolvedTableIndex.indexOf(position));
+
+        return 1 - getStoredValue(SolvedTableIndex.indexOf(BotPosition.mirror(position)));
+    }
+
+    private double getStoredValue(long index) {
+        return (double) values.get((int) index) / MAX_VALUE;
+    }
+
+    /** @return The chance that the player to move wins from {@param position}, before the dice are rolled. **/
+    public double getWinProbability(long position) {
+        double light = getLightWinProbability(position);
+        return BotPosition.isLightTurn(position) ? light : 1 - light;
+    }
+
+    /**
+     * @return The chance that the player to move in {@param position} wins
+     *         after they move the piece at {@param source} by {@param roll}.
+     */
+    public double getMoveWinProbability(long position, int roll, int source) {
+        double light = getLightWinProbability(BotPosition.applyMove(position, roll, source));
+        return BotPosition.isLightTurn(position) ? light : 1 - light;
+    }
+
+    /**
+     * @return The index into {@param sources} of the move, out of the first {@param count},
+     *         that gives the player to move in {@param position} the best chance of winning.
+     */
+    public int findBestMove(long position, int roll, int[] sources, int count) {
+        Checks.ensure(count > 0, "There must be at least one move");
+
+        int bestIndex = 0;
+        double bestValue = -1;
+        for (int index = 0; index < count; ++index) {
+            double value = getMoveWinProbability(position, roll, sources[index]);
+            if (value > bestValue) {
+                bestIndex = index;
+                bestValue = value;
+            }
+        }
+        return bestIndex;
+    }
+
+    /**
+     * @return How much less likely the player to move in {@param position} is to win after
+     *         moving the piece at {@param source} by {@param roll}, than after their best move.
+     *         This is 0 for the best move, and is used to measure the quality of moves.
+     */
+    public double getMoveLoss(long position, int roll, int source) {
+        int[] sources = new int[BotPosition.PIECES + 1];
+        int count = BotPosition.findMoves(position, roll, sources);
+        Checks.ensure(count > 0, "There are no moves available");
+
+        double best = getMoveWinProbability(position, roll, sources[findBestMove(position, roll, sources, count)]);
+        return Math.max(0, best - getMoveWinProbability(position, roll, source));
+    }
+}
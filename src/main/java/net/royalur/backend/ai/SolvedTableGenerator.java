@@ -0,0 +1,347 @@
+package net.royalur.backend.ai;
+
+import net.royalur.backend.Logging;
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Logger;
+
+/**
+ * Solves the standard game by value iteration, finding the chance that light
+ * wins from every position when both players play perfectly, and writes the
+ * results to a file that can be read by {@link SolvedTable}.
+ * <p>
+ * Pieces can only be scored, never unscored, and so positions are solved in
+ * layers by the scores of the players, from the highest total score down.
+ * Captures and passes mean that positions within a layer depend on each
+ * other, so each layer is swept repeatedly until its values stop changing.
+ * As the mirror of each layer is the layer with the scores swapped, each
+ * layer is solved together with its mirror. The sweeps are split across
+ * a fork-join pool, and each layer is written to the checkpoint directory
+ * once it is solved, so that an interrupted run can be resumed.
+ * <p>
+ * Run with: {@code java -Xmx2g net.royalur.backend.ai.SolvedTableGenerator <output file> [checkpoint dir]}
+ *
+ * @author Paddy Lamont
+ */
+public class SolvedTableGenerator {
+
+    private static final Logger logger = Logging.getLogger("solver");
+
+    /** The largest change in any value during a sweep for a layer to be considered solved. **/
+    public static final float DEFAULT_TOLERANCE = 1e-6f;
+
+    /** The number of shared configurations below which sweeps are not split any further. **/
+    private static final int SPLIT_CONFIGS = 32;
+    private static final int SCORES = BotPosition.PIECES + 1;
+    private static final int WRITE_CHUNK_VALUES = 1 << 20;
+
+    private final ForkJoinPool pool;
+    private final @Nullable Path checkpointDir;
+    private final float tolerance;
+
+    /** The values of each layer, or null for the layers that have not been solved. **/
+    private final float[][] layers = new float[SCORES * SCORES][];
+
+    /**
+     * @param pool The pool used to sweep the layers.
+     * @param checkpointDir The directory to write and resume solved layers from, or null to not checkpoint.
+     * @param tolerance The largest change in any value during a sweep for a layer to be considered solved.
+     */
+    public SolvedTableGenerator(@Nonnull ForkJoinPool pool, @Nullable Path checkpointDir, float tolerance) {
+        Checks.ensureNonNull(pool, "pool");
+        Checks.ensure(tolerance > 0, "tolerance must be positive");
+        this.pool = pool;
+        this.checkpointDir = checkpointDir;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Solves every layer where the players' scores total at least {@param minTotalScore}.
+     * Solving from 0 solves the whole game.
+     */
+    public void solve(int minTotalScore) throws IOException {
+        Checks.ensure(minTotalScore >= 0, "minTotalScore must be non-negative");
+        if (checkpointDir != null) {
+            Files.createDirectories(checkpointDir);
+        }
+
+        // The layers where either player has won are never solved, as those positions are finished.
+        int maxScore = BotPosition.PIECES - 1;
+        for (int total = 2 * maxScore; total >= minTotalScore; --total) {
+            for (int lightScore = Math.min(total, maxScore); lightScore >= total - lightScore; --lightScore) {
+                int darkScore = total - lightScore;
+                if (darkScore <= maxScore) {
+                    solveGroup(lightScore, darkScore);
+                }
+            }
+        }
+    }
+
+    private void solveGroup(int lightScore, int darkScore) throws IOException {
+        int first = SolvedTableIndex.getLayer(lightScore, darkScore);
+        int second = SolvedTableIndex.getLayer(darkScore, lightScore);
+        if (layers[first] != null && layers[second] != null)
+            return;
+        if (loadCheckpoint(first) && loadCheckpoint(second))
+            return;
+
+        layers[first] = createLayer(first);
+        layers[second] = (second == first ? layers[first] : createLayer(second));
+
+        long start = System.nanoTime();
+        int sweeps = 0;
+        float delta;
+        do {
+            delta = pool.invoke(new SweepTask(first, 0, SolvedTableIndex.getSharedConfigCount()));
+            if (second != first) {
+                delta = Math.max(delta, pool.invoke(new SweepTask(second, 0, SolvedTableIndex.getSharedConfigCount())));
+            }
+            sweeps += 1;
+        } while (delta >= tolerance);
+
+        logger.info(String.format(
+                "Solved scores %d-%d in %d sweeps, %d ms",
+                lightScore, darkScore, sweeps, (System.nanoTime() - start) / 1_000_000
+        ));
+        saveCheckpoint(first);
+        if (second != first) {
+            saveCheckpoint(second);
+        }
+    }
+
+    private static float[] createLayer(int layer) {
+        float[] values = new float[SolvedTableIndex.getLayerSize(layer)];
+        Arrays.fill(values, 0.5f);
+        return values;
+    }
+
+    /**
+     * @return The chance that light wins from {@param position}, which must be in a layer that
+     *         is finished, solved, or being solved.
+     */
+    private float getLightValue(long position) {
+        if (BotPosition.isFinished(position))
+            return BotPosition.getScore(position, true) == BotPosition.PIECES ? 1 : 0;
+        if (BotPosition.isLightTurn(position))
+            return layers[SolvedTableIndex.getLayer(position)][SolvedTableIndex.getOffsetInLayer(position)];
+
+        long mirrored = BotPosition.mirror(position);
+        return 1 - layers[SolvedTableIndex.getLayer(mirrored)][SolvedTableIndex.getOffsetInLayer(mirrored)];
+    }
+
+    /**
+     * @return The chance that light wins from {@param position}, where it is light's turn,
+     *         given the current values of the positions that can follow it.
+     */
+    private float computeValue(long position, int[] moves) {
+        float total = 0;
+        for (int roll = 0; roll < BotPosition.ROLL_WEIGHTS.length; ++roll) {
+            int count = BotPosition.findMoves(position, roll, moves);
+            float best;
+            if (count == 0) {
+                best = getLightValue(BotPosition.pass(position));
+            } else {
+                best = 0;
+                for (int index = 0; index < count; ++index) {
+                    best = Math.max(best, getLightValue(BotPosition.applyMove(position, roll, moves[index])));
+                }
+            }
+            total += BotPosition.ROLL_WEIGHTS[roll] * best;
+        }
+        return total / BotPosition.ROLL_WEIGHT_TOTAL;
+    }
+
+    /**
+     * Updates the values of a range of the shared configurations of a layer in place, so
+     * that updates are seen by later positions in the same sweep, and converge sooner.
+     * Other threads may read values as they are written, which only changes the order of
+     * the updates. Finds the largest change in any value.
+     */
+    private class SweepTask extends RecursiveTask<Float> {
+
+        private final int layer;
+        private final int fromConfig;
+        private final int toConfig;
+
+        SweepTask(int layer, int fromConfig, int toConfig) {
+            this.layer = layer;
+            this.fromConfig = fromConfig;
+            this.toConfig = toConfig;
+        }
+
+        @Override
+        protected Float compute() {
+            if (toConfig - fromConfig > SPLIT_CONFIGS) {
+                int middle = (fromConfig + toConfig) >>> 1;
+                SweepTask upper = new SweepTask(layer, middle, toConfig);
+                upper.fork();
+                float lowerDelta = new SweepTask(layer, fromConfig, middle).compute();
+                return Math.max(lowerDelta, upper.join());
+            }
+
+            float[] values = layers[layer];
+            int[] moves = new int[BotPosition.PIECES + 1];
+            float maxDelta = 0;
+            for (int config = fromConfig; config < toConfig; ++config) {
+                int blockStart = SolvedTableIndex.getBlockStart(layer, config);
+                int size = SolvedTableIndex.getBlockSize(layer, config);
+                for (int offset = 0; offset < size; ++offset) {
+                    long position = SolvedTableIndex.getPosition(layer, config, offset);
+                    int index = blockStart + offset;
+                    float value = computeValue(position, moves);
+                    maxDelta = Math.max(maxDelta, Math.abs(value - values[index]));
+                    values[index] = value;
+                }
+            }
+            return maxDelta;
+        }
+    }
+
+    /** @return The chance that light wins from {@param position}, which must be in a solved layer. **/
+    public float getLightWinProbability(long position) {
+        long lightTurn = (BotPosition.isLightTurn(position) ? position : BotPosition.mirror(position));
+        Checks.ensureState(
+                BotPosition.isFinished(position) || layers[SolvedTableIndex.getLayer(lightTurn)] != null,
+                "The layer has not been solved"
+        );
+        return getLightValue(position);
+    }
+
+    private Path getCheckpointFile(int layer) {
+        return checkpointDir.resolve("layer-" + (layer / SCORES) + "-" + (layer % SCORES) + ".bin");
+    }
+
+    /** @return Whether {@param layer} was loaded from a checkpoint. **/
+    private boolean loadCheckpoint(int layer) throws IOException {
+        if (layers[layer] != null)
+            return true;
+        if (checkpointDir == null)
+            return false;
+
+        Path file = getCheckpointFile(layer);
+        int size = SolvedTableIndex.getLayerSize(layer);
+        if (!Files.exists(file) || Files.size(file) != 4L * size)
+            return false;
+
+        float[] values = new float[size];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(4 * WRITE_CHUNK_VALUES);
+            for (int start = 0; start < size; start += WRITE_CHUNK_VALUES) {
+                int count = Math.min(WRITE_CHUNK_VALUES, size - start);
+                buffer.clear().limit(4 * count);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0)
+                        throw new IOException("Unexpected end of " + file);
+                }
+                buffer.flip().asFloatBuffer().get(values, start, count);
+            }
+        }
+        layers[layer] = values;
+        logger.info("Loaded scores " + (layer / SCORES) + "-" + (layer % SCORES) + " from " + file);
+        return true;
+    }
+
+    private void saveCheckpoint(int layer) throws IOException {
+        if (checkpointDir == null)
+            return;
+
+        // The layer is written to a temporary file first, so that an interrupted write is never resumed from.
+        Path file = getCheckpointFile(layer);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        float[] values = layers[layer];
+        try (FileChannel channel = FileChannel.open(
+                temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE
+        )) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(4 * WRITE_CHUNK_VALUES);
+            for (int start = 0; start < values.length; start += WRITE_CHUNK_VALUES) {
+                int count = Math.min(WRITE_CHUNK_VALUES, values.length - start);
+                buffer.clear();
+                buffer.asFloatBuffer().put(values, start, count);
+                buffer.limit(4 * count);
+                writeFully(channel, buffer);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Writes the values of every layer to {@param file} in the format read by {@link SolvedTable}.
+     * The whole game must have been solved.
+     */
+    public void write(@Nonnull Path file) throws IOException {
+        Checks.ensureNonNull(file, "file");
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(
+                temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE
+        )) {
+            ByteBuffer header = ByteBuffer.allocate(SolvedTable.HEADER_BYTES);
+            header.putInt(SolvedTable.MAGIC).putInt(SolvedTable.VERSION).putLong(SolvedTableIndex.SIZE).flip();
+            writeFully(channel, header);
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(2 * WRITE_CHUNK_VALUES);
+            for (int layer = 0; layer < SolvedTableIndex.getLayerCount(); ++layer) {
+                float[] values = layers[layer];
+                // Light has won in every position of the layers where light has scored every piece.
+                float finishedValue = (layer / SCORES == BotPosition.PIECES ? 1 : 0);
+                boolean finished = (layer / SCORES == BotPosition.PIECES || layer % SCORES == BotPosition.PIECES);
+                Checks.ensureState(finished || values != null, "The whole game must be solved before it is written");
+
+                int size = SolvedTableIndex.getLayerSize(layer);
+                for (int index = 0; index < size; ++index) {
+                    float value = (values != null ? values[index] : finishedValue);
+                    buffer.putChar((char) Math.round(value * SolvedTable.MAX_VALUE));
+                    if (!buffer.hasRemaining()) {
+                        writeFully(channel, buffer.flip());
+                        buffer.clear();
+                    }
+                }
+            }
+            writeFully(channel, buffer.flip());
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: SolvedTableGenerator <output file> [checkpoint dir]");
+            System.exit(1);
+            return;
+        }
+        Path output = Path.of(args[0]);
+        Path checkpointDir = (args.length > 1 ? Path.of(args[1]) : null);
+
+        long start = System.nanoTime();
+        SolvedTableGenerator generator = new SolvedTableGenerator(
+                ForkJoinPool.commonPool(), checkpointDir, DEFAULT_TOLERANCE
+        );
+        generator.solve(0);
+        generator.write(output);
+
+        long initial = BotPosition.create(0, 0, 0, 0, true);
+        System.out.printf(
+                "Wrote %d positions to %s in %d s, light wins %.4f of games from the start%n",
+                SolvedTableIndex.SIZE, output, (System.nanoTime() - start) / 1_000_000_000,
+                generator.getLightWinProbability(initial)
+        );
+        Logging.flush();
+    }
+}
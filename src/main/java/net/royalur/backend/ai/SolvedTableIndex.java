@@ -0,0 +1,201 @@
+package net.royalur.backend.ai;
+
+import net.royalur.backend.util.Checks;
+
+import java.util.Arrays;
+
+/**
+ * Gives each position on the standard board where it is light's turn a unique
+ * index, with no gaps between the indices of valid positions, so that a value
+ * can be stored for every position in a flat table. Positions where it is dark's
+ * turn are looked up through their mirror, where it is light's turn.
+ * <p>
+ * The indices are grouped into layers by the scores of the players. Within each
+ * layer, positions are ordered by the occupants of the shared tiles, and then
+ * by the pieces on each player's own tiles.
+ *
+ * @author Paddy Lamont
+ */
+public final class SolvedTableIndex {
+
+    private static final int SHARED_TILES = BotPosition.SHARED_END - BotPosition.SHARED_START + 1;
+    /** The number of tiles that only one player can move onto. **/
+    private static final int OWN_TILES = BotPosition.PATH_LENGTH - SHARED_TILES;
+    private static final int SHARED_CONFIGS = pow(3, SHARED_TILES);
+    private static final int SCORES = BotPosition.PIECES + 1;
+
+    /** The ranks of each mask of own tiles, ordered by the number of pieces in them, and then by their value. **/
+    private static final int[] MASK_RANKS = new int[1 << OWN_TILES];
+    /** The mask of own tiles of each rank. **/
+    private static final int[] MASKS_BY_RANK = new int[1 << OWN_TILES];
+    /** The number of masks of own tiles that hold at most each number of pieces. **/
+    private static final int[] MASK_COUNTS = new int[OWN_TILES + 1];
+
+    /** The light and dark pieces on the shared tiles of each shared configuration. **/
+    private static final int[] SHARED_LIGHT = new int[SHARED_CONFIGS];
+    private static final int[] SHARED_DARK = new int[SHARED_CONFIGS];
+
+    /** The offset of each shared configuration within each layer, or -1 if the configuration is invalid. **/
+    private static final int[][] SHARED_OFFSETS = new int[SCORES * SCORES][SHARED_CONFIGS];
+    private static final long[] LAYER_OFFSETS = new long[SCORES * SCORES + 1];
+
+    /** The number of positions where it is light's turn. **/
+    public static final long SIZE;
+
+    static {
+        Integer[] masks = new Integer[1 << OWN_TILES];
+        for (int mask = 0; mask < masks.length; ++mask) {
+            masks[mask] = mask;
+        }
+        Arrays.sort(masks, (a, b) -> Integer.bitCount(a) != Integer.bitCount(b)
+                ? Integer.compare(Integer.bitCount(a), Integer.bitCount(b)) : Integer.compare(a, b));
+        for (int rank = 0; rank < masks.length; ++rank) {
+            MASKS_BY_RANK[rank] = masks[rank];
+            MASK_RANKS[masks[rank]] = rank;
+            MASK_COUNTS[Integer.bitCount(masks[rank])] = rank + 1;
+        }
+
+        for (int config = 0; config < SHARED_CONFIGS; ++config) {
+            int remaining = config;
+            for (int tile = 0; tile < SHARED_TILES; ++tile) {
+                int occupant = remaining % 3;
+                remaining /= 3;
+                if (occupant == 1) {
+                    SHARED_LIGHT[config] |= 1 << (BotPosition.SHARED_START + tile);
+                } else if (occupant == 2) {
+                    SHARED_DARK[config] |= 1 << (BotPosition.SHARED_START + tile);
+                }
+            }
+        }
+
+        long offset = 0;
+        for (int layer = 0; layer < SCORES * SCORES; ++layer) {
+            LAYER_OFFSETS[layer] = offset;
+            int layerOffset = 0;
+            for (int config = 0; config < SHARED_CONFIGS; ++config) {
+                int size = getBlockSize(layer, config);
+                SHARED_OFFSETS[layer][config] = (size > 0 ? layerOffset : -1);
+                layerOffset += size;
+            }
+            offset += layerOffset;
+        }
+        LAYER_OFFSETS[SCORES * SCORES] = offset;
+        SIZE = offset;
+    }
+
+    private SolvedTableIndex() {}
+
+    private static int pow(int base, int exponent) {
+        int value = 1;
+        for (int index = 0; index < exponent; ++index) {
+            value *= base;
+        }
+        return value;
+    }
+
+    /** @return The number of masks of own tiles with at most {@param pieces} pieces. **/
+    private static int countMasks(int pieces) {
+        return pieces < 0 ? 0 : MASK_COUNTS[Math.min(pieces, OWN_TILES)];
+    }
+
+    /** @return The layer of the positions where light and dark have the given scores. **/
+    public static int getLayer(int lightScore, int darkScore) {
+        return lightScore * SCORES + darkScore;
+    }
+
+    /** @return The number of layers. **/
+    public static int getLayerCount() {
+        return SCORES * SCORES;
+    }
+
+    /** @return The index of the first position in {@param layer}. **/
+    public static long getLayerStart(int layer) {
+        return LAYER_OFFSETS[layer];
+    }
+
+    /** @return The number of positions in {@param layer}. **/
+    public static int getLayerSize(int layer) {
+        return (int) (LAYER_OFFSETS[layer + 1] - LAYER_OFFSETS[layer]);
+    }
+
+    /** @return The number of shared configurations, which each layer is split into blocks of. **/
+    public static int getSharedConfigCount() {
+        return SHARED_CONFIGS;
+    }
+
+    /**
+     * @return The index within {@param layer} of the first position with the shared
+     *         configuration {@param config}, or -1 if there are no such positions.
+     */
+    public static int getBlockStart(int layer, int config) {
+        return SHARED_OFFSETS[layer][config];
+    }
+
+    /** @return The number of positions in {@param layer} with the shared configuration {@param config}. **/
+    public static int getBlockSize(int layer, int config) {
+        int lightScore = layer / SCORES;
+        int darkScore = layer % SCORES;
+        int lightFree = BotPosition.PIECES - lightScore - Integer.bitCount(SHARED_LIGHT[config]);
+        int darkFree = BotPosition.PIECES - darkScore - Integer.bitCount(SHARED_DARK[config]);
+        return countMasks(lightFree) * countMasks(darkFree);
+    }
+
+    /**
+     * @return The position at {@param offset} within the block of positions
+     *         in {@param layer} with the shared configuration {@param config}.
+     */
+    public static long getPosition(int layer, int config, int offset) {
+        int darkScore = layer % SCORES;
+        int darkMasks = countMasks(BotPosition.PIECES - darkScore - Integer.bitCount(SHARED_DARK[config]));
+        int lightMask = MASKS_BY_RANK[offset / darkMasks];
+        int darkMask = MASKS_BY_RANK[offset % darkMasks];
+        return BotPosition.create(
+                toPath(lightMask) | SHARED_LIGHT[config], toPath(darkMask) | SHARED_DARK[config],
+                layer / SCORES, darkScore, true
+        );
+    }
+
+    /** @return The layer of {@param position}. **/
+    public static int getLayer(long position) {
+        return getLayer(BotPosition.getScore(position, true), BotPosition.getScore(position, false));
+    }
+
+    /**
+     * @return The index of {@param position}, where it must be light's turn.
+     */
+    public static long indexOf(long position) {
+        return LAYER_OFFSETS[getLayer(position)] + getOffsetInLayer(position);
+    }
+
+    /**
+     * @return The index of {@param position} within its layer, where it must be light's turn.
+     */
+    public static int getOffsetInLayer(long position) {
+        Checks.ensure(BotPosition.isLightTurn(position), "It must be light's turn");
+
+        int lightPath = BotPosition.getPath(position, true);
+        int darkPath = BotPosition.getPath(position, false);
+        int config = 0;
+        for (int tile = SHARED_TILES - 1; tile >= 0; --tile) {
+            int bit = 1 << (BotPosition.SHARED_START + tile);
+            config = config * 3 + ((lightPath & bit) != 0 ? 1 : ((darkPath & bit) != 0 ? 2 : 0));
+        }
+
+        int darkScore = BotPosition.getScore(position, false);
+        int darkMasks = countMasks(BotPosition.PIECES - darkScore - Integer.bitCount(SHARED_DARK[config]));
+        int offset = MASK_RANKS[toMask(lightPath)] * darkMasks + MASK_RANKS[toMask(darkPath)];
+        return SHARED_OFFSETS[getLayer(position)][config] + offset;
+    }
+
+    /** @return The path mask holding the pieces of the mask of own tiles {@param mask}. **/
+    private static int toPath(int mask) {
+        int ownEnd = BotPosition.SHARED_END + 1;
+        return (mask & ((1 << BotPosition.SHARED_START) - 1)) | (mask >>> BotPosition.SHARED_START) << ownEnd;
+    }
+
+    /** @return The mask of own tiles holding the pieces on the own tiles of {@param path}. **/
+    private static int toMask(int path) {
+        int ownEnd = BotPosition.SHARED_END + 1;
+        return (path & ((1 << BotPosition.SHARED_START) - 1)) | (path >>> ownEnd) << BotPosition.SHARED_START;
+    }
+}
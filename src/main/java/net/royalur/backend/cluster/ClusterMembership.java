@@ -0,0 +1,545 @@
+package net.royalur.backend.cluster;
+
+import net.royalur.backend.Logging;
+import net.royalur.backend.game.GameID;
+import net.royalur.backend.scheduler.Scheduler;
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tracks which backend nodes are alive, by exchanging heartbeats over
+ * plain TCP, and assigns games to the live nodes using a {@link HashRing}.
+ * <p>
+ * Each heartbeat is a single connection where both nodes send one line
+ * describing themselves. Nodes send heartbeats to the peers they were
+ * configured with, and also learn of nodes that send heartbeats to them.
+ * A node that has not been heard from within the failure timeout is
+ * removed from the ring, and its share of new games moves to other nodes.
+ * Every message is signed using a secret shared by the nodes, so only
+ * nodes that know the secret can join the cluster, or answer its questions.
+ * <p>
+ * Games stay on the node that created them, even once the ring has been
+ * rebalanced. Therefore, the node that hosts a game is found by asking
+ * the live nodes, starting with the game's current owner on the ring, and
+ * the answers are cached until the node that hosts the game leaves. Games
+ * that no node hosts are remembered for a short time, so that asking for
+ * them repeatedly does not ask every node each time.
+ *
+ * @author Paddy Lamont
+ */
+public class ClusterMembership {
+
+    private static final String NONCE = "NONCE ";
+    private static final String HELLO = "HELLO ";
+    private static final String FIND = "FIND ";
+    private static final String HOSTED = "HOSTED";
+    private static final String NOT_HOSTED = "NOT_HOSTED";
+    private static final int IO_TIMEOUT_MS = 1000;
+    private static final int BACKLOG = 50;
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int NONCE_BYTES = 16;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private static final int MAX_CACHED_HOSTS = 100_000;
+    private static final long NOT_HOSTED_TTL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    /** The threads that answer connections from other nodes, and the connections that may wait for them. **/
+    private static final int ANSWER_THREADS = 4;
+    private static final int MAX_WAITING_ANSWERS = 64;
+
+    /** The threads that ask other nodes where games are hosted, and the lookups that may wait for them. **/
+    private static final int LOOKUP_THREADS = 2;
+    private static final int MAX_WAITING_LOOKUPS = 256;
+
+    private static final Logger logger = Logging.getLogger("cluster");
+
+    private final @Nonnull ClusterNode self;
+    private final @Nonnull List<InetSocketAddress> peers;
+    private final @Nonnull SecretKeySpec secretKey;
+    private final long heartbeatIntervalMs;
+    private final long failureTimeoutMs;
+    private final @Nonnull Predicate<GameID> hostsGame;
+
+    private final SecureRandom random = new SecureRandom();
+    private final Scheduler scheduler = new Scheduler("cluster", 100, TimeUnit.MILLISECONDS);
+    private final ThreadPoolExecutor answerExecutor = createExecutor(
+            "cluster-answer", ANSWER_THREADS, MAX_WAITING_ANSWERS
+    );
+    private final ThreadPoolExecutor lookupExecutor = createExecutor(
+            "cluster-lookup", LOOKUP_THREADS, MAX_WAITING_LOOKUPS
+    );
+    private final Map<String, Member> members = new ConcurrentHashMap<>();
+    private volatile @Nonnull HashRing ring;
+
+    /** The nodes that were found to host games that this node does not. **/
+    private final Map<GameID, ClusterNode> hosts = new ConcurrentHashMap<>();
+    /** The time until which games that no node was found to host are not looked up again. **/
+    private final Map<GameID, Long> notHostedUntilNanos = new ConcurrentHashMap<>();
+    /** The lookups that are in progress, so that concurrent lookups of one game share the one lookup. **/
+    private final Map<GameID, CompletableFuture<ClusterNode>> lookups = new ConcurrentHashMap<>();
+
+    private ServerSocket serverSocket;
+    private Thread listenThread;
+
+    /**
+     * @param self This node.
+     * @param peers The cluster addresses of the other nodes to send heartbeats to.
+     * @param secret The secret shared by the nodes of the cluster, used to sign their messages.
+     * @param heartbeatIntervalMs The time between each heartbeat to each peer.
+     * @param failureTimeoutMs The time after the last heartbeat from a node that it is considered dead.
+     * @param hostsGame Whether this node hosts a game, or a reservation of a game, with a given ID.
+     */
+    public ClusterMembership(
+            @Nonnull ClusterNode self,
+            @Nonnull List<InetSocketAddress> peers,
+            @Nonnull String secret,
+            long heartbeatIntervalMs,
+            long failureTimeoutMs,
+            @Nonnull Predicate<GameID> hostsGame
+    ) {
+        Checks.ensureNonNull(self, "self");
+        Checks.ensureNonNull(peers, "peers");
+        Checks.ensureNonNull(secret, "secret");
+        Checks.ensureNonNull(hostsGame, "hostsGame");
+        Checks.ensure(!secret.isBlank(), "A secret must be shared by the nodes of the cluster");
+        Checks.ensure(heartbeatIntervalMs > 0, "heartbeatIntervalMs must be positive");
+        Checks.ensure(failureTimeoutMs > heartbeatIntervalMs, "failureTimeoutMs must exceed heartbeatIntervalMs");
+
+        this.self = self;
+        this.peers = List.copyOf(peers);
+        this.secretKey = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM);
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+        this.failureTimeoutMs = failureTimeoutMs;
+        this.hostsGame = hostsGame;
+        this.ring = new HashRing(List.of(self));
+    }
+
+    private static ThreadPoolExecutor createExecutor(String name, int threads, int maxWaiting) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(
+                threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxWaiting), runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + threadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
+
+    public @Nonnull ClusterNode getSelf() {
+        return self;
+    }
+
+    /**
+     * @return The node that owns the game {@param gameID}.
+     */
+    public @Nonnull ClusterNode getOwner(@Nonnull GameID gameID) {
+        return ring.getOwner(gameID);
+    }
+
+    /**
+     * @return Whether new games with the ID {@param gameID} should be created on this node.
+     */
+    public boolean isOwnedLocally(@Nonnull GameID gameID) {
+        return getOwner(gameID).id().equals(self.id());
+    }
+
+    /**
+     * Finds the node that hosts the game {@param gameID}, which may not be its
+     * owner if the cluster has been rebalanced since the game was created.
+     * This never blocks. If the host is not known, the other nodes are asked
+     * on the lookup threads of this node.
+     *
+     * @return The node that hosts the game, or null if no live node hosts it.
+     */
+    public @Nonnull CompletableFuture<ClusterNode> findHost(@Nonnull GameID gameID) {
+        Checks.ensureNonNull(gameID, "gameID");
+        if (hostsGame.test(gameID))
+            return CompletableFuture.completedFuture(self);
+
+        ClusterNode cached = hosts.get(gameID);
+        if (cached != null && members.containsKey(cached.id()))
+            return CompletableFuture.completedFuture(cached);
+
+        Long notHostedUntil = notHostedUntilNanos.get(gameID);
+        if (notHostedUntil != null) {
+            if (System.nanoTime() - notHostedUntil < 0)
+                return CompletableFuture.completedFuture(null);
+
+            notHostedUntilNanos.remove(gameID, notHostedUntil);
+        }
+
+        CompletableFuture<ClusterNode> lookup = new CompletableFuture<>();
+        CompletableFuture<ClusterNode> existing = lookups.putIfAbsent(gameID, lookup);
+        if (existing != null)
+            return existing;
+
+        try {
+            lookupExecutor.execute(() -> {
+                try {
+                    lookup.complete(askForHost(gameID));
+                } catch (RuntimeException e) {
+                    lookup.completeExceptionally(e);
+                } finally {
+                    lookups.remove(gameID, lookup);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Too many lookups are waiting, so the game is treated as if no node hosts it.
+            logger.fine("Too many games are being looked up to look up " + gameID);
+            lookups.remove(gameID, lookup);
+            lookup.complete(null);
+        }
+        return lookup;
+    }
+
+    /** @return The node that answered that it hosts the game {@param gameID}, or null if none did. **/
+    private @Nullable ClusterNode askForHost(GameID gameID) {
+        // The owner is asked first, as it hosts every game created since the last rebalance.
+        ClusterNode owner = getOwner(gameID);
+        List<ClusterNode> candidates = new ArrayList<>(getLiveNodes());
+        candidates.remove(owner);
+        candidates.add(0, owner);
+        for (ClusterNode node : candidates) {
+            if (node.id().equals(self.id()) || !askHostsGame(node, gameID))
+                continue;
+
+            if (hosts.size() >= MAX_CACHED_HOSTS) {
+                hosts.clear();
+            }
+            hosts.put(gameID, node);
+            return node;
+        }
+
+        hosts.remove(gameID);
+        if (notHostedUntilNanos.size() >= MAX_CACHED_HOSTS) {
+            notHostedUntilNanos.clear();
+        }
+        notHostedUntilNanos.put(gameID, System.nanoTime() + NOT_HOSTED_TTL_NANOS);
+        return null;
+    }
+
+    /** @return Whether {@param node} answered that it hosts the game {@param gameID}. **/
+    private boolean askHostsGame(ClusterNode node, GameID gameID) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(node.host(), node.clusterPort()), IO_TIMEOUT_MS);
+            Channel channel = new Channel(socket, true);
+            channel.send(FIND + gameID);
+            return HOSTED.equals(channel.receive());
+        } catch (IOException | IllegalArgumentException e) {
+            logger.log(Level.FINE, "Unable to ask " + node.id() + " whether it hosts " + gameID, e);
+            return false;
+        }
+    }
+
+    /**
+     * @return The nodes that are currently believed to be alive, including this node.
+     */
+    public @Nonnull List<ClusterNode> getLiveNodes() {
+        return ring.getNodes();
+    }
+
+    /**
+     * Blocks until {@param count} nodes are believed to be alive, or {@param timeoutMs} milliseconds pass.
+     *
+     * @return Whether {@param count} nodes are believed to be alive.
+     */
+    public synchronized boolean awaitLiveNodes(int count, long timeoutMs) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (ring.getNodes().size() != count) {
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime());
+            if (remainingMs <= 0)
+                return false;
+
+            wait(remainingMs);
+        }
+        return true;
+    }
+
+    /**
+     * Starts this node, accepting connections from other nodes on
+     * the cluster port of the host that this node was configured with.
+     */
+    public void start() {
+        ServerSocket serverSocket;
+        try {
+            serverSocket = new ServerSocket(self.clusterPort(), BACKLOG, InetAddress.getByName(self.host()));
+        } catch (IOException e) {
+            throw new RuntimeException(
+                    "Unable to listen for cluster heartbeats on " + self.host() + ":" + self.clusterPort(), e
+            );
+        }
+        start(serverSocket);
+    }
+
+    /**
+     * Starts this node, accepting connections from other nodes on {@param serverSocket},
+     * which must already be bound to the cluster port of this node.
+     */
+    void start(@Nonnull ServerSocket serverSocket) {
+        Checks.ensureNonNull(serverSocket, "serverSocket");
+        this.serverSocket = serverSocket;
+
+        listenThread = new Thread(this::listen, "cluster-listener");
+        listenThread.setDaemon(true);
+        listenThread.start();
+
+        TimeUnit units = TimeUnit.MILLISECONDS;
+        scheduler.scheduleRepeating("heartbeat", this::sendHeartbeats, heartbeatIntervalMs, units);
+        scheduler.scheduleRepeating("failure-detector", this::removeFailedMembers, heartbeatIntervalMs, units);
+        scheduler.start();
+        logger.info("Started cluster node " + self.id() + " with " + peers.size() + " peers");
+    }
+
+    public void stop() {
+        scheduler.stop();
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error closing the cluster socket", e);
+        } finally {
+            answerExecutor.shutdownNow();
+            lookupExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Accepts connections from other nodes, which are answered on the answer threads,
+     * so that a slow connection does not hold up the connections of other nodes.
+     */
+    private void listen() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.log(Level.WARNING, "Error accepting a connection from another node", e);
+                }
+                continue;
+            }
+
+            try {
+                answerExecutor.execute(() -> answerAndClose(socket));
+            } catch (RejectedExecutionException e) {
+                logger.fine("Too many connections are waiting to refuse one from " + socket.getInetAddress());
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    private void answerAndClose(Socket socket) {
+        try (socket) {
+            answer(socket);
+        } catch (SocketTimeoutException | IllegalArgumentException e) {
+            logger.log(Level.FINE, "Invalid message from " + socket.getInetAddress(), e);
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Error answering " + socket.getInetAddress(), e);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Error closing a connection from " + socket.getInetAddress(), e);
+        }
+    }
+
+    private void sendHeartbeats() {
+        for (InetSocketAddress peer : peers) {
+            try (Socket socket = new Socket()) {
+                socket.connect(peer, IO_TIMEOUT_MS);
+                Channel channel = new Channel(socket, true);
+                channel.send(HELLO + self.write());
+                onHeartbeat(readHello(channel.receive()));
+            } catch (IOException | IllegalArgumentException e) {
+                // The failure detector will remove the peer if this keeps happening.
+                logger.log(Level.FINE, "Unable to send heartbeat to " + peer, e);
+            }
+        }
+    }
+
+    private static ClusterNode readHello(String message) {
+        if (!message.startsWith(HELLO))
+            throw new IllegalArgumentException("Expected a hello, received " + message);
+
+        return ClusterNode.read(message.substring(HELLO.length()));
+    }
+
+    /**
+     * Answers the connection {@param socket} from another node, which
+     * is either a heartbeat, or a question of whether this node hosts a game.
+     */
+    private void answer(Socket socket) throws IOException {
+        Channel channel = new Channel(socket, false);
+        String request = channel.receive();
+        if (request.startsWith(FIND)) {
+            GameID gameID = GameID.fromString(request.substring(FIND.length()));
+            channel.send(hostsGame.test(gameID) ? HOSTED : NOT_HOSTED);
+            return;
+        }
+
+        ClusterNode node = readHello(request);
+        channel.send(HELLO + self.write());
+        onHeartbeat(node);
+    }
+
+    private void onHeartbeat(ClusterNode node) {
+        if (node.id().equals(self.id()))
+            return;
+
+        Member previous = members.put(node.id(), new Member(node, System.nanoTime()));
+        if (previous == null || !previous.node.equals(node)) {
+            logger.info("Node " + node.id() + " joined the cluster at " + node.host() + ":" + node.clusterPort());
+            rebuildRing();
+        }
+    }
+
+    private void removeFailedMembers() {
+        long now = System.nanoTime();
+        boolean changed = false;
+        for (Member member : members.values()) {
+            long silentMs = TimeUnit.NANOSECONDS.toMillis(now - member.lastHeartbeatNanos);
+            if (silentMs > failureTimeoutMs && members.remove(member.node.id(), member)) {
+                logger.warning("Node " + member.node.id() + " left the cluster, silent for " + silentMs + "ms");
+                changed = true;
+            }
+        }
+        if (changed) {
+            rebuildRing();
+        }
+    }
+
+    private synchronized void rebuildRing() {
+        List<ClusterNode> nodes = new ArrayList<>();
+        nodes.add(self);
+        for (Member member : members.values()) {
+            nodes.add(member.node);
+        }
+        nodes.sort(Comparator.comparing(ClusterNode::id));
+        ring = new HashRing(nodes);
+        hosts.values().removeIf(node -> !members.containsKey(node.id()));
+        // A node that joined may host games that were not found before.
+        notHostedUntilNanos.clear();
+        logger.info("Cluster rebalanced across " + nodes.size() + " nodes");
+        notifyAll();
+    }
+
+    private record Member(ClusterNode node, long lastHeartbeatNanos) {}
+
+    /**
+     * A connection with another node. Each side first sends a random nonce, and
+     * then each message is signed with the shared secret, the nonce of the side
+     * that receives it, and the side that sent it. This stops nodes that do not
+     * know the secret from sending messages, and stops signed messages from being
+     * replayed on other connections, or reflected back to the node that sent them.
+     */
+    private final class Channel {
+
+        private final Socket socket;
+        private final BufferedReader reader;
+        private final Writer writer;
+        private final Mac mac;
+        private final boolean initiator;
+        private final String nonce;
+        private final String peerNonce;
+
+        /**
+         * @param initiator Whether this node opened the connection.
+         */
+        Channel(Socket socket, boolean initiator) throws IOException {
+            socket.setSoTimeout(IO_TIMEOUT_MS);
+            this.socket = socket;
+            this.initiator = initiator;
+            this.writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            try {
+                this.mac = Mac.getInstance(MAC_ALGORITHM);
+                mac.init(secretKey);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to sign cluster messages", e);
+            }
+
+            byte[] nonceBytes = new byte[NONCE_BYTES];
+            random.nextBytes(nonceBytes);
+            this.nonce = HEX.formatHex(nonceBytes);
+            writer.write(NONCE + nonce + "\n");
+            writer.flush();
+
+            String line = reader.readLine();
+            if (line == null || !line.startsWith(NONCE) || line.length() != NONCE.length() + 2 * NONCE_BYTES)
+                throw new IllegalArgumentException("Expected a nonce, received " + line);
+
+            this.peerNonce = line.substring(NONCE.length());
+        }
+
+        /** Sends {@param message}, signed for the other node. **/
+        void send(String message) throws IOException {
+            writer.write(message + " " + HEX.formatHex(sign(peerNonce, initiator, message)) + "\n");
+            writer.flush();
+        }
+
+        /**
+         * @return The next message from the other node.
+         * @throws IllegalArgumentException If the message was not signed by a node that knows the secret.
+         */
+        String receive() throws IOException {
+            String line = reader.readLine();
+            if (line == null)
+                throw new IOException("The connection closed before a message was received");
+
+            int separator = line.lastIndexOf(' ');
+            if (separator < 0)
+                throw new IllegalArgumentException("Unsigned message from " + socket.getInetAddress());
+
+            String message = line.substring(0, separator);
+            byte[] signature = HEX.parseHex(line.substring(separator + 1));
+            if (!MessageDigest.isEqual(sign(nonce, !initiator, message), signature))
+                throw new IllegalArgumentException("Invalid signature from " + socket.getInetAddress());
+
+            return message;
+        }
+
+        private byte[] sign(String receiverNonce, boolean fromInitiator, String message) {
+            String sender = (fromInitiator ? " initiator " : " answerer ");
+            mac.update((receiverNonce + sender).getBytes(StandardCharsets.UTF_8));
+            return mac.doFinal(message.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
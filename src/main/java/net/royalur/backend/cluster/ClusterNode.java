@@ -0,0 +1,77 @@
+package net.royalur.backend.cluster;
+
+import javax.annotation.Nonnull;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * A backend process that is a member of the cluster.
+ *
+ * @param id          A name for the node that is unique within the cluster.
+ * @param host        The host that other nodes can reach the node's cluster port on.
+ * @param clusterPort The port that the node accepts heartbeats from other nodes on.
+ * @param publicURL   The URL that clients should connect to, to play games owned by the node.
+ */
+public record ClusterNode(
+        @Nonnull String id,
+        @Nonnull String host,
+        int clusterPort,
+        @Nonnull String publicURL
+) {
+
+    private static final String SEPARATOR = " ";
+
+    public ClusterNode {
+        if (id.isBlank() || id.contains(SEPARATOR))
+            throw new IllegalArgumentException("Invalid node ID \"" + id + "\"");
+        if (host.isBlank() || host.contains(SEPARATOR))
+            throw new IllegalArgumentException("Invalid host \"" + host + "\"");
+        if (!isValidPublicURL(publicURL))
+            throw new IllegalArgumentException("Invalid public URL \"" + publicURL + "\"");
+        if (clusterPort <= 0 || clusterPort > 65535)
+            throw new IllegalArgumentException("Invalid cluster port " + clusterPort);
+    }
+
+    /**
+     * Clients are redirected to the public URLs of nodes, so they are
+     * restricted to plain http or https URLs that name a host.
+     *
+     * @return Whether {@param publicURL} is a URL that clients can be redirected to.
+     */
+    private static boolean isValidPublicURL(String publicURL) {
+        if (publicURL.contains(SEPARATOR))
+            return false;
+
+        URI uri;
+        try {
+            uri = new URI(publicURL);
+        } catch (URISyntaxException e) {
+            return false;
+        }
+        String scheme = uri.getScheme();
+        return ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))
+                && uri.getHost() != null && uri.getRawUserInfo() == null;
+    }
+
+    /**
+     * @return This node written out as a single line of text, to be read by {@link #read(String)}.
+     */
+    public @Nonnull String write() {
+        return id + SEPARATOR + host + SEPARATOR + clusterPort + SEPARATOR + publicURL;
+    }
+
+    /**
+     * @return The node written out as {@param line} by {@link #write()}.
+     */
+    public static @Nonnull ClusterNode read(@Nonnull String line) {
+        String[] parts = line.trim().split(SEPARATOR, -1);
+        if (parts.length != 4)
+            throw new IllegalArgumentException("Malformed cluster node \"" + line + "\"");
+
+        try {
+            return new ClusterNode(parts[0], parts[1], Integer.parseInt(parts[2]), parts[3]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cluster port in \"" + line + "\"", e);
+        }
+    }
+}
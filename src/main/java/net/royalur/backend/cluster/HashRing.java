@@ -0,0 +1,100 @@
+package net.royalur.backend.cluster;
+
+import net.royalur.backend.game.GameID;
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Assigns each game to a node of the cluster using consistent hashing.
+ * Each node is placed on the ring at many points, so that games are
+ * spread evenly, and so that when a node joins or leaves, only the
+ * games on its share of the ring change owner.
+ * <p>
+ * Rings are immutable, and are rebuilt when the members of the cluster change.
+ *
+ * @author Paddy Lamont
+ */
+public class HashRing {
+
+    /**
+     * The default number of points on the ring per node.
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final List<ClusterNode> nodes;
+    private final TreeMap<Long, ClusterNode> ring = new TreeMap<>();
+
+    public HashRing(@Nonnull Collection<ClusterNode> nodes, int virtualNodes) {
+        Checks.ensureNonNull(nodes, "nodes");
+        Checks.ensure(!nodes.isEmpty(), "The ring must contain at least one node");
+        Checks.ensure(virtualNodes > 0, "virtualNodes must be positive");
+
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        for (ClusterNode node : nodes) {
+            for (int index = 0; index < virtualNodes; ++index) {
+                long point = hash(node.id() + "#" + index);
+                // Break the very unlikely ties consistently on every node.
+                ClusterNode existing = ring.get(point);
+                if (existing == null || existing.id().compareTo(node.id()) > 0) {
+                    ring.put(point, node);
+                }
+            }
+        }
+    }
+
+    public HashRing(@Nonnull Collection<ClusterNode> nodes) {
+        this(nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @return The nodes on this ring.
+     */
+    public @Nonnull List<ClusterNode> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return The node that owns the game {@param gameID}.
+     */
+    public @Nonnull ClusterNode getOwner(@Nonnull GameID gameID) {
+        Checks.ensureNonNull(gameID, "gameID");
+        return getOwner(mix(gameID.getNumericID()));
+    }
+
+    private ClusterNode getOwner(long point) {
+        Map.Entry<Long, ClusterNode> entry = ring.ceilingEntry(point);
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    /**
+     * The 64-bit FNV-1a hash of {@param value}, mixed to spread it over the ring.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * The finalisation step of MurmurHash3, which spreads sequential values over all 64 bits.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
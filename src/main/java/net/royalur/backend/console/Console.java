@@ -0,0 +1,97 @@
+package net.royalur.backend.console;
+
+import net.royalur.backend.Logging;
+import net.royalur.backend.util.Checks;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the commands entered into the server console, to inspect a running server.
+ *
+ * @author Paddy Lamont
+ */
+public class Console {
+
+    public static final Logger logger = Logging.getLogger("console");
+
+    private final Map<String, Registration> commands = new TreeMap<>();
+
+    public Console() {
+        register("help", "help", "Lists the available commands", args -> logHelp());
+    }
+
+    /**
+     * Registers the command {@param command} to be run when {@param name} is entered.
+     * @param usage How to run the command, shown when it is given invalid arguments.
+     * @param description What the command does, shown by the help command.
+     */
+    public synchronized void register(String name, String usage, String description, ConsoleCommand command) {
+        Checks.ensureNonNull(name, "name");
+        Checks.ensureNonNull(usage, "usage");
+        Checks.ensureNonNull(description, "description");
+        Checks.ensureNonNull(command, "command");
+
+        String key = name.toLowerCase(Locale.ROOT);
+        Checks.ensure(!commands.containsKey(key), () -> "The command " + name + " is already registered");
+        commands.put(key, new Registration(usage, description, command));
+    }
+
+    /**
+     * Runs the command in the line {@param input}.
+     */
+    public void execute(String input) {
+        Checks.ensureNonNull(input, "input");
+
+        String[] words = input.trim().split("\\s+");
+        if (words[0].isEmpty())
+            return;
+
+        Registration registration;
+        synchronized (this) {
+            registration = commands.get(words[0].toLowerCase(Locale.ROOT));
+        }
+        if (registration == null) {
+            logger.warning("Unknown command " + words[0] + ", enter help to list the commands");
+            return;
+        }
+
+        String[] args = new String[words.length - 1];
+        System.arraycopy(words, 1, args, 0, args.length);
+        try {
+            registration.command.run(args);
+        } catch (IllegalArgumentException e) {
+            logger.warning(e.getMessage() + "\nUsage: " + registration.usage);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Error running " + input, e);
+        }
+    }
+
+    private synchronized void logHelp() {
+        StringBuilder help = new StringBuilder("Commands:");
+        for (Registration registration : commands.values()) {
+            help.append("\n  ").append(registration.usage).append(" - ").append(registration.description);
+        }
+        logger.info(help.toString());
+    }
+
+    /**
+     * @return The argument at {@param index} of {@param args} as an integer,
+     *         or {@param defaultValue} if there is no such argument.
+     */
+    public static int parseIntArg(String[] args, int index, int defaultValue) {
+        if (index >= args.length)
+            return defaultValue;
+
+        try {
+            return Integer.parseInt(args[index]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a number, but found " + args[index]);
+        }
+    }
+
+    private record Registration(String usage, String description, ConsoleCommand command) {}
+}
@@ -0,0 +1,17 @@
+package net.royalur.backend.console;
+
+/**
+ * A command that can be run from the server console.
+ *
+ * @author Paddy Lamont
+ */
+@FunctionalInterface
+public interface ConsoleCommand {
+
+    /**
+     * Run this command with the arguments {@param args}, not including the name of the command.
+     *
+     * @throws IllegalArgumentException if the arguments are invalid, to show the usage of the command.
+     */
+    void run(String[] args);
+}
@@ -0,0 +1,305 @@
+package net.royalur.backend.console;
+
+import net.royalur.backend.game.DiceValue;
+import net.royalur.backend.game.GameID;
+import net.royalur.backend.game.RoyalUrNetDice;
+import net.royalur.backend.management.GameManager;
+import net.royalur.backend.management.GameRepository;
+import net.royalur.backend.management.GameSummary;
+import net.royalur.backend.management.GameSummaryIndex;
+import net.royalur.backend.management.ManagedGame;
+import net.royalur.backend.metrics.DiceFairnessMonitor;
+import net.royalur.backend.metrics.Metrics;
+import net.royalur.backend.network.Client;
+import net.royalur.backend.network.GameServer;
+import net.royalur.backend.scheduler.Scheduler;
+import net.royalur.backend.scheduler.TaskTimings;
+import net.royalur.backend.util.Checks;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * The console commands used to find out what a running server is doing.
+ *
+ * @author Paddy Lamont
+ */
+public class DiagnosticCommands {
+
+    private static final int MAX_PROFILE_SECS = 300;
+    private static final int DEFAULT_PROFILE_INTERVAL_MS = 10;
+    private static final int PROFILE_STACKS_LOGGED = 10;
+
+    private final GameManager gameManager;
+    private final GameRepository gameRepository;
+    private final GameServer gameServer;
+
+    private final AtomicBoolean profiling = new AtomicBoolean();
+
+    public DiagnosticCommands(GameManager gameManager, GameRepository gameRepository, GameServer gameServer) {
+        Checks.ensureNonNull(gameManager, "gameManager");
+        Checks.ensureNonNull(gameRepository, "gameRepository");
+        Checks.ensureNonNull(gameServer, "gameServer");
+        this.gameManager = gameManager;
+        this.gameRepository = gameRepository;
+        this.gameServer = gameServer;
+    }
+
+    /** Registers the diagnostic commands with {@param console}. **/
+    public void register(Console console) {
+        console.register("counts", "counts", "Shows the number of games, sessions and reservations", this::counts);
+        console.register("top-games", "top-games [count]", "Lists the games with the most spectators", this::topGames);
+        console.register("dump-game", "dump-game <game ID>", "Logs the recent diagnostics of a game", this::dumpGame);
+        console.register("tasks", "tasks", "Shows the time taken by the tasks of each scheduler", this::tasks);
+        console.register("memory", "memory", "Shows the heap usage and garbage collection totals", this::memory);
+        console.register("metrics", "metrics", "Shows the value of every metric", this::metrics);
+        console.register(
+                "latency", "latency [count]",
+                "Shows the round trip and processing times, and the clients with the slowest connections", this::latency
+        );
+        console.register(
+                "dice", "dice", "Shows how often each face and total of the dice has been rolled, and tests them",
+                this::dice
+        );
+        console.register(
+                "profile", "profile <wall|cpu> <seconds> [interval ms]",
+                "Samples the stacks of all threads, and writes them out as folded stacks", this::profile
+        );
+    }
+
+    private void counts(String[] args) {
+        Console.logger.info(
+                "Games: " + gameManager.getSummaries().size()
+                        + "\nReservations: " + gameRepository.countReservations()
+                        + "\nConnected sessions: " + gameServer.countConnectedClients()
+                        + "\nDisconnected sessions: " + gameServer.countDisconnectedClients()
+                        + "\nUnopened connections: " + gameServer.countLimboConnections()
+        );
+    }
+
+    private void topGames(String[] args) {
+        int count = Console.parseIntArg(args, 0, 10);
+        Checks.ensure(count > 0, "The count must be positive");
+
+        List<GameSummary> games = gameManager.getSummaries().page(GameSummaryIndex.Order.MOST_SPECTATED, 0, count);
+        if (games.isEmpty()) {
+            Console.logger.info("There are no active games");
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        StringBuilder builder = new StringBuilder("Top " + games.size() + " games by spectators:");
+        for (GameSummary game : games) {
+            builder.append(String.format(
+                    "%n  %s  %3d spectators  %3d turns  %4d mins  %s vs. %s",
+                    game.gameID(), game.spectators(), game.turns(),
+                    TimeUnit.MILLISECONDS.toMinutes(now - game.startTimeMillis()),
+                    game.lightName(), game.darkName()
+            ));
+        }
+        Console.logger.info(builder.toString());
+    }
+
+    private void dumpGame(String[] args) {
+        Checks.ensure(args.length == 1, "Expected a game ID");
+
+        GameID gameID = GameID.fromString(args[0]);
+        ManagedGame game = gameManager.getGameOrNull(gameID);
+        if (game == null) {
+            Console.logger.warning("There is no active game " + gameID);
+            return;
+        }
+        Console.logger.info(String.join("\n", game.diagnostics.dump()));
+    }
+
+    private void tasks(String[] args) {
+        StringBuilder builder = new StringBuilder("Scheduler task timings:");
+        for (Scheduler scheduler : Scheduler.getRunning()) {
+            builder.append("\n  ").append(scheduler.getName());
+            for (TaskTimings timings : scheduler.getTimings()) {
+                builder.append(String.format(
+                        "%n    %-32s %8d runs  %10.3f ms mean  %10.3f ms max  %12.1f ms total",
+                        timings.getName(), timings.getRuns(),
+                        timings.getMeanNanos() / 1e6, timings.getMaxNanos() / 1e6, timings.getTotalNanos() / 1e6
+                ));
+            }
+        }
+        Console.logger.info(builder.toString());
+    }
+
+    private void memory(String[] args) {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("Heap: ").append(formatUsage(heap));
+        builder.append("\nNon-heap: ").append(formatUsage(nonHeap));
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            builder.append("\n  ").append(pool.getName()).append(": ").append(formatUsage(pool.getUsage()));
+        }
+
+        long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            long millis = collector.getCollectionTime();
+            builder.append(String.format(
+                    "%nGC %s: %d collections, %d ms total, %.2f%% of uptime",
+                    collector.getName(), collector.getCollectionCount(), millis,
+                    uptimeMillis > 0 ? 100.0 * millis / uptimeMillis : 0
+            ));
+        }
+        Console.logger.info(builder.toString());
+    }
+
+    private static String formatUsage(MemoryUsage usage) {
+        String max = (usage.getMax() < 0 ? "unbounded" : toMegabytes(usage.getMax()) + " MB max");
+        return toMegabytes(usage.getUsed()) + " MB used, "
+                + toMegabytes(usage.getCommitted()) + " MB committed, " + max;
+    }
+
+    private static long toMegabytes(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+
+    private void metrics(String[] args) {
+        StringBuilder builder = new StringBuilder("Metrics:");
+        for (Map.Entry<String, Long> entry : Metrics.snapshot().entrySet()) {
+            builder.append("\n  ").append(entry.getKey()).append(" = ").append(entry.getValue());
+        }
+        Console.logger.info(builder.toString());
+    }
+
+    private void latency(String[] args) {
+        int count = Console.parseIntArg(args, 0, 10);
+        Checks.ensure(count > 0, "The count must be positive");
+
+        Map<String, Long> metrics = Metrics.snapshot();
+        StringBuilder builder = new StringBuilder();
+        builder.append("Round trip to clients: ").append(formatQuantiles(metrics, "clients.round-trip-ms", "ms"));
+        builder.append("\nServer processing: ").append(formatQuantiles(metrics, "packets.processing-us", "us"));
+
+        List<Client> clients = new ArrayList<>();
+        for (Client client : gameServer.getConnectedClients()) {
+            if (client.getRoundTripNanos() >= 0) {
+                clients.add(client);
+            }
+        }
+        clients.sort(Comparator.comparingLong(Client::getRoundTripNanos).reversed());
+
+        builder.append("\nSlowest of ").append(clients.size()).append(" measured clients:");
+        for (Client client : clients.subList(0, Math.min(count, clients.size()))) {
+            builder.append(String.format(
+                    "%n  %-48s %8.1f ms smoothed  %8.1f ms last",
+                    client, client.getRoundTripNanos() / 1e6, client.getLastRoundTripNanos() / 1e6
+            ));
+        }
+        Console.logger.info(builder.toString());
+    }
+
+    private static String formatQuantiles(Map<String, Long> metrics, String name, String unit) {
+        return metrics.getOrDefault(name + ".count", 0L) + " samples, "
+                + "p50 " + metrics.getOrDefault(name + ".p50", 0L) + " " + unit + ", "
+                + "p90 " + metrics.getOrDefault(name + ".p90", 0L) + " " + unit + ", "
+                + "p99 " + metrics.getOrDefault(name + ".p99", 0L) + " " + unit + ", "
+                + "max " + metrics.getOrDefault(name + ".max", 0L) + " " + unit;
+    }
+
+    private void dice(String[] args) {
+        DiceFairnessMonitor monitor = gameManager.getDiceMonitor();
+        long rolls = monitor.getRollCount();
+        StringBuilder builder = new StringBuilder("Rolls: " + rolls);
+        for (int total = 0; total <= RoyalUrNetDice.DICE_COUNT; ++total) {
+            long count = monitor.getTotalCount(total);
+            builder.append(String.format(
+                    "%n  Total %d: %10d  %7.3f%%", total, count, rolls > 0 ? 100.0 * count / rolls : 0
+            ));
+        }
+        for (int dice = 0; dice < RoyalUrNetDice.DICE_COUNT; ++dice) {
+            builder.append("\n  Dice ").append(dice + 1).append(":");
+            for (DiceValue value : DiceValue.values()) {
+                builder.append("  ").append(value.getName()).append(" ").append(monitor.getFaceCount(dice, value));
+            }
+        }
+
+        // Test the latest rolls now, rather than waiting for the next scheduled test.
+        monitor.check();
+        DiceFairnessMonitor.WindowResult result = monitor.getLastResult();
+        builder.append("\nLast window: ").append(result != null ? result : "not enough rolls to test");
+        Console.logger.info(builder.toString());
+    }
+
+    private void profile(String[] args) {
+        Checks.ensure(args.length >= 2, "Expected a mode and a duration");
+
+        SamplingProfiler.Mode mode;
+        try {
+            mode = SamplingProfiler.Mode.valueOf(args[0].toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown profiling mode " + args[0]);
+        }
+        int seconds = Console.parseIntArg(args, 1, 0);
+        int intervalMillis = Console.parseIntArg(args, 2, DEFAULT_PROFILE_INTERVAL_MS);
+        Checks.ensure(seconds > 0 && seconds <= MAX_PROFILE_SECS, "The duration must be 1 to 300 seconds");
+        Checks.ensure(intervalMillis > 0, "The interval must be positive");
+
+        if (!profiling.compareAndSet(false, true)) {
+            Console.logger.warning("A profile is already being recorded");
+            return;
+        }
+
+        // The profile is recorded in the background, so that the console can still be used.
+        Thread thread = new Thread(() -> {
+            try {
+                recordProfile(mode, seconds, intervalMillis);
+            } finally {
+                profiling.set(false);
+            }
+        }, "profiler");
+        thread.setDaemon(true);
+        thread.start();
+        Console.logger.info("Recording a " + mode.name().toLowerCase(Locale.ROOT) + " profile for " + seconds + "s");
+    }
+
+    private void recordProfile(SamplingProfiler.Mode mode, int seconds, int intervalMillis) {
+        SamplingProfiler profiler = new SamplingProfiler(mode, intervalMillis);
+        try {
+            profiler.run(TimeUnit.SECONDS.toMillis(seconds));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Console.logger.warning("The profile was interrupted, and is incomplete");
+        }
+
+        String name = "profile-" + mode.name().toLowerCase(Locale.ROOT) + "-" + System.currentTimeMillis() + ".folded";
+        Path file = Path.of(name);
+        try {
+            Files.writeString(file, profiler.toFolded(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Console.logger.log(Level.WARNING, "Unable to write the profile to " + file, e);
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("Wrote ").append(profiler.getSampleCount()).append(" samples to ").append(file.toAbsolutePath());
+        List<Map.Entry<String, Integer>> stacks = profiler.getStacks();
+        for (int index = 0; index < Math.min(PROFILE_STACKS_LOGGED, stacks.size()); ++index) {
+            Map.Entry<String, Integer> entry = stacks.get(index);
+            String stack = entry.getKey();
+            // Only the deepest frames of each stack are logged, the file has the full stacks.
+            String leaf = stack.substring(stack.lastIndexOf(';', stack.lastIndexOf(';') - 1) + 1);
+            builder.append(String.format("%n  %6d  %s", entry.getValue(), leaf));
+        }
+        Console.logger.info(builder.toString());
+    }
+}
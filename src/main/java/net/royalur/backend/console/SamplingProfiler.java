@@ -0,0 +1,142 @@
+package net.royalur.backend.console;
+
+import net.royalur.backend.util.Checks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the stacks of every thread in this process at a fixed interval,
+ * and counts how often each stack was seen, so that the hot code of a live
+ * server can be found without attaching external tools.
+ * <p>
+ * The counts are written out as folded stacks, one stack per line with
+ * the frames separated by semicolons followed by the count, which can
+ * be turned into a flame graph by tools such as flamegraph.pl.
+ *
+ * @author Paddy Lamont
+ */
+public class SamplingProfiler {
+
+    /** Which threads are counted in each sample. **/
+    public enum Mode {
+        /** Every thread, whatever it is doing, to find where time is spent waiting. **/
+        WALL,
+        /** Only the threads that used the CPU since the last sample, to find where CPU is spent. **/
+        CPU
+    }
+
+    /**
+     * The maximum number of frames recorded of each stack.
+     */
+    private static final int MAX_DEPTH = 128;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final Mode mode;
+    private final long intervalMillis;
+
+    private final Map<String, Integer> counts = new HashMap<>();
+    private final Map<Long, Long> lastCpuNanos = new HashMap<>();
+    private int samples;
+
+    public SamplingProfiler(Mode mode, long intervalMillis) {
+        Checks.ensureNonNull(mode, "mode");
+        Checks.ensure(intervalMillis > 0, "intervalMillis must be positive");
+        this.mode = mode;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Samples the threads of this process for {@param durationMillis} milliseconds,
+     * blocking the calling thread, which is not itself sampled.
+     */
+    public void run(long durationMillis) throws InterruptedException {
+        boolean measureCpu = (mode == Mode.CPU && threads.isThreadCpuTimeSupported());
+        if (measureCpu && !threads.isThreadCpuTimeEnabled()) {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        while (System.nanoTime() < end) {
+            sample(measureCpu);
+            Thread.sleep(intervalMillis);
+        }
+    }
+
+    private void sample(boolean measureCpu) {
+        long self = Thread.currentThread().getId();
+        samples += 1;
+
+        for (ThreadInfo info : threads.dumpAllThreads(false, false, MAX_DEPTH)) {
+            if (info == null || info.getThreadId() == self || info.getStackTrace().length == 0)
+                continue;
+            if (mode == Mode.CPU && !isUsingCpu(info, measureCpu))
+                continue;
+
+            counts.merge(fold(info), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Threads that are blocked in native code, such as waiting on a socket, are
+     * reported as runnable, and so the CPU time of threads is used when available.
+     */
+    private boolean isUsingCpu(ThreadInfo info, boolean measureCpu) {
+        if (info.getThreadState() != Thread.State.RUNNABLE)
+            return false;
+        if (!measureCpu)
+            return true;
+
+        long cpuNanos = threads.getThreadCpuTime(info.getThreadId());
+        Long previous = lastCpuNanos.put(info.getThreadId(), cpuNanos);
+        return previous == null || cpuNanos > previous;
+    }
+
+    /**
+     * @return The stack of {@param info} as a single line, starting from the
+     *         thread name, followed by the frames from the root of the stack.
+     */
+    private static String fold(ThreadInfo info) {
+        StackTraceElement[] stack = info.getStackTrace();
+        StringBuilder builder = new StringBuilder();
+        // Numbers are removed so that the threads of a pool are grouped together.
+        builder.append(info.getThreadName().replaceAll("\\d+", "N").replace(';', ':'));
+        for (int index = stack.length - 1; index >= 0; --index) {
+            StackTraceElement frame = stack[index];
+            builder.append(';').append(frame.getClassName()).append('.').append(frame.getMethodName());
+        }
+        return builder.toString();
+    }
+
+    /** @return The number of times that the threads were sampled. **/
+    public int getSampleCount() {
+        return samples;
+    }
+
+    /**
+     * @return The stacks that were sampled, with the number of times each was seen,
+     *         in descending order of the number of times they were seen.
+     */
+    public List<Map.Entry<String, Integer>> getStacks() {
+        List<Map.Entry<String, Integer>> stacks = new ArrayList<>(counts.entrySet());
+        stacks.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        return stacks;
+    }
+
+    /**
+     * @return The sampled stacks in the folded format, one stack per line.
+     */
+    public String toFolded() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : getStacks()) {
+            builder.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        return builder.toString();
+    }
+}
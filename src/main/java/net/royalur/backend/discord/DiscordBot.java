@@ -12,8 +12,9 @@ import net.dv8tion.jda.api.requests.RestAction;
 import net.dv8tion.jda.api.utils.MiscUtil;
 import net.dv8tion.jda.api.utils.cache.CacheFlag;
 import net.royalur.backend.game.GameID;
-import net.royalur.backend.game.SavedGame;
 import net.royalur.backend.management.GameManager;
+import net.royalur.backend.management.GameSummary;
+import net.royalur.backend.management.GameSummaryIndex;
 import net.royalur.backend.management.MatchMaker;
 import net.royalur.backend.network.Client;
 
@@ -31,6 +32,7 @@ import java.util.regex.Matcher;
 public class DiscordBot extends ListenerAdapter {
 
     private static final String URL = "https://royalur.net";
+    private static final int ACTIVE_GAMES_PAGE_SIZE = 10;
 
     public final DiscordBotIdentity identity;
     private final JDA jda;
@@ -91,8 +93,9 @@ public class DiscordBot extends ListenerAdapter {
                 StringBuilder reply = new StringBuilder();
                 reply.append("Generated game").append(games > 1 ? "s" : "").append("!\n\n");
 
+                List<GameID> gameIDs = matchMaker.reserveBotGames(identity, games);
                 for (int game = 0; game < games; ++game) {
-                    GameID gameID = matchMaker.reserveBotGame(identity);
+                    GameID gameID = gameIDs.get(game);
                     String name1 = Client.sanitiseName(command[2 * game + 1]);
                     String name2 = Client.sanitiseName(command[2 * game + 2]);
 
@@ -154,10 +157,11 @@ public class DiscordBot extends ListenerAdapter {
                     }
                 }
 
+                List<GameID> gameIDs = matchMaker.reserveBotGames(identity, games);
                 for (int game = 0; game < games; ++game) {
                     User user1 = users.get(2 * game);
                     User user2 = users.get(2 * game + 1);
-                    createAndPMGame(user1, user2);
+                    sendGameLinks(gameIDs.get(game), user1, user2);
                 }
 
                 channel.sendMessage("Sent private messages with game links!").queue();
@@ -166,20 +170,7 @@ public class DiscordBot extends ListenerAdapter {
         }
 
         if (command[0].equalsIgnoreCase("active-games")) {
-            List<SavedGame> games = gameManager.getActiveGames();
-            if (games.isEmpty()) {
-                channel.sendMessage("There are no active games.").queue();
-                return;
-            }
-
-            StringBuilder response = new StringBuilder();
-            for (SavedGame game : games) {
-                response.append("**").append(game.lightIdentity.name).append("**");
-                response.append(" vs. ");
-                response.append("**").append(game.darkIdentity.name).append("**: ");
-                response.append(generateGameURL(game.id, null)).append("\n");
-            }
-            channel.sendMessage(response).queue();
+            sendActiveGames(channel, command);
             return;
         }
 
@@ -203,8 +194,65 @@ public class DiscordBot extends ListenerAdapter {
         }
     }
 
+    /**
+     * Lists a page of the active games, for the command
+     * {@code !active-games [page] [newest|spectated]}.
+     */
+    private void sendActiveGames(MessageChannel channel, String[] command) {
+        int page = 1;
+        GameSummaryIndex.Order order = GameSummaryIndex.Order.NEWEST;
+        for (int index = 1; index < command.length; ++index) {
+            String arg = command[index];
+            if (arg.equalsIgnoreCase("newest")) {
+                order = GameSummaryIndex.Order.NEWEST;
+            } else if (arg.equalsIgnoreCase("spectated")) {
+                order = GameSummaryIndex.Order.MOST_SPECTATED;
+            } else {
+                try {
+                    page = Integer.parseInt(arg);
+                } catch (NumberFormatException e) {
+                    page = 0;
+                }
+                if (page < 1) {
+                    channel.sendMessage("**Usage:** !active-games [page] [newest|spectated]").queue();
+                    return;
+                }
+            }
+        }
+
+        GameSummaryIndex summaries = gameManager.getSummaries();
+        int totalGames = summaries.size();
+        if (totalGames == 0) {
+            channel.sendMessage("There are no active games.").queue();
+            return;
+        }
+
+        List<GameSummary> games = summaries.page(order, page - 1, ACTIVE_GAMES_PAGE_SIZE);
+        int pages = (totalGames + ACTIVE_GAMES_PAGE_SIZE - 1) / ACTIVE_GAMES_PAGE_SIZE;
+        if (games.isEmpty()) {
+            channel.sendMessage("There are only " + pages + " pages of active games.").queue();
+            return;
+        }
+
+        StringBuilder response = new StringBuilder();
+        for (GameSummary game : games) {
+            response.append("**").append(game.lightName()).append("**");
+            response.append(" vs. ");
+            response.append("**").append(game.darkName()).append("**");
+            response.append(" (").append(game.turns()).append(" turns, ");
+            response.append(game.spectators()).append(" spectators): ");
+            response.append(generateGameURL(game.gameID(), null)).append("\n");
+        }
+        response.append("\nPage ").append(page).append(" of ").append(pages);
+        response.append(", ").append(totalGames).append(" active games");
+        channel.sendMessage(response).queue();
+    }
+
     private void createAndPMGame(User user1, User user2) {
-        GameID gameID = matchMaker.reserveBotGame(identity);
+        sendGameLinks(matchMaker.reserveBotGame(identity), user1, user2);
+    }
+
+    private void sendGameLinks(GameID gameID, User user1, User user2) {
         String name1 = Client.sanitiseName(user1.getName());
         String name2 = Client.sanitiseName(user2.getName());
 
@@ -1,6 +1,7 @@
 package net.royalur.backend.game;
 
 import net.royalur.backend.network.PacketWritable;
+import net.royalur.backend.network.ProtocolViolation;
 import net.royalur.backend.network.incoming.PacketReader;
 import net.royalur.backend.network.outgoing.PacketWriter;
 import net.royalur.backend.util.MathHelper;
@@ -43,6 +44,13 @@ public final class GameID implements PacketWritable {
         this.numericID = numericID;
     }
 
+    /**
+     * @return The numeric ID that this ID corresponds to.
+     */
+    public long getNumericID() {
+        return numericID;
+    }
+
     @Override
     public String toString() {
         char[] chars = new char[ID_LENGTH];
@@ -78,7 +86,12 @@ public final class GameID implements PacketWritable {
      * @return The next GameID read from {@param packet}.
      */
     public static @Nonnull GameID read(@Nonnull PacketReader packet) {
-        return fromString(packet.nextString(ID_LENGTH));
+        String string = packet.nextString(ID_LENGTH);
+        try {
+            return fromString(string);
+        } catch (IllegalArgumentException exception) {
+            throw new ProtocolViolation(exception.getMessage());
+        }
     }
 
     /**
@@ -22,6 +22,13 @@ public record GameSettings(
 
     public static final @Nonnull GameSettings STANDARD = new GameSettings(BoardType.STANDARD, PathType.BELL);
 
+    /**
+     * @return The lookup tables of the board and paths of these settings.
+     */
+    public @Nonnull GameTables getTables() {
+        return GameTables.of(this);
+    }
+
     /**
      * Creates a new game using these settings.
      *
@@ -0,0 +1,173 @@
+package net.royalur.backend.game;
+
+import net.royalur.backend.util.Checks;
+import net.royalur.model.BoardShape;
+import net.royalur.model.Player;
+import net.royalur.model.Tile;
+import net.royalur.model.path.Path;
+import net.royalur.model.path.PathPair;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lookup tables of the board and paths of a {@link GameSettings}, so that
+ * packets can be encoded and decoded, and moves checked, for any board and
+ * paths without asking the shape of the board or the paths about each tile.
+ * The tables of each settings are built once, the first time they are used,
+ * and are immutable.
+ * <p>
+ * Tiles are identified by their index, {@code iy * width + ix}, within
+ * the grid that bounds the board.
+ *
+ * @author Paddy Lamont
+ */
+public final class GameTables {
+
+    private static final Map<GameSettings, GameTables> tables = new ConcurrentHashMap<>();
+
+    public final int width;
+    public final int height;
+
+    /** Whether each tile of the grid is on the board, as a bitset. **/
+    private final long[] boardTiles;
+    /** The tile at each index of the grid. **/
+    private final Tile[] tiles;
+    private final int boardTileCount;
+
+    private final PlayerPath lightPath;
+    private final PlayerPath darkPath;
+
+    private GameTables(@Nonnull BoardShape shape, @Nonnull PathPair paths) {
+        this.width = shape.width;
+        this.height = shape.height;
+        this.tiles = new Tile[width * height];
+        this.boardTiles = new long[(tiles.length + Long.SIZE - 1) / Long.SIZE];
+
+        int count = 0;
+        for (int iy = 0; iy < height; ++iy) {
+            for (int ix = 0; ix < width; ++ix) {
+                int index = iy * width + ix;
+                Tile tile = Tile.fromIndices(ix, iy);
+                tiles[index] = tile;
+                if (shape.contains(tile)) {
+                    boardTiles[index / Long.SIZE] |= 1L << (index % Long.SIZE);
+                    count += 1;
+                }
+            }
+        }
+        this.boardTileCount = count;
+        this.lightPath = new PlayerPath(paths.get(Player.LIGHT));
+        this.darkPath = new PlayerPath(paths.get(Player.DARK));
+    }
+
+    /** @return The tables of the board and paths of {@param settings}. **/
+    public static @Nonnull GameTables of(@Nonnull GameSettings settings) {
+        Checks.ensureNonNull(settings, "settings");
+        return tables.computeIfAbsent(settings, key -> new GameTables(
+                key.boardType().create(), key.pathType().create()
+        ));
+    }
+
+    /** @return The index of the tile at {@param ix}, {@param iy}, or -1 if it is outside the grid. **/
+    public int getTileIndex(int ix, int iy) {
+        if (ix < 0 || iy < 0 || ix >= width || iy >= height)
+            return -1;
+        return iy * width + ix;
+    }
+
+    /** @return The number of tiles in the grid that bounds the board. **/
+    public int getGridSize() {
+        return tiles.length;
+    }
+
+    /** @return The number of tiles on the board. **/
+    public int getBoardTileCount() {
+        return boardTileCount;
+    }
+
+    /** @return Whether the tile at {@param index} in the grid is on the board. **/
+    public boolean isOnBoard(int index) {
+        return (boardTiles[index / Long.SIZE] & (1L << (index % Long.SIZE))) != 0;
+    }
+
+    /** @return Whether the tile at {@param ix}, {@param iy} is on the board. **/
+    public boolean isOnBoard(int ix, int iy) {
+        int index = getTileIndex(ix, iy);
+        return index >= 0 && isOnBoard(index);
+    }
+
+    /** @return The tile at {@param ix}, {@param iy} if it is on the board, or else null. **/
+    public @Nullable Tile getBoardTile(int ix, int iy) {
+        int index = getTileIndex(ix, iy);
+        return index >= 0 && isOnBoard(index) ? tiles[index] : null;
+    }
+
+    private PlayerPath getPath(Player player) {
+        return switch (player) {
+            case LIGHT -> lightPath;
+            case DARK -> darkPath;
+            default -> throw new IllegalArgumentException("Unknown player " + player);
+        };
+    }
+
+    /** @return The tile off the board that the pieces of {@param player} are introduced from. **/
+    public @Nonnull Tile getStartTile(@Nonnull Player player) {
+        return getPath(player).startTile;
+    }
+
+    /** @return The tile off the board that the pieces of {@param player} are scored to. **/
+    public @Nonnull Tile getEndTile(@Nonnull Player player) {
+        return getPath(player).endTile;
+    }
+
+    /** @return The number of tiles on the board along the path of {@param player}. **/
+    public int getPathLength(@Nonnull Player player) {
+        return getPath(player).tiles.length;
+    }
+
+    /** @return The tile at {@param pathIndex} along the path of {@param player}. **/
+    public @Nonnull Tile getPathTile(@Nonnull Player player, int pathIndex) {
+        return getPath(player).tiles[pathIndex];
+    }
+
+    /**
+     * @return The index along the path of {@param player} of the tile at
+     *         {@param ix}, {@param iy}, or -1 if it is not on their path.
+     */
+    public int getPathIndex(@Nonnull Player player, int ix, int iy) {
+        int index = getTileIndex(ix, iy);
+        return index >= 0 ? getPath(player).pathIndices[index] : -1;
+    }
+
+    /**
+     * The tiles along the path of one player.
+     */
+    private final class PlayerPath {
+
+        private final Tile startTile;
+        private final Tile endTile;
+        private final Tile[] tiles;
+        /** The index along the path of each tile of the grid, or -1 for the tiles not on the path. **/
+        private final int[] pathIndices;
+
+        private PlayerPath(@Nonnull Path path) {
+            List<Tile> pathTiles = path.tiles;
+            this.startTile = path.startTile;
+            this.endTile = path.endTile;
+            this.tiles = pathTiles.toArray(new Tile[0]);
+            this.pathIndices = new int[width * height];
+            Arrays.fill(pathIndices, -1);
+            for (int pathIndex = 0; pathIndex < tiles.length; ++pathIndex) {
+                Tile tile = tiles[pathIndex];
+                int index = getTileIndex(tile.ix, tile.iy);
+                Checks.ensure(index >= 0 && isOnBoard(index), "The paths must only use tiles on the board");
+                pathIndices[index] = pathIndex;
+            }
+        }
+    }
+}
@@ -18,6 +18,11 @@ public class SavedGame {
      */
     public final @Nonnull GameID id;
 
+    /**
+     * The settings that the game was created with.
+     */
+    public final @Nonnull GameSettings settings;
+
     /**
      * The game of the Royal Game of Ur.
      */
@@ -34,10 +39,16 @@ public class SavedGame {
     public final @Nonnull RoyalUrNetIdentity darkIdentity;
 
     /**
+     * @param settings The settings that {@param game} was created with.
      * @param game The game of the Royal Game of Ur.
      */
-    public SavedGame(@Nonnull GameID id, @Nonnull Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game) {
+    public SavedGame(
+            @Nonnull GameID id,
+            @Nonnull GameSettings settings,
+            @Nonnull Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game
+    ) {
         this.id = id;
+        this.settings = settings;
         this.game = game;
 
         PlayerIdentity lightIdentity = game.lightIdentity;
@@ -61,7 +72,7 @@ public class SavedGame {
     }
 
     private SavedGame(@Nonnull SavedGame template) {
-        this(template.id, template.game.copy());
+        this(template.id, template.settings, template.game.copy());
     }
 
     /**
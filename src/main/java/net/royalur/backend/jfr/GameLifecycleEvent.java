@@ -0,0 +1,56 @@
+package net.royalur.backend.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import net.royalur.backend.game.GameID;
+
+/**
+ * Recorded when a game is started or stopped on this server.
+ *
+ * @author Paddy Lamont
+ */
+@Name("net.royalur.GameLifecycle")
+@Label("Game Lifecycle")
+@Category({"RoyalUr", "Games"})
+@Description("A game started or stopped")
+public class GameLifecycleEvent extends jdk.jfr.Event {
+
+    @Label("Game ID")
+    public String gameID;
+
+    @Label("Started")
+    @Description("True if the game started, or false if it stopped")
+    public boolean started;
+
+    @Label("Reason")
+    @Description("Why the game stopped")
+    public String reason;
+
+    @Label("Turns")
+    @Description("The number of moves made in the game")
+    public int turns;
+
+    /** Records that the game {@param gameID} started, or was {@param restored} after a restart. **/
+    public static void started(GameID gameID, boolean restored) {
+        GameLifecycleEvent event = new GameLifecycleEvent();
+        if (event.shouldCommit()) {
+            event.gameID = gameID.toString();
+            event.started = true;
+            event.reason = (restored ? "Restored" : "Started");
+            event.commit();
+        }
+    }
+
+    /** Records that the game {@param gameID} stopped after {@param turns} moves, due to {@param reason}. **/
+    public static void stopped(GameID gameID, String reason, int turns) {
+        GameLifecycleEvent event = new GameLifecycleEvent();
+        if (event.shouldCommit()) {
+            event.gameID = gameID.toString();
+            event.reason = reason;
+            event.turns = turns;
+            event.commit();
+        }
+    }
+}
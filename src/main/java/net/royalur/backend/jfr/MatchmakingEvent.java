@@ -0,0 +1,36 @@
+package net.royalur.backend.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import net.royalur.backend.game.GameID;
+
+/**
+ * Recorded when the match maker pairs two clients into a game.
+ *
+ * @author Paddy Lamont
+ */
+@Name("net.royalur.Matchmaking")
+@Label("Matchmaking")
+@Category({"RoyalUr", "Games"})
+@Description("Two clients paired into a game")
+public class MatchmakingEvent extends jdk.jfr.Event {
+
+    @Label("Game ID")
+    public String gameID;
+
+    @Label("Source")
+    @Description("How the players found each other, either queue or invite")
+    public String source;
+
+    /** Records that a game {@param gameID} was created through {@param source}. **/
+    public static void paired(GameID gameID, String source) {
+        MatchmakingEvent event = new MatchmakingEvent();
+        if (event.shouldCommit()) {
+            event.gameID = gameID.toString();
+            event.source = source;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package net.royalur.backend.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when a message received from a client is decoded into a packet.
+ *
+ * @author Paddy Lamont
+ */
+@Name("net.royalur.PacketDecode")
+@Label("Packet Decode")
+@Category({"RoyalUr", "Network"})
+@Description("A message from a client decoded into a packet")
+@StackTrace(false)
+public class PacketDecodeEvent extends jdk.jfr.Event {
+
+    @Label("Packet Type")
+    public String packetType;
+
+    @Label("Size")
+    @DataAmount
+    public int size;
+
+    @Label("Valid")
+    @Description("Whether the message was a valid packet")
+    public boolean valid;
+
+    /** Ends this event, and records it if it is enabled. **/
+    public void finish(String packetType, int size, boolean valid) {
+        end();
+        if (shouldCommit()) {
+            this.packetType = packetType;
+            this.size = size;
+            this.valid = valid;
+            commit();
+        }
+    }
+}
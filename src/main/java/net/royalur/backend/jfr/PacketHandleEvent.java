@@ -0,0 +1,40 @@
+package net.royalur.backend.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import javax.annotation.Nullable;
+
+/**
+ * Recorded when a decoded packet has been handled, including the
+ * time spent updating any game that the packet was sent to.
+ *
+ * @author Paddy Lamont
+ */
+@Name("net.royalur.PacketHandle")
+@Label("Packet Handle")
+@Category({"RoyalUr", "Network"})
+@Description("A packet from a client handled by the server")
+@StackTrace(false)
+public class PacketHandleEvent extends jdk.jfr.Event {
+
+    @Label("Packet Type")
+    public String packetType;
+
+    @Label("Game ID")
+    @Description("The game that the packet was sent to, if any")
+    public String gameID;
+
+    /** Ends this event, and records it if it is enabled. **/
+    public void finish(String packetType, @Nullable Object gameID) {
+        end();
+        if (shouldCommit()) {
+            this.packetType = packetType;
+            this.gameID = (gameID != null ? gameID.toString() : null);
+            commit();
+        }
+    }
+}
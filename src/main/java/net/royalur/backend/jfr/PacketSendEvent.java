@@ -0,0 +1,43 @@
+package net.royalur.backend.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when a packet is encoded, if needed, and sent to a client.
+ *
+ * @author Paddy Lamont
+ */
+@Name("net.royalur.PacketSend")
+@Label("Packet Send")
+@Category({"RoyalUr", "Network"})
+@Description("A packet encoded and sent to a client")
+@StackTrace(false)
+public class PacketSendEvent extends jdk.jfr.Event {
+
+    @Label("Packet Type")
+    public String packetType;
+
+    @Label("Size")
+    @DataAmount
+    public int size;
+
+    @Label("Pre-encoded")
+    @Description("Whether the packet was encoded once and shared between clients")
+    public boolean preEncoded;
+
+    /** Ends this event, and records it if it is enabled. **/
+    public void finish(String packetType, int size, boolean preEncoded) {
+        end();
+        if (shouldCommit()) {
+            this.packetType = packetType;
+            this.size = size;
+            this.preEncoded = preEncoded;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package net.royalur.backend.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when a task of a {@link net.royalur.backend.scheduler.Scheduler} is run.
+ *
+ * @author Paddy Lamont
+ */
+@Name("net.royalur.SchedulerTask")
+@Label("Scheduler Task")
+@Category({"RoyalUr", "Scheduler"})
+@Description("A task run by a scheduler")
+@StackTrace(false)
+public class SchedulerTaskEvent extends jdk.jfr.Event {
+
+    @Label("Scheduler")
+    public String scheduler;
+
+    @Label("Task")
+    public String task;
+
+    @Label("Overrun")
+    @Description("Whether the task took longer than a tick of its scheduler, delaying the tasks after it")
+    public boolean overrun;
+
+    /** Ends this event, and records it if it is enabled. **/
+    public void finish(String scheduler, String task, boolean overrun) {
+        end();
+        if (shouldCommit()) {
+            this.scheduler = scheduler;
+            this.task = task;
+            this.overrun = overrun;
+            commit();
+        }
+    }
+}
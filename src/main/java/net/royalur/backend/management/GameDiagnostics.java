@@ -0,0 +1,148 @@
+package net.royalur.backend.management;
+
+import net.royalur.backend.Logging;
+import net.royalur.backend.game.GameID;
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the recent happenings in a single game, so that they can
+ * be dumped when investigating a report about the game. Only the
+ * most recent entries are kept, and they are freed with the game.
+ * <p>
+ * Entries at the INFO level and above are also logged to the shared
+ * games logger, with the ID of the game as context.
+ * <p>
+ * The events that happen on every turn are recorded as their raw fields,
+ * and are only written out as text when the entries are dumped, so that
+ * recording them does not build strings whilst the game is locked.
+ *
+ * @author Paddy Lamont
+ */
+public class GameDiagnostics {
+
+    /**
+     * The default number of entries kept for each game.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final Logger logger = Logging.getLogger("games");
+
+    /** The events that are recorded often, without being written out until they are dumped. **/
+    public enum Event {
+        JOINED("%s joined as %s"),
+        DISCONNECTED("%s disconnected"),
+        ROLLED("%s rolled %s"),
+        MOVED("%s moved %s");
+
+        private final @Nonnull String format;
+
+        Event(@Nonnull String format) {
+            this.format = format;
+        }
+
+        /** @return This event written out for {@param subject} and {@param detail}. **/
+        public @Nonnull String format(@Nonnull Object subject, @Nullable Object detail) {
+            return String.format(format, subject, detail);
+        }
+    }
+
+    private final @Nonnull GameID gameID;
+
+    private final long[] times;
+    private final Level[] levels;
+    /** The event of each entry, or null if its subject is its message. **/
+    private final Event[] events;
+    private final Object[] subjects;
+    private final Object[] details;
+    private int next;
+    private long count;
+
+    public GameDiagnostics(@Nonnull GameID gameID, int capacity) {
+        Checks.ensureNonNull(gameID, "gameID");
+        Checks.ensure(capacity > 0, "capacity must be positive");
+        this.gameID = gameID;
+        this.times = new long[capacity];
+        this.levels = new Level[capacity];
+        this.events = new Event[capacity];
+        this.subjects = new Object[capacity];
+        this.details = new Object[capacity];
+    }
+
+    public GameDiagnostics(@Nonnull GameID gameID) {
+        this(gameID, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Records {@param message} at the level {@param level}.
+     */
+    public void record(@Nonnull Level level, @Nonnull String message) {
+        Checks.ensureNonNull(level, "level");
+        Checks.ensureNonNull(message, "message");
+
+        add(level, null, message, null);
+        if (level.intValue() >= Level.INFO.intValue() && logger.isLoggable(level)) {
+            logger.log(level, "[" + gameID + "] " + message);
+        }
+    }
+
+    /**
+     * Records that {@param event} happened to {@param subject}, with the detail
+     * {@param detail}, without logging it or writing it out until it is dumped.
+     */
+    public void fine(@Nonnull Event event, @Nonnull Object subject, @Nullable Object detail) {
+        Checks.ensureNonNull(event, "event");
+        Checks.ensureNonNull(subject, "subject");
+        add(Level.FINE, event, subject, detail);
+    }
+
+    private synchronized void add(Level level, @Nullable Event event, Object subject, @Nullable Object detail) {
+        times[next] = System.currentTimeMillis();
+        levels[next] = level;
+        events[next] = event;
+        subjects[next] = subject;
+        details[next] = detail;
+        next = (next + 1) % times.length;
+        count += 1;
+    }
+
+    /**
+     * Records {@param message}, without logging it.
+     */
+    public void fine(@Nonnull String message) {
+        record(Level.FINE, message);
+    }
+
+    public void info(@Nonnull String message) {
+        record(Level.INFO, message);
+    }
+
+    public void warning(@Nonnull String message) {
+        record(Level.WARNING, message);
+    }
+
+    /**
+     * @return The entries that are kept, oldest first, each written out as a line of text.
+     */
+    public synchronized @Nonnull List<String> dump() {
+        int size = (int) Math.min(count, times.length);
+        int start = (next - size + times.length) % times.length;
+
+        List<String> lines = new ArrayList<>(size + 1);
+        lines.add("Game " + gameID + ": last " + size + " of " + count + " entries");
+        for (int offset = 0; offset < size; ++offset) {
+            int index = (start + offset) % times.length;
+            Event event = events[index];
+            String message = (event != null ? event.format(subjects[index], details[index]) : (String) subjects[index]);
+            lines.add(Instant.ofEpochMilli(times[index]) + " " + levels[index] + " " + message);
+        }
+        return lines;
+    }
+}
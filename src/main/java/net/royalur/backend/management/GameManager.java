@@ -1,17 +1,27 @@
 package net.royalur.backend.management;
 
+import net.royalur.backend.Logging;
+import net.royalur.backend.ai.BotClient;
 import net.royalur.backend.game.GameID;
 import net.royalur.backend.game.GameSettings;
 import net.royalur.backend.game.SavedGame;
+import net.royalur.backend.jfr.GameLifecycleEvent;
+import net.royalur.backend.metrics.DiceFairnessMonitor;
 import net.royalur.backend.network.Client;
 import net.royalur.backend.network.outgoing.PacketOutGameInvalid;
+import net.royalur.backend.replay.GameEvent;
+import net.royalur.backend.replay.GameEventLog;
+import net.royalur.backend.replay.ReplayLibrary;
 import net.royalur.backend.scheduler.Scheduler;
+import net.royalur.backend.snapshot.GameSnapshot;
 import net.royalur.backend.util.Checks;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Manages the connection of clients to games.
@@ -20,16 +30,35 @@ import java.util.concurrent.TimeUnit;
  */
 public class GameManager {
 
+    private static final Logger logger = Logging.getLogger("game-manager");
+
     private final Scheduler scheduler = new Scheduler("game-manager", 1, TimeUnit.SECONDS);
 
     private final GameRepository repository;
+    private final SpectatorDelivery spectatorDelivery;
+    private final ReplayLibrary replays;
+    private final DiceFairnessMonitor diceMonitor;
 
     private final Object lock = new Object();
     private final Map<GameID, ManagedGame> games = new HashMap<>();
+    private final GameSummaryIndex summaries = new GameSummaryIndex();
 
-    public GameManager(GameRepository repository) {
+    public GameManager(
+            GameRepository repository,
+            SpectatorDelivery spectatorDelivery,
+            ReplayLibrary replays,
+            DiceFairnessMonitor diceMonitor
+    ) {
+        Checks.ensureNonNull(repository, "repository");
+        Checks.ensureNonNull(spectatorDelivery, "spectatorDelivery");
+        Checks.ensureNonNull(replays, "replays");
+        Checks.ensureNonNull(diceMonitor, "diceMonitor");
         this.repository = repository;
+        this.spectatorDelivery = spectatorDelivery;
+        this.replays = replays;
+        this.diceMonitor = diceMonitor;
         scheduler.scheduleRepeating("game-purger", this::purgeInactiveGames, 5, TimeUnit.SECONDS);
+        scheduler.scheduleRepeating("dice-monitor", diceMonitor::check, 10, TimeUnit.SECONDS);
     }
 
     public void start() {
@@ -39,6 +68,7 @@ public class GameManager {
     public void stop() {
         stopAll("Server is shutting down");
         scheduler.stop();
+        spectatorDelivery.stop();
     }
 
     public boolean containsGame(@Nonnull GameID gameID) {
@@ -58,16 +88,16 @@ public class GameManager {
     }
 
     /**
-     * Note: The returned games are not thread-safe. Users beware!
+     * @return An index of summaries of the games being played, to list
+     *         games without locking or copying the games themselves.
      */
-    public List<SavedGame> getActiveGames() {
-        List<SavedGame> gameSnapshots = new ArrayList<>();
-        synchronized (lock) {
-            for (ManagedGame game : games.values()) {
-                gameSnapshots.add(game.savedGame.copy());
-            }
-        }
-        return gameSnapshots;
+    public GameSummaryIndex getSummaries() {
+        return summaries;
+    }
+
+    /** @return The monitor that watches the rolls of the dice in every game. **/
+    public DiceFairnessMonitor getDiceMonitor() {
+        return diceMonitor;
     }
 
     private List<ManagedGame> findActiveGames(@Nonnull Client client) {
@@ -82,6 +112,35 @@ public class GameManager {
         return activeGames;
     }
 
+    /**
+     * @return The IDs of the games that {@param client} is a player in.
+     */
+    public List<GameID> getActiveGameIDs(@Nonnull Client client) {
+        List<GameID> gameIDs = new ArrayList<>();
+        for (ManagedGame game : findActiveGames(client)) {
+            gameIDs.add(game.getID());
+        }
+        return gameIDs;
+    }
+
+    /**
+     * Gives {@param client} back their seats in the games {@param gameIDs},
+     * after they resumed their session through a new client.
+     */
+    public void rebindClient(@Nonnull Client client, @Nonnull List<GameID> gameIDs) {
+        Checks.ensureNonNull(client, "client");
+        Checks.ensureNonNull(gameIDs, "gameIDs");
+
+        synchronized (lock) {
+            for (GameID gameID : gameIDs) {
+                ManagedGame game = games.get(gameID);
+                if (game != null) {
+                    game.rebind(client);
+                }
+            }
+        }
+    }
+
     public void purgeInactiveGames() {
         List<ManagedGame> inactive = new ArrayList<>();
         synchronized (lock) {
@@ -102,16 +161,33 @@ public class GameManager {
 
     public void startGame(@Nonnull GameID id, @Nonnull Client light, @Nonnull Client dark) {
         ManagedGame game;
+        SavedGame savedGame;
         synchronized (lock) {
-            SavedGame savedGame = repository.createGame(id, light.getIdentity(), dark.getIdentity());
-            game = new ManagedGame(savedGame, light, dark);
+            savedGame = repository.createGame(id, light.getIdentity(), dark.getIdentity());
+            GameEventLog eventLog = replays.create(id, savedGame.game);
+            game = new ManagedGame(
+                    savedGame, light, dark, spectatorDelivery.createGroup(), eventLog, summaries, diceMonitor
+            );
             games.put(id, game);
         }
+        summaries.add(createSummary(savedGame, 0));
+        GameLifecycleEvent.started(id, false);
 
         joinGame(id, light, false);
         joinGame(id, dark, false);
     }
 
+    private static GameSummary createSummary(SavedGame savedGame, int turns) {
+        return new GameSummary(
+                savedGame.id,
+                savedGame.lightIdentity.name,
+                savedGame.darkIdentity.name,
+                turns,
+                0,
+                System.currentTimeMillis()
+        );
+    }
+
     public void joinGame(GameID gameID, Client client, boolean isReconnect) {
         synchronized (lock) {
             ManagedGame game = games.get(gameID);
@@ -142,6 +218,111 @@ public class GameManager {
         }
     }
 
+    /**
+     * Captures the games that are being played, so that they can be restored
+     * after a restart. Packets should no longer be handled when this is called.
+     */
+    public List<GameSnapshot> snapshotGames() {
+        List<ManagedGame> managedGames;
+        synchronized (lock) {
+            managedGames = new ArrayList<>(games.values());
+        }
+
+        List<GameSnapshot> snapshots = new ArrayList<>(managedGames.size());
+        for (ManagedGame game : managedGames) {
+            // Bots are not kept across restarts, and so neither are their games.
+            if (game.getLightClient() instanceof BotClient || game.getDarkClient() instanceof BotClient)
+                continue;
+
+            SavedGame savedGame = game.savedGame;
+            snapshots.add(new GameSnapshot(
+                    savedGame.id,
+                    savedGame.settings,
+                    savedGame.lightIdentity,
+                    savedGame.darkIdentity,
+                    game.getLightClient().getSessionID(),
+                    game.getDarkClient().getSessionID(),
+                    game.eventLog.toArray()
+            ));
+        }
+        return snapshots;
+    }
+
+    /**
+     * Restores the games {@param snapshots} that were being played before a restart.
+     * The games are replayed in parallel, as they are independent of each other.
+     * Games where either player's session has expired are not restored, as that
+     * player would already have timed out had the server not restarted.
+     * @param clients The disconnected clients of the sessions that have not expired, by their session IDs.
+     * @return The number of games that were restored.
+     */
+    public int restoreGames(@Nonnull List<GameSnapshot> snapshots, @Nonnull Map<UUID, Client> clients) {
+        Checks.ensureNonNull(snapshots, "snapshots");
+        Checks.ensureNonNull(clients, "clients");
+
+        List<ManagedGame> restored = snapshots.parallelStream()
+                .map(snapshot -> restoreGame(snapshot, clients))
+                .filter(Objects::nonNull)
+                .toList();
+
+        synchronized (lock) {
+            for (ManagedGame game : restored) {
+                games.put(game.getID(), game);
+            }
+        }
+        for (ManagedGame game : restored) {
+            GameLifecycleEvent.started(game.getID(), true);
+        }
+        return restored.size();
+    }
+
+    private @Nullable ManagedGame restoreGame(GameSnapshot snapshot, Map<UUID, Client> clients) {
+        Client light = clients.get(snapshot.lightSession());
+        Client dark = clients.get(snapshot.darkSession());
+        if (light == null || dark == null) {
+            logger.info("Not restoring the game " + snapshot.gameID() + ", as a player's session has expired");
+            return null;
+        }
+
+        SavedGame savedGame = null;
+        GameEventLog eventLog = null;
+        try {
+            savedGame = repository.restoreGame(
+                    snapshot.gameID(), snapshot.settings(), snapshot.lightIdentity(), snapshot.darkIdentity()
+            );
+            eventLog = replays.create(snapshot.gameID(), savedGame.game);
+            eventLog.replay(snapshot.events(), savedGame.game);
+
+            ManagedGame game = new ManagedGame(
+                    savedGame, light, dark, spectatorDelivery.createGroup(), eventLog, summaries, diceMonitor
+            );
+
+            // The start time of the game is not kept across restarts.
+            summaries.add(createSummary(savedGame, countMoves(snapshot.events())));
+            return game;
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Unable to restore the game " + snapshot.gameID(), e);
+            // The game is not started, so anything added for it is removed.
+            if (eventLog != null) {
+                replays.discard(eventLog);
+            }
+            if (savedGame != null) {
+                repository.remove(snapshot.gameID());
+            }
+            return null;
+        }
+    }
+
+    private static int countMoves(int[] events) {
+        int moves = 0;
+        for (int event : events) {
+            if (GameEvent.getType(event) == GameEvent.MOVE) {
+                moves += 1;
+            }
+        }
+        return moves;
+    }
+
     public void stopAll(String reason) {
         List<ManagedGame> games;
         synchronized (lock) {
@@ -158,6 +339,10 @@ public class GameManager {
         synchronized (lock) {
             games.remove(game.getID());
         }
+        GameSummary summary = summaries.get(game.getID());
+        summaries.remove(game.getID());
         game.stop(reason);
+        GameLifecycleEvent.stopped(game.getID(), reason, summary != null ? summary.turns() : 0);
+        replays.onFinished(game.getID());
     }
 }
@@ -8,13 +8,19 @@ import net.royalur.backend.game.GameID;
 import net.royalur.backend.game.GameSettings;
 import net.royalur.backend.game.RoyalUrNetDiceRoll;
 import net.royalur.backend.game.SavedGame;
+import net.royalur.backend.util.Checks;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
 
 
 /**
@@ -31,13 +37,28 @@ public class GameRepository {
      */
     private final @Nonnull Random random;
 
+    /**
+     * Whether new games may be created with a given ID. In
+     * a cluster, each node only creates games that it owns.
+     */
+    private final @Nonnull Predicate<GameID> allowedGameIDs;
+
     /**
      * An in-memory cache of games.
      */
     private final @Nonnull Map<GameID, GameRepositoryEntry> gameCache = new HashMap<>();
 
-    public GameRepository(@Nonnull Random random) {
+    public GameRepository(@Nonnull Random random, @Nonnull Predicate<GameID> allowedGameIDs) {
         this.random = random;
+        this.allowedGameIDs = allowedGameIDs;
+    }
+
+    public GameRepository(@Nonnull Random random) {
+        this(random, gameID -> true);
+    }
+
+    public GameRepository(@Nonnull Predicate<GameID> allowedGameIDs) {
+        this(new SecureRandom(), allowedGameIDs);
     }
 
     public GameRepository() {
@@ -53,7 +74,7 @@ public class GameRepository {
         synchronized (lock) {
             do {
                 gameID = GameID.random(random);
-            } while (gameCache.containsKey(gameID));
+            } while (gameCache.containsKey(gameID) || !allowedGameIDs.test(gameID));
 
             GameReservation reservation = new GameReservation(gameID, settings, identity);
             gameCache.put(gameID, GameRepositoryEntry.create(reservation));
@@ -61,6 +82,48 @@ public class GameRepository {
         return gameID;
     }
 
+    /**
+     * Generates and reserves {@param count} new game IDs for the given identity.
+     * The IDs are generated before taking the lock, and are then all
+     * reserved under a single acquisition of the lock, so that creating
+     * many games at once does not contend with other users of the repository.
+     * @return The reserved game IDs, in no particular order.
+     */
+    public @Nonnull List<GameID> reserveGameIDs(
+            @Nonnull GameSettings settings,
+            @Nonnull RoyalUrNetIdentity identity,
+            int count
+    ) {
+        Checks.ensureNonNull(settings, "settings");
+        Checks.ensureNonNull(identity, "identity");
+        Checks.ensure(count >= 0, "count must be >= 0");
+
+        List<GameID> reserved = new ArrayList<>(count);
+        Set<GameID> candidates = new HashSet<>();
+        while (reserved.size() < count) {
+            // Collisions are very unlikely, so this almost always takes one pass.
+            candidates.clear();
+            while (candidates.size() < count - reserved.size()) {
+                GameID gameID = GameID.random(random);
+                if (allowedGameIDs.test(gameID)) {
+                    candidates.add(gameID);
+                }
+            }
+
+            synchronized (lock) {
+                for (GameID gameID : candidates) {
+                    if (gameCache.containsKey(gameID))
+                        continue;
+
+                    GameReservation reservation = new GameReservation(gameID, settings, identity);
+                    gameCache.put(gameID, GameRepositoryEntry.create(reservation));
+                    reserved.add(gameID);
+                }
+            }
+        }
+        return reserved;
+    }
+
     /**
      * Generates a new game and adds it to the repository.
      * @param lightIdentity The identity of the light player.
@@ -91,21 +154,60 @@ public class GameRepository {
             @Nonnull RoyalUrNetIdentity darkIdentity
     ) {
         synchronized (lock) {
-            GameRepositoryEntry entry = gameCache.get(gameID);
-            if (entry == null)
-                throw new IllegalArgumentException("The given game ID has not been reserved: " + gameID);
-            if (!entry.isReservation())
-                throw new IllegalArgumentException("The game has already been created: " + gameID);
-
-            GameSettings settings = entry.getReservation().settings;
+            GameSettings settings = getReservationOrThrow(gameID).settings;
             Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game = settings.create(lightIdentity, darkIdentity);
 
-            SavedGame savedGame = new SavedGame(gameID, game);
+            SavedGame savedGame = new SavedGame(gameID, settings, game);
             gameCache.put(gameID, GameRepositoryEntry.create(savedGame));
             return savedGame.copy();
         }
     }
 
+    private GameReservation getReservationOrThrow(GameID gameID) {
+        GameRepositoryEntry entry = gameCache.get(gameID);
+        if (entry == null)
+            throw new IllegalArgumentException("The given game ID has not been reserved: " + gameID);
+        if (!entry.isReservation())
+            throw new IllegalArgumentException("The game has already been created: " + gameID);
+
+        return entry.getReservation();
+    }
+
+    /**
+     * Adds a new game with the ID {@param gameID}, that was created before this
+     * server restarted, to the repository. The ID does not need to be reserved.
+     * @param lightIdentity The identity of the light player.
+     * @param darkIdentity The identity of the dark player.
+     * @return A new game, to which the events of the game before the restart can be applied.
+     */
+    public @Nonnull SavedGame restoreGame(
+            @Nonnull GameID gameID,
+            @Nonnull GameSettings settings,
+            @Nonnull RoyalUrNetIdentity lightIdentity,
+            @Nonnull RoyalUrNetIdentity darkIdentity
+    ) {
+        Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game = settings.create(lightIdentity, darkIdentity);
+        SavedGame savedGame = new SavedGame(gameID, settings, game);
+        synchronized (lock) {
+            if (gameCache.containsKey(gameID))
+                throw new IllegalArgumentException("The game already exists: " + gameID);
+
+            gameCache.put(gameID, GameRepositoryEntry.create(savedGame));
+        }
+        return savedGame.copy();
+    }
+
+    /**
+     * Removes the game {@param gameID}, that could not be restored after it was added by
+     * {@link #restoreGame(GameID, GameSettings, RoyalUrNetIdentity, RoyalUrNetIdentity)}.
+     */
+    public void remove(@Nonnull GameID gameID) {
+        Checks.ensureNonNull(gameID, "gameID");
+        synchronized (lock) {
+            gameCache.remove(gameID);
+        }
+    }
+
     /**
      * Updates the state of a game in the repository.
      * @param game The new game state.
@@ -116,6 +218,21 @@ public class GameRepository {
         }
     }
 
+    /**
+     * @return The number of game IDs that have been reserved, but whose games have not yet been created.
+     */
+    public int countReservations() {
+        synchronized (lock) {
+            int reservations = 0;
+            for (GameRepositoryEntry entry : gameCache.values()) {
+                if (entry.isReservation()) {
+                    reservations += 1;
+                }
+            }
+            return reservations;
+        }
+    }
+
     /**
      * Attempts to find a game or reservation with the given ID.
      * @param id The ID of the game.
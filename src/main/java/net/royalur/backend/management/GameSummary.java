@@ -0,0 +1,34 @@
+package net.royalur.backend.management;
+
+import net.royalur.backend.game.GameID;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A small, immutable description of a game that is being played,
+ * for listing games without touching their state.
+ *
+ * @param gameID The ID of the game.
+ * @param lightName The name of the light player.
+ * @param darkName The name of the dark player.
+ * @param turns The number of moves that have been made in the game.
+ * @param spectators The number of clients spectating the game.
+ * @param startTimeMillis The time that the game started on this server, in epoch milliseconds.
+ */
+public record GameSummary(
+        @Nonnull GameID gameID,
+        @Nonnull String lightName,
+        @Nonnull String darkName,
+        int turns,
+        int spectators,
+        long startTimeMillis
+) {
+
+    public @Nonnull GameSummary withTurns(int turns) {
+        return new GameSummary(gameID, lightName, darkName, turns, spectators, startTimeMillis);
+    }
+
+    public @Nonnull GameSummary withSpectators(int spectators) {
+        return new GameSummary(gameID, lightName, darkName, turns, spectators, startTimeMillis);
+    }
+}
@@ -0,0 +1,149 @@
+package net.royalur.backend.management;
+
+import net.royalur.backend.game.GameID;
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.UnaryOperator;
+
+/**
+ * An index of summaries of the games being played, that is updated
+ * as events happen in each game, so that games can be listed without
+ * copying or locking their state.
+ * <p>
+ * The summaries are kept sorted in each {@link Order}, so that a page of
+ * games can be read by walking the start of a sorted set. Updates are
+ * serialised, but queries are not, and so a game that is being updated
+ * may be missing from the results of a concurrent query.
+ *
+ * @author Paddy Lamont
+ */
+public class GameSummaryIndex {
+
+    /** The orders in which games can be listed. **/
+    public enum Order {
+        /** The most recently started games first. **/
+        NEWEST(Comparator.comparingLong(GameSummary::startTimeMillis).reversed()),
+        /** The games with the most spectators first, and then the newest. **/
+        MOST_SPECTATED(Comparator.comparingInt(GameSummary::spectators).reversed()
+                .thenComparing(Comparator.comparingLong(GameSummary::startTimeMillis).reversed()));
+
+        private final Comparator<GameSummary> comparator;
+
+        Order(Comparator<GameSummary> comparator) {
+            // Break ties by the game ID, so that no two summaries compare as equal.
+            this.comparator = comparator.thenComparingLong(summary -> summary.gameID().getNumericID());
+        }
+    }
+
+    private final Map<GameID, GameSummary> summaries = new ConcurrentHashMap<>();
+    private final Map<Order, NavigableSet<GameSummary>> sorted = new ConcurrentHashMap<>();
+
+    public GameSummaryIndex() {
+        for (Order order : Order.values()) {
+            sorted.put(order, new ConcurrentSkipListSet<>(order.comparator));
+        }
+    }
+
+    /** @return The number of games in this index. **/
+    public int size() {
+        return summaries.size();
+    }
+
+    /** @return The summary of the game {@param gameID}, or null if it is not in this index. **/
+    public @Nullable GameSummary get(@Nonnull GameID gameID) {
+        return summaries.get(gameID);
+    }
+
+    /** Adds the game {@param summary} to this index, replacing any previous summary of the game. **/
+    public synchronized void add(@Nonnull GameSummary summary) {
+        Checks.ensureNonNull(summary, "summary");
+        replace(summaries.put(summary.gameID(), summary), summary);
+    }
+
+    /** Removes the game {@param gameID} from this index. **/
+    public synchronized void remove(@Nonnull GameID gameID) {
+        replace(summaries.remove(gameID), null);
+    }
+
+    /** Records that a move has been made in the game {@param gameID}. **/
+    public void onMove(@Nonnull GameID gameID) {
+        update(gameID, summary -> summary.withTurns(summary.turns() + 1));
+    }
+
+    /** Records that the game {@param gameID} now has {@param spectators} spectators. **/
+    public void onSpectatorsChanged(@Nonnull GameID gameID, int spectators) {
+        update(gameID, summary -> summary.withSpectators(spectators));
+    }
+
+    private synchronized void update(GameID gameID, UnaryOperator<GameSummary> updater) {
+        GameSummary previous = summaries.get(gameID);
+        if (previous == null)
+            return;
+
+        GameSummary summary = updater.apply(previous);
+        summaries.put(gameID, summary);
+        replace(previous, summary);
+    }
+
+    private void replace(@Nullable GameSummary previous, @Nullable GameSummary summary) {
+        for (NavigableSet<GameSummary> set : sorted.values()) {
+            if (previous != null) {
+                set.remove(previous);
+            }
+            if (summary != null) {
+                set.add(summary);
+            }
+        }
+    }
+
+    /**
+     * @return Up to {@param limit} games in the order {@param order},
+     *         starting after the game {@param after}, or from the
+     *         start if {@param after} is null. This takes time in
+     *         proportion to {@param limit}, not to the number of games.
+     */
+    public @Nonnull List<GameSummary> query(@Nonnull Order order, @Nullable GameSummary after, int limit) {
+        Checks.ensureNonNull(order, "order");
+        Checks.ensure(limit >= 0, "limit must be >= 0");
+
+        NavigableSet<GameSummary> set = sorted.get(order);
+        if (after != null) {
+            set = set.tailSet(after, false);
+        }
+        return take(set.iterator(), limit);
+    }
+
+    /**
+     * @return The page {@param page}, counting from 0, of games in the
+     *         order {@param order}, with {@param pageSize} games per page.
+     */
+    public @Nonnull List<GameSummary> page(@Nonnull Order order, int page, int pageSize) {
+        Checks.ensureNonNull(order, "order");
+        Checks.ensure(page >= 0, "page must be >= 0");
+        Checks.ensure(pageSize > 0, "pageSize must be positive");
+
+        Iterator<GameSummary> iterator = sorted.get(order).iterator();
+        for (long skip = (long) page * pageSize; skip > 0 && iterator.hasNext(); --skip) {
+            iterator.next();
+        }
+        return take(iterator, pageSize);
+    }
+
+    private static List<GameSummary> take(Iterator<GameSummary> iterator, int limit) {
+        List<GameSummary> results = new ArrayList<>(Math.min(limit, 64));
+        while (results.size() < limit && iterator.hasNext()) {
+            results.add(iterator.next());
+        }
+        return results;
+    }
+}
@@ -4,55 +4,101 @@ import net.royalur.Game;
 import net.royalur.model.Move;
 import net.royalur.model.Player;
 import net.royalur.model.PlayerState;
+import net.royalur.model.Tile;
 import net.royalur.rules.simple.SimplePiece;
+import net.royalur.backend.ai.BotClient;
+import net.royalur.backend.metrics.DiceFairnessMonitor;
 import net.royalur.backend.network.incoming.PacketIn;
 import net.royalur.backend.network.incoming.PacketInGameMove;
 import net.royalur.backend.network.incoming.PacketInGameRoll;
 import net.royalur.backend.network.outgoing.*;
 import net.royalur.backend.util.Checks;
-import net.royalur.backend.Logging;
+import net.royalur.backend.game.DiceValue;
 import net.royalur.backend.game.GameID;
 import net.royalur.backend.game.RoyalUrNetDiceRoll;
 import net.royalur.backend.game.SavedGame;
 import net.royalur.backend.network.Client;
+import net.royalur.backend.network.ProtocolViolation;
+import net.royalur.backend.replay.GameEventLog;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.logging.Logger;
 
 /**
- * A game with connected clients.
+ * A game with connected clients. Packets are sent to the players
+ * directly, whilst spectators are sent packets asynchronously
+ * through their {@link SpectatorGroup}.
+ * <p>
+ * The game is not thread-safe, and bots play from their own threads,
+ * so everything that reads or changes the game holds the monitor of
+ * this object.
  */
 public class ManagedGame {
 
     public final SavedGame savedGame;
-    public final Client lightClient;
-    public final Client darkClient;
-    public final List<Client> spectators;
-
-    private final Logger logger;
-
-    public ManagedGame(SavedGame savedGame, Client lightClient, Client darkClient, List<Client> spectators) {
+    private volatile Client lightClient;
+    private volatile Client darkClient;
+    public final SpectatorGroup spectators;
+    public final GameEventLog eventLog;
+    private final GameSummaryIndex summaries;
+    private final DiceFairnessMonitor diceMonitor;
+
+    public final GameDiagnostics diagnostics;
+
+    public ManagedGame(
+            SavedGame savedGame,
+            Client lightClient,
+            Client darkClient,
+            SpectatorGroup spectators,
+            GameEventLog eventLog,
+            GameSummaryIndex summaries,
+            DiceFairnessMonitor diceMonitor
+    ) {
         this.savedGame = savedGame;
         this.lightClient = lightClient;
         this.darkClient = darkClient;
-        this.spectators = new ArrayList<>(spectators);
+        this.spectators = spectators;
+        this.eventLog = eventLog;
+        this.summaries = summaries;
+        this.diceMonitor = diceMonitor;
 
-        this.logger = Logging.getGameLogger(savedGame.id);
-    }
-
-    public ManagedGame(SavedGame savedGame, Client lightClient, Client darkClient) {
-        this(savedGame, lightClient, darkClient, Collections.emptyList());
+        this.diagnostics = new GameDiagnostics(savedGame.id);
     }
 
     public GameID getID() {
         return savedGame.id;
     }
 
+    /**
+     * Replaces the client in the seat with the same session as {@param client}
+     * by {@param client}. This is used when a client resumes their session
+     * through a new client object, such as after this process restarted.
+     * @return Whether {@param client} is a player in this game.
+     */
+    public synchronized boolean rebind(@Nonnull Client client) {
+        Checks.ensureNonNull(client, "client");
+
+        if (client.getSessionID().equals(lightClient.getSessionID())) {
+            lightClient = client;
+            return true;
+        }
+        if (client.getSessionID().equals(darkClient.getSessionID())) {
+            darkClient = client;
+            return true;
+        }
+        return false;
+    }
+
+    public Client getLightClient() {
+        return lightClient;
+    }
+
+    public Client getDarkClient() {
+        return darkClient;
+    }
+
     public boolean isPlayer(Client client) {
         return client == lightClient || client == darkClient;
     }
@@ -67,7 +113,7 @@ public class ManagedGame {
         return null;
     }
 
-    public @Nonnull PlayerState getPlayerState(Client client) {
+    public synchronized @Nonnull PlayerState getPlayerState(Client client) {
         if (client == lightClient) {
             return savedGame.game.getLightPlayer();
         } else if (client == darkClient) {
@@ -76,7 +122,7 @@ public class ManagedGame {
         throw new IllegalStateException("The client is not a player in the game: " + client.getSessionID());
     }
 
-    public @Nonnull PlayerState getPlayerState(Player player) {
+    public synchronized @Nonnull PlayerState getPlayerState(Player player) {
         return switch (player) {
             case LIGHT -> savedGame.game.getLightPlayer();
             case DARK -> savedGame.game.getDarkPlayer();
@@ -87,7 +133,12 @@ public class ManagedGame {
     public boolean isInactive() {
         // TODO : Should check the last time they were connected to this game.
         //        They could have changed games and this won't pick that up.
-        return lightClient.isTimedOut() && darkClient.isTimedOut();
+        return isAbsent(lightClient) && isAbsent(darkClient);
+    }
+
+    private static boolean isAbsent(Client client) {
+        // Bots cannot play on their own.
+        return client instanceof BotClient || client.isTimedOut();
     }
 
     private void sendGameMetadataPacket(Client client) {
@@ -102,20 +153,29 @@ public class ManagedGame {
     }
 
     private PacketOutGameState createGameStatePacket() {
-        return new PacketOutGameState(getID(), savedGame.game);
+        return new PacketOutGameState(getID(), savedGame.settings.getTables(), savedGame.game);
     }
 
-    public void onJoin(@Nonnull Client client) {
+    public synchronized void onJoin(@Nonnull Client client) {
         Checks.ensureNonNull(client, "client");
+        diagnostics.fine(GameDiagnostics.Event.JOINED, client, getPlayer(client));
+
+        // Spectators subscribe before they are sent the state, so that they
+        // skip the packets still queued for the spectators who were already here.
+        boolean spectator = (getPlayer(client) == null);
+        if (spectator) {
+            spectators.subscribe(client);
+            summaries.onSpectatorsChanged(getID(), spectators.size());
+        }
+
         sendGameMetadataPacket(client);
         client.send(createGameStatePacket());
-
-        if (getPlayer(client) == null) {
-            spectators.add(client);
+        if (!spectator) {
+            promptBot();
         }
     }
 
-    public void onReconnect(@Nonnull Client client) {
+    public synchronized void onReconnect(@Nonnull Client client) {
         onJoin(client);
 
         if (client == lightClient) {
@@ -125,15 +185,17 @@ public class ManagedGame {
         }
     }
 
-    public void onDisconnect(@Nonnull Client client) {
+    public synchronized void onDisconnect(@Nonnull Client client) {
         Checks.ensureNonNull(client, "client");
+        diagnostics.fine(GameDiagnostics.Event.DISCONNECTED, client, null);
 
         if (client == lightClient) {
             broadcast(new PacketOutGamePlayerStatus(getID(), Player.LIGHT, false));
         } else if (client == darkClient) {
             broadcast(new PacketOutGamePlayerStatus(getID(), Player.DARK, false));
         } else {
-            spectators.remove(client);
+            spectators.unsubscribe(client);
+            summaries.onSpectatorsChanged(getID(), spectators.size());
         }
     }
 
@@ -141,109 +203,133 @@ public class ManagedGame {
         Player player = getPlayer(client);
         if (player == null) {
             client.error("You are not a player in the game");
-            throw new IllegalStateException("Spectator sent a roll packet");
+            throw new ProtocolViolation("Spectator sent a roll packet");
         }
 
         Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game = savedGame.game;
         if (!game.isWaitingForRoll()) {
             client.error("Unexpected dice roll");
-            throw new IllegalStateException("Unexpected dice roll");
+            throw new ProtocolViolation("Unexpected dice roll");
         }
 
         if (player != game.getTurnPlayer().player) {
             client.error("It is not your turn to roll the dice");
-            throw new IllegalStateException(client + " tried to roll when it was not their turn");
+            throw new ProtocolViolation(client + " tried to roll when it was not their turn");
         }
 
         // Roll the dice!
-        game.rollDice();
+        RoyalUrNetDiceRoll roll = game.rollDice();
+        diceMonitor.record(roll);
+        eventLog.appendRoll(player, roll, game);
+        diagnostics.fine(GameDiagnostics.Event.ROLLED, player, DiceValue.count(roll.values));
         broadcast(createGameStatePacket());
+        promptBot();
     }
 
     private void onMovePacket(Client client, PacketInGameMove packet) {
         Player player = getPlayer(client);
         if (player == null) {
             client.error("You are not a player in the game");
-            throw new IllegalStateException("Spectator sent a move packet");
+            throw new ProtocolViolation("Spectator sent a move packet");
         }
 
         Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game = savedGame.game;
         if (!game.isWaitingForMove()) {
             client.error("Unexpected move");
-            throw new IllegalStateException("Unexpected move");
+            throw new ProtocolViolation("Unexpected move");
         }
 
         if (player != game.getTurnPlayer().player) {
             client.error("It is not your turn to move");
-            throw new IllegalStateException(client + " tried to move when it was not their turn");
+            throw new ProtocolViolation(client + " tried to move when it was not their turn");
         }
 
-        // Find the move.
+        // Tiles off the board are used to introduce pieces.
         List<Move<SimplePiece>> moves = game.findAvailableMoves();
+        Tile from = savedGame.settings.getTables().getBoardTile(packet.fromX, packet.fromY);
         Move<SimplePiece> matchingMove = null;
-
-        // TODO : Make this explicit in the protocol instead of this hacky method.
-        if (packet.from == null) {
-            for (Move<SimplePiece> move : moves) {
-                if (move.isIntroducingPiece()) {
-                    matchingMove = move;
-                    break;
-                }
-            }
-        } else {
-            for (Move<SimplePiece> move : moves) {
-                if (!move.isIntroducingPiece() && move.getSource().equals(packet.from)) {
-                    matchingMove = move;
-                    break;
-                }
+        for (Move<SimplePiece> move : moves) {
+            boolean matches = (from == null
+                    ? move.isIntroducingPiece()
+                    : !move.isIntroducingPiece() && move.getSource().equals(from));
+            if (matches) {
+                matchingMove = move;
+                break;
             }
         }
         if (matchingMove == null) {
             client.error("Illegal move");
-            throw new IllegalStateException(client + " tried to make an illegal move");
+            throw new ProtocolViolation(client + " tried to make an illegal move");
         }
 
         // Perform the move.
         game.makeMove(matchingMove);
+        eventLog.appendMove(matchingMove, game);
+        summaries.onMove(getID());
+        diagnostics.fine(GameDiagnostics.Event.MOVED, player, matchingMove);
 
         // Update the clients.
-        broadcast(new PacketOutGameMove(savedGame.id, matchingMove));
+        broadcast(new PacketOutGameMove(savedGame.id, savedGame.settings.getTables(), matchingMove));
         broadcast(createGameStatePacket());
+        promptBot();
     }
 
-    public void onPacket(Client client, PacketIn packet) {
+    /** Lets the player whose turn it is know to play, if they are a bot. **/
+    private void promptBot() {
+        Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game = savedGame.game;
+        if (game.isFinished())
+            return;
+
+        Client turnClient = (game.getTurnPlayer().player == Player.LIGHT ? lightClient : darkClient);
+        if (turnClient instanceof BotClient bot) {
+            bot.onTurn(this);
+        }
+    }
+
+    /**
+     * Handles the packet {@param packet} from {@param client}.
+     */
+    public synchronized void onPacket(Client client, PacketIn packet) {
         try {
             switch (packet.type) {
                 case ROLL -> onRollPacket(client, (PacketInGameRoll) packet);
                 case MOVE -> onMovePacket(client, (PacketInGameMove) packet);
                 default -> {
                     client.error("Unexpected packet " + packet);
-                    logger.warning("Unexpected packet " + packet + " from " + client);
+                    diagnostics.warning("Unexpected packet " + packet + " from " + client);
                 }
             }
+        } catch (ProtocolViolation violation) {
+            // Clients misbehaving is expected, so these are only kept for diagnostics.
+            diagnostics.fine("Rejected " + packet.type + " from " + client + ": " + violation.getMessage());
+            reportError(client, packet);
         } catch (Exception exception) {
-            // Try report the error to the client, before propagating it up the call chain
-            try {
-                client.error("The game server has hit an error");
-            } catch (Exception reportException){
-                String errorMessage = "Exception handling packet of type " + packet.type + " from " + client;
-                RuntimeException propagateError = new RuntimeException(errorMessage);
-                propagateError.addSuppressed(reportException);
-                throw propagateError;
-            }
+            diagnostics.warning(exception + " handling " + packet.type + " from " + client);
+            reportError(client, packet);
+        }
+    }
+
+    private void reportError(Client client, PacketIn packet) {
+        // Try report the error to the client, before propagating it up the call chain
+        try {
+            client.error("The game server has hit an error");
+        } catch (Exception reportException){
+            String errorMessage = "Exception handling packet of type " + packet.type + " from " + client;
+            RuntimeException propagateError = new RuntimeException(errorMessage);
+            propagateError.addSuppressed(reportException);
+            throw propagateError;
         }
     }
 
-    public void stop(@Nonnull String reason) {
+    public synchronized void stop(@Nonnull String reason) {
         broadcast(new PacketOutGameEnd(savedGame.id, reason));
-        logger.info("Stopping game due to: " + reason);
+        diagnostics.info("Stopping game due to: " + reason);
     }
 
+    /** Sends {@param packet} to the players and spectators, writing it out only once. **/
     private void broadcast(@Nonnull PacketOut packet) {
         lightClient.trySend(packet);
         darkClient.trySend(packet);
-        for (Client client : spectators) {
-            client.trySend(packet);
-        }
+        spectators.publish(packet);
     }
 }
@@ -1,20 +1,28 @@
 package net.royalur.backend.management;
 
 import net.royalur.backend.RoyalUrNetIdentity;
+import net.royalur.backend.ai.BotDifficulty;
+import net.royalur.backend.ai.BotEngine;
 import net.royalur.backend.game.GameID;
 import net.royalur.backend.game.GameSettings;
+import net.royalur.backend.jfr.MatchmakingEvent;
 import net.royalur.backend.network.Client;
 import net.royalur.backend.network.incoming.PacketInCreateGame;
 import net.royalur.backend.network.incoming.PacketInFindGame;
 import net.royalur.backend.network.outgoing.PacketOutGamePending;
+import net.royalur.backend.util.Checks;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.security.SecureRandom;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Creates games between players that are searching for a game.
+ * Players that wait too long for an opponent are matched with a bot.
  *
  * @author Paddy Lamont
  */
@@ -24,14 +32,36 @@ public class MatchMaker {
 
     private final GameRepository gameRepository;
     private final GameManager gameManager;
+    private final @Nullable BotEngine bots;
+    private final BotDifficulty botDifficulty;
+    private final int botMatchDelaySecs;
 
     private final Object lock = new Object();
     private Client waitingClient = null;
+    /** Incremented each time a client starts waiting, so that bot matches are only made for the same wait. **/
+    private long waitCount = 0;
     private final Map<GameID, Client> pendingGames = new HashMap<>();
 
-    public MatchMaker(GameRepository gameRepository, GameManager gameManager) {
+    /**
+     * @param bots The engine that plays for bots, or null to never match players with bots.
+     * @param botDifficulty The difficulty of the bots that players are matched with.
+     * @param botMatchDelaySecs The time players wait for an opponent before they
+     *                          are matched with a bot, or 0 to never do so.
+     */
+    public MatchMaker(
+            GameRepository gameRepository,
+            GameManager gameManager,
+            @Nullable BotEngine bots,
+            BotDifficulty botDifficulty,
+            int botMatchDelaySecs
+    ) {
+        Checks.ensureNonNull(botDifficulty, "botDifficulty");
+        Checks.ensure(botMatchDelaySecs >= 0, "botMatchDelaySecs must be non-negative");
         this.gameRepository = gameRepository;
         this.gameManager = gameManager;
+        this.bots = bots;
+        this.botDifficulty = botDifficulty;
+        this.botMatchDelaySecs = botMatchDelaySecs;
     }
 
     /** @return whether {@param client} is currently waiting for a match. **/
@@ -103,10 +133,14 @@ public class MatchMaker {
             if (known == null)
                 throw new IllegalArgumentException("The game ID is not pending: " + gameID);
         }
-        startGame(gameID, client1, client2);
+        startGame(gameID, client1, client2, "invite");
     }
 
-    private void startGame(GameID gameID, Client client1, Client client2) {
+    /**
+     * Starts the game {@param gameID} between the two clients, who found each other through {@param source}.
+     */
+    private void startGame(GameID gameID, Client client1, Client client2, String source) {
+        MatchmakingEvent.paired(gameID, source);
         boolean flag = RANDOM.nextBoolean();
         Client lightClient = (flag ? client1 : client2);
         Client darkClient = (flag ? client2 : client1);
@@ -122,6 +156,8 @@ public class MatchMaker {
         synchronized (lock) {
             if(waitingClient == null) {
                 waitingClient = client;
+                waitCount += 1;
+                scheduleBotMatch(client, waitCount);
                 return;
             }
             if (waitingClient == client)
@@ -132,7 +168,30 @@ public class MatchMaker {
         }
 
         GameID gameID = gameManager.reserveGameID(GameSettings.STANDARD, client);
-        startGame(gameID, opponentClient, client);
+        startGame(gameID, opponentClient, client, "queue");
+    }
+
+    private void scheduleBotMatch(Client client, long wait) {
+        if (bots == null || botMatchDelaySecs == 0)
+            return;
+
+        bots.scheduleIn(() -> matchWithBot(client, wait), botMatchDelaySecs, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Starts a game between {@param client} and a bot, if they are still waiting
+     * in the match-making queue since they started their wait {@param wait}.
+     */
+    private void matchWithBot(Client client, long wait) {
+        synchronized (lock) {
+            if (waitingClient != client || waitCount != wait)
+                return;
+
+            waitingClient = null;
+        }
+
+        GameID gameID = gameManager.reserveGameID(GameSettings.STANDARD, client);
+        startGame(gameID, client, bots.createBot(botDifficulty), "bot");
     }
 
     /**
@@ -142,6 +201,13 @@ public class MatchMaker {
         return gameRepository.reserveGameID(GameSettings.STANDARD, identity);
     }
 
+    /**
+     * Reserves {@param count} game IDs for the bot at once.
+     */
+    public @Nonnull List<GameID> reserveBotGames(RoyalUrNetIdentity identity, int count) {
+        return gameRepository.reserveGameIDs(GameSettings.STANDARD, identity, count);
+    }
+
     public void onClientDisconnect(Client client) {
         synchronized (lock) {
             if (waitingClient == client) {
@@ -0,0 +1,192 @@
+package net.royalur.backend.management;
+
+import net.royalur.backend.Logging;
+import net.royalur.backend.metrics.Counter;
+import net.royalur.backend.metrics.Metrics;
+import net.royalur.backend.network.outgoing.PacketOut;
+import net.royalur.backend.util.Checks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Delivers packets to the spectators of games on its own worker
+ * threads, so that the players of a game are never held up by
+ * sending packets to a large audience.
+ * <p>
+ * Each group of spectators is drained by one task at a time, so
+ * every spectator receives the packets of a game in order, starting
+ * with the first packet published after they joined. The
+ * spectators of a group are split into chunks that are sent to
+ * in parallel. If a cadence is set, the packets published within
+ * each period are coalesced, so that spectators only receive the
+ * latest game state rather than every intermediate state.
+ *
+ * @author Paddy Lamont
+ */
+public class SpectatorDelivery {
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+
+    private static final Logger logger = Logging.getLogger("spectators");
+
+    private final int chunkSize;
+    private final long cadenceMs;
+    private final ForkJoinPool workers;
+    private final ScheduledExecutorService cadenceTimer;
+
+    private final Counter deliveredPackets = Metrics.counter("spectators.packets.delivered");
+    private final Counter coalescedPackets = Metrics.counter("spectators.packets.coalesced");
+
+    /**
+     * @param threads The number of threads used to send packets to spectators.
+     * @param chunkSize The maximum number of spectators that a single task sends packets to.
+     * @param cadenceMs The period over which packets are coalesced, or 0 to deliver packets immediately.
+     */
+    public SpectatorDelivery(int threads, int chunkSize, long cadenceMs) {
+        Checks.ensure(threads > 0, "threads must be positive");
+        Checks.ensure(chunkSize > 0, "chunkSize must be positive");
+        Checks.ensure(cadenceMs >= 0, "cadenceMs must be non-negative");
+
+        this.chunkSize = chunkSize;
+        this.cadenceMs = cadenceMs;
+        this.workers = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("spectator-delivery-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        this.cadenceTimer = (cadenceMs > 0 ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "spectator-cadence");
+            thread.setDaemon(true);
+            return thread;
+        }) : null);
+    }
+
+    /**
+     * @return A new, empty, group of spectators whose packets are delivered by this.
+     */
+    public SpectatorGroup createGroup() {
+        return new SpectatorGroup(this);
+    }
+
+    /**
+     * Schedules the packets pending for {@param group} to be delivered.
+     */
+    void scheduleDrain(SpectatorGroup group) {
+        try {
+            if (cadenceTimer != null) {
+                cadenceTimer.schedule(() -> workers.execute(() -> drain(group)), cadenceMs, TimeUnit.MILLISECONDS);
+            } else {
+                workers.execute(() -> drain(group));
+            }
+        } catch (RejectedExecutionException e) {
+            // We are shutting down, so the spectators will be disconnected anyway.
+        }
+    }
+
+    private void drain(SpectatorGroup group) {
+        List<SpectatorGroup.QueuedPacket> packets;
+        while ((packets = group.takePending()) != null) {
+            if (cadenceTimer == null) {
+                deliver(group, packets);
+                continue;
+            }
+
+            deliver(group, coalesce(packets));
+
+            // Packets published since are delivered after another period.
+            if (group.releaseDrain()) {
+                scheduleDrain(group);
+            }
+            return;
+        }
+    }
+
+    private void deliver(SpectatorGroup group, List<SpectatorGroup.QueuedPacket> packets) {
+        List<SpectatorGroup.Subscriber> subscribers = group.getSubscribers();
+        List<ForkJoinTask<?>> chunks = new ArrayList<>();
+        for (int start = 0; start < subscribers.size(); start += chunkSize) {
+            List<SpectatorGroup.Subscriber> chunk = subscribers.subList(
+                    start, Math.min(subscribers.size(), start + chunkSize)
+            );
+            chunks.add(ForkJoinTask.adapt(() -> deliver(chunk, packets)));
+        }
+
+        try {
+            ForkJoinTask.invokeAll(chunks);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error delivering packets to spectators", e);
+        }
+    }
+
+    private void deliver(List<SpectatorGroup.Subscriber> subscribers, List<SpectatorGroup.QueuedPacket> packets) {
+        long delivered = 0;
+        for (SpectatorGroup.Subscriber subscriber : subscribers) {
+            for (SpectatorGroup.QueuedPacket packet : packets) {
+                // Spectators are sent the state when they join, which includes the packets published before.
+                if (packet.sequence() < subscriber.firstSequence())
+                    continue;
+
+                subscriber.client().trySend(packet.packet());
+                delivered += 1;
+            }
+        }
+        deliveredPackets.add(delivered);
+    }
+
+    /**
+     * Removes the moves and game states that are superseded by a later game state.
+     * Spectators use moves only to animate the transition to the following state.
+     */
+    private List<SpectatorGroup.QueuedPacket> coalesce(List<SpectatorGroup.QueuedPacket> packets) {
+        int lastStateIndex = -1;
+        for (int index = packets.size() - 1; index >= 0; --index) {
+            if (packets.get(index).packet().type == PacketOut.Type.GAME_STATE) {
+                lastStateIndex = index;
+                break;
+            }
+        }
+        if (lastStateIndex <= 0)
+            return packets;
+
+        List<SpectatorGroup.QueuedPacket> coalesced = new ArrayList<>(packets.size());
+        for (int index = 0; index < packets.size(); ++index) {
+            SpectatorGroup.QueuedPacket packet = packets.get(index);
+            PacketOut.Type type = packet.packet().type;
+            boolean superseded = index < lastStateIndex && (
+                    type == PacketOut.Type.GAME_STATE || type == PacketOut.Type.GAME_MOVE
+            );
+            if (!superseded) {
+                coalesced.add(packet);
+            }
+        }
+        coalescedPackets.add(packets.size() - coalesced.size());
+        return coalesced;
+    }
+
+    /**
+     * Stops delivering packets, after waiting a short time for queued packets to be delivered.
+     */
+    public void stop() {
+        try {
+            if (cadenceTimer != null) {
+                cadenceTimer.shutdown();
+                cadenceTimer.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            }
+            workers.shutdown();
+            workers.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package net.royalur.backend.management;
+
+import net.royalur.backend.network.Client;
+import net.royalur.backend.network.outgoing.PacketOut;
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The spectators of a single game, and the packets that
+ * are waiting to be delivered to them.
+ * <p>
+ * Each packet is numbered as it is published, and each spectator
+ * remembers the number of the first packet published after they
+ * subscribed. This way, spectators who subscribe whilst packets are
+ * waiting to be delivered only receive the packets that follow the
+ * state they were sent when they joined.
+ *
+ * @author Paddy Lamont
+ */
+public class SpectatorGroup {
+
+    private final SpectatorDelivery delivery;
+    /** The first sequence number to deliver to each spectator. **/
+    private final Map<Client, Long> subscribers = new ConcurrentHashMap<>();
+
+    private final Object lock = new Object();
+    private List<QueuedPacket> pending = new ArrayList<>();
+    private long nextSequence;
+    private boolean drainScheduled;
+
+    SpectatorGroup(@Nonnull SpectatorDelivery delivery) {
+        Checks.ensureNonNull(delivery, "delivery");
+        this.delivery = delivery;
+    }
+
+    public void subscribe(@Nonnull Client client) {
+        Checks.ensureNonNull(client, "client");
+        synchronized (lock) {
+            subscribers.put(client, nextSequence);
+        }
+    }
+
+    public void unsubscribe(@Nonnull Client client) {
+        Checks.ensureNonNull(client, "client");
+        subscribers.remove(client);
+    }
+
+    public int size() {
+        return subscribers.size();
+    }
+
+    /**
+     * Queues the packet {@param packet} to be delivered to every
+     * spectator. This does not block on the delivery.
+     */
+    public void publish(@Nonnull PacketOut packet) {
+        Checks.ensureNonNull(packet, "packet");
+        if (subscribers.isEmpty())
+            return;
+
+        // The packet is written out once, before taking the lock, and is then shared by every spectator.
+        packet.write();
+        boolean scheduleDrain;
+        synchronized (lock) {
+            pending.add(new QueuedPacket(packet, nextSequence++));
+            scheduleDrain = !drainScheduled;
+            drainScheduled = true;
+        }
+        if (scheduleDrain) {
+            delivery.scheduleDrain(this);
+        }
+    }
+
+    /**
+     * @return The packets that are waiting to be delivered, or null if there
+     *         are none, in which case this group may be scheduled again.
+     */
+    List<QueuedPacket> takePending() {
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                drainScheduled = false;
+                return null;
+            }
+
+            List<QueuedPacket> packets = pending;
+            pending = new ArrayList<>();
+            return packets;
+        }
+    }
+
+    /**
+     * Called after a drain when packets are coalesced.
+     *
+     * @return Whether more packets are pending, in which case another
+     *         drain must be scheduled, or false if this group may be
+     *         scheduled again.
+     */
+    boolean releaseDrain() {
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                drainScheduled = false;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return A snapshot of the current spectators.
+     */
+    List<Subscriber> getSubscribers() {
+        List<Subscriber> snapshot = new ArrayList<>(subscribers.size());
+        for (Map.Entry<Client, Long> entry : subscribers.entrySet()) {
+            snapshot.add(new Subscriber(entry.getKey(), entry.getValue()));
+        }
+        return snapshot;
+    }
+
+    /**
+     * A spectator, and the sequence number of the first packet they should receive.
+     */
+    record Subscriber(@Nonnull Client client, long firstSequence) {}
+
+    /**
+     * A packet that has been written out once, to be sent to many spectators.
+     */
+    record QueuedPacket(@Nonnull PacketOut packet, long sequence) {}
+}
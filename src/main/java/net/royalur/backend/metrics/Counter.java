@@ -0,0 +1,44 @@
+package net.royalur.backend.metrics;
+
+import net.royalur.backend.util.Checks;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count that is cheap to update from many threads.
+ */
+public class Counter {
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+
+    public Counter(String name) {
+        Checks.ensureNonNull(name, "name");
+        this.name = name;
+    }
+
+    /** @return The name of this counter. **/
+    public String getName() {
+        return name;
+    }
+
+    /** Increment this counter by one. **/
+    public void increment() {
+        count.increment();
+    }
+
+    /** Increment this counter by {@param amount}. **/
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    /** @return The current value of this counter. **/
+    public long get() {
+        return count.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "Counter(" + name + "=" + get() + ")";
+    }
+}
@@ -0,0 +1,294 @@
+package net.royalur.backend.metrics;
+
+import net.royalur.backend.Logging;
+import net.royalur.backend.game.DiceValue;
+import net.royalur.backend.game.RoyalUrNetDice;
+import net.royalur.backend.game.RoyalUrNetDiceRoll;
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import java.util.logging.Logger;
+
+/**
+ * Watches every roll of the dice in games, so that we can check whether
+ * the dice are fair. The face of each dice and the total of each roll
+ * are counted in striped counters, and the most recent rolls are kept
+ * in a fixed-size ring, so that recording a roll never takes a lock.
+ * <p>
+ * The rolls in the ring are tested in overlapping windows, away from the
+ * roll path. Each window is tested for whether the totals and faces
+ * follow their expected distributions, whether the dice switch between
+ * up and down as often as expected, and whether each total depends on the
+ * last. A window is anomalous if any test gives a p-value below the alert
+ * threshold. Some fair windows will be anomalous by chance, at a rate of
+ * roughly four times the threshold, and so alerts should be investigated
+ * rather than trusted outright.
+ *
+ * @author Paddy Lamont
+ */
+public class DiceFairnessMonitor {
+
+    private static final Logger logger = Logging.getLogger("dice");
+
+    private static final int DICE = RoyalUrNetDice.DICE_COUNT;
+    private static final DiceValue[] FACE_VALUES = DiceValue.values();
+    private static final int FACES = FACE_VALUES.length;
+    private static final int FACE_BITS = 3;
+    private static final int MIN_WINDOW_SIZE = 64;
+    private static final double PPM = 1_000_000;
+
+    private final int windowSize;
+    private final double alertPValue;
+
+    private final LongAdder[] faceCounts = new LongAdder[DICE * FACES];
+    private final LongAdder[] totalCounts = new LongAdder[DICE + 1];
+
+    /** The faces of the most recent rolls, packed into one int per roll. **/
+    private final AtomicIntegerArray recentRolls;
+    private final AtomicLong rollCount = new AtomicLong();
+
+    private final Counter windowsCounter = Metrics.counter("dice.windows");
+    private final Counter anomaliesCounter = Metrics.counter("dice.anomalous-windows");
+
+    /** The roll count when the last window was tested. Only accessed whilst synchronized. **/
+    private long lastCheckedRollCount;
+    private volatile @Nullable WindowResult lastResult;
+
+    /**
+     * @param windowSize The number of rolls tested in each window, which must be a power of two.
+     * @param alertPValue The p-value below which a window is anomalous.
+     */
+    public DiceFairnessMonitor(int windowSize, double alertPValue) {
+        Checks.ensure(windowSize >= MIN_WINDOW_SIZE, "windowSize must be at least " + MIN_WINDOW_SIZE);
+        Checks.ensure(Integer.bitCount(windowSize) == 1, "windowSize must be a power of two");
+        Checks.ensure(alertPValue > 0 && alertPValue < 1, "alertPValue must be between 0 and 1");
+
+        this.windowSize = windowSize;
+        this.alertPValue = alertPValue;
+        this.recentRolls = new AtomicIntegerArray(windowSize);
+        for (int index = 0; index < faceCounts.length; ++index) {
+            faceCounts[index] = new LongAdder();
+        }
+        for (int index = 0; index < totalCounts.length; ++index) {
+            totalCounts[index] = new LongAdder();
+        }
+    }
+
+    /**
+     * Reports the rolls recorded and the results of the last window through
+     * the global dice gauges. Only the monitor of the server should do this.
+     */
+    public void registerGauges() {
+        Metrics.gauge("dice.rolls", rollCount::get);
+        Metrics.gauge("dice.window.min-p-ppm", () -> toPartsPerMillion(WindowResult::getMinPValue));
+        Metrics.gauge("dice.window.totals-p-ppm", () -> toPartsPerMillion(WindowResult::totalsPValue));
+        Metrics.gauge("dice.window.faces-p-ppm", () -> toPartsPerMillion(WindowResult::facesPValue));
+        Metrics.gauge("dice.window.runs-p-ppm", () -> toPartsPerMillion(WindowResult::runsPValue));
+        Metrics.gauge("dice.window.serial-p-ppm", () -> toPartsPerMillion(WindowResult::serialPValue));
+    }
+
+    private long toPartsPerMillion(ToDoubleFunction<WindowResult> pValue) {
+        WindowResult result = lastResult;
+        return result == null ? (long) PPM : Math.round(pValue.applyAsDouble(result) * PPM);
+    }
+
+    /** Records the roll {@param roll}. This is safe to call from any thread. **/
+    public void record(@Nonnull RoyalUrNetDiceRoll roll) {
+        Checks.ensureNonNull(roll, "roll");
+        Checks.ensure(roll.values.length == DICE, "Expected " + DICE + " dice");
+
+        int packed = 0;
+        int total = 0;
+        for (int dice = 0; dice < DICE; ++dice) {
+            DiceValue value = roll.values[dice];
+            faceCounts[dice * FACES + value.ordinal()].increment();
+            packed |= value.ordinal() << (dice * FACE_BITS);
+            total += (value.isUp() ? 1 : 0);
+        }
+        totalCounts[total].increment();
+
+        // A roll may be overwritten whilst a window is read, which only mixes a newer roll into the window.
+        long sequence = rollCount.getAndIncrement();
+        recentRolls.lazySet((int) (sequence & (windowSize - 1)), packed);
+    }
+
+    /** @return The number of rolls recorded. **/
+    public long getRollCount() {
+        return rollCount.get();
+    }
+
+    /** @return The number of times the dice at {@param dice} has landed on {@param value}. **/
+    public long getFaceCount(int dice, @Nonnull DiceValue value) {
+        return faceCounts[dice * FACES + value.ordinal()].sum();
+    }
+
+    /** @return The number of rolls that totalled {@param total}. **/
+    public long getTotalCount(int total) {
+        return totalCounts[total].sum();
+    }
+
+    /** @return The results of testing the last window, or null if no window has been tested. **/
+    public @Nullable WindowResult getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * Tests the most recent window of rolls, if at least half a window
+     * of rolls have been recorded since the last window was tested.
+     *
+     * @return The results of the test, or null if no window was tested.
+     */
+    public synchronized @Nullable WindowResult check() {
+        long end = rollCount.get();
+        if (end < windowSize || end - lastCheckedRollCount < windowSize / 2)
+            return null;
+
+        int[] window = new int[windowSize];
+        for (int index = 0; index < windowSize; ++index) {
+            window[index] = recentRolls.get((int) ((end - windowSize + index) & (windowSize - 1)));
+        }
+        lastCheckedRollCount = end;
+
+        WindowResult result = test(window);
+        lastResult = result;
+        windowsCounter.increment();
+        if (result.getMinPValue() < alertPValue) {
+            anomaliesCounter.increment();
+            logger.warning("The last " + windowSize + " rolls of the dice are anomalous: " + result);
+        }
+        return result;
+    }
+
+    /**
+     * @return The results of testing the rolls in {@param window}, where
+     *         each roll is packed in the form used by {@link #record}.
+     */
+    static @Nonnull WindowResult test(@Nonnull int[] window) {
+        int rolls = window.length;
+        long[] totals = new long[DICE + 1];
+        long[] faces = new long[DICE * FACES];
+        int[] rollTotals = new int[rolls];
+
+        long ups = 0;
+        long runs = 0;
+        boolean lastUp = false;
+        for (int index = 0; index < rolls; ++index) {
+            int total = 0;
+            for (int dice = 0; dice < DICE; ++dice) {
+                int face = (window[index] >>> (dice * FACE_BITS)) & ((1 << FACE_BITS) - 1);
+                boolean up = FACE_VALUES[face].isUp();
+                faces[dice * FACES + face] += 1;
+                total += (up ? 1 : 0);
+
+                // The dice are read as one sequence of ups and downs, in the order they were rolled.
+                if ((index == 0 && dice == 0) || up != lastUp) {
+                    runs += 1;
+                }
+                lastUp = up;
+            }
+            ups += total;
+            totals[total] += 1;
+            rollTotals[index] = total;
+        }
+
+        // Each total is the number of dice up out of four, with each dice up half of the time.
+        double totalsStatistic = 0;
+        for (int total = 0; total <= DICE; ++total) {
+            double expected = rolls * binomial(DICE, total) / (double) (1 << DICE);
+            totalsStatistic += square(totals[total] - expected) / expected;
+        }
+
+        // Each face of each dice is equally likely.
+        double facesStatistic = 0;
+        double expectedFace = (double) rolls / FACES;
+        for (long count : faces) {
+            facesStatistic += square(count - expectedFace) / expectedFace;
+        }
+
+        // The Wald-Wolfowitz runs test, on whether the dice switch between up and down as often as expected.
+        double count = (double) rolls * DICE;
+        double downs = count - ups;
+        double runsPValue = 1;
+        if (ups > 0 && downs > 0) {
+            double expectedRuns = 2 * ups * downs / count + 1;
+            double variance = 2 * ups * downs * (2 * ups * downs - count) / (count * count * (count - 1));
+            runsPValue = Statistics.normalTwoSidedPValue((runs - expectedRuns) / Math.sqrt(variance));
+        }
+
+        return new WindowResult(
+                rolls,
+                Statistics.chiSquarePValue(totalsStatistic, DICE),
+                Statistics.chiSquarePValue(facesStatistic, DICE * (FACES - 1)),
+                runsPValue,
+                Statistics.normalTwoSidedPValue(serialCorrelation(rollTotals) * Math.sqrt(rolls))
+        );
+    }
+
+    /** @return The correlation between each of {@param values} and the next. **/
+    private static double serialCorrelation(int[] values) {
+        double mean = 0;
+        for (int value : values) {
+            mean += value;
+        }
+        mean /= values.length;
+
+        double covariance = 0;
+        double variance = 0;
+        for (int index = 0; index < values.length; ++index) {
+            double deviation = values[index] - mean;
+            variance += deviation * deviation;
+            if (index + 1 < values.length) {
+                covariance += deviation * (values[index + 1] - mean);
+            }
+        }
+        return variance == 0 ? 1 : covariance / variance;
+    }
+
+    private static long binomial(int n, int k) {
+        long value = 1;
+        for (int index = 0; index < k; ++index) {
+            value = value * (n - index) / (index + 1);
+        }
+        return value;
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    /**
+     * The p-values of the tests of a window of rolls.
+     *
+     * @param rolls The number of rolls in the window.
+     * @param totalsPValue The p-value of the chi-square test of the totals of the rolls.
+     * @param facesPValue The p-value of the chi-square test of the faces of each dice.
+     * @param runsPValue The p-value of the runs test of the sequence of ups and downs.
+     * @param serialPValue The p-value of the correlation between the totals of consecutive rolls.
+     */
+    public record WindowResult(
+            int rolls,
+            double totalsPValue,
+            double facesPValue,
+            double runsPValue,
+            double serialPValue
+    ) {
+
+        /** @return The lowest p-value of the tests. **/
+        public double getMinPValue() {
+            return Math.min(Math.min(totalsPValue, facesPValue), Math.min(runsPValue, serialPValue));
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%d rolls, totals p=%.3g, faces p=%.3g, runs p=%.3g, serial p=%.3g",
+                    rolls, totalsPValue, facesPValue, runsPValue, serialPValue
+            );
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package net.royalur.backend.metrics;
+
+import net.royalur.backend.util.Checks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how many recorded values fall into each of a fixed set of buckets,
+ * so that the distribution of values such as latencies can be read without
+ * keeping every value. Recording a value does not take a lock.
+ *
+ * @author Paddy Lamont
+ */
+public class Histogram {
+
+    private final String name;
+    private final long[] bounds;
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param bounds The inclusive upper bound of each bucket, in ascending order.
+     *               Values above the last bound are counted in an extra bucket.
+     */
+    public Histogram(String name, long[] bounds) {
+        Checks.ensureNonNull(name, "name");
+        Checks.ensureNonNull(bounds, "bounds");
+        Checks.ensure(bounds.length > 0, "There must be at least one bucket");
+        for (int index = 1; index < bounds.length; ++index) {
+            Checks.ensure(bounds[index] > bounds[index - 1], "The bounds must be ascending");
+        }
+
+        this.name = name;
+        this.bounds = bounds.clone();
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int index = 0; index < buckets.length; ++index) {
+            buckets[index] = new LongAdder();
+        }
+    }
+
+    /**
+     * @return Bounds that follow a 1, 2, 5 sequence from {@param min} up to at
+     *         least {@param max}, which gives each bucket a similar relative width.
+     */
+    public static long[] exponentialBounds(long min, long max) {
+        Checks.ensure(min > 0, "min must be positive");
+        Checks.ensure(max >= min, "max must be at least min");
+
+        List<Long> bounds = new ArrayList<>();
+        for (long decade = min; bounds.isEmpty() || bounds.get(bounds.size() - 1) < max; decade *= 10) {
+            bounds.add(decade);
+            bounds.add(decade * 2);
+            bounds.add(decade * 5);
+        }
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /** @return The name of this histogram. **/
+    public String getName() {
+        return name;
+    }
+
+    /** Records the value {@param value}, where negative values are recorded as zero. **/
+    public void record(long value) {
+        value = Math.max(0, value);
+        int low = 0;
+        int high = bounds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bounds[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        buckets[low].increment();
+        count.increment();
+        max.accumulate(value);
+    }
+
+    /** @return The number of values that have been recorded. **/
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** @return The largest value that has been recorded, or 0 if none have been recorded. **/
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return An upper bound on the {@param quantile} quantile of the recorded values,
+     *         which is the upper bound of the bucket that contains the quantile, or 0
+     *         if no values have been recorded.
+     */
+    public long getQuantile(double quantile) {
+        Checks.ensure(quantile >= 0 && quantile <= 1, "quantile must be between 0 and 1");
+
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int index = 0; index < buckets.length; ++index) {
+            counts[index] = buckets[index].sum();
+            total += counts[index];
+        }
+        if (total == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int index = 0; index < bounds.length; ++index) {
+            seen += counts[index];
+            if (seen >= target)
+                return Math.min(bounds[index], getMax());
+        }
+        return getMax();
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram(" + name + ", count=" + getCount() + ", p50=" + getQuantile(0.5)
+                + ", p99=" + getQuantile(0.99) + ", max=" + getMax() + ")";
+    }
+}
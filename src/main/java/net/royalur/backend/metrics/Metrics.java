@@ -0,0 +1,70 @@
+package net.royalur.backend.metrics;
+
+import net.royalur.backend.util.Checks;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * A process-wide registry of counters, gauges and histograms that
+ * describe what the server is currently doing.
+ *
+ * @author Paddy Lamont
+ */
+public class Metrics {
+
+    private static final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private static final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+
+    /**
+     * @return The counter with the given name, creating it if it does not yet exist.
+     */
+    public static Counter counter(String name) {
+        Checks.ensureNonNull(name, "name");
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    /**
+     * Registers a gauge that reports the value from {@param supplier}
+     * whenever it is read. Replaces any gauge with the same name.
+     */
+    public static void gauge(String name, LongSupplier supplier) {
+        Checks.ensureNonNull(name, "name");
+        Checks.ensureNonNull(supplier, "supplier");
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * @return The histogram with the given name, creating it with the bucket
+     *         bounds {@param bounds} if it does not yet exist.
+     */
+    public static Histogram histogram(String name, long[] bounds) {
+        Checks.ensureNonNull(name, "name");
+        return histograms.computeIfAbsent(name, key -> new Histogram(key, bounds));
+    }
+
+    /**
+     * @return The current value of every counter and gauge, and a summary
+     *         of every histogram, sorted by name.
+     */
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Counter counter : counters.values()) {
+            values.put(counter.getName(), counter.get());
+        }
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().getAsLong());
+        }
+        for (Histogram histogram : histograms.values()) {
+            values.put(histogram.getName() + ".count", histogram.getCount());
+            values.put(histogram.getName() + ".p50", histogram.getQuantile(0.5));
+            values.put(histogram.getName() + ".p90", histogram.getQuantile(0.9));
+            values.put(histogram.getName() + ".p99", histogram.getQuantile(0.99));
+            values.put(histogram.getName() + ".max", histogram.getMax());
+        }
+        return values;
+    }
+}
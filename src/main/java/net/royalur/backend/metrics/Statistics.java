@@ -0,0 +1,99 @@
+package net.royalur.backend.metrics;
+
+import net.royalur.backend.util.Checks;
+
+/**
+ * The distributions used to turn test statistics into p-values.
+ *
+ * @author Paddy Lamont
+ */
+public final class Statistics {
+
+    private static final int MAX_ITERATIONS = 1000;
+    private static final double EPSILON = 1e-15;
+    private static final double TINY = 1e-300;
+
+    private static final double[] LANCZOS = {
+            76.18009172947146, -86.50532032941677, 24.01409824083091,
+            -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5
+    };
+
+    private Statistics() {}
+
+    /**
+     * @return The chance of a chi-square statistic of at least {@param statistic}
+     *         with {@param degreesOfFreedom} degrees of freedom.
+     */
+    public static double chiSquarePValue(double statistic, int degreesOfFreedom) {
+        Checks.ensure(degreesOfFreedom > 0, "degreesOfFreedom must be positive");
+        if (statistic <= 0)
+            return 1;
+        return upperRegularizedGamma(degreesOfFreedom / 2.0, statistic / 2.0);
+    }
+
+    /**
+     * @return The chance of a standard normal value at least as far from zero as {@param z}.
+     */
+    public static double normalTwoSidedPValue(double z) {
+        return Math.min(1, erfc(Math.abs(z) / Math.sqrt(2)));
+    }
+
+    /** @return The complementary error function of {@param x}, with a relative error below 1.2e-7. **/
+    private static double erfc(double x) {
+        double z = Math.abs(x);
+        double t = 1 / (1 + 0.5 * z);
+        double result = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? result : 2 - result;
+    }
+
+    private static double logGamma(double x) {
+        double y = x;
+        double base = x + 5.5;
+        base -= (x + 0.5) * Math.log(base);
+        double series = 1.000000000190015;
+        for (double coefficient : LANCZOS) {
+            y += 1;
+            series += coefficient / y;
+        }
+        return -base + Math.log(2.5066282746310005 * series / x);
+    }
+
+    /** @return Q(a, x), the upper regularized incomplete gamma function. **/
+    private static double upperRegularizedGamma(double a, double x) {
+        double logPrefix = -x + a * Math.log(x) - logGamma(a);
+        if (x < a + 1) {
+            // The series for the lower function converges quickly here.
+            double term = 1 / a;
+            double sum = term;
+            for (int n = 1; n < MAX_ITERATIONS; ++n) {
+                term *= x / (a + n);
+                sum += term;
+                if (Math.abs(term) < Math.abs(sum) * EPSILON)
+                    break;
+            }
+            return Math.max(0, 1 - sum * Math.exp(logPrefix));
+        }
+
+        // Otherwise, the continued fraction for the upper function does, evaluated by Lentz's method.
+        double b = x + 1 - a;
+        double c = 1 / TINY;
+        double d = 1 / b;
+        double fraction = d;
+        for (int n = 1; n < MAX_ITERATIONS; ++n) {
+            double an = -n * (n - a);
+            b += 2;
+            d = an * d + b;
+            d = (Math.abs(d) < TINY ? TINY : d);
+            c = b + an / c;
+            c = (Math.abs(c) < TINY ? TINY : c);
+            d = 1 / d;
+            double delta = d * c;
+            fraction *= delta;
+            if (Math.abs(delta - 1) < EPSILON)
+                break;
+        }
+        return Math.exp(logPrefix) * fraction;
+    }
+}
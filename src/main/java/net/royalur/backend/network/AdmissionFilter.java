@@ -0,0 +1,101 @@
+package net.royalur.backend.network;
+
+import net.royalur.backend.util.Checks;
+import org.eclipse.jetty.websocket.servlet.ServletUpgradeRequest;
+import org.eclipse.jetty.websocket.servlet.ServletUpgradeResponse;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Applies {@link ConnectionAdmission} to new Engine.io handshakes.
+ * Requests that belong to an existing Engine.io session, identified
+ * by their "sid" query parameter, are always let through.
+ *
+ * @author Paddy Lamont
+ */
+public class AdmissionFilter implements Filter {
+
+    /**
+     * The query parameter Engine.io uses to identify an existing session.
+     */
+    public static final String SESSION_ID_PARAM = "sid";
+
+    private final ConnectionAdmission admission;
+
+    public AdmissionFilter(ConnectionAdmission admission) {
+        Checks.ensureNonNull(admission, "admission");
+        this.admission = admission;
+    }
+
+    @Override
+    public void doFilter(
+            ServletRequest request,
+            ServletResponse response,
+            FilterChain chain
+    ) throws IOException, ServletException {
+
+        if (!(request instanceof HttpServletRequest))
+            throw new IllegalArgumentException("Expected a request of type " + HttpServletRequest.class);
+        if (!(response instanceof HttpServletResponse))
+            throw new IllegalArgumentException("Expected a response of type " + HttpServletResponse.class);
+
+        // WebSocket upgrades are admitted when the WebSocket is created.
+        HttpServletRequest req = (HttpServletRequest) request;
+        if (req.getParameter(SESSION_ID_PARAM) != null || isWebSocketUpgrade(req)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        ConnectionAdmission.Decision decision = admission.admit(req.getRemoteAddr());
+        if (decision == ConnectionAdmission.Decision.ADMIT) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        HttpServletResponse resp = (HttpServletResponse) response;
+        int retryAfterSecs = admission.getRetryAfterSecs(decision);
+        resp.setHeader(ConnectionAdmission.RETRY_AFTER_HEADER, Integer.toString(retryAfterSecs));
+        resp.sendError(ConnectionAdmission.NOT_ADMITTED_STATUS, "Server busy, retry in " + retryAfterSecs + "s");
+    }
+
+    /**
+     * Applies {@param admission} to the WebSocket upgrade {@param request},
+     * sending an error response if the upgrade is not admitted.
+     *
+     * @return Whether the WebSocket should be created.
+     */
+    public static boolean admitUpgrade(
+            ConnectionAdmission admission,
+            ServletUpgradeRequest request,
+            ServletUpgradeResponse response
+    ) {
+        ConnectionAdmission.Decision decision = admission.admit(request.getRemoteAddress());
+        if (decision == ConnectionAdmission.Decision.ADMIT)
+            return true;
+
+        int retryAfterSecs = admission.getRetryAfterSecs(decision);
+        response.setHeader(ConnectionAdmission.RETRY_AFTER_HEADER, Integer.toString(retryAfterSecs));
+        try {
+            response.sendError(
+                    ConnectionAdmission.NOT_ADMITTED_STATUS,
+                    "Server busy, retry in " + retryAfterSecs + "s"
+            );
+        } catch (IOException e) {
+            throw new RuntimeException("Error rejecting WebSocket upgrade", e);
+        }
+        return false;
+    }
+
+    private static boolean isWebSocketUpgrade(HttpServletRequest request) {
+        return "websocket".equalsIgnoreCase(request.getHeader("Upgrade"));
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) {}
+
+    @Override
+    public void destroy() {}
+}
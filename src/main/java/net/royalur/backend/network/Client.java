@@ -1,16 +1,19 @@
 package net.royalur.backend.network;
 
-import io.socket.socketio.server.SocketIoSocket;
 import net.royalur.backend.RoyalUrNetIdentity;
+import net.royalur.backend.jfr.PacketSendEvent;
 import net.royalur.backend.util.Checks;
 import net.royalur.backend.util.Time;
 import net.royalur.backend.network.outgoing.PacketOut;
 import net.royalur.backend.network.outgoing.PacketOutError;
+import net.royalur.backend.network.outgoing.PacketOutPing;
+import net.royalur.backend.session.SessionRecord;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A client connected to this application.
@@ -36,26 +39,53 @@ public class Client {
     private String name;
     private final UUID sessionID;
 
-    private SocketIoSocket socket;
-    private boolean connected;
+    /**
+     * The connection is written by the threads of the sockets that the client
+     * connects through, and read by the threads that send to the client, such
+     * as the spectator and bot threads. Senders read it once into a local, as
+     * it may be cleared at any time by the client disconnecting.
+     */
+    private volatile Connection connection;
+    private volatile boolean connected;
 
     private Time connectTime;
     private Time disconnectTime;
 
-    public Client(String name, UUID sessionID, SocketIoSocket socket) {
+    private final RoundTripTimer roundTrips = new RoundTripTimer();
+    private volatile boolean answersPings;
+
+    /**
+     * @param connection The connection to the client, or null to create a
+     *                   client that is disconnected, such as when restoring
+     *                   the players of games after a restart.
+     */
+    public Client(String name, UUID sessionID, @Nullable Connection connection) {
         Checks.ensureNonNull(sessionID, "sessionID");
-        Checks.ensureNonNull(socket, "socket");
 
         setName(name);
         this.sessionID = sessionID;
         this.connectTime = Time.now();
-        this.socket = socket;
-        if (socket == null) {
-            this.socket = null;
+        this.connection = connection;
+        if (connection == null) {
+            this.connection = null;
             this.disconnectTime = Time.now();
         }
     }
 
+    /**
+     * @return A disconnected client for the session {@param session}, that was
+     *         captured before a restart, which times out at the session's
+     *         deadline rather than a full timeout after {@param nowMillis}.
+     */
+    public static @Nonnull Client restore(@Nonnull SessionRecord session, long nowMillis) {
+        Checks.ensureNonNull(session, "session");
+
+        Client client = new Client(session.name(), session.sessionID(), null);
+        long remainingMs = Math.max(0, Math.min(DISCONNECT_TIMEOUT_MS, session.disconnectDeadlineMillis() - nowMillis));
+        client.disconnectTime = Time.ago(DISCONNECT_TIMEOUT_MS - remainingMs, TimeUnit.MILLISECONDS);
+        return client;
+    }
+
     /**
      * Retrieves the session ID of this client.
      * @return The session ID of this client.
@@ -98,51 +128,92 @@ public class Client {
         return disconnectTime != null && disconnectTime.getMillisSince() > DISCONNECT_TIMEOUT_MS;
     }
 
-    /** Update this client to indicate that they've just connected through the socket {@param socket}. **/
-    protected void onConnect(SocketIoSocket socket) {
-        Checks.ensureNonNull(socket, "socket");
+    /** Update this client to indicate that they've just connected through {@param connection}. **/
+    protected void onConnect(Connection connection) {
+        Checks.ensureNonNull(connection, "connection");
 
-        this.socket = socket;
+        this.connection = connection;
         this.connected = true;
         this.connectTime = Time.now();
         this.disconnectTime = null;
+        roundTrips.cancel();
     }
 
     /** Update this client to indicate that they've just disconnected. **/
     protected void onDisconnect() {
-        this.socket = null;
+        this.connection = null;
         this.connected = false;
         this.connectTime = null;
         this.disconnectTime = Time.now();
     }
 
-    private boolean isSocketOpen() {
-        return connected && socket != null;
+    /**
+     * Record that this client has sent a ping. Older clients do not know of pings,
+     * and so only the clients that have sent a ping are sent pings by the server.
+     */
+    public void onPingReceived() {
+        this.answersPings = true;
+    }
+
+    /** Send a ping to the client to measure its round trip time, if it answers pings. **/
+    public void ping() {
+        if (!answersPings || !isConnectionOpen())
+            return;
+
+        trySend(new PacketOutPing(roundTrips.start(System.nanoTime())));
+    }
+
+    /**
+     * Record that the client answered the ping with the nonce {@param nonce}.
+     *
+     * @return The round trip time of the ping in nanoseconds, or -1 if
+     *         {@param nonce} does not match the last ping sent to the client.
+     */
+    public long onPong(int nonce) {
+        return roundTrips.finish(nonce, System.nanoTime());
+    }
+
+    /** @return The smoothed round trip time to this client in nanoseconds, or -1 if it is unknown. **/
+    public long getRoundTripNanos() {
+        return roundTrips.getSmoothedNanos();
+    }
+
+    /** @return The most recent round trip time to this client in nanoseconds, or -1 if it is unknown. **/
+    public long getLastRoundTripNanos() {
+        return roundTrips.getLastNanos();
+    }
+
+    private boolean isConnectionOpen() {
+        return connected && connection != null;
     }
 
     /** Send the error {@param error} to the client, and close their connection. **/
     public void error(@Nonnull String error) {
         Checks.ensureNonNull(error, "error");
-        if (!isSocketOpen())
+        if (!isConnectionOpen())
             return;
 
         trySend(new PacketOutError(error));
 
+        Connection connection = this.connection;
         try {
-            if (isSocketOpen()) {
-                socket.disconnect(true);
+            if (connected && connection != null) {
+                connection.close();
             }
         } catch (Exception e) {
-            new RuntimeException("Error closing socket", e).printStackTrace();
+            new RuntimeException("Error closing connection", e).printStackTrace();
         } finally {
-            socket = null;
+            // The client may have already reconnected through another connection.
+            if (this.connection == connection) {
+                this.connection = null;
+            }
         }
     }
 
     /** Try to send the packet {@param packet} to the client, with no error if the packet could not be sent. **/
     public void trySend(PacketOut packet) {
         Checks.ensureNonNull(packet, "packet");
-        if (!isSocketOpen())
+        if (!isConnectionOpen())
             return;
 
         try {
@@ -155,8 +226,15 @@ public class Client {
     /** Send the packet {@param packet} to the client. **/
     public void send(PacketOut packet) {
         Checks.ensureNonNull(packet, "packet");
-        Checks.ensureState(isSocketOpen(), "cannot send packet to disconnected client");
-        socket.send("message", packet.write());
+        Connection connection = this.connection;
+        Checks.ensureState(connected && connection != null, "cannot send packet to disconnected client");
+
+        PacketSendEvent event = new PacketSendEvent();
+        event.begin();
+        boolean preEncoded = packet.isWritten();
+        String encoded = packet.write();
+        connection.send(encoded);
+        event.finish(packet.type.getName(), encoded.length(), preEncoded);
     }
 
     @Override
@@ -0,0 +1,35 @@
+package net.royalur.backend.network;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A connection to a client, independent of the transport used to reach them.
+ * Each message sent or received is a single encoded packet.
+ *
+ * @author Paddy Lamont
+ */
+public interface Connection {
+
+    /**
+     * @return The IP address that this connection was made from.
+     */
+    @Nonnull String getRemoteAddress();
+
+    /**
+     * Send the encoded packet {@param message} over this connection.
+     */
+    void send(@Nonnull String message);
+
+    /**
+     * Close this connection.
+     */
+    void close();
+
+    /**
+     * Called periodically so that transports without their
+     * own heartbeats can keep idle connections alive.
+     */
+    default void keepAlive() {
+        // Most transports handle this themselves.
+    }
+}
@@ -0,0 +1,177 @@
+package net.royalur.backend.network;
+
+import net.royalur.backend.metrics.Counter;
+import net.royalur.backend.metrics.Metrics;
+import net.royalur.backend.util.Checks;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides whether new Socket.io handshakes should be accepted, so that
+ * a mass reconnect after a restart or network blip is spread out over
+ * time instead of all landing on the server at once.
+ *
+ * @author Paddy Lamont
+ */
+public class ConnectionAdmission {
+
+    /**
+     * The HTTP header used to tell clients how long to wait before retrying.
+     */
+    public static final String RETRY_AFTER_HEADER = "Retry-After";
+
+    /**
+     * The HTTP status sent to clients that are not admitted.
+     */
+    public static final int NOT_ADMITTED_STATUS = 503;
+
+    /** The outcome of a handshake. **/
+    public enum Decision {
+        /** The connection may proceed. **/
+        ADMIT,
+        /** The handshake rate has been exceeded, the client should retry shortly. **/
+        DEFER,
+        /** The server or the client's IP has too many connections, the client should back off. **/
+        REJECT
+    }
+
+    private final int maxConnections;
+    private final int maxConnectionsPerIP;
+    private final int maxHandshakesPerSecond;
+    private final int retryJitterSecs;
+
+    private final Set<Connection> counted = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Map<String, AtomicInteger> connectionsByIP = new ConcurrentHashMap<>();
+
+    private final Object bucketLock = new Object();
+    private double handshakeTokens;
+    private long lastRefillNanos;
+
+    private final Counter admittedCounter = Metrics.counter("connections.admitted");
+    private final Counter deferredCounter = Metrics.counter("connections.deferred");
+    private final Counter rejectedCounter = Metrics.counter("connections.rejected");
+
+    public ConnectionAdmission(
+            int maxConnections,
+            int maxConnectionsPerIP,
+            int maxHandshakesPerSecond,
+            int retryJitterSecs
+    ) {
+        Checks.ensure(maxConnections > 0, "maxConnections must be positive");
+        Checks.ensure(maxConnectionsPerIP > 0, "maxConnectionsPerIP must be positive");
+        Checks.ensure(maxHandshakesPerSecond > 0, "maxHandshakesPerSecond must be positive");
+        Checks.ensure(retryJitterSecs >= 0, "retryJitterSecs must be >= 0");
+
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerIP = maxConnectionsPerIP;
+        this.maxHandshakesPerSecond = maxHandshakesPerSecond;
+        this.retryJitterSecs = retryJitterSecs;
+        this.handshakeTokens = maxHandshakesPerSecond;
+        this.lastRefillNanos = System.nanoTime();
+
+        Metrics.gauge("connections.current", connections::get);
+    }
+
+    /**
+     * Decide whether a new handshake from {@param ip} should be accepted.
+     * This does not count the connection, that happens once the
+     * connection is established through {@link #onConnected(Connection)}.
+     */
+    public Decision admit(String ip) {
+        Checks.ensureNonNull(ip, "ip");
+
+        if (connections.get() >= maxConnections || countConnections(ip) >= maxConnectionsPerIP) {
+            rejectedCounter.increment();
+            return Decision.REJECT;
+        }
+        if (!tryTakeHandshakeToken()) {
+            deferredCounter.increment();
+            return Decision.DEFER;
+        }
+
+        admittedCounter.increment();
+        return Decision.ADMIT;
+    }
+
+    /**
+     * @return The number of seconds a client should wait before retrying
+     *         after receiving the decision {@param decision}, with jitter
+     *         so that the retries of many clients do not line up.
+     */
+    public int getRetryAfterSecs(Decision decision) {
+        Checks.ensureNonNull(decision, "decision");
+
+        int base = switch (decision) {
+            case ADMIT -> 0;
+            case DEFER -> 1;
+            case REJECT -> 5;
+        };
+        if (decision == Decision.ADMIT || retryJitterSecs == 0)
+            return base;
+
+        return base + ThreadLocalRandom.current().nextInt(retryJitterSecs + 1);
+    }
+
+    /** Record that the connection {@param connection} has been established. **/
+    public void onConnected(Connection connection) {
+        Checks.ensureNonNull(connection, "connection");
+        if (!counted.add(connection))
+            return;
+
+        String ip = connection.getRemoteAddress();
+        connections.incrementAndGet();
+        connectionsByIP.compute(ip, (key, count) -> {
+            if (count == null) {
+                count = new AtomicInteger();
+            }
+            count.incrementAndGet();
+            return count;
+        });
+    }
+
+    /**
+     * Record that the connection {@param connection} has been closed.
+     * Connections that were refused before they were counted, or
+     * that have already been recorded as closed, are ignored.
+     */
+    public void onDisconnected(Connection connection) {
+        Checks.ensureNonNull(connection, "connection");
+        if (!counted.remove(connection))
+            return;
+
+        String ip = connection.getRemoteAddress();
+        connections.decrementAndGet();
+        connectionsByIP.computeIfPresent(ip, (key, count) -> count.decrementAndGet() <= 0 ? null : count);
+    }
+
+    /** @return The number of established connections. **/
+    public int countConnections() {
+        return connections.get();
+    }
+
+    /** @return The number of established connections from {@param ip}. **/
+    public int countConnections(String ip) {
+        AtomicInteger count = connectionsByIP.get(ip);
+        return count == null ? 0 : count.get();
+    }
+
+    private boolean tryTakeHandshakeToken() {
+        synchronized (bucketLock) {
+            long now = System.nanoTime();
+            double elapsedSecs = (now - lastRefillNanos) / 1e9d;
+            lastRefillNanos = now;
+
+            handshakeTokens = Math.min(maxHandshakesPerSecond, handshakeTokens + elapsedSecs * maxHandshakesPerSecond);
+            if (handshakeTokens < 1)
+                return false;
+
+            handshakeTokens -= 1;
+            return true;
+        }
+    }
+}
@@ -3,30 +3,53 @@ package net.royalur.backend.network;
 import io.socket.engineio.server.EngineIoServerOptions;
 import io.socket.socketio.server.SocketIoNamespace;
 import io.socket.socketio.server.SocketIoSocket;
+import net.royalur.backend.Config;
 import net.royalur.backend.Logging;
 import net.royalur.backend.RoyalUr;
+import net.royalur.backend.game.GameID;
+import net.royalur.backend.jfr.PacketDecodeEvent;
+import net.royalur.backend.jfr.PacketHandleEvent;
+import net.royalur.backend.metrics.Histogram;
+import net.royalur.backend.metrics.Metrics;
+import net.royalur.backend.network.incoming.GamePacketIn;
 import net.royalur.backend.network.incoming.PacketIn;
 import net.royalur.backend.network.incoming.PacketInOpen;
+import net.royalur.backend.network.incoming.PacketInPing;
+import net.royalur.backend.network.incoming.PacketInPong;
 import net.royalur.backend.network.incoming.PacketInReOpen;
 import net.royalur.backend.network.incoming.PacketReader;
 import net.royalur.backend.scheduler.RepeatingTask;
 import net.royalur.backend.util.Checks;
+import net.royalur.backend.network.outgoing.PacketOutPong;
 import net.royalur.backend.network.outgoing.PacketOutSetID;
 import net.royalur.backend.scheduler.Scheduler;
+import net.royalur.backend.session.FileSessionStore;
+import net.royalur.backend.session.InMemorySessionStore;
+import net.royalur.backend.session.SessionRecord;
+import net.royalur.backend.session.SessionStore;
 import org.eclipse.jetty.server.handler.HandlerCollection;
 
+import javax.annotation.Nullable;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * A server that accepts web socket connections, and manages
  * those connections as clients, each with their own unique IDs.
+ * Connections can be made through Socket.io, or through plain WebSockets.
  *
  * @author Paddy Lamont
  */
@@ -39,16 +62,43 @@ public class GameServer {
     private final Logger logger;
     private final Scheduler scheduler;
 
+    private final ConnectionAdmission admission;
+    private final PacketStrikes strikes;
     private final SocketIoServlet servlet;
     private final SocketIoNamespace servletNamespace;
+    private final RawWebSocketServlet rawServlet;
 
-    private final Map<SocketIoSocket, Client> clients;
-    private final Map<SocketIoSocket, Long> limboConnections;
+    private final Map<Connection, Client> clients;
+    private final Map<Connection, Long> limboConnections;
     private final Map<UUID, Client> disconnected;
+    private final SessionStore sessionStore;
     private final RepeatingTask clientPurgerTask;
 
-    public GameServer(RoyalUr game) {
+    /**
+     * Whether packets and connections are being refused, so that
+     * the state of the server can be captured before it restarts.
+     */
+    private volatile boolean quiesced;
+    private final AtomicInteger inFlightMessages = new AtomicInteger();
+
+    /**
+     * The round trip times to clients measured by pings, which is
+     * the latency of the network without the time spent by the server.
+     */
+    private final Histogram roundTripHistogram = Metrics.histogram(
+            "clients.round-trip-ms", Histogram.exponentialBounds(1, 10_000)
+    );
+
+    /**
+     * The time from receiving each packet to finishing handling it.
+     */
+    private final Histogram processingHistogram = Metrics.histogram(
+            "packets.processing-us", Histogram.exponentialBounds(1, 10_000_000)
+    );
+
+    public GameServer(RoyalUr game, Config config) {
         Checks.ensureNonNull(game, "game");
+        Checks.ensureNonNull(config, "config");
 
         this.game = game;
         this.logger = Logging.getLogger(GameServer.class.getName());
@@ -57,18 +107,55 @@ public class GameServer {
         this.clients = new ConcurrentHashMap<>();
         this.limboConnections = new ConcurrentHashMap<>();
         this.disconnected = new ConcurrentHashMap<>();
+        this.sessionStore = createSessionStore(config);
         this.clientPurgerTask = new RepeatingTask(
                 "server client purger", this::purgeDisconnected,
                 PURGE_TIMER_INTERVAL_SECS, TimeUnit.SECONDS
         );
 
-        this.servlet = new SocketIoServlet(EngineIoServerOptions.ALLOWED_CORS_ORIGIN_ALL);
+        this.admission = new ConnectionAdmission(
+                config.getMaxConnections(),
+                config.getMaxConnectionsPerIP(),
+                config.getMaxHandshakesPerSecond(),
+                config.getConnectionRetryJitterSecs()
+        );
+        this.strikes = new PacketStrikes(
+                config.getMaxMalformedPacketsPerConnection(),
+                config.getMaxMalformedPacketsPerIP(),
+                config.getMalformedPacketWindowSecs()
+        );
+        PacketCompression compression = null;
+        if (config.useCompression()) {
+            compression = new PacketCompression(
+                    config.getCompressionThresholdBytes(),
+                    config.getCompressionLevel(),
+                    config.getMaxPooledDeflaters()
+            );
+        }
+        boolean perMessageDeflate = config.usePerMessageDeflate();
+
+        this.servlet = new SocketIoServlet(
+                EngineIoServerOptions.ALLOWED_CORS_ORIGIN_ALL, admission, perMessageDeflate
+        );
         this.servletNamespace = servlet.namespace("/");
+        this.rawServlet = new RawWebSocketServlet(this, admission, compression, perMessageDeflate);
 
-        servletNamespace.on("connection", this::acceptConnection);
+        servletNamespace.on("connection", this::acceptSocketIoConnection);
+    }
+
+    private static SessionStore createSessionStore(Config config) {
+        String type = config.getSessionStore();
+        return switch (type) {
+            case Config.SESSION_STORE_MEMORY -> new InMemorySessionStore();
+            case Config.SESSION_STORE_FILE -> new FileSessionStore(
+                    Path.of(config.getSessionStoreFile()), config.getSessionCacheMs()
+            );
+            default -> throw new IllegalArgumentException("Unknown session store \"" + type + "\"");
+        };
     }
 
     public void addJettyHandlers(HandlerCollection handlerList) {
+        handlerList.addHandler(rawServlet.createContextHandler());
         handlerList.addHandler(servlet.createContextHandler());
     }
 
@@ -82,24 +169,113 @@ public class GameServer {
             clientPurgerTask.cancel();
         }
         scheduler.stop();
+        sessionStore.close();
+    }
+
+    /**
+     * Stops accepting new connections and packets, and waits up to
+     * {@param timeoutMs} milliseconds for the packets that are being
+     * handled to finish.
+     * @return Whether all the packets being handled finished in time.
+     */
+    public boolean quiesce(long timeoutMs) throws InterruptedException {
+        quiesced = true;
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (inFlightMessages.get() > 0) {
+            if (System.nanoTime() - end > 0)
+                return false;
+
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    /**
+     * @return The sessions of all connected clients, and of all disconnected clients
+     *         that have not timed out, so that they can be resumed after a restart.
+     */
+    public List<SessionRecord> getReconnectableSessions() {
+        long now = System.currentTimeMillis();
+        List<SessionRecord> sessions = new ArrayList<>();
+        for (Client client : clients.values()) {
+            sessions.add(createSessionRecord(client, now + Client.DISCONNECT_TIMEOUT_MS));
+        }
+        for (Client client : disconnected.values()) {
+            if (client.isTimedOut())
+                continue;
+
+            long deadline = now + Client.DISCONNECT_TIMEOUT_MS - client.getDisconnectTime().getMillisSince();
+            sessions.add(createSessionRecord(client, deadline));
+        }
+        return sessions;
+    }
+
+    private SessionRecord createSessionRecord(Client client, long disconnectDeadlineMillis) {
+        return new SessionRecord(
+                client.getSessionID(),
+                Objects.requireNonNullElse(client.getName(), ""),
+                game.getActiveGameIDs(client),
+                disconnectDeadlineMillis
+        );
+    }
+
+    /**
+     * Adds the disconnected clients {@param restored}, whose sessions were
+     * captured before a restart, so that they can reconnect to their games.
+     */
+    public void restoreSessions(Collection<Client> restored, Collection<SessionRecord> sessions) {
+        for (Client client : restored) {
+            disconnected.put(client.getSessionID(), client);
+        }
+        for (SessionRecord session : sessions) {
+            sessionStore.put(session);
+        }
+    }
+
+    /** @return The number of clients that are connected. **/
+    public int countConnectedClients() {
+        return clients.size();
+    }
+
+    /** @return The clients that are connected. **/
+    public Collection<Client> getConnectedClients() {
+        return Collections.unmodifiableCollection(clients.values());
+    }
+
+    /** @return The number of clients that have disconnected, but may still reconnect. **/
+    public int countDisconnectedClients() {
+        return disconnected.size();
+    }
+
+    /** @return The number of connections that have not yet opened a session. **/
+    public int countLimboConnections() {
+        return limboConnections.size();
     }
 
     public void purgeDisconnected() {
+        strikes.purge();
+
         // Remove timed out limbo connections
-        Iterator<Map.Entry<SocketIoSocket, Long>> limbo = limboConnections.entrySet().iterator();
+        Iterator<Map.Entry<Connection, Long>> limbo = limboConnections.entrySet().iterator();
 
         while (limbo.hasNext()) {
-            Map.Entry<SocketIoSocket, Long> entry = limbo.next();
+            Map.Entry<Connection, Long> entry = limbo.next();
 
             long connectTime = entry.getValue();
-            long timeInLimbo = (System.nanoTime() - connectTime) / 1000000;
+            long timeInLimbo = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - connectTime);
 
             if (timeInLimbo >= PURGE_LIMBO_SECS) {
                 limbo.remove();
-                entry.getKey().disconnect(true);
+                entry.getKey().close();
             }
         }
 
+        // Keep idle connections alive, and measure the round trip time to their clients.
+        for (Map.Entry<Connection, Client> entry : clients.entrySet()) {
+            entry.getKey().keepAlive();
+            entry.getValue().ping();
+        }
+
         // Remove timed out clients
         Iterator<Client> clients = disconnected.values().iterator();
 
@@ -108,6 +284,7 @@ public class GameServer {
 
             if(client.isTimedOut()) {
                 clients.remove();
+                sessionStore.remove(client.getSessionID());
                 game.onReconnectTimeout(client);
             }
         }
@@ -117,7 +294,7 @@ public class GameServer {
      * This function is called when a new connection is accepted.
      * @param args The arguments describing the new connection.
      */
-    private void acceptConnection(Object... args) {
+    private void acceptSocketIoConnection(Object... args) {
         if (args.length == 0)
             throw new IllegalArgumentException("No arguments provided");
 
@@ -134,30 +311,39 @@ public class GameServer {
         }
 
         SocketIoSocket socket = (SocketIoSocket) args[0];
-        acceptConnection(socket);
+        SocketIoConnection connection = new SocketIoConnection(socket);
+
+        socket.on("message", messageArgs -> acceptSocketIoMessage(connection, messageArgs));
+        socket.on("disconnect", disconnectArgs -> onDisconnect(connection));
+        socket.on("error", errorArgs -> {
+            System.err.println("ERROR: " + Arrays.toString(errorArgs));
+        });
+        acceptConnection(connection);
     }
 
     /**
      * This function is called when a new connection is accepted.
-     * @param socket The socket for the connection.
+     * @param connection The new connection.
      */
-    private void acceptConnection(SocketIoSocket socket) {
-        limboConnections.put(socket, System.currentTimeMillis());
-
-        socket.on("message", args -> acceptMessage(socket, args));
-        socket.on("disconnect", args -> onDisconnect(socket));
-        socket.on("error", args -> {
-            System.err.println("ERROR: " + Arrays.toString(args));
-        });
+    public void acceptConnection(Connection connection) {
+        if (quiesced || strikes.isRefused(connection.getRemoteAddress())) {
+            connection.close();
+            return;
+        }
+        admission.onConnected(connection);
+        limboConnections.put(connection, System.nanoTime());
     }
 
-    public void onDisconnect(SocketIoSocket socket) {
-        limboConnections.remove(socket);
-        Client client = clients.remove(socket);
+    public void onDisconnect(Connection connection) {
+        admission.onDisconnected(connection);
+        strikes.onDisconnected(connection);
+        limboConnections.remove(connection);
+        Client client = clients.remove(connection);
         if(client == null)
             return;
 
         disconnected.put(client.getSessionID(), client);
+        sessionStore.put(createSessionRecord(client, System.currentTimeMillis() + Client.DISCONNECT_TIMEOUT_MS));
 
         client.onDisconnect();
         game.onDisconnect(client);
@@ -167,7 +353,7 @@ public class GameServer {
      * This function is called when a new message is received from a socket.
      * @param args The arguments containing the message.
      */
-    private void acceptMessage(SocketIoSocket socket, Object... args) {
+    private void acceptSocketIoMessage(Connection connection, Object... args) {
         if (args.length == 0)
             throw new IllegalArgumentException("No arguments provided");
 
@@ -184,70 +370,132 @@ public class GameServer {
         }
 
         String message = (String) args[0];
-        acceptMessage(socket, message);
+        acceptMessage(connection, message);
     }
 
     /**
-     * This function is called when a new connection is accepted.
-     * @param socket The socket for the connection.
+     * This function is called when a new message is received from a connection.
+     * @param connection The connection that sent the message.
+     * @param message The encoded packet.
      */
-    private void acceptMessage(SocketIoSocket socket, String message) {
-        Client client = clients.get(socket);
+    public void acceptMessage(Connection connection, String message) {
+        inFlightMessages.incrementAndGet();
+        try {
+            // Packets received whilst restarting are dropped, so that they do not change the captured state.
+            if (!quiesced) {
+                handleMessage(connection, message);
+            }
+        } finally {
+            inFlightMessages.decrementAndGet();
+        }
+    }
+
+    private void handleMessage(Connection connection, String message) {
+        long receivedNanos = System.nanoTime();
+        Client client = clients.get(connection);
         PacketIn packet;
         PacketReader reader = null;
+        PacketDecodeEvent decodeEvent = new PacketDecodeEvent();
+        decodeEvent.begin();
         try {
             reader = new PacketReader(message);
             packet = reader.type.newPacket();
             packet.read(reader);
+        } catch(ProtocolViolation violation) {
+            decodeEvent.finish(reader != null ? reader.type.getName() : "unknown", message.length(), false);
+            rejectMalformed(connection, message, reader != null ? reader.type : null, violation.getMessage());
+            return;
         } catch(Exception exception) {
-            String exceptionName = exception.getClass().getSimpleName();
-            String packetTypeName = "packet";
-            if (reader != null) {
-                packetTypeName = reader.type + " packet";
-            }
-            logger.log(
-                    Level.WARNING,
-                    exceptionName + " reading " + packetTypeName + " \"" + message + "\": " + exception.getMessage()
-            );
-            Client errorClient;
-            if (client == null) {
-                errorClient = new Client("unknown", UUID.randomUUID(), socket);
-            } else {
-                errorClient = client;
-            }
-            errorClient.error("invalid packet");
+            decodeEvent.finish(reader != null ? reader.type.getName() : "unknown", message.length(), false);
+            // Counted as a strike like any other malformed packet, so that only a sample of them are logged.
+            String reason = exception.getClass().getSimpleName() + ": " + exception.getMessage();
+            rejectMalformed(connection, message, reader != null ? reader.type : null, reason);
             return;
         }
+        decodeEvent.finish(packet.type.getName(), message.length(), true);
 
         // Check if we need to initialise this client.
         if(client == null) {
-            connectClient(socket, packet);
+            connectClient(connection, message, packet);
             return;
         }
 
+        PacketHandleEvent handleEvent = new PacketHandleEvent();
+        handleEvent.begin();
         try {
-            game.onMessage(client, packet);
+            switch (packet.type) {
+                case PING -> answerPing(client, (PacketInPing) packet, receivedNanos);
+                case PONG -> recordPong(client, (PacketInPong) packet);
+                default -> game.onMessage(client, packet);
+            }
+        } catch(ProtocolViolation violation) {
+            // Counted as a strike, so that only a sample of them are logged.
+            rejectMalformed(connection, message, packet.type, violation.getMessage());
+            return;
         } catch(Exception exception) {
             String exceptionName = exception.getClass().getSimpleName();
             logger.log(Level.SEVERE, exceptionName + " handling packet " + packet + " for " + client, exception);
             client.error("internal error");
             return;
+        } finally {
+            GameID gameID = (packet instanceof GamePacketIn gamePacket ? gamePacket.gameID : null);
+            handleEvent.finish(packet.type.getName(), gameID);
+            processingHistogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - receivedNanos));
+        }
+    }
+
+    /**
+     * Answers the ping {@param ping} from {@param client} with a pong that includes
+     * the time since the ping was received at {@param receivedNanos}, so that the
+     * client can separate the latency of the network from that of the server.
+     */
+    private void answerPing(Client client, PacketInPing ping, long receivedNanos) {
+        client.onPingReceived();
+        long processingMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - receivedNanos);
+        client.trySend(new PacketOutPong(ping.nonce, processingMicros));
+    }
+
+    /** Records the round trip time of the ping that {@param client} answered with {@param pong}. **/
+    private void recordPong(Client client, PacketInPong pong) {
+        long rttNanos = client.onPong(pong.nonce);
+        if (rttNanos >= 0) {
+            roundTripHistogram.record(TimeUnit.NANOSECONDS.toMillis(rttNanos));
+        }
+    }
+
+    /**
+     * Rejects the malformed or unexpected packet {@param message} from {@param connection}, of the type
+     * {@param type} if it could be read, closing the connection if it or its IP has sent too many.
+     */
+    private void rejectMalformed(
+            Connection connection, String message, @Nullable PacketIn.Type type, String reason
+    ) {
+        if (strikes.strike(connection, message, type, reason) == PacketStrikes.Verdict.DROP)
+            return;
+
+        try {
+            connection.send(PacketStrikes.ERROR_FRAME);
+        } catch (Exception exception) {
+            logger.log(Level.FINE, "Unable to send an error to " + connection.getRemoteAddress(), exception);
         }
+        connection.close();
     }
 
-    private void connectClient(SocketIoSocket socket, PacketIn packet) {
-        Checks.ensureNonNull(socket, "socket");
+    private void connectClient(Connection connection, String message, PacketIn packet) {
+        Checks.ensureNonNull(connection, "connection");
+        Checks.ensureNonNull(message, "message");
         Checks.ensureNonNull(packet, "packet");
 
         Client client;
         int protocolVersion;
         boolean isReconnect = false;
+        SessionRecord restoredSession = null;
 
         switch (packet.type) {
             // When a client first connects.
             case OPEN -> {
                 PacketInOpen open = (PacketInOpen) packet;
-                client = new Client(open.name, UUID.randomUUID(), socket);
+                client = new Client(open.name, UUID.randomUUID(), connection);
                 protocolVersion = open.protocolVersion;
             }
 
@@ -257,9 +505,21 @@ public class GameServer {
                 client = disconnected.remove(reopen.previousID);
                 protocolVersion = reopen.protocolVersion;
 
+                if (client != null) {
+                    sessionStore.remove(reopen.previousID);
+                } else {
+                    // The client may have disconnected from another process, or before a restart.
+                    // Their record is kept until it expires, in case they are redirected back to
+                    // the process that hosts their games.
+                    restoredSession = sessionStore.get(reopen.previousID);
+                    if (restoredSession != null) {
+                        client = new Client(reopen.name, restoredSession.sessionID(), connection);
+                    }
+                }
+
                 // Treat this as a normal OPEN packet instead.
                 if (client == null || client.isTimedOut()) {
-                    client = new Client(reopen.name, UUID.randomUUID(), socket);
+                    client = new Client(reopen.name, UUID.randomUUID(), connection);
                 } else {
                     isReconnect = true;
                     client.setName(reopen.name);
@@ -268,8 +528,7 @@ public class GameServer {
 
             // Uh oh.
             default -> {
-                new Client("unknown", UUID.randomUUID(), socket)
-                        .error("Expected open or reopen packet");
+                rejectMalformed(connection, message, packet.type, "Expected open or reopen packet");
                 return;
             }
         }
@@ -279,12 +538,15 @@ public class GameServer {
             return;
         }
 
-        clients.put(socket, client);
-        limboConnections.remove(socket);
+        clients.put(connection, client);
+        limboConnections.remove(connection);
 
-        client.onConnect(socket);
+        client.onConnect(connection);
         client.send(new PacketOutSetID(client.getSessionID()));
 
+        if (restoredSession != null) {
+            game.onSessionRestored(client, restoredSession);
+        }
         game.onConnect(client, isReconnect);
     }
 }
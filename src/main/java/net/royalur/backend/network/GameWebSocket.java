@@ -0,0 +1,57 @@
+package net.royalur.backend.network;
+
+import net.royalur.backend.util.Checks;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Receives the events of a single plain WebSocket connection,
+ * and passes them on to the game server.
+ *
+ * @author Paddy Lamont
+ */
+public class GameWebSocket extends WebSocketAdapter {
+
+    private final GameServer server;
+    private final @Nullable PacketCompression compression;
+    private WebSocketConnection connection;
+
+    /**
+     * @param compression The compression to apply to large outgoing packets, or null to never compress them.
+     */
+    public GameWebSocket(GameServer server, @Nullable PacketCompression compression) {
+        Checks.ensureNonNull(server, "server");
+        this.server = server;
+        this.compression = compression;
+    }
+
+    @Override
+    public void onWebSocketConnect(Session session) {
+        super.onWebSocketConnect(session);
+        this.connection = new WebSocketConnection(session, compression);
+        server.acceptConnection(connection);
+    }
+
+    @Override
+    public void onWebSocketText(String message) {
+        server.acceptMessage(connection, message);
+    }
+
+    @Override
+    public void onWebSocketBinary(byte[] payload, int offset, int length) {
+        // Binary frames from clients hold the UTF-8 encoding of a packet.
+        // Only the packets that the server sends are ever compressed.
+        server.acceptMessage(connection, new String(payload, offset, length, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void onWebSocketClose(int statusCode, String reason) {
+        super.onWebSocketClose(statusCode, reason);
+        if (connection != null) {
+            server.onDisconnect(connection);
+        }
+    }
+}
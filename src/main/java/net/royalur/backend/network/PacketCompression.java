@@ -0,0 +1,131 @@
+package net.royalur.backend.network;
+
+import net.royalur.backend.metrics.Counter;
+import net.royalur.backend.metrics.Metrics;
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Selectively compresses large outgoing packets. Each packet is
+ * compressed on its own using raw DEFLATE, so no compression window
+ * needs to be kept per connection. Instead, a bounded pool of
+ * deflaters is shared between all connections.
+ * <p>
+ * Most game packets are only a few dozen bytes, and compressing them
+ * costs more than it saves. Therefore, only packets of at least the
+ * threshold size are compressed.
+ *
+ * @author Paddy Lamont
+ */
+public class PacketCompression {
+
+    /**
+     * The query parameter that plain WebSocket clients use to
+     * opt in to receiving compressed packets in binary frames.
+     */
+    public static final String COMPRESS_PARAM = "compress";
+
+    /**
+     * The value of {@link #COMPRESS_PARAM} to request raw DEFLATE compression.
+     */
+    public static final String DEFLATE = "deflate";
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private final int thresholdBytes;
+    private final int level;
+    private final BlockingQueue<Deflater> deflaters;
+
+    private final Counter uncompressedBytes = Metrics.counter("network.bytes.uncompressed");
+    private final Counter compressedInputBytes = Metrics.counter("network.bytes.compressed.input");
+    private final Counter compressedOutputBytes = Metrics.counter("network.bytes.compressed.output");
+    private final Counter compressedPackets = Metrics.counter("network.packets.compressed");
+
+    /**
+     * @param thresholdBytes The minimum size of packets to compress.
+     * @param level The DEFLATE compression level, from 1 to 9.
+     * @param maxPooledDeflaters The maximum number of idle deflaters to keep for reuse.
+     */
+    public PacketCompression(int thresholdBytes, int level, int maxPooledDeflaters) {
+        Checks.ensure(thresholdBytes >= 0, "thresholdBytes must be non-negative");
+        Checks.ensure(level >= Deflater.BEST_SPEED && level <= Deflater.BEST_COMPRESSION, "level must be from 1 to 9");
+        Checks.ensure(maxPooledDeflaters > 0, "maxPooledDeflaters must be positive");
+        this.thresholdBytes = thresholdBytes;
+        this.level = level;
+        this.deflaters = new ArrayBlockingQueue<>(maxPooledDeflaters);
+    }
+
+    public int getThresholdBytes() {
+        return thresholdBytes;
+    }
+
+    /**
+     * Compresses {@param message} if it is large enough to be worth compressing.
+     *
+     * @return The compressed message, or null if the message should be sent uncompressed.
+     */
+    public @Nullable byte[] compress(@Nonnull String message) {
+        Checks.ensureNonNull(message, "message");
+
+        // Every character takes at least one byte, so this avoids encoding small messages.
+        if (message.length() < thresholdBytes) {
+            uncompressedBytes.add(message.length());
+            return null;
+        }
+
+        byte[] input = message.getBytes(StandardCharsets.UTF_8);
+        if (input.length < thresholdBytes) {
+            uncompressedBytes.add(input.length);
+            return null;
+        }
+
+        byte[] output = deflate(input);
+        if (output.length >= input.length) {
+            uncompressedBytes.add(input.length);
+            return null;
+        }
+
+        compressedPackets.increment();
+        compressedInputBytes.add(input.length);
+        compressedOutputBytes.add(output.length);
+        return output;
+    }
+
+    private byte[] deflate(byte[] input) {
+        Deflater deflater = acquireDeflater();
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.min(input.length, BUFFER_SIZE));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                output.write(buffer, 0, length);
+            }
+            return output.toByteArray();
+        } finally {
+            releaseDeflater(deflater);
+        }
+    }
+
+    private Deflater acquireDeflater() {
+        Deflater deflater = deflaters.poll();
+        return (deflater != null ? deflater : new Deflater(level, true));
+    }
+
+    private void releaseDeflater(Deflater deflater) {
+        deflater.reset();
+        if (!deflaters.offer(deflater)) {
+            // The pool is full, so free the native memory now instead of waiting for the GC.
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package net.royalur.backend.network;
+
+import net.royalur.backend.Logging;
+import net.royalur.backend.metrics.Counter;
+import net.royalur.backend.metrics.Metrics;
+import net.royalur.backend.network.incoming.PacketIn;
+import net.royalur.backend.network.outgoing.PacketOutError;
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Counts the malformed packets sent by each connection and each IP,
+ * so that malformed traffic can be rejected as cheaply as possible.
+ * Packets that are well-formed, but that break the protocol, such as
+ * moves in games that the client is not playing, are counted the same.
+ * <p>
+ * Malformed packets are dropped until a connection reaches its limit,
+ * at which point it is sent a pre-encoded error and closed. An IP that
+ * reaches its limit within a window has its connections closed as soon
+ * as they are made, for the rest of that window.
+ * Only a sample of the rejected packets are logged, along with the
+ * number of rejections since the last sample.
+ *
+ * @author Paddy Lamont
+ */
+public class PacketStrikes {
+
+    /**
+     * The error sent to connections that are closed for sending malformed packets.
+     */
+    public static final String ERROR_FRAME = new PacketOutError("invalid packet").write();
+
+    /**
+     * The minimum time between logging examples of rejected packets.
+     */
+    private static final long LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * The maximum number of characters of a rejected packet to log.
+     */
+    private static final int MAX_LOGGED_CHARS = 64;
+
+    private static final Logger logger = Logging.getLogger("packet-strikes");
+
+    /** What to do with a connection that has sent a malformed packet. **/
+    public enum Verdict {
+        /** Drop the packet, and keep the connection open. **/
+        DROP,
+        /** Send {@link #ERROR_FRAME}, and close the connection. **/
+        DISCONNECT
+    }
+
+    private final int maxStrikesPerConnection;
+    private final int maxStrikesPerIP;
+    private final long windowNanos;
+
+    private final Map<Connection, AtomicInteger> connectionStrikes = new ConcurrentHashMap<>();
+    private final Map<String, IPStrikes> ipStrikes = new ConcurrentHashMap<>();
+
+    private final AtomicLong lastLogNanos = new AtomicLong(System.nanoTime() - LOG_INTERVAL_NANOS);
+    private final AtomicInteger unloggedStrikes = new AtomicInteger();
+
+    private final Counter malformedCounter = Metrics.counter("packets.malformed");
+    private final Counter disconnectedCounter = Metrics.counter("connections.struck-out");
+    private final Counter refusedCounter = Metrics.counter("connections.refused-for-strikes");
+
+    /**
+     * @param maxStrikesPerConnection The number of malformed packets after which a connection is closed.
+     * @param maxStrikesPerIP The number of malformed packets within a window after which an IP is refused.
+     * @param windowSecs The length of the window over which the strikes of each IP are counted.
+     */
+    public PacketStrikes(int maxStrikesPerConnection, int maxStrikesPerIP, int windowSecs) {
+        Checks.ensure(maxStrikesPerConnection > 0, "maxStrikesPerConnection must be positive");
+        Checks.ensure(maxStrikesPerIP > 0, "maxStrikesPerIP must be positive");
+        Checks.ensure(windowSecs > 0, "windowSecs must be positive");
+
+        this.maxStrikesPerConnection = maxStrikesPerConnection;
+        this.maxStrikesPerIP = maxStrikesPerIP;
+        this.windowNanos = TimeUnit.SECONDS.toNanos(windowSecs);
+    }
+
+    /**
+     * Record that {@param connection} sent the malformed packet {@param message},
+     * of the type {@param type} if it could be read, which was rejected with the
+     * reason {@param reason}.
+     *
+     * @return What should be done with the connection.
+     */
+    public @Nonnull Verdict strike(
+            @Nonnull Connection connection,
+            @Nonnull String message,
+            @Nullable PacketIn.Type type,
+            @Nonnull String reason
+    ) {
+        return strike(connection, message, type, reason, System.nanoTime());
+    }
+
+    /**
+     * Record a malformed packet at {@param now}, as in {@link #strike(Connection, String, PacketIn.Type, String)}.
+     */
+    @Nonnull Verdict strike(
+            @Nonnull Connection connection,
+            @Nonnull String message,
+            @Nullable PacketIn.Type type,
+            @Nonnull String reason,
+            long now
+    ) {
+        malformedCounter.increment();
+        maybeLogSample(connection, message, type, reason, now);
+
+        String ip = connection.getRemoteAddress();
+        IPStrikes strikes = ipStrikes.computeIfAbsent(ip, key -> new IPStrikes());
+        boolean ipStruckOut = strikes.add(now, windowNanos) >= maxStrikesPerIP;
+
+        int count = connectionStrikes.computeIfAbsent(connection, key -> new AtomicInteger()).incrementAndGet();
+        if (count >= maxStrikesPerConnection || ipStruckOut) {
+            disconnectedCounter.increment();
+            return Verdict.DISCONNECT;
+        }
+        return Verdict.DROP;
+    }
+
+    /**
+     * @return Whether new connections from {@param ip} should be closed
+     *         straight away, as it has sent too many malformed packets.
+     */
+    public boolean isRefused(@Nonnull String ip) {
+        return isRefused(ip, System.nanoTime());
+    }
+
+    /** @return Whether new connections from {@param ip} should be closed straight away at {@param now}. **/
+    boolean isRefused(@Nonnull String ip, long now) {
+        IPStrikes strikes = ipStrikes.get(ip);
+        if (strikes == null || strikes.get(now, windowNanos) < maxStrikesPerIP)
+            return false;
+
+        refusedCounter.increment();
+        return true;
+    }
+
+    /** Forget the strikes of {@param connection}, as it has been closed. **/
+    public void onDisconnected(@Nonnull Connection connection) {
+        connectionStrikes.remove(connection);
+    }
+
+    /** Forget the strikes of IPs that have not sent a malformed packet within the last window. **/
+    public void purge() {
+        purge(System.nanoTime());
+    }
+
+    /** Forget the strikes of IPs that have not sent a malformed packet within the window before {@param now}. **/
+    void purge(long now) {
+        ipStrikes.values().removeIf(strikes -> strikes.get(now, windowNanos) == 0);
+    }
+
+    /** @return The number of IPs whose strikes are being counted. **/
+    int countTrackedIPs() {
+        return ipStrikes.size();
+    }
+
+    private void maybeLogSample(
+            Connection connection, String message, @Nullable PacketIn.Type type, String reason, long now
+    ) {
+        unloggedStrikes.incrementAndGet();
+
+        long last = lastLogNanos.get();
+        if (now - last < LOG_INTERVAL_NANOS || !lastLogNanos.compareAndSet(last, now))
+            return;
+
+        String sample = message;
+        if (sample.length() > MAX_LOGGED_CHARS) {
+            sample = sample.substring(0, MAX_LOGGED_CHARS) + "...";
+        }
+        logger.info(
+                "Rejected " + unloggedStrikes.getAndSet(0) + " malformed packets since the last sample, e.g. from "
+                        + connection.getRemoteAddress() + ": invalid " + (type != null ? type.getName() + " " : "")
+                        + "packet, " + reason + ", \"" + sample + "\""
+        );
+    }
+
+    /**
+     * The number of strikes of an IP within the current window.
+     */
+    private static class IPStrikes {
+
+        private long windowStartNanos;
+        private int count;
+
+        synchronized int add(long now, long windowNanos) {
+            get(now, windowNanos);
+            count += 1;
+            return count;
+        }
+
+        synchronized int get(long now, long windowNanos) {
+            if (count == 0 || now - windowStartNanos >= windowNanos) {
+                windowStartNanos = now;
+                count = 0;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package net.royalur.backend.network;
+
+/**
+ * Thrown when a client sends something that breaks the protocol,
+ * such as a malformed packet, or a move when it is not their turn.
+ * These are a normal part of serving clients, so the exception does
+ * not capture a stack trace, and common violations are preallocated.
+ *
+ * @author Paddy Lamont
+ */
+public class ProtocolViolation extends RuntimeException {
+
+    public static final ProtocolViolation EMPTY_PACKET = new ProtocolViolation("The packet is empty");
+    public static final ProtocolViolation TRUNCATED_PACKET = new ProtocolViolation("The packet ended unexpectedly");
+    public static final ProtocolViolation TRAILING_DATA = new ProtocolViolation("The packet has unexpected data");
+    public static final ProtocolViolation NEGATIVE_NONCE = new ProtocolViolation("The nonce is negative");
+
+    public ProtocolViolation(String message) {
+        super(message, null, false, false);
+    }
+
+    /**
+     * Ensure that {@param expression} is true.
+     *
+     * @throws ProtocolViolation {@param violation} if {@param expression} is false.
+     */
+    public static void check(boolean expression, ProtocolViolation violation) {
+        if (!expression)
+            throw violation;
+    }
+}
@@ -0,0 +1,89 @@
+package net.royalur.backend.network;
+
+import net.royalur.backend.util.Checks;
+import org.eclipse.jetty.http.pathmap.ServletPathSpec;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.websocket.server.NativeWebSocketServletContainerInitializer;
+import org.eclipse.jetty.websocket.server.WebSocketUpgradeFilter;
+import org.eclipse.jetty.websocket.servlet.ServletUpgradeRequest;
+import org.eclipse.jetty.websocket.servlet.ServletUpgradeResponse;
+
+import javax.annotation.Nullable;
+import javax.servlet.ServletException;
+import java.util.List;
+
+/**
+ * Handles plain WebSocket connections that carry game packets directly
+ * in their frames, without the framing and heartbeats of Socket.io.
+ * This is served alongside Socket.io so that clients can migrate gradually.
+ *
+ * @author Paddy Lamont
+ */
+public class RawWebSocketServlet {
+
+    /**
+     * The path that plain WebSocket connections are accepted on.
+     */
+    public static final String CONTEXT_PATH = "/ws";
+
+    /**
+     * The time after which a connection that has not sent
+     * or received anything, not even a ping, is closed.
+     */
+    public static final long IDLE_TIMEOUT_MS = 60 * 1000;
+
+    private final GameServer server;
+    private final ConnectionAdmission admission;
+    private final @Nullable PacketCompression compression;
+    private final boolean perMessageDeflate;
+
+    /**
+     * @param compression The compression to apply to large packets for clients
+     *                    that opt in to it, or null to never compress packets.
+     * @param perMessageDeflate Whether to allow the permessage-deflate WebSocket extension.
+     */
+    public RawWebSocketServlet(
+            GameServer server,
+            ConnectionAdmission admission,
+            @Nullable PacketCompression compression,
+            boolean perMessageDeflate
+    ) {
+        Checks.ensureNonNull(server, "server");
+        Checks.ensureNonNull(admission, "admission");
+        this.server = server;
+        this.admission = admission;
+        this.compression = compression;
+        this.perMessageDeflate = perMessageDeflate;
+    }
+
+    protected ServletContextHandler createContextHandler() {
+        ServletContextHandler servletContextHandler = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        servletContextHandler.setContextPath(CONTEXT_PATH);
+
+        try {
+            WebSocketUpgradeFilter.configure(servletContextHandler);
+            NativeWebSocketServletContainerInitializer.configure(servletContextHandler, (ctx, config) -> {
+                config.getPolicy().setIdleTimeout(IDLE_TIMEOUT_MS);
+                if (!perMessageDeflate) {
+                    config.getFactory().getExtensionFactory().unregister(SocketIoServlet.PER_MESSAGE_DEFLATE);
+                }
+                config.addMapping(new ServletPathSpec("/"), this::createWebSocket);
+            });
+        } catch (ServletException e) {
+            throw new RuntimeException(e);
+        }
+        return servletContextHandler;
+    }
+
+    /**
+     * Creates the handler for a WebSocket connection, or rejects the upgrade if it has not been admitted.
+     */
+    private Object createWebSocket(ServletUpgradeRequest request, ServletUpgradeResponse response) {
+        if (!AdmissionFilter.admitUpgrade(admission, request, response))
+            return null;
+
+        List<String> compressParams = request.getParameterMap().get(PacketCompression.COMPRESS_PARAM);
+        boolean wantsCompression = compressParams != null && compressParams.contains(PacketCompression.DEFLATE);
+        return new GameWebSocket(server, wantsCompression ? compression : null);
+    }
+}
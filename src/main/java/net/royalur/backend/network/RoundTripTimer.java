@@ -0,0 +1,80 @@
+package net.royalur.backend.network;
+
+/**
+ * Measures the round trip times of the pings sent to a client, and keeps
+ * a smoothed estimate of the round trip time in the same way as TCP does,
+ * where each new sample moves the estimate by an eighth of the difference.
+ * <p>
+ * Only one ping is outstanding at a time. A pong that does not match the
+ * outstanding ping is ignored, so that late pongs are not mis-measured.
+ *
+ * @author Paddy Lamont
+ */
+public class RoundTripTimer {
+
+    /**
+     * The nonces of pings wrap around to fit into 8 digits.
+     */
+    private static final int MAX_NONCE = 100_000_000;
+
+    /**
+     * The weight given to each new round trip time in the smoothed estimate.
+     */
+    private static final double SMOOTHING = 0.125;
+
+    private int nextNonce;
+    private int pendingNonce = -1;
+    private long pendingSentNanos;
+
+    private long lastNanos = -1;
+    private double smoothedNanos = -1;
+
+    /**
+     * Records that a ping was sent at {@param nowNanos}, replacing any outstanding ping.
+     *
+     * @return The nonce to send with the ping.
+     */
+    public synchronized int start(long nowNanos) {
+        int nonce = nextNonce;
+        nextNonce = (nextNonce + 1) % MAX_NONCE;
+        pendingNonce = nonce;
+        pendingSentNanos = nowNanos;
+        return nonce;
+    }
+
+    /** Forgets the outstanding ping, such as when the connection it was sent on has closed. **/
+    public synchronized void cancel() {
+        pendingNonce = -1;
+    }
+
+    /**
+     * Records that the pong with the nonce {@param nonce} was received at {@param nowNanos}.
+     *
+     * @return The round trip time of the ping in nanoseconds, or -1
+     *         if {@param nonce} does not match the outstanding ping.
+     */
+    public synchronized long finish(int nonce, long nowNanos) {
+        if (nonce < 0 || nonce != pendingNonce)
+            return -1;
+
+        pendingNonce = -1;
+        long rttNanos = Math.max(0, nowNanos - pendingSentNanos);
+        lastNanos = rttNanos;
+        if (smoothedNanos < 0) {
+            smoothedNanos = rttNanos;
+        } else {
+            smoothedNanos += SMOOTHING * (rttNanos - smoothedNanos);
+        }
+        return rttNanos;
+    }
+
+    /** @return The most recent round trip time in nanoseconds, or -1 if none have been measured. **/
+    public synchronized long getLastNanos() {
+        return lastNanos;
+    }
+
+    /** @return The smoothed round trip time in nanoseconds, or -1 if none have been measured. **/
+    public synchronized long getSmoothedNanos() {
+        return Math.round(smoothedNanos);
+    }
+}
@@ -1,7 +1,12 @@
 package net.royalur.backend.network;
 
+import net.royalur.backend.Config;
 import net.royalur.backend.RoyalUr;
+import net.royalur.backend.replay.ReplayLibrary;
+import net.royalur.backend.replay.ReplayServlet;
+import net.royalur.backend.ssl.HandshakeCounter;
 import net.royalur.backend.ssl.KeyInfo;
+import net.royalur.backend.ssl.TLSSessionSettings;
 import org.eclipse.jetty.security.ConstraintMapping;
 import org.eclipse.jetty.security.ConstraintSecurityHandler;
 import org.eclipse.jetty.server.*;
@@ -12,26 +17,42 @@ import org.eclipse.jetty.util.security.Constraint;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 
 import javax.annotation.Nullable;
+import java.net.InetAddress;
 
 /**
  * Manages the Jetty server that is used by the Royal Game of Ur backend.
  */
 public class RoyalUrServer {
 
-    private static final int SECURE_PORT = 9113;
-    private static final int WEB_PORT = 9112;
-
     private final boolean usingSSL;
+    private final TLSSessionSettings tlsSessionSettings;
     private final Server server;
     private final GameServer gameServer;
+    private final ReplayServlet replayServlet;
 
     private final @Nullable SslContextFactory.Server sslContextFactory;
     private final @Nullable SslConnectionFactory tls;
 
-    public RoyalUrServer(RoyalUr game, @Nullable KeyInfo key) {
+    /**
+     * @param usePrivatePorts Whether to bind to free loopback ports instead of the configured
+     *                        ports, so that the server can be started alongside another.
+     */
+    public RoyalUrServer(
+            RoyalUr game,
+            Config config,
+            ReplayLibrary replays,
+            @Nullable KeyInfo key,
+            TLSSessionSettings tlsSessionSettings,
+            boolean usePrivatePorts
+    ) {
         this.usingSSL = key != null;
+        this.tlsSessionSettings = tlsSessionSettings;
         this.server = new Server();
-        this.gameServer = new GameServer(game);
+        this.gameServer = new GameServer(game, config);
+        this.replayServlet = new ReplayServlet(
+                replays, config.getReplayAllowedOrigins(),
+                config.getReplayMaxStates(), config.getReplayMaxRequestsPerMin()
+        );
 
         // Configure the HttpConfiguration for the clear-text connector.
         HttpConfiguration httpConfig = new HttpConfiguration();
@@ -39,11 +60,11 @@ public class RoyalUrServer {
             httpConfig.addCustomizer(new SecureRequestCustomizer());
         }
         httpConfig.setSecureScheme("https");
-        httpConfig.setSecurePort(SECURE_PORT);
+        httpConfig.setSecurePort(config.getSecurePort());
 
         // The clear-text connector.
         ServerConnector connector = new ServerConnector(server, new HttpConnectionFactory(httpConfig));
-        connector.setPort(WEB_PORT);
+        bind(connector, config.getWebPort(), usePrivatePorts);
         server.addConnector(connector);
 
         ConstraintSecurityHandler securityHandler = null;
@@ -55,14 +76,13 @@ public class RoyalUrServer {
             HttpConnectionFactory https11 = new HttpConnectionFactory(httpsConfig);
 
             // Configure the SslContextFactory with the keyStore information.
-            sslContextFactory = new SslContextFactory.Server();
-            sslContextFactory.setKeyStore(key.keyStore);
-            sslContextFactory.setKeyStorePassword(key.password);
+            sslContextFactory = createSslContextFactory(key);
             tls = new SslConnectionFactory(sslContextFactory, https11.getProtocol());
 
             // The encrypted connector.
             ServerConnector secureConnector = new ServerConnector(server, tls, https11);
-            secureConnector.setPort(SECURE_PORT);
+            bind(secureConnector, config.getSecurePort(), usePrivatePorts);
+            secureConnector.addBean(new HandshakeCounter(tlsSessionSettings));
             server.addConnector(secureConnector);
 
             // Add a constraint so that all HTTP requests return a 403 error
@@ -85,6 +105,7 @@ public class RoyalUrServer {
             // Redirects insecure HTTP requests to HTTPS.
             handlers.addHandler(new SecuredRedirectHandler());
         }
+        handlers.addHandler(replayServlet.createContextHandler());
         gameServer.addJettyHandlers(handlers);
         handlers.addHandler(new DefaultHandler());
 
@@ -96,19 +117,57 @@ public class RoyalUrServer {
         }
     }
 
+    private static void bind(ServerConnector connector, int port, boolean usePrivatePorts) {
+        if (usePrivatePorts) {
+            connector.setHost(InetAddress.getLoopbackAddress().getHostAddress());
+            connector.setPort(0);
+        } else {
+            connector.setPort(port);
+        }
+    }
+
+    private SslContextFactory.Server createSslContextFactory(KeyInfo key) {
+        SslContextFactory.Server factory = new SslContextFactory.Server();
+        factory.setKeyStore(key.keyStore);
+        factory.setKeyStorePassword(key.password);
+        tlsSessionSettings.applyTo(factory);
+        return factory;
+    }
+
+    /**
+     * Swaps in a new key for new connections. Established connections
+     * keep using the SSL engines they were created with, and so they
+     * are not interrupted. If the new key cannot be loaded, the current
+     * key is kept.
+     */
     public void reloadSSL(KeyInfo keyStore) {
         if (!usingSSL || sslContextFactory == null)
             throw new IllegalStateException("This server has not been set up to use SSL");
 
-        sslContextFactory.setKeyStore(keyStore.keyStore);
-        sslContextFactory.setKeyStorePassword(keyStore.password);
+        // Make sure the new key is usable before touching the live context.
+        SslContextFactory.Server validationFactory = createSslContextFactory(keyStore);
         try {
-            sslContextFactory.reload(ignored -> {});
+            validationFactory.start();
+            validationFactory.stop();
+        } catch (Exception e) {
+            throw new RuntimeException("The new SSL key could not be loaded, keeping the current key", e);
+        }
+
+        // The SSL context is rebuilt and swapped under the factory's lock.
+        try {
+            sslContextFactory.reload(factory -> {
+                factory.setKeyStore(keyStore.keyStore);
+                factory.setKeyStorePassword(keyStore.password);
+            });
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    public GameServer getGameServer() {
+        return gameServer;
+    }
+
     public void start() {
         try {
             server.start();
@@ -0,0 +1,56 @@
+package net.royalur.backend.network;
+
+import io.socket.socketio.server.SocketIoSocket;
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * A connection made through Socket.io, where each packet
+ * is sent as the argument of a "message" event.
+ *
+ * @author Paddy Lamont
+ */
+public class SocketIoConnection implements Connection {
+
+    private final @Nonnull SocketIoSocket socket;
+    private final @Nonnull String remoteAddress;
+
+    public SocketIoConnection(@Nonnull SocketIoSocket socket) {
+        Checks.ensureNonNull(socket, "socket");
+        this.socket = socket;
+        this.remoteAddress = readRemoteAddress(socket);
+    }
+
+    /**
+     * @return The IP address that the socket {@param socket} connected from.
+     */
+    private static String readRemoteAddress(SocketIoSocket socket) {
+        List<String> values = socket.getInitialHeaders().get(RemoteAddrFilter.HEADER_NAME);
+        if (values == null || values.isEmpty())
+            return "unknown";
+
+        return values.get(0);
+    }
+
+    @Override
+    public @Nonnull String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public void send(@Nonnull String message) {
+        socket.send("message", message);
+    }
+
+    @Override
+    public void close() {
+        socket.disconnect(true);
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIoConnection(" + remoteAddress + ")";
+    }
+}
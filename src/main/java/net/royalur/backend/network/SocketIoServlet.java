@@ -6,8 +6,11 @@ import io.socket.engineio.server.JettyWebSocketHandler;
 import io.socket.socketio.server.SocketIoNamespace;
 import io.socket.socketio.server.SocketIoServer;
 import org.eclipse.jetty.http.pathmap.ServletPathSpec;
+import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.websocket.servlet.ServletUpgradeRequest;
+import org.eclipse.jetty.websocket.servlet.ServletUpgradeResponse;
 import org.eclipse.jetty.websocket.server.NativeWebSocketServletContainerInitializer;
 import org.eclipse.jetty.websocket.server.WebSocketUpgradeFilter;
 
@@ -24,13 +27,27 @@ import java.util.EnumSet;
  */
 public class SocketIoServlet {
 
+    /**
+     * The name of the WebSocket compression extension.
+     */
+    public static final String PER_MESSAGE_DEFLATE = "permessage-deflate";
+
     public final String[] allowedCORSOrigins;
 
+    protected final ConnectionAdmission admission;
+    protected final boolean perMessageDeflate;
     protected final EngineIoServer engineIoServer;
     protected final SocketIoServer socketIoServer;
 
-    public SocketIoServlet(String[] allowedCORSOrigins) {
+    /**
+     * @param perMessageDeflate Whether to allow the permessage-deflate WebSocket extension.
+     *                          It compresses every message, and keeps a compression window
+     *                          for every connection that negotiates it.
+     */
+    public SocketIoServlet(String[] allowedCORSOrigins, ConnectionAdmission admission, boolean perMessageDeflate) {
         this.allowedCORSOrigins = allowedCORSOrigins;
+        this.admission = admission;
+        this.perMessageDeflate = perMessageDeflate;
 
         // Construct the Socket.io servers.
         EngineIoServerOptions eioOptions = EngineIoServerOptions.newFromDefault();
@@ -45,6 +62,10 @@ public class SocketIoServlet {
         ServletContextHandler servletContextHandler = new ServletContextHandler(ServletContextHandler.SESSIONS);
         servletContextHandler.setContextPath("/");
         servletContextHandler.addFilter(RemoteAddrFilter.class, "/socket.io/*", EnumSet.of(DispatcherType.REQUEST));
+        servletContextHandler.addFilter(
+                new FilterHolder(new AdmissionFilter(admission)),
+                "/socket.io/*", EnumSet.of(DispatcherType.REQUEST)
+        );
 
         // Handle HTTP requests.
         servletContextHandler.addServlet(new ServletHolder(new HttpServlet() {
@@ -62,10 +83,10 @@ public class SocketIoServlet {
         try {
             WebSocketUpgradeFilter.configure(servletContextHandler);
             NativeWebSocketServletContainerInitializer.configure(servletContextHandler, (ctx, config) -> {
-                config.addMapping(
-                        new ServletPathSpec("/socket.io/*"),
-                        (servletUpgradeRequest, servletUpgradeResponse) -> new JettyWebSocketHandler(engineIoServer)
-                );
+                if (!perMessageDeflate) {
+                    config.getFactory().getExtensionFactory().unregister(PER_MESSAGE_DEFLATE);
+                }
+                config.addMapping(new ServletPathSpec("/socket.io/*"), this::createWebSocket);
             });
         } catch (ServletException e) {
             throw new RuntimeException(e);
@@ -73,6 +94,18 @@ public class SocketIoServlet {
         return servletContextHandler;
     }
 
+    /**
+     * Creates the handler for a WebSocket connection, or rejects the
+     * upgrade if it is a new handshake that has not been admitted.
+     */
+    private Object createWebSocket(ServletUpgradeRequest request, ServletUpgradeResponse response) {
+        boolean isNewSession = !request.getParameterMap().containsKey(AdmissionFilter.SESSION_ID_PARAM);
+        if (isNewSession && !AdmissionFilter.admitUpgrade(admission, request, response))
+            return null;
+
+        return new JettyWebSocketHandler(engineIoServer);
+    }
+
     public SocketIoNamespace namespace(String namespace) {
         return socketIoServer.namespace(namespace);
     }
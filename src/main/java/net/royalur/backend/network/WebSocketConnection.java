@@ -0,0 +1,80 @@
+package net.royalur.backend.network;
+
+import net.royalur.backend.util.Checks;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * A connection made through a plain WebSocket, where each
+ * packet is sent as its own text frame with no extra framing.
+ * If the client opted in to compression, large packets are
+ * instead sent compressed in binary frames.
+ *
+ * @author Paddy Lamont
+ */
+public class WebSocketConnection implements Connection {
+
+    private static final ByteBuffer EMPTY_PING = ByteBuffer.allocate(0);
+
+    private final @Nonnull Session session;
+    private final @Nonnull String remoteAddress;
+    private final @Nullable PacketCompression compression;
+
+    /**
+     * @param compression The compression to apply to large packets, or null to never compress packets.
+     */
+    public WebSocketConnection(@Nonnull Session session, @Nullable PacketCompression compression) {
+        Checks.ensureNonNull(session, "session");
+        this.session = session;
+        this.compression = compression;
+
+        InetSocketAddress address = session.getRemoteAddress();
+        this.remoteAddress = (address != null ? address.getAddress().getHostAddress() : "unknown");
+    }
+
+    @Override
+    public @Nonnull String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public void send(@Nonnull String message) {
+        if (!session.isOpen())
+            throw new IllegalStateException("The WebSocket is closed");
+
+        byte[] compressed = (compression != null ? compression.compress(message) : null);
+        if (compressed != null) {
+            session.getRemote().sendBytesByFuture(ByteBuffer.wrap(compressed));
+        } else {
+            session.getRemote().sendStringByFuture(message);
+        }
+    }
+
+    @Override
+    public void close() {
+        session.close(StatusCode.NORMAL, null);
+    }
+
+    @Override
+    public void keepAlive() {
+        if (!session.isOpen())
+            return;
+
+        try {
+            session.getRemote().sendPing(EMPTY_PING.duplicate());
+        } catch (IOException e) {
+            session.close(StatusCode.SHUTDOWN, "Unable to ping");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WebSocketConnection(" + remoteAddress + ")";
+    }
+}
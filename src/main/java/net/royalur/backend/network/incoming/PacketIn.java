@@ -1,5 +1,6 @@
 package net.royalur.backend.network.incoming;
 
+import net.royalur.backend.network.ProtocolViolation;
 import net.royalur.backend.util.ExceptionDetailer;
 import net.royalur.backend.util.Checks;
 
@@ -27,6 +28,10 @@ public abstract class PacketIn {
             reader.assertType(type);
             readContents(reader);
             reader.assertEmpty();
+        } catch (ProtocolViolation violation) {
+            // Rethrown as-is so that preallocated violations stay allocation-free.
+            // The type of the packet is added if the violation is logged.
+            throw violation;
         } catch (RuntimeException exception) {
             throw ExceptionDetailer.detail(exception, "exception while reading " + type.getName() + " packet");
         }
@@ -48,7 +53,9 @@ public abstract class PacketIn {
         FIND_GAME("find_game", PacketInFindGame::new),
         CREATE_GAME("create_game", PacketInCreateGame::new),
         ROLL("roll", PacketInGameRoll::new),
-        MOVE("move", PacketInGameMove::new);
+        MOVE("move", PacketInGameMove::new),
+        PING("ping", PacketInPing::new),
+        PONG("pong", PacketInPong::new);
 
         private final String name;
         private final Supplier<PacketIn> packetConstructor;
@@ -1,44 +1,41 @@
 package net.royalur.backend.network.incoming;
 
-import net.royalur.model.BoardShape;
 import net.royalur.model.Tile;
-import net.royalur.model.shape.StandardBoardShape;
 
-import javax.annotation.Nullable;
+import javax.annotation.Nonnull;
 
 /**
- * A packet sent to move a piece.
+ * A packet sent to move a piece. The tile of the piece to move is read as
+ * it was sent, as the tiles on the board depend on the settings of the game,
+ * and tiles off the board are used to introduce a piece.
  *
  * @author Paddy Lamont
  */
 public class PacketInGameMove extends GamePacketIn {
 
-    private static final BoardShape temporaryBoardShapeForCompatibility = new StandardBoardShape();
-
-    public @Nullable Tile from;
+    /** The indices of the tile of the piece to move. **/
+    public int fromX;
+    public int fromY;
 
     public PacketInGameMove() {
         super(Type.MOVE);
     }
 
+    /** Sets the tile of the piece to move to {@param tile}. **/
+    public void setFrom(@Nonnull Tile tile) {
+        this.fromX = tile.ix;
+        this.fromY = tile.iy;
+    }
+
     @Override
     public void readContents(PacketReader reader) {
         super.readContents(reader);
-        int x = reader.nextInt(2);
-        int y = reader.nextInt(2);
-        Tile tile = Tile.fromIndices(x, y);
-
-        // TODO : This only supports the standard board shape...
-        // This should not be the way this is supported.
-        if (temporaryBoardShapeForCompatibility.contains(tile)) {
-            this.from = tile;
-        } else {
-            this.from = null;
-        }
+        this.fromX = reader.nextInt(2);
+        this.fromY = reader.nextInt(2);
     }
 
     @Override
     public String toString() {
-        return "PacketInMove(gameID=" + gameID + ", from=" + from + ")";
+        return "PacketInMove(gameID=" + gameID + ", fromX=" + fromX + ", fromY=" + fromY + ")";
     }
 }
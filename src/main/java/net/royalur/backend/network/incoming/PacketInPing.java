@@ -0,0 +1,30 @@
+package net.royalur.backend.network.incoming;
+
+import net.royalur.backend.network.ProtocolViolation;
+
+/**
+ * A packet sent by the client to measure its latency to the server,
+ * which is answered with a pong that echoes the nonce of the ping.
+ *
+ * @author Paddy Lamont
+ */
+public class PacketInPing extends PacketIn {
+
+    public int nonce;
+
+    public PacketInPing() {
+        super(Type.PING);
+    }
+
+    @Override
+    protected void readContents(PacketReader reader) {
+        super.readContents(reader);
+        this.nonce = reader.nextInt(8);
+        ProtocolViolation.check(nonce >= 0, ProtocolViolation.NEGATIVE_NONCE);
+    }
+
+    @Override
+    public String toString() {
+        return "PacketInPing(nonce=" + nonce + ")";
+    }
+}
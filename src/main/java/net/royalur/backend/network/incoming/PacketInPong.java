@@ -0,0 +1,30 @@
+package net.royalur.backend.network.incoming;
+
+import net.royalur.backend.network.ProtocolViolation;
+
+/**
+ * A packet sent by the client in answer to a ping from the server,
+ * which echoes the nonce of the ping.
+ *
+ * @author Paddy Lamont
+ */
+public class PacketInPong extends PacketIn {
+
+    public int nonce;
+
+    public PacketInPong() {
+        super(Type.PONG);
+    }
+
+    @Override
+    protected void readContents(PacketReader reader) {
+        super.readContents(reader);
+        this.nonce = reader.nextInt(8);
+        ProtocolViolation.check(nonce >= 0, ProtocolViolation.NEGATIVE_NONCE);
+    }
+
+    @Override
+    public String toString() {
+        return "PacketInPong(nonce=" + nonce + ")";
+    }
+}
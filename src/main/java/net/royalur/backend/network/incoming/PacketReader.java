@@ -1,10 +1,15 @@
 package net.royalur.backend.network.incoming;
 
+import net.royalur.backend.network.ProtocolViolation;
 import net.royalur.backend.util.Checks;
 import java.util.UUID;
 
 /**
  * A helper to read values from a packet.
+ * <p>
+ * Every packet received passes through here, so the messages of
+ * errors are only built once a check has failed, and malformed
+ * packets are reported using stackless {@link ProtocolViolation}s.
  *
  * @author Paddy Lamont
  */
@@ -17,7 +22,7 @@ public class PacketReader {
     /** Construct a packet to read in the packet data {@param data}. **/
     public PacketReader(String data) {
         Checks.ensureNonNull(data, "data");
-        Checks.ensure(data.length() > 0, "data cannot be empty, expected type character");
+        ProtocolViolation.check(data.length() > 0, ProtocolViolation.EMPTY_PACKET);
 
         this.data = data;
         this.index = 0;
@@ -25,7 +30,8 @@ public class PacketReader {
         char typeChar = nextChar();
         this.type = PacketIn.Type.fromId(typeChar - '0');
 
-        Checks.ensure(type != null, "Unknown incoming packet type " + typeChar + " (ucs " + ((int) typeChar) + ")");
+        if (type == null)
+            throw new ProtocolViolation("Unknown incoming packet type " + typeChar + " (ucs " + ((int) typeChar) + ")");
     }
 
     /** @return A copy of this packet, with its position reset to the beginning of the packet. **/
@@ -33,39 +39,69 @@ public class PacketReader {
         return new PacketReader(data);
     }
 
-    /** @throws IllegalStateException if the type of this packet is not {@param type}. **/
+    /** @throws ProtocolViolation if the type of this packet is not {@param type}. **/
     public void assertType(PacketIn.Type type) {
-        Checks.ensureState(this.type == type, "expected " + type + " packet");
+        if (this.type != type)
+            throw new ProtocolViolation("expected " + type + " packet");
     }
 
-    /** @throws IllegalStateException if there is any data left unread in this packet. **/
+    /** @throws ProtocolViolation if there is any data left unread in this packet. **/
     public void assertEmpty() {
-        Checks.ensureState(index == data.length(), "expected packet " + type + " to be fully read");
+        ProtocolViolation.check(index == data.length(), ProtocolViolation.TRAILING_DATA);
     }
 
     /** @return The next character in this packet. **/
     public char nextChar() {
-        Checks.ensureState(index < data.length(), "there are no characters left in this packet");
+        ProtocolViolation.check(index < data.length(), ProtocolViolation.TRUNCATED_PACKET);
         return data.charAt(index++);
     }
 
     /** @return The next String of length {@param length} in this packet. **/
     public String nextString(int length) {
-        Checks.ensure(length >= 0, "length must be >= 0");
-        Checks.ensureState(
-            index + length <= data.length(),
-            "there are not " + length + " characters left in this packet"
-        );
+        skip(length);
+        return data.substring(index - length, index);
+    }
 
-        int from = index;
+    /** Moves past the next {@param length} characters, after checking that they exist. **/
+    private void skip(int length) {
+        if (length < 0)
+            throw new IllegalArgumentException("length must be >= 0");
+        ProtocolViolation.check(length <= data.length() - index, ProtocolViolation.TRUNCATED_PACKET);
         index += length;
-        return data.substring(from, index);
     }
 
-    /** @return The next integer of length {@param digits} digits in this packet. **/
+    /**
+     * @return The next integer of length {@param digits} digits in this packet.
+     *         This follows the rules of {@link Integer#parseInt(String)}, but
+     *         does not copy the digits out of the packet.
+     */
     public int nextInt(int digits) {
-        String string = nextString(digits);
-        return Checks.detailThrown(() -> Integer.parseInt(string), "expected integer but found " + string);
+        int from = index;
+        skip(digits);
+
+        int position = from;
+        boolean negative = false;
+        if (digits > 1 && (data.charAt(from) == '-' || data.charAt(from) == '+')) {
+            negative = (data.charAt(from) == '-');
+            position += 1;
+        }
+
+        long value = 0;
+        for (; position < index; ++position) {
+            int digit = Character.digit(data.charAt(position), 10);
+            if (digit < 0 || value > Integer.MAX_VALUE)
+                throw invalidInt(from);
+
+            value = value * 10 + digit;
+        }
+        if (digits == 0 || value > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE))
+            throw invalidInt(from);
+
+        return (int) (negative ? -value : value);
+    }
+
+    private ProtocolViolation invalidInt(int from) {
+        return new ProtocolViolation("expected integer but found " + data.substring(from, index));
     }
 
     /** @return The next String with length encoded in the next {@param lengthDigits} digits. **/
@@ -77,7 +113,11 @@ public class PacketReader {
     /** @return The next UUID in the packet. **/
     public UUID nextUUID() {
         String string = nextString(36);
-        return Checks.detailThrown(UUID::fromString, string, "expected uuid but found " + string);
+        try {
+            return UUID.fromString(string);
+        } catch (IllegalArgumentException exception) {
+            throw new ProtocolViolation("expected uuid but found " + string);
+        }
     }
 
     @Override
@@ -3,6 +3,7 @@ package net.royalur.backend.network.outgoing;
 import net.royalur.backend.util.Checks;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Allows the construction of outgoing packets.
@@ -13,6 +14,9 @@ public abstract class PacketOut {
 
     public final Type type;
 
+    /** This packet written out, so that a packet sent to many clients is only written once. **/
+    private volatile @Nullable String encoded;
+
     public PacketOut(@Nonnull Type type) {
         Checks.ensureNonNull(type, "type");
         this.type = type;
@@ -20,9 +24,19 @@ public abstract class PacketOut {
 
     /** @return this packet written out to a String. **/
     public @Nonnull String write() {
-        PacketWriter writer = new PacketWriter(type);
-        writeContents(writer);
-        return writer.toString();
+        String encoded = this.encoded;
+        if (encoded == null) {
+            PacketWriter writer = new PacketWriter(type);
+            writeContents(writer);
+            encoded = writer.toString();
+            this.encoded = encoded;
+        }
+        return encoded;
+    }
+
+    /** @return Whether this packet has already been written out. **/
+    public boolean isWritten() {
+        return encoded != null;
     }
 
     /** Write the contents of the packet. **/
@@ -44,7 +58,12 @@ public abstract class PacketOut {
         GAME_MESSAGE("message"),
         GAME_PLAYER_STATUS("player_status"),
         GAME_STATE("state"),
-        GAME_MOVE("move");
+        GAME_MOVE("move"),
+        REDIRECT("redirect"),
+        PING("ping"),
+        PONG("pong");
+
+        private static final Type[] byId = values();
 
         private final String name;
 
@@ -2,8 +2,8 @@ package net.royalur.backend.network.outgoing;
 
 import net.royalur.model.Move;
 import net.royalur.model.Tile;
-import net.royalur.model.path.BellPathPair;
 import net.royalur.backend.game.GameID;
+import net.royalur.backend.game.GameTables;
 import net.royalur.backend.util.Checks;
 
 import javax.annotation.Nonnull;
@@ -16,13 +16,18 @@ import javax.annotation.Nullable;
  */
 public class PacketOutGameMove extends GamePacketOut {
 
-    private static final BellPathPair temporaryPathForCompatibility = new BellPathPair();
-
+    private final @Nonnull GameTables tables;
     private final @Nonnull Move<?> move;
 
-    public PacketOutGameMove(@Nonnull GameID gameID, @Nonnull Move<?> move) {
+    /**
+     * @param tables The tables of the settings of the game, which give the tiles
+     *               off the board that are sent for introduced and scored pieces.
+     */
+    public PacketOutGameMove(@Nonnull GameID gameID, @Nonnull GameTables tables, @Nonnull Move<?> move) {
         super(Type.GAME_MOVE, gameID);
+        Checks.ensureNonNull(tables, "tables");
         Checks.ensureNonNull(move, "move");
+        this.tables = tables;
         this.move = move;
     }
 
@@ -43,8 +48,8 @@ public class PacketOutGameMove extends GamePacketOut {
         Tile source = (move.isIntroducingPiece() ? null : move.getSource());
         Tile destination = (move.isScoringPiece() ? null : move.getDestination());
 
-        writeTile(writer, source, temporaryPathForCompatibility.get(move.player).startTile);
-        writeTile(writer, destination, temporaryPathForCompatibility.get(move.player).endTile);
+        writeTile(writer, source, tables.getStartTile(move.player));
+        writeTile(writer, destination, tables.getEndTile(move.player));
     }
 
     @Override
@@ -6,7 +6,9 @@ import net.royalur.model.state.WaitingForMoveGameState;
 import net.royalur.rules.simple.SimplePiece;
 import net.royalur.backend.game.DiceValue;
 import net.royalur.backend.game.GameID;
+import net.royalur.backend.game.GameTables;
 import net.royalur.backend.game.RoyalUrNetDiceRoll;
+import net.royalur.backend.util.Checks;
 
 import javax.annotation.Nonnull;
 
@@ -17,13 +19,20 @@ import javax.annotation.Nonnull;
  */
 public class PacketOutGameState extends GamePacketOut {
 
+    private final @Nonnull GameTables tables;
     private final @Nonnull Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game;
 
+    /**
+     * @param tables The tables of the settings of {@param game}.
+     */
     public PacketOutGameState(
             @Nonnull GameID gameID,
+            @Nonnull GameTables tables,
             @Nonnull Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game
     ) {
         super(Type.GAME_STATE, gameID);
+        Checks.ensureNonNull(tables, "tables");
+        this.tables = tables;
         this.game = game.copy();
     }
 
@@ -32,22 +41,18 @@ public class PacketOutGameState extends GamePacketOut {
         writer.pushDigit(state.score);
     }
 
-    private static void writeBoard(@Nonnull PacketWriter writer, @Nonnull Board<SimplePiece> board) {
-        int width = board.shape.width;
-        int height = board.shape.height;
-        for (int iy = 0; iy < height; ++iy) {
-            for (int ix = 0; ix < width; ++ix) {
-
-                Player player = null;
-                if (board.contains(ix, iy)) {
-                    Piece piece = board.get(ix, iy);
-                    if (piece != null) {
-                        player = piece.owner;
-                    }
+    private void writeBoard(@Nonnull PacketWriter writer, @Nonnull Board<SimplePiece> board) {
+        int width = tables.width;
+        for (int index = 0; index < tables.getGridSize(); ++index) {
+            Player player = null;
+            if (tables.isOnBoard(index)) {
+                Piece piece = board.get(index % width, index / width);
+                if (piece != null) {
+                    player = piece.owner;
                 }
-
-                PacketOutGameMetadata.writePlayer(writer, player, 0);
             }
+
+            PacketOutGameMetadata.writePlayer(writer, player, 0);
         }
     }
 
@@ -0,0 +1,30 @@
+package net.royalur.backend.network.outgoing;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A packet sent to measure the round trip time to a client,
+ * which the client answers with a pong that echoes the nonce.
+ *
+ * @author Paddy Lamont
+ */
+public class PacketOutPing extends PacketOut {
+
+    private final int nonce;
+
+    public PacketOutPing(int nonce) {
+        super(Type.PING);
+        this.nonce = nonce;
+    }
+
+    @Override
+    protected void writeContents(@Nonnull PacketWriter writer) {
+        super.writeContents(writer);
+        writer.pushInt(nonce, 8);
+    }
+
+    @Override
+    public @Nonnull String toString() {
+        return "PacketOutPing(nonce=" + nonce + ")";
+    }
+}
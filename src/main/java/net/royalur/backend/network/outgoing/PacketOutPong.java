@@ -0,0 +1,43 @@
+package net.royalur.backend.network.outgoing;
+
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A packet sent in answer to a ping from a client. It includes the time
+ * the server spent between receiving the ping and sending the pong, so
+ * that the client can tell the time spent in the network apart from the
+ * time spent by the server.
+ *
+ * @author Paddy Lamont
+ */
+public class PacketOutPong extends PacketOut {
+
+    /**
+     * The largest processing time that can be written, in microseconds.
+     */
+    public static final int MAX_PROCESSING_MICROS = 99_999_999;
+
+    private final int nonce;
+    private final int processingMicros;
+
+    public PacketOutPong(int nonce, long processingMicros) {
+        super(Type.PONG);
+        Checks.ensure(processingMicros >= 0, "processingMicros must be >= 0");
+        this.nonce = nonce;
+        this.processingMicros = (int) Math.min(processingMicros, MAX_PROCESSING_MICROS);
+    }
+
+    @Override
+    protected void writeContents(@Nonnull PacketWriter writer) {
+        super.writeContents(writer);
+        writer.pushInt(nonce, 8);
+        writer.pushInt(processingMicros, 8);
+    }
+
+    @Override
+    public @Nonnull String toString() {
+        return "PacketOutPong(nonce=" + nonce + ", processingMicros=" + processingMicros + ")";
+    }
+}
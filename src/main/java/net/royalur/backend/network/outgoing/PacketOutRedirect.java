@@ -0,0 +1,34 @@
+package net.royalur.backend.network.outgoing;
+
+import net.royalur.backend.game.GameID;
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A packet sent to tell the client that a game is hosted by another
+ * server in the cluster, and that they should connect to it instead.
+ *
+ * @author Paddy Lamont
+ */
+public class PacketOutRedirect extends GamePacketOut {
+
+    private final @Nonnull String url;
+
+    public PacketOutRedirect(@Nonnull GameID gameID, @Nonnull String url) {
+        super(Type.REDIRECT, gameID);
+        Checks.ensureNonNull(url, "url");
+        this.url = url;
+    }
+
+    @Override
+    protected void writeContents(@Nonnull PacketWriter writer) {
+        super.writeContents(writer);
+        writer.pushVarString(url, 3);
+    }
+
+    @Override
+    public @Nonnull String toString() {
+        return "PacketOutRedirect(gameID=" + gameID + ", url=\"" + url + "\")";
+    }
+}
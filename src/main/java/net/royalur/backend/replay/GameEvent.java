@@ -0,0 +1,210 @@
+package net.royalur.backend.replay;
+
+import net.royalur.model.Player;
+import net.royalur.model.Tile;
+import net.royalur.backend.game.DiceValue;
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Packs the rolls and moves of a game into single ints, so that
+ * the history of a game can be stored in a plain int array.
+ * <p>
+ * Every event stores its type, the player that made it, the player
+ * whose turn it is after it, and whether it finished the game.
+ * Rolls additionally store the value of each dice, and moves store
+ * the tiles that the piece was moved from and to.
+ *
+ * @author Paddy Lamont
+ */
+public final class GameEvent {
+
+    public static final int ROLL = 0;
+    public static final int MOVE = 1;
+
+    /**
+     * The maximum number of dice that can be stored in a roll event.
+     */
+    public static final int MAX_DICE = 4;
+
+    private static final int TYPE_BIT = 0;
+    private static final int PLAYER_BIT = 1;
+    private static final int NEXT_TURN_BIT = 2;
+    private static final int FINISHED_BIT = 3;
+
+    private static final int WAITING_FOR_MOVE_BIT = 4;
+    private static final int HAS_MOVES_BIT = 5;
+    private static final int DICE_SHIFT = 6;
+    private static final int DICE_BITS = 3;
+
+    private static final int SOURCE_SHIFT = 4;
+    private static final int DESTINATION_SHIFT = 13;
+    private static final int TILE_PRESENT_BIT = 8;
+    private static final int TILE_COORD_BITS = 4;
+    private static final int TILE_COORD_MASK = (1 << TILE_COORD_BITS) - 1;
+
+    private GameEvent() {}
+
+    /**
+     * @param player The player that rolled the dice.
+     * @param values The value of each dice that was rolled.
+     * @param waitingForMove Whether the game is waiting for {@param player} to move after the roll.
+     * @param hasMoves Whether {@param player} has any moves available after the roll.
+     * @param nextTurn The player whose turn it is after the roll.
+     * @param finished Whether the game is finished after the roll.
+     * @return The packed roll event.
+     */
+    public static int roll(
+            @Nonnull Player player,
+            @Nonnull DiceValue[] values,
+            boolean waitingForMove,
+            boolean hasMoves,
+            @Nonnull Player nextTurn,
+            boolean finished
+    ) {
+        Checks.ensure(values.length <= MAX_DICE, "Too many dice to store in an event");
+
+        int event = header(ROLL, player, nextTurn, finished);
+        event |= bit(WAITING_FOR_MOVE_BIT, waitingForMove);
+        event |= bit(HAS_MOVES_BIT, hasMoves);
+        for (int index = 0; index < values.length; ++index) {
+            event |= values[index].getId() << (DICE_SHIFT + index * DICE_BITS);
+        }
+        return event;
+    }
+
+    /**
+     * @param player The player that made the move.
+     * @param source The tile the piece was moved from, or null if a new piece was introduced.
+     * @param destination The tile the piece was moved to, or null if the piece was scored.
+     * @param nextTurn The player whose turn it is after the move.
+     * @param finished Whether the game is finished after the move.
+     * @return The packed move event.
+     */
+    public static int move(
+            @Nonnull Player player,
+            @Nullable Tile source,
+            @Nullable Tile destination,
+            @Nonnull Player nextTurn,
+            boolean finished
+    ) {
+        int event = header(MOVE, player, nextTurn, finished);
+        event |= packTile(source) << SOURCE_SHIFT;
+        event |= packTile(destination) << DESTINATION_SHIFT;
+        return event;
+    }
+
+    private static int header(int type, Player player, Player nextTurn, boolean finished) {
+        return (type << TYPE_BIT)
+                | (playerIndex(player) << PLAYER_BIT)
+                | (playerIndex(nextTurn) << NEXT_TURN_BIT)
+                | bit(FINISHED_BIT, finished);
+    }
+
+    private static int bit(int bit, boolean value) {
+        return (value ? 1 << bit : 0);
+    }
+
+    private static int packTile(@Nullable Tile tile) {
+        if (tile == null)
+            return 0;
+
+        Checks.ensure(tile.ix <= TILE_COORD_MASK && tile.iy <= TILE_COORD_MASK, "Tile is too large to store");
+        return (1 << TILE_PRESENT_BIT) | (tile.iy << TILE_COORD_BITS) | tile.ix;
+    }
+
+    /**
+     * @return 0 for the light player, and 1 for the dark player.
+     */
+    public static int playerIndex(@Nonnull Player player) {
+        return switch (player) {
+            case LIGHT -> 0;
+            case DARK -> 1;
+            default -> throw new IllegalArgumentException("Unknown player " + player);
+        };
+    }
+
+    /**
+     * @return The player with the index {@param index}, from {@link #playerIndex(Player)}.
+     */
+    public static @Nonnull Player player(int index) {
+        return (index == 0 ? Player.LIGHT : Player.DARK);
+    }
+
+    public static int getType(int event) {
+        return (event >>> TYPE_BIT) & 1;
+    }
+
+    public static int getPlayer(int event) {
+        return (event >>> PLAYER_BIT) & 1;
+    }
+
+    public static int getNextTurn(int event) {
+        return (event >>> NEXT_TURN_BIT) & 1;
+    }
+
+    public static boolean isFinished(int event) {
+        return ((event >>> FINISHED_BIT) & 1) != 0;
+    }
+
+    public static boolean isWaitingForMove(int event) {
+        return ((event >>> WAITING_FOR_MOVE_BIT) & 1) != 0;
+    }
+
+    public static boolean hasMoves(int event) {
+        return ((event >>> HAS_MOVES_BIT) & 1) != 0;
+    }
+
+    /**
+     * @return The ID of the value of the dice at {@param index}, or 0 if there is no such dice.
+     */
+    public static int getDiceID(int event, int index) {
+        return (event >>> (DICE_SHIFT + index * DICE_BITS)) & ((1 << DICE_BITS) - 1);
+    }
+
+    /**
+     * @return The number of dice that were up in the roll event {@param event}.
+     */
+    public static int getRollValue(int event) {
+        int value = 0;
+        for (int index = 0; index < MAX_DICE; ++index) {
+            int id = getDiceID(event, index);
+            for (DiceValue dice : DiceValue.UP) {
+                if (dice.getId() == id) {
+                    value += 1;
+                }
+            }
+        }
+        return value;
+    }
+
+    public static boolean hasSource(int event) {
+        return isTilePresent(event >>> SOURCE_SHIFT);
+    }
+
+    public static int getSourceX(int event) {
+        return (event >>> SOURCE_SHIFT) & TILE_COORD_MASK;
+    }
+
+    public static int getSourceY(int event) {
+        return (event >>> (SOURCE_SHIFT + TILE_COORD_BITS)) & TILE_COORD_MASK;
+    }
+
+    public static boolean hasDestination(int event) {
+        return isTilePresent(event >>> DESTINATION_SHIFT);
+    }
+
+    public static int getDestinationX(int event) {
+        return (event >>> DESTINATION_SHIFT) & TILE_COORD_MASK;
+    }
+
+    public static int getDestinationY(int event) {
+        return (event >>> (DESTINATION_SHIFT + TILE_COORD_BITS)) & TILE_COORD_MASK;
+    }
+
+    private static boolean isTilePresent(int packedTile) {
+        return ((packedTile >>> TILE_PRESENT_BIT) & 1) != 0;
+    }
+}
@@ -0,0 +1,213 @@
+package net.royalur.backend.replay;
+
+import net.royalur.Game;
+import net.royalur.model.Move;
+import net.royalur.model.Player;
+import net.royalur.model.PlayerState;
+import net.royalur.model.Tile;
+import net.royalur.rules.simple.SimplePiece;
+import net.royalur.backend.game.GameID;
+import net.royalur.backend.game.RoyalUrNetDiceRoll;
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An append-only log of the rolls and moves made in a game.
+ * Every event is packed into a single int, and a snapshot of the
+ * game is kept every few events, so that replays can seek to any
+ * point in the game by only applying a handful of events.
+ * <p>
+ * Events are appended by the thread playing the game, whilst any
+ * number of replays may read the log concurrently without locking.
+ *
+ * @author Paddy Lamont
+ */
+public class GameEventLog {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    public final @Nonnull GameID gameID;
+    private final int keyframeInterval;
+
+    /**
+     * The keyframe at index i holds the state after {@code i * keyframeInterval} events.
+     */
+    private final List<ReplayState> keyframes = new CopyOnWriteArrayList<>();
+
+    /**
+     * The events array is only ever replaced by a larger copy, and events
+     * are written before the size is increased. Therefore, readers that
+     * read the size before the array always see at least that many events.
+     */
+    private volatile int[] events = new int[INITIAL_CAPACITY];
+    private volatile int size;
+    private volatile boolean closed;
+
+    /**
+     * @param initialState The state of the game before any events.
+     * @param keyframeInterval The number of events between each keyframe.
+     */
+    public GameEventLog(@Nonnull GameID gameID, @Nonnull ReplayState initialState, int keyframeInterval) {
+        Checks.ensureNonNull(gameID, "gameID");
+        Checks.ensureNonNull(initialState, "initialState");
+        Checks.ensure(keyframeInterval > 0, "keyframeInterval must be positive");
+        this.gameID = gameID;
+        this.keyframeInterval = keyframeInterval;
+        keyframes.add(initialState.copy());
+    }
+
+    /**
+     * @return The number of events in this log.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Whether no more events will be added to this log.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Marks that no more events will be added to this log.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Records that {@param player} rolled {@param roll} in the game {@param game}.
+     */
+    public void appendRoll(
+            @Nonnull Player player,
+            @Nonnull RoyalUrNetDiceRoll roll,
+            @Nonnull Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game
+    ) {
+        boolean waitingForMove = game.isWaitingForMove();
+        boolean hasMoves = waitingForMove && !game.findAvailableMoves().isEmpty();
+        append(GameEvent.roll(
+                player, roll.values, waitingForMove, hasMoves,
+                game.getTurnPlayer().player, game.isFinished()
+        ), game);
+    }
+
+    /**
+     * Records that the move {@param move} was made in the game {@param game}.
+     */
+    public void appendMove(
+            @Nonnull Move<SimplePiece> move,
+            @Nonnull Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game
+    ) {
+        append(GameEvent.move(
+                move.player,
+                move.isIntroducingPiece() ? null : move.getSource(),
+                move.isScoringPiece() ? null : move.getDestination(),
+                game.getTurnPlayer().player, game.isFinished()
+        ), game);
+    }
+
+    private synchronized void append(int event, Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game) {
+        Checks.ensureState(!closed, "The event log has been closed");
+
+        int[] events = this.events;
+        int size = this.size;
+        if (size == events.length) {
+            int[] grown = new int[events.length * 2];
+            System.arraycopy(events, 0, grown, 0, size);
+            events = grown;
+            this.events = grown;
+        }
+        events[size] = event;
+        this.size = size + 1;
+
+        // Keyframes are captured from the game, so errors can't accumulate.
+        if ((size + 1) % keyframeInterval == 0) {
+            keyframes.add(ReplayState.capture(game));
+        }
+    }
+
+    /**
+     * @return The packed event at {@param index}.
+     */
+    public int get(int index) {
+        int size = this.size;
+        int[] events = this.events;
+        Checks.ensure(index >= 0 && index < size, "index out of bounds");
+        return events[index];
+    }
+
+    /**
+     * @return A copy of the packed events in this log.
+     */
+    public @Nonnull int[] toArray() {
+        int size = this.size;
+        int[] events = this.events;
+        int[] copy = new int[size];
+        System.arraycopy(events, 0, copy, 0, size);
+        return copy;
+    }
+
+    /**
+     * Plays the packed events {@param events}, that were recorded in an earlier
+     * log of the same game, in the game {@param game}, and appends them to this log.
+     * Rolls are made with the same number of dice up, although the faces of the
+     * dice in the game may differ from those recorded.
+     */
+    public void replay(@Nonnull int[] events, @Nonnull Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game) {
+        Checks.ensureNonNull(events, "events");
+        Checks.ensureNonNull(game, "game");
+
+        for (int event : events) {
+            if (GameEvent.getType(event) == GameEvent.ROLL) {
+                Checks.ensureState(game.isWaitingForRoll(), "Expected the game to be waiting for a roll");
+                game.rollDice(GameEvent.getRollValue(event));
+            } else {
+                Checks.ensureState(game.isWaitingForMove(), "Expected the game to be waiting for a move");
+                game.makeMove(findMove(event, game.findAvailableMoves()));
+            }
+            append(event, game);
+        }
+    }
+
+    private static Move<SimplePiece> findMove(int event, List<Move<SimplePiece>> moves) {
+        for (Move<SimplePiece> move : moves) {
+            if (move.isIntroducingPiece() == GameEvent.hasSource(event))
+                continue;
+            if (move.isScoringPiece() == GameEvent.hasDestination(event))
+                continue;
+
+            if (!move.isIntroducingPiece()) {
+                Tile source = move.getSource();
+                if (source.ix != GameEvent.getSourceX(event) || source.iy != GameEvent.getSourceY(event))
+                    continue;
+            }
+            if (!move.isScoringPiece()) {
+                Tile destination = move.getDestination();
+                if (destination.ix != GameEvent.getDestinationX(event)
+                        || destination.iy != GameEvent.getDestinationY(event))
+                    continue;
+            }
+            return move;
+        }
+        throw new IllegalStateException("The recorded move is not available in the game");
+    }
+
+    /**
+     * @return A cursor positioned after the first {@param eventCount} events of this log.
+     */
+    public @Nonnull ReplayCursor seek(int eventCount) {
+        Checks.ensure(eventCount >= 0 && eventCount <= size, "eventCount out of bounds");
+
+        int keyframeIndex = Math.min(eventCount / keyframeInterval, keyframes.size() - 1);
+        ReplayCursor cursor = new ReplayCursor(
+                this, keyframes.get(keyframeIndex).copy(), keyframeIndex * keyframeInterval
+        );
+        cursor.skip(eventCount - cursor.getPosition());
+        return cursor;
+    }
+}
@@ -0,0 +1,66 @@
+package net.royalur.backend.replay;
+
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A position in the history of a game, that can be advanced through
+ * the events of its {@link GameEventLog}. Advancing a cursor only
+ * updates its single {@link ReplayState}, without allocating.
+ *
+ * @author Paddy Lamont
+ */
+public class ReplayCursor {
+
+    private final @Nonnull GameEventLog log;
+    private final @Nonnull ReplayState state;
+    private int position;
+
+    ReplayCursor(@Nonnull GameEventLog log, @Nonnull ReplayState state, int position) {
+        Checks.ensureNonNull(log, "log");
+        Checks.ensureNonNull(state, "state");
+        this.log = log;
+        this.state = state;
+        this.position = position;
+    }
+
+    /**
+     * @return The number of events that have been applied to reach the current state.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return The state of the game at this cursor. This is updated as the cursor advances.
+     */
+    public @Nonnull ReplayState getState() {
+        return state;
+    }
+
+    /**
+     * @return Whether there is another event to apply. For games that are
+     *         still being played, more events may become available later.
+     */
+    public boolean hasNext() {
+        return position < log.size();
+    }
+
+    /**
+     * Applies the next event to the state of this cursor.
+     */
+    public void next() {
+        state.apply(log.get(position));
+        position += 1;
+    }
+
+    /**
+     * Applies up to {@param count} events, stopping early at the end of the log.
+     */
+    public void skip(int count) {
+        for (int index = 0; index < count && hasNext(); ++index) {
+            next();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package net.royalur.backend.replay;
+
+import net.royalur.Game;
+import net.royalur.model.PlayerState;
+import net.royalur.rules.simple.SimplePiece;
+import net.royalur.backend.game.GameID;
+import net.royalur.backend.game.RoyalUrNetDiceRoll;
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the event logs of the games being played, and of a
+ * limited number of the most recently finished games.
+ *
+ * @author Paddy Lamont
+ */
+public class ReplayLibrary {
+
+    private final int keyframeInterval;
+    private final int maxFinishedGames;
+
+    private final Map<GameID, GameEventLog> logs = new ConcurrentHashMap<>();
+    private final Deque<GameID> finishedGames = new ArrayDeque<>();
+
+    /**
+     * @param keyframeInterval The number of events between each snapshot of a game.
+     * @param maxFinishedGames The number of finished games to keep the logs of.
+     */
+    public ReplayLibrary(int keyframeInterval, int maxFinishedGames) {
+        Checks.ensure(keyframeInterval > 0, "keyframeInterval must be positive");
+        Checks.ensure(maxFinishedGames >= 0, "maxFinishedGames must be non-negative");
+        this.keyframeInterval = keyframeInterval;
+        this.maxFinishedGames = maxFinishedGames;
+    }
+
+    /**
+     * Starts a new event log for the game {@param game}, that has just been created.
+     */
+    public @Nonnull GameEventLog create(
+            @Nonnull GameID gameID,
+            @Nonnull Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game
+    ) {
+        GameEventLog log = new GameEventLog(gameID, ReplayState.capture(game), keyframeInterval);
+        logs.put(gameID, log);
+        return log;
+    }
+
+    /**
+     * @return The event log of the game {@param gameID}, or null if it is not known.
+     */
+    public @Nullable GameEventLog get(@Nonnull GameID gameID) {
+        return logs.get(gameID);
+    }
+
+    /**
+     * Discards the event log {@param log}, of a game that was never started.
+     */
+    public void discard(@Nonnull GameEventLog log) {
+        Checks.ensureNonNull(log, "log");
+        logs.remove(log.gameID, log);
+    }
+
+    /**
+     * Closes the event log of the game {@param gameID}, and discards
+     * the oldest finished games if there are too many.
+     */
+    public void onFinished(@Nonnull GameID gameID) {
+        GameEventLog log = logs.get(gameID);
+        if (log == null)
+            return;
+
+        log.close();
+        synchronized (finishedGames) {
+            finishedGames.addLast(gameID);
+            while (finishedGames.size() > maxFinishedGames) {
+                logs.remove(finishedGames.removeFirst());
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package net.royalur.backend.replay;
+
+import net.royalur.backend.game.GameID;
+import net.royalur.backend.metrics.Counter;
+import net.royalur.backend.metrics.Metrics;
+import net.royalur.backend.util.Checks;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the history of live and finished games over HTTP.
+ * The response holds one game state packet per line, in the
+ * same format that clients receive during a game.
+ * <p>
+ * Query parameters:
+ * <ul>
+ *     <li>{@code game}: The ID of the game to replay.</li>
+ *     <li>{@code from}: The number of events to seek past before the first state. Defaults to 0.</li>
+ *     <li>{@code to}: The number of events after which to stop. Defaults to the end of the game.</li>
+ *     <li>{@code step}: The number of events between each state, for fast playback. Defaults to 1.</li>
+ * </ul>
+ * Each response holds at most a maximum number of states, and the
+ * {@value #END_HEADER} header gives the event that the last state is after,
+ * so that longer ranges can be read in several requests. Only the allowed
+ * origins may read replays from other web pages, and each IP may make a
+ * limited number of requests each minute.
+ *
+ * @author Paddy Lamont
+ */
+public class ReplayServlet {
+
+    public static final String CONTEXT_PATH = "/replay";
+
+    public static final String EVENT_COUNT_HEADER = "X-Replay-Events";
+    public static final String FINISHED_HEADER = "X-Replay-Finished";
+    public static final String END_HEADER = "X-Replay-End";
+    private static final String EXPOSED_HEADERS = String.join(", ", EVENT_COUNT_HEADER, FINISHED_HEADER, END_HEADER);
+
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * The number of IPs to track before forgetting those that have
+     * not made a request within the last window.
+     */
+    private static final int MAX_TRACKED_IPS = 10_000;
+
+    private final ReplayLibrary library;
+    private final Set<String> allowedOrigins;
+    private final int maxStates;
+    private final int maxRequestsPerMin;
+    private final Map<String, RequestWindow> requests = new ConcurrentHashMap<>();
+
+    private final Counter limitedCounter = Metrics.counter("replays.rate-limited");
+
+    /**
+     * @param library The games to serve the replays of.
+     * @param allowedOrigins The origins of the web pages that are allowed to read replays.
+     * @param maxStates The maximum number of states to serve in response to each request.
+     * @param maxRequestsPerMin The number of requests each IP may make each minute.
+     */
+    public ReplayServlet(
+            ReplayLibrary library, Collection<String> allowedOrigins, int maxStates, int maxRequestsPerMin
+    ) {
+        Checks.ensureNonNull(library, "library");
+        Checks.ensureNonNull(allowedOrigins, "allowedOrigins");
+        Checks.ensure(maxStates > 0, "maxStates must be positive");
+        Checks.ensure(maxRequestsPerMin > 0, "maxRequestsPerMin must be positive");
+
+        this.library = library;
+        this.allowedOrigins = Set.copyOf(allowedOrigins);
+        this.maxStates = maxStates;
+        this.maxRequestsPerMin = maxRequestsPerMin;
+    }
+
+    public ServletContextHandler createContextHandler() {
+        ServletContextHandler servletContextHandler = new ServletContextHandler();
+        servletContextHandler.setContextPath(CONTEXT_PATH);
+        servletContextHandler.addServlet(new ServletHolder(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                serve(request, response);
+            }
+        }), "/*");
+        return servletContextHandler;
+    }
+
+    private void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String origin = request.getHeader("Origin");
+        if (origin != null && allowedOrigins.contains(origin)) {
+            response.setHeader("Access-Control-Allow-Origin", origin);
+            response.setHeader("Access-Control-Expose-Headers", EXPOSED_HEADERS);
+        }
+        response.setHeader("Vary", "Origin");
+
+        if (!allowRequest(request.getRemoteAddr())) {
+            limitedCounter.increment();
+            response.setHeader("Retry-After", Long.toString(TimeUnit.NANOSECONDS.toSeconds(WINDOW_NANOS)));
+            response.sendError(429, "Too many requests");
+            return;
+        }
+
+        GameID gameID;
+        int from;
+        int to;
+        int step;
+        try {
+            gameID = GameID.fromString(String.valueOf(request.getParameter("game")));
+            from = readIntParam(request, "from", 0);
+            to = readIntParam(request, "to", Integer.MAX_VALUE);
+            step = readIntParam(request, "step", 1);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        if (from < 0 || to < from || step <= 0) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid range");
+            return;
+        }
+
+        GameEventLog log = library.get(gameID);
+        if (log == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown game " + gameID);
+            return;
+        }
+
+        // Only the events that exist now are served, even if the game is still being played.
+        boolean finished = log.isClosed();
+        int end = Math.min(to, log.size());
+        int start = Math.min(from, end);
+        end = (int) Math.min(end, start + (long) step * (maxStates - 1));
+        ReplayCursor cursor = log.seek(start);
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("text/plain");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(EVENT_COUNT_HEADER, Integer.toString(log.size()));
+        response.setHeader(FINISHED_HEADER, Boolean.toString(finished));
+        response.setHeader(END_HEADER, Integer.toString(end));
+
+        PrintWriter writer = response.getWriter();
+        writer.println(cursor.getState().writePacket(gameID));
+        while (cursor.getPosition() < end) {
+            cursor.skip(Math.min(step, end - cursor.getPosition()));
+            writer.println(cursor.getState().writePacket(gameID));
+        }
+        writer.flush();
+    }
+
+    /** @return Whether {@param ip} is within its limit of requests for the current window. **/
+    private boolean allowRequest(String ip) {
+        long now = System.nanoTime();
+        if (requests.size() >= MAX_TRACKED_IPS) {
+            requests.values().removeIf(window -> window.get(now) == 0);
+        }
+        return requests.computeIfAbsent(ip, key -> new RequestWindow()).add(now) <= maxRequestsPerMin;
+    }
+
+    private static int readIntParam(HttpServletRequest request, String name, int defaultValue) {
+        String value = request.getParameter(name);
+        if (value == null)
+            return defaultValue;
+
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected " + name + " to be an integer");
+        }
+    }
+
+    /**
+     * The number of requests made by an IP within the current window.
+     */
+    private static class RequestWindow {
+
+        private long windowStartNanos;
+        private int count;
+
+        synchronized int add(long now) {
+            get(now);
+            count += 1;
+            return count;
+        }
+
+        synchronized int get(long now) {
+            if (count == 0 || now - windowStartNanos >= WINDOW_NANOS) {
+                windowStartNanos = now;
+                count = 0;
+            }
+            return count;
+        }
+    }
+}
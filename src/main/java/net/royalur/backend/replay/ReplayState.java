@@ -0,0 +1,200 @@
+package net.royalur.backend.replay;
+
+import net.royalur.Game;
+import net.royalur.model.Board;
+import net.royalur.model.Piece;
+import net.royalur.model.PlayerState;
+import net.royalur.model.state.WaitingForMoveGameState;
+import net.royalur.rules.simple.SimplePiece;
+import net.royalur.backend.game.DiceValue;
+import net.royalur.backend.game.GameID;
+import net.royalur.backend.game.RoyalUrNetDiceRoll;
+import net.royalur.backend.network.outgoing.PacketOut;
+import net.royalur.backend.network.outgoing.PacketOutGameMetadata;
+import net.royalur.backend.network.outgoing.PacketWriter;
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * The state of a game at one point in its history, stored in plain
+ * arrays so that it can be cheaply copied and advanced event by event.
+ * This holds all the information of a {@link net.royalur.backend.network.outgoing.PacketOutGameState}.
+ *
+ * @author Paddy Lamont
+ */
+public class ReplayState {
+
+    private static final int EMPTY = 0;
+
+    public final int width;
+    public final int height;
+
+    /**
+     * The occupant of each tile, indexed by {@code iy * width + ix}.
+     * Tiles hold 0 if empty, or 1 plus the index of the player that occupies them.
+     */
+    private final byte[] tiles;
+    private final int[] pieces = new int[2];
+    private final int[] scores = new int[2];
+    private final int[] dice = new int[GameEvent.MAX_DICE];
+
+    private int turn;
+    private boolean finished;
+    private boolean waitingForMove;
+    private boolean hasMoves;
+
+    /**
+     * Creates the state of a game that has not started, on an empty board of
+     * size {@param width} by {@param height}, with each player holding {@param pieceCount} pieces.
+     */
+    public ReplayState(int width, int height, int pieceCount) {
+        Checks.ensure(width > 0 && height > 0, "The board must have a positive size");
+        Checks.ensure(pieceCount >= 0, "pieceCount must be non-negative");
+        this.width = width;
+        this.height = height;
+        this.tiles = new byte[width * height];
+        Arrays.fill(pieces, pieceCount);
+    }
+
+    /**
+     * @return A copy of the state of the game {@param game}.
+     */
+    public static @Nonnull ReplayState capture(@Nonnull Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game) {
+        Checks.ensureNonNull(game, "game");
+
+        Board<SimplePiece> board = game.getBoard();
+        ReplayState state = new ReplayState(board.shape.width, board.shape.height, 0);
+        for (int iy = 0; iy < state.height; ++iy) {
+            for (int ix = 0; ix < state.width; ++ix) {
+                if (!board.contains(ix, iy))
+                    continue;
+
+                Piece piece = board.get(ix, iy);
+                if (piece != null) {
+                    state.tiles[iy * state.width + ix] = (byte) (GameEvent.playerIndex(piece.owner) + 1);
+                }
+            }
+        }
+
+        PlayerState light = game.getLightPlayer();
+        PlayerState dark = game.getDarkPlayer();
+        state.pieces[0] = light.pieceCount;
+        state.scores[0] = light.score;
+        state.pieces[1] = dark.pieceCount;
+        state.scores[1] = dark.score;
+
+        state.turn = GameEvent.playerIndex(game.getTurnPlayer().player);
+        state.finished = game.isFinished();
+        if (game.getCurrentState() instanceof WaitingForMoveGameState) {
+            WaitingForMoveGameState<?, ?, RoyalUrNetDiceRoll> waiting = (
+                    (WaitingForMoveGameState<?, ?, RoyalUrNetDiceRoll>) game.getCurrentState()
+            );
+            DiceValue[] values = waiting.roll.values;
+            for (int index = 0; index < values.length && index < state.dice.length; ++index) {
+                state.dice[index] = values[index].getId();
+            }
+            state.waitingForMove = true;
+            state.hasMoves = !game.findAvailableMoves().isEmpty();
+        }
+        return state;
+    }
+
+    /**
+     * @return A copy of this state.
+     */
+    public @Nonnull ReplayState copy() {
+        ReplayState copy = new ReplayState(width, height, 0);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    /**
+     * Overwrites this state with {@param other}, without allocating.
+     */
+    public void copyFrom(@Nonnull ReplayState other) {
+        Checks.ensureNonNull(other, "other");
+        Checks.ensure(other.width == width && other.height == height, "The boards must be the same size");
+
+        System.arraycopy(other.tiles, 0, tiles, 0, tiles.length);
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.scores, 0, scores, 0, scores.length);
+        System.arraycopy(other.dice, 0, dice, 0, dice.length);
+        turn = other.turn;
+        finished = other.finished;
+        waitingForMove = other.waitingForMove;
+        hasMoves = other.hasMoves;
+    }
+
+    /**
+     * Advances this state by the packed event {@param event}, from {@link GameEvent}.
+     */
+    public void apply(int event) {
+        int player = GameEvent.getPlayer(event);
+
+        if (GameEvent.getType(event) == GameEvent.ROLL) {
+            for (int index = 0; index < dice.length; ++index) {
+                dice[index] = GameEvent.getDiceID(event, index);
+            }
+            waitingForMove = GameEvent.isWaitingForMove(event);
+            hasMoves = GameEvent.hasMoves(event);
+        } else {
+            if (GameEvent.hasSource(event)) {
+                tiles[GameEvent.getSourceY(event) * width + GameEvent.getSourceX(event)] = EMPTY;
+            } else {
+                pieces[player] -= 1;
+            }
+
+            if (GameEvent.hasDestination(event)) {
+                int index = GameEvent.getDestinationY(event) * width + GameEvent.getDestinationX(event);
+                int occupant = tiles[index];
+                if (occupant != EMPTY && occupant != player + 1) {
+                    // The piece that was captured returns to its owner.
+                    pieces[occupant - 1] += 1;
+                }
+                tiles[index] = (byte) (player + 1);
+            } else {
+                scores[player] += 1;
+            }
+            waitingForMove = false;
+            hasMoves = false;
+            Arrays.fill(dice, 0);
+        }
+
+        turn = GameEvent.getNextTurn(event);
+        finished = GameEvent.isFinished(event);
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return This state written out as a game state packet for the game {@param gameID}.
+     */
+    public @Nonnull String writePacket(@Nonnull GameID gameID) {
+        PacketWriter writer = new PacketWriter(PacketOut.Type.GAME_STATE);
+        writer.pushValue(gameID);
+
+        for (int player = 0; player < 2; ++player) {
+            writer.pushDigit(pieces[player]);
+            writer.pushDigit(scores[player]);
+        }
+        for (byte tile : tiles) {
+            PacketOutGameMetadata.writePlayer(writer, tile == EMPTY ? null : GameEvent.player(tile - 1), 0);
+        }
+
+        writer.pushBool(finished);
+        PacketOutGameMetadata.writePlayer(writer, GameEvent.player(turn), 3);
+
+        writer.pushBool(waitingForMove);
+        if (waitingForMove) {
+            for (int value : dice) {
+                writer.pushDigit(value);
+            }
+            writer.pushBool(hasMoves);
+        }
+        return writer.toString();
+    }
+}
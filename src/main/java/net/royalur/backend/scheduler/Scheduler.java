@@ -1,12 +1,16 @@
 package net.royalur.backend.scheduler;
 
 import net.royalur.backend.Logging;
+import net.royalur.backend.jfr.SchedulerTaskEvent;
 import net.royalur.backend.util.Checks;
 import net.royalur.backend.util.Time;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -18,10 +22,16 @@ import java.util.logging.Logger;
  */
 public class Scheduler implements Runnable {
 
+    /**
+     * The schedulers that have been started, and not yet stopped.
+     */
+    private static final List<Scheduler> runningSchedulers = new CopyOnWriteArrayList<>();
+
     private final String name;
     private final Logger logger;
     private final long tickLength;
     private final List<Task> tasks;
+    private final Map<String, TaskTimings> timings = new ConcurrentSkipListMap<>();
 
     private Time nextTickTime;
     private boolean running;
@@ -43,6 +53,7 @@ public class Scheduler implements Runnable {
     public void start() {
         // TODO : Store this Thread and make sure only one is made
         new Thread(this, name).start();
+        runningSchedulers.add(this);
     }
 
     /**
@@ -50,6 +61,25 @@ public class Scheduler implements Runnable {
      */
     public void stop() {
         this.running = false;
+        runningSchedulers.remove(this);
+    }
+
+    /**
+     * @return The schedulers that are currently running.
+     */
+    public static List<Scheduler> getRunning() {
+        return List.copyOf(runningSchedulers);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The time taken to run the tasks of this scheduler, by task name.
+     */
+    public List<TaskTimings> getTimings() {
+        return new ArrayList<>(timings.values());
     }
 
     /**
@@ -136,10 +166,17 @@ public class Scheduler implements Runnable {
         }
 
         toRun.forEach(task -> {
+            SchedulerTaskEvent event = new SchedulerTaskEvent();
+            event.begin();
+            long start = System.nanoTime();
             try {
                 task.run();
             } catch(Exception exception) {
                 logger.log(Level.SEVERE, "exception running " + task, exception);
+            } finally {
+                long nanos = System.nanoTime() - start;
+                timings.computeIfAbsent(task.getName(), TaskTimings::new).record(nanos);
+                event.finish(name, task.getName(), nanos > TimeUnit.MILLISECONDS.toNanos(tickLength));
             }
         });
     }
@@ -22,6 +22,10 @@ public abstract class Task {
         this.cancelled = false;
     }
 
+    public String getName() {
+        return name;
+    }
+
     /**
      * Cancel this task such that it no longer be ran.
      */
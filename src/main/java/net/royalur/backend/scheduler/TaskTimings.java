@@ -0,0 +1,51 @@
+package net.royalur.backend.scheduler;
+
+/**
+ * The time taken to run the tasks with one name on a {@link Scheduler}.
+ * Timings are only recorded from the thread of the scheduler, and so
+ * may be read from other threads without locking.
+ *
+ * @author Paddy Lamont
+ */
+public class TaskTimings {
+
+    private final String name;
+    private volatile long runs;
+    private volatile long totalNanos;
+    private volatile long maxNanos;
+
+    public TaskTimings(String name) {
+        this.name = name;
+    }
+
+    /** Record that the task took {@param nanos} nanoseconds to run. **/
+    void record(long nanos) {
+        runs = runs + 1;
+        totalNanos = totalNanos + nanos;
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getRuns() {
+        return runs;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /** @return The mean time taken to run the task, or 0 if it has not run. **/
+    public long getMeanNanos() {
+        long runs = this.runs;
+        return runs == 0 ? 0 : totalNanos / runs;
+    }
+}
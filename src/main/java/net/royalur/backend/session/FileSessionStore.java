@@ -0,0 +1,280 @@
+package net.royalur.backend.session;
+
+import net.royalur.backend.Logging;
+import net.royalur.backend.metrics.Counter;
+import net.royalur.backend.metrics.Metrics;
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores sessions in a file that is shared by all the processes on
+ * this machine that are configured to use it, so that a client can
+ * resume their session on any of them.
+ * <p>
+ * Changes are held in memory and written in batches by a background
+ * thread, whilst holding a lock on a separate lock file so that the
+ * processes do not overwrite each other's changes. The file is replaced
+ * atomically, so it can be read without taking the lock. Reads are
+ * served from a cache of the file, which is re-read once it is older
+ * than the cache period, or when a session is missing from the cache
+ * and the file has changed. Lookups that wait on the same re-read
+ * share its result.
+ *
+ * @author Paddy Lamont
+ */
+public class FileSessionStore implements SessionStore {
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+
+    private static final Logger logger = Logging.getLogger("sessions");
+
+    private final @Nonnull Path file;
+    private final @Nonnull Path lockFile;
+    private final @Nonnull Path tempFile;
+    private final long cacheNanos;
+
+    private final Map<UUID, Change> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ExecutorService flushExecutor;
+    private final Object flushLock = new Object();
+
+    private final Object cacheLock = new Object();
+    private volatile @Nonnull Map<UUID, SessionRecord> cache = Collections.emptyMap();
+    private volatile @Nullable FileTime cacheModifiedTime;
+    private volatile long cacheLoadedNanos;
+
+    private final Counter cacheReloads = Metrics.counter("sessions.cache.reloads");
+    private final Counter flushes = Metrics.counter("sessions.flushes");
+
+    /**
+     * @param file The file that the sessions are stored in.
+     * @param cacheMs The maximum age of the cached contents of the file before it is re-read.
+     */
+    public FileSessionStore(@Nonnull Path file, long cacheMs) {
+        Checks.ensureNonNull(file, "file");
+        Checks.ensure(cacheMs >= 0, "cacheMs must be non-negative");
+
+        this.file = file.toAbsolutePath();
+        this.lockFile = this.file.resolveSibling(this.file.getFileName() + ".lock");
+        this.tempFile = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        this.cacheNanos = TimeUnit.MILLISECONDS.toNanos(cacheMs);
+        this.cacheLoadedNanos = System.nanoTime() - cacheNanos - 1;
+        this.flushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-store-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void put(@Nonnull SessionRecord record) {
+        Checks.ensureNonNull(record, "record");
+        pending.put(record.sessionID(), new Change(record.sessionID(), record));
+        scheduleFlush();
+    }
+
+    @Override
+    public void remove(@Nonnull UUID sessionID) {
+        Checks.ensureNonNull(sessionID, "sessionID");
+        pending.put(sessionID, new Change(sessionID, null));
+        scheduleFlush();
+    }
+
+    @Override
+    public @Nonnull Map<UUID, SessionRecord> getAll(@Nonnull Collection<UUID> sessionIDs) {
+        Checks.ensureNonNull(sessionIDs, "sessionIDs");
+
+        long requestNanos = System.nanoTime();
+        Map<UUID, SessionRecord> sessions = cache;
+        boolean reload = (requestNanos - cacheLoadedNanos > cacheNanos);
+        if (!reload) {
+            for (UUID sessionID : sessionIDs) {
+                if (!pending.containsKey(sessionID) && !sessions.containsKey(sessionID)) {
+                    reload = hasFileChanged();
+                    break;
+                }
+            }
+        }
+        if (reload) {
+            sessions = reloadCache(requestNanos);
+        }
+
+        long now = System.currentTimeMillis();
+        Map<UUID, SessionRecord> found = new HashMap<>();
+        for (UUID sessionID : sessionIDs) {
+            Change change = pending.get(sessionID);
+            SessionRecord record = (change != null ? change.record : sessions.get(sessionID));
+            if (record != null && !record.isExpired(now)) {
+                found.put(sessionID, record);
+            }
+        }
+        return found;
+    }
+
+    private boolean hasFileChanged() {
+        try {
+            return !Objects.equals(Files.getLastModifiedTime(file), cacheModifiedTime);
+        } catch (NoSuchFileException e) {
+            return cacheModifiedTime != null;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to check the session file " + file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Re-reads the file into the cache, unless it has already been
+     * re-read by another lookup since {@param requestNanos}.
+     */
+    private Map<UUID, SessionRecord> reloadCache(long requestNanos) {
+        synchronized (cacheLock) {
+            if (cacheLoadedNanos - requestNanos >= 0)
+                return cache;
+
+            try {
+                FileTime modifiedTime = (Files.exists(file) ? Files.getLastModifiedTime(file) : null);
+                updateCache(readFile(), modifiedTime);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Unable to read the session file " + file, e);
+            }
+            cacheReloads.increment();
+            return cache;
+        }
+    }
+
+    private void updateCache(Map<UUID, SessionRecord> sessions, @Nullable FileTime modifiedTime) {
+        synchronized (cacheLock) {
+            cache = Collections.unmodifiableMap(sessions);
+            cacheModifiedTime = modifiedTime;
+            cacheLoadedNanos = System.nanoTime();
+        }
+    }
+
+    private Map<UUID, SessionRecord> readFile() throws IOException {
+        Map<UUID, SessionRecord> sessions = new HashMap<>();
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return sessions;
+        }
+
+        for (String line : lines) {
+            if (line.isBlank())
+                continue;
+
+            try {
+                SessionRecord record = SessionRecord.read(line);
+                sessions.put(record.sessionID(), record);
+            } catch (IllegalArgumentException e) {
+                logger.warning("Skipping a malformed session in " + file + ": " + e.getMessage());
+            }
+        }
+        return sessions;
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled.compareAndSet(false, true))
+            return;
+
+        try {
+            flushExecutor.execute(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        } catch (RejectedExecutionException e) {
+            // We are closing, and the remaining changes are flushed by close.
+            flushScheduled.set(false);
+        }
+    }
+
+    @Override
+    public void flush() {
+        synchronized (flushLock) {
+            List<Change> changes = new ArrayList<>(pending.values());
+            try (
+                    FileChannel channel = FileChannel.open(
+                            lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE
+                    );
+                    FileLock ignored = channel.lock()
+            ) {
+                Map<UUID, SessionRecord> sessions = readFile();
+                for (Change change : changes) {
+                    if (change.record != null) {
+                        sessions.put(change.sessionID, change.record);
+                    } else {
+                        sessions.remove(change.sessionID);
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                sessions.values().removeIf(record -> record.isExpired(now));
+
+                List<String> lines = new ArrayList<>(sessions.size());
+                for (SessionRecord record : sessions.values()) {
+                    lines.add(record.write());
+                }
+                Files.write(tempFile, lines, StandardCharsets.UTF_8);
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                updateCache(sessions, Files.getLastModifiedTime(file));
+            } catch (IOException e) {
+                // The changes are kept, to be written by the next flush.
+                logger.log(Level.WARNING, "Unable to write the session file " + file, e);
+                return;
+            }
+
+            // Changes made during the flush are written by the next flush.
+            for (Change change : changes) {
+                pending.remove(change.sessionID, change);
+            }
+            flushes.increment();
+        }
+    }
+
+    @Override
+    public void close() {
+        flushExecutor.shutdown();
+        try {
+            if (!flushExecutor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                logger.warning("Timed out waiting for the session store to flush");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * A change to a session that has not yet been written to the file.
+     * A null {@code record} represents the removal of the session.
+     */
+    private record Change(@Nonnull UUID sessionID, @Nullable SessionRecord record) {}
+}
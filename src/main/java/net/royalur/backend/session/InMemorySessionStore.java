@@ -0,0 +1,54 @@
+package net.royalur.backend.session;
+
+import net.royalur.backend.util.Checks;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores sessions in the memory of this process.
+ * Sessions can only be resumed by reconnecting to this process.
+ *
+ * @author Paddy Lamont
+ */
+public class InMemorySessionStore implements SessionStore {
+
+    private final Map<UUID, SessionRecord> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(@Nonnull SessionRecord record) {
+        Checks.ensureNonNull(record, "record");
+        sessions.put(record.sessionID(), record);
+    }
+
+    @Override
+    public void remove(@Nonnull UUID sessionID) {
+        Checks.ensureNonNull(sessionID, "sessionID");
+        sessions.remove(sessionID);
+    }
+
+    @Override
+    public @Nonnull Map<UUID, SessionRecord> getAll(@Nonnull Collection<UUID> sessionIDs) {
+        Checks.ensureNonNull(sessionIDs, "sessionIDs");
+
+        long now = System.currentTimeMillis();
+        Map<UUID, SessionRecord> found = new HashMap<>();
+        for (UUID sessionID : sessionIDs) {
+            SessionRecord record = sessions.get(sessionID);
+            if (record != null && !record.isExpired(now)) {
+                found.put(sessionID, record);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void flush() {
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(record -> record.isExpired(now));
+    }
+}
@@ -0,0 +1,79 @@
+package net.royalur.backend.session;
+
+import net.royalur.backend.game.GameID;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The information needed to resume the session of a client that has
+ * disconnected, so that they keep their seat in their games if they
+ * reconnect before the deadline.
+ *
+ * @param sessionID                The ID of the client's session.
+ * @param name                     The name of the client.
+ * @param games                    The games that the client was a player in.
+ * @param disconnectDeadlineMillis The epoch time in milliseconds after which the session can no longer be resumed.
+ */
+public record SessionRecord(
+        @Nonnull UUID sessionID,
+        @Nonnull String name,
+        @Nonnull List<GameID> games,
+        long disconnectDeadlineMillis
+) {
+
+    private static final String SEPARATOR = "\t";
+    private static final String GAME_SEPARATOR = ",";
+
+    public SessionRecord {
+        games = List.copyOf(games);
+    }
+
+    /**
+     * @return Whether this session can no longer be resumed at the epoch time {@param nowMillis}.
+     */
+    public boolean isExpired(long nowMillis) {
+        return nowMillis > disconnectDeadlineMillis;
+    }
+
+    /**
+     * @return This session written out as a single line of text, to be read by {@link #read(String)}.
+     */
+    public @Nonnull String write() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(sessionID).append(SEPARATOR);
+        builder.append(disconnectDeadlineMillis).append(SEPARATOR);
+        for (int index = 0; index < games.size(); ++index) {
+            if (index > 0) {
+                builder.append(GAME_SEPARATOR);
+            }
+            builder.append(games.get(index));
+        }
+        // The name is last, so that it may contain the separator.
+        builder.append(SEPARATOR).append(name.replace('\n', ' ').replace('\r', ' '));
+        return builder.toString();
+    }
+
+    /**
+     * @return The session written out as {@param line} by {@link #write()}.
+     */
+    public static @Nonnull SessionRecord read(@Nonnull String line) {
+        String[] parts = line.split(SEPARATOR, 4);
+        if (parts.length != 4)
+            throw new IllegalArgumentException("Malformed session \"" + line + "\"");
+
+        List<GameID> games = new ArrayList<>();
+        if (!parts[2].isEmpty()) {
+            for (String gameID : parts[2].split(GAME_SEPARATOR)) {
+                games.add(GameID.fromString(gameID));
+            }
+        }
+        try {
+            return new SessionRecord(UUID.fromString(parts[0]), parts[3], games, Long.parseLong(parts[1]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed session \"" + line + "\"", e);
+        }
+    }
+}
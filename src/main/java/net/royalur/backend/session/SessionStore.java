@@ -0,0 +1,57 @@
+package net.royalur.backend.session;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stores the sessions of disconnected clients, so that a client that
+ * reconnects can resume their session, even if they reconnect to a
+ * different process, or to this process after it was restarted.
+ * <p>
+ * Changes may be written in batches, but are always visible to
+ * lookups made through the same store straight away.
+ *
+ * @author Paddy Lamont
+ */
+public interface SessionStore {
+
+    /**
+     * Stores {@param record}, replacing any existing session with the same ID.
+     */
+    void put(@Nonnull SessionRecord record);
+
+    /**
+     * Removes the session with the ID {@param sessionID}, if it exists.
+     */
+    void remove(@Nonnull UUID sessionID);
+
+    /**
+     * @return The session with the ID {@param sessionID}, or null if
+     *         there is no such session, or if the session has expired.
+     */
+    default @Nullable SessionRecord get(@Nonnull UUID sessionID) {
+        return getAll(List.of(sessionID)).get(sessionID);
+    }
+
+    /**
+     * @return The unexpired sessions with the IDs {@param sessionIDs},
+     *         keyed by their ID. IDs without a session are omitted.
+     */
+    @Nonnull Map<UUID, SessionRecord> getAll(@Nonnull Collection<UUID> sessionIDs);
+
+    /**
+     * Writes out any changes that have not yet been written, and removes expired sessions.
+     */
+    void flush();
+
+    /**
+     * Writes out any remaining changes, and releases the resources of this store.
+     */
+    default void close() {
+        flush();
+    }
+}
@@ -0,0 +1,149 @@
+package net.royalur.backend.simulation;
+
+import net.royalur.Game;
+import net.royalur.backend.RoyalUrNetIdentity;
+import net.royalur.backend.game.DiceValue;
+import net.royalur.backend.game.GameSettings;
+import net.royalur.backend.game.RoyalUrNetDiceRoll;
+import net.royalur.backend.util.Checks;
+import net.royalur.model.Move;
+import net.royalur.model.Player;
+import net.royalur.model.PlayerState;
+import net.royalur.rules.simple.SimplePiece;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays complete games directly through the rules, without any network
+ * connections or clients, to check the rules and dice statistically and
+ * to measure how quickly games can be played. Games are split across
+ * threads, which each claim batches of games to play until none remain.
+ * <p>
+ * Run with: {@code java net.royalur.backend.simulation.GameSimulator
+ * [games] [threads] [light policy] [dark policy]}
+ *
+ * @author Paddy Lamont
+ */
+public class GameSimulator {
+
+    /** The number of turns after which games are abandoned, in case the rules never let them finish. **/
+    public static final int MAX_TURNS = 10_000;
+
+    private static final int BATCH_GAMES = 256;
+
+    private static final RoyalUrNetIdentity LIGHT = new RoyalUrNetIdentity("simulator-light", "Light");
+    private static final RoyalUrNetIdentity DARK = new RoyalUrNetIdentity("simulator-dark", "Dark");
+
+    private final GameSettings settings;
+    private final MovePolicy lightPolicy;
+    private final MovePolicy darkPolicy;
+
+    public GameSimulator(
+            @Nonnull GameSettings settings,
+            @Nonnull MovePolicy lightPolicy,
+            @Nonnull MovePolicy darkPolicy
+    ) {
+        Checks.ensureNonNull(settings, "settings");
+        Checks.ensureNonNull(lightPolicy, "lightPolicy");
+        Checks.ensureNonNull(darkPolicy, "darkPolicy");
+        this.settings = settings;
+        this.lightPolicy = lightPolicy;
+        this.darkPolicy = darkPolicy;
+    }
+
+    /** @return The results of playing {@param games} games across {@param threads} threads. **/
+    public @Nonnull SimulationReport run(long games, int threads) throws InterruptedException {
+        Checks.ensure(games >= 0, "games must be non-negative");
+        Checks.ensure(threads > 0, "threads must be positive");
+
+        AtomicLong remaining = new AtomicLong(games);
+        List<Callable<SimulationReport>> workers = new ArrayList<>();
+        for (int index = 0; index < threads; ++index) {
+            workers.add(() -> playGames(remaining));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            SimulationReport report = new SimulationReport(MAX_TURNS);
+            for (Future<SimulationReport> future : executor.invokeAll(workers)) {
+                report.merge(future.get());
+            }
+            report.setElapsedNanos(System.nanoTime() - start);
+            return report;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A simulated game failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private SimulationReport playGames(AtomicLong remaining) {
+        SimulationReport report = new SimulationReport(MAX_TURNS);
+        while (true) {
+            long claimed = Math.min(BATCH_GAMES, remaining.getAndAdd(-BATCH_GAMES));
+            if (claimed <= 0)
+                return report;
+
+            for (long index = 0; index < claimed; ++index) {
+                playGame(report);
+            }
+        }
+    }
+
+    /** Plays one game to completion, and records its results in {@param report}. **/
+    public void playGame(@Nonnull SimulationReport report) {
+        Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game = settings.create(LIGHT, DARK);
+        int turns = 0;
+        Player lastMover = null;
+        while (!game.isFinished()) {
+            if (turns >= MAX_TURNS) {
+                report.recordUnfinished(turns);
+                return;
+            }
+
+            RoyalUrNetDiceRoll roll = game.rollDice();
+            turns += 1;
+            report.recordRoll(DiceValue.count(roll.values));
+            if (!game.isWaitingForMove())
+                continue;
+
+            List<Move<SimplePiece>> moves = game.findAvailableMoves();
+            if (moves.isEmpty())
+                throw new IllegalStateException("The game is waiting for a move, but there are no moves available");
+
+            lastMover = game.getTurnPlayer().player;
+            MovePolicy policy = (lastMover == Player.LIGHT ? lightPolicy : darkPolicy);
+            game.makeMove(policy.choose(game, moves));
+        }
+
+        // Games can only be won by moving a piece.
+        Checks.ensureState(lastMover != null, "The game finished without any moves");
+        report.recordWin(lastMover, turns);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long games = (args.length > 0 ? Long.parseLong(args[0]) : 1_000_000);
+        int threads = (args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors());
+        MovePolicy light = StandardMovePolicy.fromName(args.length > 2 ? args[2] : "random");
+        MovePolicy dark = StandardMovePolicy.fromName(args.length > 3 ? args[3] : "random");
+
+        GameSimulator simulator = new GameSimulator(GameSettings.STANDARD, light, dark);
+
+        // Warm up before measuring the throughput.
+        simulator.run(Math.min(games, 10_000), threads);
+
+        System.out.println(
+                "Simulating " + games + " games of " + light + " against " + dark + " on " + threads + " threads"
+        );
+        System.out.println(simulator.run(games, threads).format());
+    }
+}
@@ -0,0 +1,29 @@
+package net.royalur.backend.simulation;
+
+import net.royalur.Game;
+import net.royalur.backend.game.RoyalUrNetDiceRoll;
+import net.royalur.model.Move;
+import net.royalur.model.PlayerState;
+import net.royalur.rules.simple.SimplePiece;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Chooses the moves of one side of simulated games. Policies are shared
+ * by every thread of a simulation, and so must be thread-safe.
+ *
+ * @author Paddy Lamont
+ */
+@FunctionalInterface
+public interface MovePolicy {
+
+    /**
+     * @return The move, out of {@param moves}, that the player whose turn it is in {@param game} makes.
+     *         There is always at least one move available.
+     */
+    @Nonnull Move<SimplePiece> choose(
+            @Nonnull Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game,
+            @Nonnull List<Move<SimplePiece>> moves
+    );
+}
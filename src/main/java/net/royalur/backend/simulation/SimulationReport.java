@@ -0,0 +1,187 @@
+package net.royalur.backend.simulation;
+
+import net.royalur.backend.game.RoyalUrNetDice;
+import net.royalur.backend.util.Checks;
+import net.royalur.model.Player;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The results of simulated games. Each thread of a simulation records
+ * into its own report, so that recording does not need to be thread-safe,
+ * and the reports are merged once the simulation is complete.
+ *
+ * @author Paddy Lamont
+ */
+public class SimulationReport {
+
+    private final int maxTurns;
+    private long games;
+    private long lightWins;
+    private long darkWins;
+    private long unfinished;
+    private long totalTurns;
+    private long elapsedNanos;
+
+    private final long[] rollCounts = new long[RoyalUrNetDice.DICE_COUNT + 1];
+    /** The number of games that took each number of turns. **/
+    private final long[] turnCounts;
+
+    /**
+     * @param maxTurns The number of turns after which games are abandoned.
+     */
+    public SimulationReport(int maxTurns) {
+        Checks.ensure(maxTurns > 0, "maxTurns must be positive");
+        this.maxTurns = maxTurns;
+        this.turnCounts = new long[maxTurns + 1];
+    }
+
+    /** Records a roll of {@param value}. **/
+    public void recordRoll(int value) {
+        rollCounts[value] += 1;
+    }
+
+    /** Records a game that {@param winner} won after {@param turns} turns. **/
+    public void recordWin(@Nonnull Player winner, int turns) {
+        Checks.ensureNonNull(winner, "winner");
+        if (winner == Player.LIGHT) {
+            lightWins += 1;
+        } else {
+            darkWins += 1;
+        }
+        recordGame(turns);
+    }
+
+    /** Records a game that was abandoned after {@param turns} turns, as it had not finished. **/
+    public void recordUnfinished(int turns) {
+        unfinished += 1;
+        recordGame(turns);
+    }
+
+    private void recordGame(int turns) {
+        Checks.ensure(turns >= 0 && turns <= maxTurns, "turns is out of range");
+        games += 1;
+        totalTurns += turns;
+        turnCounts[turns] += 1;
+    }
+
+    /** Adds the results in {@param other} to this report. **/
+    public void merge(@Nonnull SimulationReport other) {
+        Checks.ensureNonNull(other, "other");
+        Checks.ensure(other.maxTurns == maxTurns, "The reports must have the same maximum turns");
+
+        games += other.games;
+        lightWins += other.lightWins;
+        darkWins += other.darkWins;
+        unfinished += other.unfinished;
+        totalTurns += other.totalTurns;
+        for (int value = 0; value < rollCounts.length; ++value) {
+            rollCounts[value] += other.rollCounts[value];
+        }
+        for (int turns = 0; turns < turnCounts.length; ++turns) {
+            turnCounts[turns] += other.turnCounts[turns];
+        }
+    }
+
+    /** Sets the time taken to simulate the games to {@param elapsedNanos}. **/
+    public void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getLightWins() {
+        return lightWins;
+    }
+
+    public long getDarkWins() {
+        return darkWins;
+    }
+
+    public long getUnfinished() {
+        return unfinished;
+    }
+
+    /** @return The fraction of finished games that light won. **/
+    public double getLightWinRate() {
+        long finished = lightWins + darkWins;
+        return finished == 0 ? 0 : (double) lightWins / finished;
+    }
+
+    /** @return The number of games simulated per second. **/
+    public double getGamesPerSecond() {
+        return elapsedNanos <= 0 ? 0 : games * 1e9 / elapsedNanos;
+    }
+
+    /** @return The total number of turns taken in all games. **/
+    public long getTotalTurns() {
+        return totalTurns;
+    }
+
+    /** @return The mean number of turns per game. **/
+    public double getMeanTurns() {
+        return games == 0 ? 0 : (double) totalTurns / games;
+    }
+
+    /** @return The number of turns that at least {@param quantile} of games took no more than. **/
+    public int getTurnsQuantile(double quantile) {
+        Checks.ensure(quantile >= 0 && quantile <= 1, "quantile must be between 0 and 1");
+        long target = (long) Math.ceil(quantile * games);
+        long seen = 0;
+        for (int turns = 0; turns < turnCounts.length; ++turns) {
+            seen += turnCounts[turns];
+            if (seen >= target && seen > 0)
+                return turns;
+        }
+        return 0;
+    }
+
+    /** @return The number of times {@param value} was rolled. **/
+    public long getRollCount(int value) {
+        return rollCounts[value];
+    }
+
+    /** @return The fraction of rolls that are expected to be {@param value}, if each dice is up half of the time. **/
+    public static double getExpectedRollFraction(int value) {
+        int dice = RoyalUrNetDice.DICE_COUNT;
+        Checks.ensure(value >= 0 && value <= dice, "value is out of range");
+        double combinations = 1;
+        for (int index = 0; index < value; ++index) {
+            combinations = combinations * (dice - index) / (index + 1);
+        }
+        return combinations / (1 << dice);
+    }
+
+    /** @return A summary of this report, over several lines. **/
+    public @Nonnull String format() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(
+                "%d games in %.2f s, %.0f games/s", games, elapsedNanos / 1e9, getGamesPerSecond()
+        ));
+        builder.append(String.format(
+                "%nLight won %d (%.2f%%), dark won %d, %d unfinished",
+                lightWins, 100 * getLightWinRate(), darkWins, unfinished
+        ));
+        builder.append(String.format(
+                "%nTurns per game: mean %.1f, p10 %d, p50 %d, p90 %d, p99 %d",
+                getMeanTurns(), getTurnsQuantile(0.1), getTurnsQuantile(0.5),
+                getTurnsQuantile(0.9), getTurnsQuantile(0.99)
+        ));
+
+        long rolls = 0;
+        for (long count : rollCounts) {
+            rolls += count;
+        }
+        builder.append("\nRolls:");
+        for (int value = 0; value < rollCounts.length; ++value) {
+            builder.append(String.format(
+                    "%n  %d: %12d  %7.4f%% (expected %7.4f%%)",
+                    value, rollCounts[value],
+                    rolls == 0 ? 0 : 100.0 * rollCounts[value] / rolls, 100 * getExpectedRollFraction(value)
+            ));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,92 @@
+package net.royalur.backend.simulation;
+
+import net.royalur.Game;
+import net.royalur.backend.game.RoyalUrNetDiceRoll;
+import net.royalur.backend.util.Checks;
+import net.royalur.model.Move;
+import net.royalur.model.Piece;
+import net.royalur.model.PlayerState;
+import net.royalur.model.Tile;
+import net.royalur.rules.simple.SimplePiece;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Simple move policies that work with any board and paths, as they do not look ahead.
+ *
+ * @author Paddy Lamont
+ */
+public enum StandardMovePolicy implements MovePolicy {
+
+    /** Makes a random move. **/
+    RANDOM {
+        @Override
+        public @Nonnull Move<SimplePiece> choose(
+                @Nonnull Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game,
+                @Nonnull List<Move<SimplePiece>> moves
+        ) {
+            return moves.get(ThreadLocalRandom.current().nextInt(moves.size()));
+        }
+    },
+
+    /**
+     * Scores a piece if it can, then captures a piece if it can, and otherwise
+     * moves a piece already on the board rather than introducing a new one.
+     */
+    GREEDY {
+        @Override
+        public @Nonnull Move<SimplePiece> choose(
+                @Nonnull Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game,
+                @Nonnull List<Move<SimplePiece>> moves
+        ) {
+            Move<SimplePiece> best = moves.get(0);
+            int bestRank = rankGreedy(game, best);
+            for (int index = 1; index < moves.size(); ++index) {
+                Move<SimplePiece> move = moves.get(index);
+                int rank = rankGreedy(game, move);
+                if (rank > bestRank) {
+                    best = move;
+                    bestRank = rank;
+                }
+            }
+            return best;
+        }
+    },
+
+    /** Makes the first move the rules list, which exercises the rules without any randomness in the moves. **/
+    FIRST_LEGAL {
+        @Override
+        public @Nonnull Move<SimplePiece> choose(
+                @Nonnull Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game,
+                @Nonnull List<Move<SimplePiece>> moves
+        ) {
+            return moves.get(0);
+        }
+    };
+
+    private static int rankGreedy(Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game, Move<SimplePiece> move) {
+        if (move.isScoringPiece())
+            return 3;
+
+        // Players cannot move onto their own pieces, so any piece at the destination is captured.
+        Tile destination = move.getDestination();
+        Piece occupant = game.getBoard().get(destination.ix, destination.iy);
+        if (occupant != null)
+            return 2;
+
+        return move.isIntroducingPiece() ? 0 : 1;
+    }
+
+    /** @return The policy with the name {@param name}, ignoring case, and with dashes in place of underscores. **/
+    public static @Nonnull StandardMovePolicy fromName(@Nonnull String name) {
+        Checks.ensureNonNull(name, "name");
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown move policy " + name);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package net.royalur.backend.snapshot;
+
+import net.royalur.backend.RoyalUrNetIdentity;
+import net.royalur.backend.game.GameID;
+import net.royalur.backend.game.GameSettings;
+
+import javax.annotation.Nonnull;
+import java.util.UUID;
+
+/**
+ * Everything needed to restore a game that was being played
+ * when the server was restarted. The state of the game is
+ * restored by replaying the events of the game.
+ *
+ * @param gameID        The ID of the game.
+ * @param settings      The settings the game was created with.
+ * @param lightIdentity The identity of the light player.
+ * @param darkIdentity  The identity of the dark player.
+ * @param lightSession  The session ID of the client of the light player.
+ * @param darkSession   The session ID of the client of the dark player.
+ * @param events        The packed events of the game, from {@link net.royalur.backend.replay.GameEvent}.
+ */
+public record GameSnapshot(
+        @Nonnull GameID gameID,
+        @Nonnull GameSettings settings,
+        @Nonnull RoyalUrNetIdentity lightIdentity,
+        @Nonnull RoyalUrNetIdentity darkIdentity,
+        @Nonnull UUID lightSession,
+        @Nonnull UUID darkSession,
+        @Nonnull int[] events
+) {}
@@ -0,0 +1,152 @@
+package net.royalur.backend.snapshot;
+
+import net.royalur.backend.RoyalUrNetIdentity;
+import net.royalur.backend.game.GameID;
+import net.royalur.backend.game.GameSettings;
+import net.royalur.backend.session.SessionRecord;
+import net.royalur.backend.util.Checks;
+import net.royalur.builder.BoardType;
+import net.royalur.builder.PathType;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The games and sessions of a server, written out when it is restarted
+ * so that they can be restored when it starts up again. Snapshots are
+ * written in a compact binary format, where each game is stored as its
+ * players and its packed events.
+ *
+ * @param games    The games that were being played.
+ * @param sessions The sessions of the clients that may reconnect.
+ *
+ * @author Paddy Lamont
+ */
+public record ServerSnapshot(
+        @Nonnull List<GameSnapshot> games,
+        @Nonnull List<SessionRecord> sessions
+) {
+
+    /**
+     * Identifies snapshot files, and the version of their format.
+     */
+    private static final int MAGIC = 0x52555331;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public ServerSnapshot {
+        games = List.copyOf(games);
+        sessions = List.copyOf(sessions);
+    }
+
+    /**
+     * Writes this snapshot to {@param file}, replacing it atomically.
+     */
+    public void write(@Nonnull Path file) throws IOException {
+        Checks.ensureNonNull(file, "file");
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempFile), BUFFER_SIZE)
+        )) {
+            out.writeInt(MAGIC);
+
+            out.writeInt(games.size());
+            for (GameSnapshot game : games) {
+                out.writeLong(game.gameID().getNumericID());
+                out.writeUTF(game.settings().boardType().name());
+                out.writeUTF(game.settings().pathType().name());
+                writeIdentity(out, game.lightIdentity());
+                writeIdentity(out, game.darkIdentity());
+                writeUUID(out, game.lightSession());
+                writeUUID(out, game.darkSession());
+
+                int[] events = game.events();
+                out.writeInt(events.length);
+                for (int event : events) {
+                    out.writeInt(event);
+                }
+            }
+
+            out.writeInt(sessions.size());
+            for (SessionRecord session : sessions) {
+                out.writeUTF(session.write());
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return The snapshot written to {@param file} by {@link #write(Path)}.
+     */
+    public static @Nonnull ServerSnapshot read(@Nonnull Path file) throws IOException {
+        Checks.ensureNonNull(file, "file");
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)
+        )) {
+            if (in.readInt() != MAGIC)
+                throw new IOException(file + " is not a snapshot, or was written by an incompatible version");
+
+            int gameCount = in.readInt();
+            List<GameSnapshot> games = new ArrayList<>(gameCount);
+            for (int index = 0; index < gameCount; ++index) {
+                GameID gameID = new GameID(in.readLong());
+                GameSettings settings = new GameSettings(
+                        BoardType.valueOf(in.readUTF()),
+                        PathType.valueOf(in.readUTF())
+                );
+                RoyalUrNetIdentity lightIdentity = readIdentity(in);
+                RoyalUrNetIdentity darkIdentity = readIdentity(in);
+                UUID lightSession = readUUID(in);
+                UUID darkSession = readUUID(in);
+
+                int[] events = new int[in.readInt()];
+                for (int eventIndex = 0; eventIndex < events.length; ++eventIndex) {
+                    events[eventIndex] = in.readInt();
+                }
+                games.add(new GameSnapshot(
+                        gameID, settings, lightIdentity, darkIdentity, lightSession, darkSession, events
+                ));
+            }
+
+            int sessionCount = in.readInt();
+            List<SessionRecord> sessions = new ArrayList<>(sessionCount);
+            for (int index = 0; index < sessionCount; ++index) {
+                sessions.add(SessionRecord.read(in.readUTF()));
+            }
+            return new ServerSnapshot(games, sessions);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed snapshot " + file, e);
+        }
+    }
+
+    private static void writeIdentity(DataOutputStream out, RoyalUrNetIdentity identity) throws IOException {
+        out.writeUTF(identity.getID());
+        out.writeUTF(identity.name);
+    }
+
+    private static RoyalUrNetIdentity readIdentity(DataInputStream in) throws IOException {
+        String id = in.readUTF();
+        return new RoyalUrNetIdentity(id, in.readUTF());
+    }
+
+    private static void writeUUID(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUUID(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+}
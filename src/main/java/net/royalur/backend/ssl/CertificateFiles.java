@@ -0,0 +1,15 @@
+package net.royalur.backend.ssl;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+
+/**
+ * The PEM files for one certificate and its private key.
+ *
+ * @param certFile       The certificate chain, fullchain.pem, or just the certificate, cert.pem.
+ * @param privateKeyFile The private key of the certificate, privkey.pem.
+ */
+public record CertificateFiles(
+        @Nonnull File certFile,
+        @Nonnull File privateKeyFile
+) {}
@@ -0,0 +1,90 @@
+package net.royalur.backend.ssl;
+
+import net.royalur.backend.metrics.Counter;
+import net.royalur.backend.metrics.Metrics;
+import net.royalur.backend.util.Checks;
+import org.eclipse.jetty.io.ssl.SslHandshakeListener;
+
+import javax.net.ssl.SSLSession;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts TLS handshakes, separating full handshakes from resumed sessions.
+ * <p>
+ * Each full handshake creates a session with a new random ID, and the JDK
+ * keeps that ID when the session is resumed, both from its session cache
+ * and from session tickets. Therefore, a handshake is counted as resumed
+ * if its session has an ID that an earlier handshake already completed with.
+ * The IDs are remembered for as long as their sessions may be resumed.
+ */
+public class HandshakeCounter implements SslHandshakeListener {
+
+    /**
+     * The maximum number of session IDs to remember. Sessions that are
+     * resumed after their ID has been forgotten are counted as full.
+     */
+    private static final int MAX_REMEMBERED_SESSIONS = 100_000;
+
+    private final long sessionTimeoutNanos;
+
+    /** The time until which each session may be resumed, in the order that the sessions were created. **/
+    private final Map<ByteBuffer, Long> resumableUntilNanos = new LinkedHashMap<>();
+
+    private final Counter fullHandshakes = Metrics.counter("tls.handshakes.full");
+    private final Counter resumedHandshakes = Metrics.counter("tls.handshakes.resumed");
+    private final Counter failedHandshakes = Metrics.counter("tls.handshakes.failed");
+
+    /**
+     * @param sessionSettings The settings that control how long sessions may be resumed for.
+     */
+    public HandshakeCounter(TLSSessionSettings sessionSettings) {
+        Checks.ensureNonNull(sessionSettings, "sessionSettings");
+        // Session tickets are valid for as long as sessions in the cache, and a timeout of zero never expires.
+        int timeoutSecs = sessionSettings.sessionTimeoutSecs;
+        this.sessionTimeoutNanos = (timeoutSecs > 0 ? TimeUnit.SECONDS.toNanos(timeoutSecs) : Long.MAX_VALUE / 2);
+    }
+
+    @Override
+    public void handshakeSucceeded(Event event) {
+        SSLSession session = event.getSSLEngine().getSession();
+        if (isResumed(session.getId(), System.nanoTime())) {
+            resumedHandshakes.increment();
+        } else {
+            fullHandshakes.increment();
+        }
+    }
+
+    /**
+     * Records that a handshake completed with the session {@param sessionID} at {@param now}.
+     * @return Whether the session was created by an earlier handshake.
+     */
+    synchronized boolean isResumed(byte[] sessionID, long now) {
+        if (sessionID == null || sessionID.length == 0)
+            return false;
+
+        Iterator<Long> expiries = resumableUntilNanos.values().iterator();
+        while (expiries.hasNext()) {
+            long expiry = expiries.next();
+            if (now - expiry < 0 && resumableUntilNanos.size() < MAX_REMEMBERED_SESSIONS)
+                break;
+
+            expiries.remove();
+        }
+
+        ByteBuffer key = ByteBuffer.wrap(sessionID.clone());
+        if (resumableUntilNanos.containsKey(key))
+            return true;
+
+        resumableUntilNanos.put(key, now + sessionTimeoutNanos);
+        return false;
+    }
+
+    @Override
+    public void handshakeFailed(Event event, Throwable failure) {
+        failedHandshakes.increment();
+    }
+}
@@ -1,6 +1,7 @@
 package net.royalur.backend.ssl;
 
 import java.security.KeyStore;
+import java.util.List;
 
 /**
  * Holds information about keys to use for SSL.
@@ -10,8 +11,18 @@ public class KeyInfo {
     public final KeyStore keyStore;
     public final String password;
 
-    public KeyInfo(KeyStore keyStore, String password) {
+    /**
+     * The algorithms of the private keys in the key store, e.g. "RSA" and "EC".
+     */
+    public final List<String> keyAlgorithms;
+
+    public KeyInfo(KeyStore keyStore, String password, List<String> keyAlgorithms) {
         this.keyStore = keyStore;
         this.password = password;
+        this.keyAlgorithms = List.copyOf(keyAlgorithms);
+    }
+
+    public KeyInfo(KeyStore keyStore, String password) {
+        this(keyStore, password, List.of());
     }
 }
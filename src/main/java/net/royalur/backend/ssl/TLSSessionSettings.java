@@ -0,0 +1,84 @@
+package net.royalur.backend.ssl;
+
+import net.royalur.backend.util.Checks;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+
+/**
+ * Settings that control how TLS sessions are cached and resumed, so
+ * that reconnecting clients can skip the expensive full handshake.
+ */
+public class TLSSessionSettings {
+
+    /**
+     * The JDK property that enables stateless session tickets on the server.
+     */
+    public static final String SESSION_TICKETS_PROPERTY = "jdk.tls.server.enableSessionTicketExtension";
+
+    /**
+     * The JDK property for the number of seconds each session ticket encryption key is used for.
+     */
+    public static final String TICKET_KEY_ROTATION_PROPERTY = "jdk.tls.server.statelessKeyTimeout";
+
+    /**
+     * The JDK property for the number of seconds that issued session tickets are valid for.
+     */
+    public static final String TICKET_LIFETIME_PROPERTY = "jdk.tls.server.sessionTicketTimeout";
+
+    /**
+     * The maximum number of sessions to keep in the server-side session cache.
+     */
+    public final int sessionCacheSize;
+
+    /**
+     * The number of seconds that a session may be resumed for.
+     */
+    public final int sessionTimeoutSecs;
+
+    /**
+     * Whether stateless session tickets should be issued to clients.
+     */
+    public final boolean sessionTickets;
+
+    /**
+     * The number of seconds before the key used to encrypt session tickets is rotated.
+     */
+    public final int ticketKeyRotationSecs;
+
+    public TLSSessionSettings(
+            int sessionCacheSize,
+            int sessionTimeoutSecs,
+            boolean sessionTickets,
+            int ticketKeyRotationSecs
+    ) {
+        Checks.ensure(sessionCacheSize >= 0, "sessionCacheSize must be >= 0");
+        Checks.ensure(sessionTimeoutSecs >= 0, "sessionTimeoutSecs must be >= 0");
+        Checks.ensure(ticketKeyRotationSecs > 0, "ticketKeyRotationSecs must be positive");
+
+        this.sessionCacheSize = sessionCacheSize;
+        this.sessionTimeoutSecs = sessionTimeoutSecs;
+        this.sessionTickets = sessionTickets;
+        this.ticketKeyRotationSecs = ticketKeyRotationSecs;
+    }
+
+    /**
+     * Session ticket keys are managed by the JDK, and it only reads its
+     * settings once. Therefore, this must be called before any SSL
+     * contexts are created.
+     */
+    public void applyToJVM() {
+        System.setProperty(SESSION_TICKETS_PROPERTY, Boolean.toString(sessionTickets));
+        System.setProperty(TICKET_KEY_ROTATION_PROPERTY, Integer.toString(ticketKeyRotationSecs));
+        System.setProperty(TICKET_LIFETIME_PROPERTY, Integer.toString(sessionTimeoutSecs));
+    }
+
+    /**
+     * Configures the session cache of {@param factory}.
+     */
+    public void applyTo(SslContextFactory.Server factory) {
+        Checks.ensureNonNull(factory, "factory");
+
+        factory.setSessionCachingEnabled(sessionCacheSize > 0);
+        factory.setSslSessionCacheSize(sessionCacheSize);
+        factory.setSslSessionTimeout(sessionTimeoutSecs);
+    }
+}
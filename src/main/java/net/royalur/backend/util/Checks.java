@@ -17,9 +17,9 @@ public class Checks {
     public static <T> void ensureArrayNonNull(T[] array, String argName) {
         ensureNonNull(array, argName);
 
-        String message = "The values within " + argName + " cannot be null";
         for (T value : array) {
-            ensure(value != null, message);
+            if (value == null)
+                throw new IllegalArgumentException("The values within " + argName + " cannot be null");
         }
     }
 
@@ -29,7 +29,8 @@ public class Checks {
      * @throws IllegalArgumentException if {@param argument} is null.
      */
     public static void ensureNonNull(Object argument, String argName) {
-        ensure(argument != null, argName + " cannot be null");
+        if (argument == null)
+            throw new IllegalArgumentException(argName + " cannot be null");
     }
 
     /**
@@ -38,10 +39,8 @@ public class Checks {
      * @throws IllegalArgumentException if {@param argument} is not a single digit.
      */
     public static void ensureSingleDigit(int argument, String argName) {
-        ensure(
-            argument >= 0 && argument <= 9,
-            argName + " must be a single digit number (0 to 9 inclusive)"
-        );
+        if (argument < 0 || argument > 9)
+            throw new IllegalArgumentException(argName + " must be a single digit number (0 to 9 inclusive)");
     }
 
     /**
@@ -54,6 +53,17 @@ public class Checks {
             throw new IllegalArgumentException(message);
     }
 
+    /**
+     * Ensure that {@param expression} is true. The message is only
+     * built if the check fails, so this can be used on hot paths.
+     *
+     * @throws IllegalArgumentException with the message from {@param message} if {@param expression} is false.
+     */
+    public static void ensure(boolean expression, Supplier<String> message) {
+        if(!expression)
+            throw new IllegalArgumentException(message.get());
+    }
+
     /**
      * Ensure that {@param expression} is true.
      *
@@ -64,6 +74,17 @@ public class Checks {
             throw new IllegalStateException(message);
     }
 
+    /**
+     * Ensure that {@param expression} is true. The message is only
+     * built if the check fails, so this can be used on hot paths.
+     *
+     * @throws IllegalStateException with the message from {@param message} if {@param expression} is false.
+     */
+    public static void ensureState(boolean expression, Supplier<String> message) {
+        if(!expression)
+            throw new IllegalStateException(message.get());
+    }
+
     /**
      * Calls {@param function}, adding additional detail {@param detail} to any exception thrown.
      */
@@ -0,0 +1,95 @@
+package net.royalur.backend.util;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Times each phase of starting up the server, so that the
+ * phases that hold up the server being ready can be found.
+ * Phases may be run in the background, in which case their
+ * duration is reported separately when they finish.
+ *
+ * @author Paddy Lamont
+ */
+public class StartupTimer {
+
+    private final long startNanos = System.nanoTime();
+    private final List<String> phases = new ArrayList<>();
+    private final Consumer<String> reporter;
+
+    /**
+     * @param reporter Receives the reports of phases that finish in the background.
+     */
+    public StartupTimer(@Nonnull Consumer<String> reporter) {
+        Checks.ensureNonNull(reporter, "reporter");
+        this.reporter = reporter;
+    }
+
+    /**
+     * Runs the phase {@param phase} by calling {@param action}.
+     * @return The result of {@param action}.
+     */
+    public <T> T time(@Nonnull String phase, @Nonnull Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            record(phase, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Runs the phase {@param phase} by calling {@param action}.
+     */
+    public void run(@Nonnull String phase, @Nonnull Runnable action) {
+        time(phase, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the phase {@param phase} in the background on {@param executor}, by calling {@param action}.
+     * @return A future that completes with the result of {@param action}.
+     */
+    public <T> CompletableFuture<T> timeAsync(
+            @Nonnull String phase,
+            @Nonnull Supplier<T> action,
+            @Nonnull Executor executor
+    ) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                return action.get();
+            } finally {
+                long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                reporter.accept("Finished " + phase + " in the background in " + durationMs
+                        + "ms, " + getElapsedMs() + "ms after start up began");
+            }
+        }, executor);
+    }
+
+    private synchronized void record(String phase, long durationNanos) {
+        phases.add(phase + " " + TimeUnit.NANOSECONDS.toMillis(durationNanos) + "ms");
+    }
+
+    /**
+     * @return The time since start up began, in milliseconds.
+     */
+    public long getElapsedMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return A summary of the duration of each phase that has been run in the foreground.
+     */
+    public synchronized @Nonnull String report() {
+        return "Started up in " + getElapsedMs() + "ms (" + String.join(", ", phases) + ")";
+    }
+}
@@ -0,0 +1,87 @@
+package net.royalur.backend.ai;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BotSearchTest {
+
+    private static final int INTRODUCE = BotPosition.INTRODUCE;
+
+    private static int path(int... indices) {
+        int mask = 0;
+        for (int index : indices) {
+            mask |= 1 << index;
+        }
+        return mask;
+    }
+
+    @Test
+    public void testRollWeights() {
+        assertArrayEquals(new int[] {1, 4, 6, 4, 1}, BotPosition.ROLL_WEIGHTS);
+        assertEquals(16, BotPosition.ROLL_WEIGHT_TOTAL);
+    }
+
+    @Test
+    public void testFindMoves() {
+        int[] sources = new int[BotPosition.PIECES + 1];
+        long start = BotPosition.create(0, 0, 0, 0, true);
+        assertEquals(0, BotPosition.findMoves(start, 0, sources));
+        assertEquals(1, BotPosition.findMoves(start, 4, sources));
+        assertEquals(INTRODUCE, sources[0]);
+
+        // Pieces cannot land on their own pieces, or the opponent's piece on the central rosette.
+        long blocked = BotPosition.create(path(3, 5), path(7), 5, 0, true);
+        assertEquals(0, BotPosition.findMoves(blocked, 2, sources));
+        assertEquals(2, BotPosition.findMoves(blocked, 1, sources));
+
+        // Pieces can only be moved off the end of the path with an exact roll.
+        long ending = BotPosition.create(path(12), 0, 6, 0, true);
+        assertEquals(0, BotPosition.findMoves(ending, 3, sources));
+        assertEquals(1, BotPosition.findMoves(ending, 2, sources));
+        assertEquals(12, sources[0]);
+    }
+
+    @Test
+    public void testApplyMove() {
+        // Capturing a piece returns it to its owner, and passes the turn.
+        long capture = BotPosition.applyMove(BotPosition.create(path(5), path(6), 0, 0, true), 1, 5);
+        assertEquals(path(6), BotPosition.getPath(capture, true));
+        assertEquals(0, BotPosition.getPath(capture, false));
+        assertEquals(BotPosition.PIECES, BotPosition.getPiecesInHand(capture, false));
+        assertFalse(BotPosition.isLightTurn(capture));
+
+        // Landing on a rosette gives another turn.
+        long rosette = BotPosition.applyMove(BotPosition.create(0, 0, 0, 0, false), 4, INTRODUCE);
+        assertEquals(path(3), BotPosition.getPath(rosette, false));
+        assertFalse(BotPosition.isLightTurn(rosette));
+
+        long scored = BotPosition.applyMove(BotPosition.create(path(12), 0, 6, 0, true), 2, 12);
+        assertTrue(BotPosition.isFinished(scored));
+    }
+
+    @Test
+    public void testSearchScoresPiece() {
+        // Dark should score their piece, rather than move their piece that is safe from capture.
+        BotSearch search = new BotSearch();
+        long position = BotPosition.create(path(9), path(13, 0), 0, 5, false);
+        int[] sources = new int[BotPosition.PIECES + 1];
+        int count = BotPosition.findMoves(position, 1, sources);
+        int best = search.search(position, 1, sources, count, BotSearch.MAX_DEPTH, 1_000_000_000L);
+        assertEquals(13, sources[best]);
+    }
+
+    @Test
+    public void testSearchCapturesThreateningPiece() {
+        // Light can capture dark's piece that is about to score, or advance their own piece.
+        BotSearch search = new BotSearch();
+        long position = BotPosition.create(path(8, 2), path(10), 0, 0, true);
+        int[] sources = new int[BotPosition.PIECES + 1];
+        int count = BotPosition.findMoves(position, 2, sources);
+        int best = search.search(position, 2, sources, count, 3, 1_000_000_000L);
+        assertEquals(8, sources[best]);
+    }
+}
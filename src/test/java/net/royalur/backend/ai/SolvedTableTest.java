@@ -0,0 +1,90 @@
+package net.royalur.backend.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SolvedTableTest {
+
+    /** Only the layers where the players have scored at least this many pieces in total are solved. **/
+    private static final int MIN_TOTAL_SCORE = 11;
+
+    private static final float TOLERANCE = 1e-4f;
+
+    private static int path(int... indices) {
+        int mask = 0;
+        for (int index : indices) {
+            mask |= 1 << index;
+        }
+        return mask;
+    }
+
+    @Test
+    public void testIndexIsDense() {
+        int[][] scores = {{6, 6}, {5, 6}, {6, 4}};
+        for (int[] score : scores) {
+            int layer = SolvedTableIndex.getLayer(score[0], score[1]);
+            int count = 0;
+            for (int config = 0; config < SolvedTableIndex.getSharedConfigCount(); ++config) {
+                int size = SolvedTableIndex.getBlockSize(layer, config);
+                for (int offset = 0; offset < size; ++offset) {
+                    long position = SolvedTableIndex.getPosition(layer, config, offset);
+                    assertEquals(count, SolvedTableIndex.getOffsetInLayer(position));
+                    assertEquals(score[0], BotPosition.getScore(position, true));
+                    assertEquals(score[1], BotPosition.getScore(position, false));
+                    count += 1;
+                }
+            }
+            assertEquals(SolvedTableIndex.getLayerSize(layer), count);
+        }
+    }
+
+    @Test
+    public void testMirror() {
+        long position = BotPosition.create(path(2, 7, 13), path(5), 3, 4, true);
+        long mirrored = BotPosition.mirror(position);
+        assertEquals(path(5), BotPosition.getPath(mirrored, true));
+        assertEquals(path(2, 7, 13), BotPosition.getPath(mirrored, false));
+        assertEquals(4, BotPosition.getScore(mirrored, true));
+        assertEquals(3, BotPosition.getScore(mirrored, false));
+        assertFalse(BotPosition.isLightTurn(mirrored));
+        assertEquals(position, BotPosition.mirror(mirrored));
+    }
+
+    @Test
+    public void testSolvesEndgame() throws IOException {
+        SolvedTableGenerator generator = new SolvedTableGenerator(ForkJoinPool.commonPool(), null, TOLERANCE);
+        generator.solve(MIN_TOTAL_SCORE);
+
+        // Each player needs a roll of exactly one to win, which is rolled a quarter of the time.
+        long race = BotPosition.create(path(13), path(13), 6, 6, true);
+        assertEquals(4.0 / 7, generator.getLightWinProbability(race), 1e-3);
+        assertEquals(3.0 / 7, generator.getLightWinProbability(BotPosition.pass(race)), 1e-3);
+
+        // Light scores with any roll of four, and dark cannot score without first moving onto the board.
+        long ahead = BotPosition.create(path(10), 0, 6, 6, true);
+        assertTrue(generator.getLightWinProbability(ahead) > 0.5);
+        assertEquals(1, generator.getLightWinProbability(BotPosition.create(0, 0, 7, 5, false)));
+    }
+
+    @Test
+    public void testResumesFromCheckpoint() throws IOException {
+        Path checkpointDir = Files.createTempDirectory("solved-table");
+        SolvedTableGenerator generator = new SolvedTableGenerator(ForkJoinPool.commonPool(), checkpointDir, TOLERANCE);
+        generator.solve(MIN_TOTAL_SCORE);
+        assertTrue(Files.exists(checkpointDir.resolve("layer-6-5.bin")));
+
+        // The resumed generator does not need to sweep, so its values are the same.
+        SolvedTableGenerator resumed = new SolvedTableGenerator(ForkJoinPool.commonPool(), checkpointDir, 1e-30f);
+        resumed.solve(MIN_TOTAL_SCORE);
+        long position = BotPosition.create(path(1, 8), path(12), 5, 6, true);
+        assertEquals(generator.getLightWinProbability(position), resumed.getLightWinProbability(position));
+    }
+}
@@ -0,0 +1,145 @@
+package net.royalur.backend.cluster;
+
+import net.royalur.backend.game.GameID;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs several nodes over loopback TCP. Separate JVMs on one host can be
+ * set up the same way, by giving each its own cluster and web ports.
+ */
+public class ClusterMembershipTest {
+
+    private static final int NODES = 3;
+    private static final long TIMEOUT_MS = 10000;
+    private static final String SECRET = "correct horse battery staple";
+
+    /**
+     * Several nodes, whose sockets are bound before any of them start, so that
+     * every node knows the ports of its peers without racing for free ports.
+     */
+    private static class Cluster implements AutoCloseable {
+
+        final List<ClusterMembership> members = new ArrayList<>();
+        private final List<ServerSocket> sockets = new ArrayList<>();
+
+        /** @param hostedGames The games hosted by each node. **/
+        Cluster(List<Set<GameID>> hostedGames) throws IOException {
+            this(hostedGames, Collections.nCopies(hostedGames.size(), SECRET));
+        }
+
+        /**
+         * @param hostedGames The games hosted by each node.
+         * @param secrets The secret that each node believes is shared by the cluster.
+         */
+        Cluster(List<Set<GameID>> hostedGames, List<String> secrets) throws IOException {
+            InetAddress loopback = InetAddress.getLoopbackAddress();
+            for (int index = 0; index < hostedGames.size(); ++index) {
+                sockets.add(new ServerSocket(0, 50, loopback));
+            }
+
+            for (int index = 0; index < hostedGames.size(); ++index) {
+                List<InetSocketAddress> peers = new ArrayList<>();
+                for (int peer = 0; peer < sockets.size(); ++peer) {
+                    if (peer != index) {
+                        peers.add(new InetSocketAddress(loopback, sockets.get(peer).getLocalPort()));
+                    }
+                }
+
+                int port = sockets.get(index).getLocalPort();
+                ClusterNode node = new ClusterNode(
+                        "node-" + index, loopback.getHostAddress(), port, "http://localhost:" + port
+                );
+                members.add(new ClusterMembership(
+                        node, peers, secrets.get(index), 100, 600, hostedGames.get(index)::contains
+                ));
+            }
+            for (int index = 0; index < members.size(); ++index) {
+                members.get(index).start(sockets.get(index));
+            }
+        }
+
+        void awaitLiveNodes(List<ClusterMembership> members, int count) throws InterruptedException {
+            for (ClusterMembership member : members) {
+                assertTrue(member.awaitLiveNodes(count, TIMEOUT_MS));
+            }
+        }
+
+        @Override
+        public void close() {
+            for (ClusterMembership member : members) {
+                member.stop();
+            }
+        }
+    }
+
+    @Test
+    public void testJoinAndLeave() throws Exception {
+        List<Set<GameID>> hostedGames = new ArrayList<>();
+        for (int index = 0; index < NODES; ++index) {
+            hostedGames.add(Set.of());
+        }
+
+        try (Cluster cluster = new Cluster(hostedGames)) {
+            cluster.awaitLiveNodes(cluster.members, NODES);
+
+            cluster.members.get(NODES - 1).stop();
+            cluster.awaitLiveNodes(cluster.members.subList(0, NODES - 1), NODES - 1);
+        }
+    }
+
+    @Test
+    public void testFindHost() throws Exception {
+        GameID first = new GameID(1234);
+        GameID second = new GameID(5678);
+        GameID unknown = new GameID(9012);
+
+        try (Cluster cluster = new Cluster(List.of(Set.of(first), Set.of(), Set.of(second)))) {
+            cluster.awaitLiveNodes(cluster.members, NODES);
+
+            // Each node finds the host, whichever node owns the game on the ring.
+            for (ClusterMembership member : cluster.members) {
+                assertEquals("node-0", findHost(member, first).id());
+                assertEquals("node-2", findHost(member, second).id());
+                assertNull(findHost(member, unknown));
+            }
+
+            // The hosts of games on a node that leaves are forgotten.
+            cluster.members.get(2).stop();
+            cluster.awaitLiveNodes(cluster.members.subList(0, 2), 2);
+            assertNull(findHost(cluster.members.get(0), second));
+        }
+    }
+
+    @Test
+    public void testRejectsNodesWithoutTheSecret() throws Exception {
+        GameID game = new GameID(1234);
+        List<Set<GameID>> hostedGames = List.of(Set.of(), Set.of(), Set.of(game));
+        List<String> secrets = List.of(SECRET, SECRET, "wrong secret");
+
+        try (Cluster cluster = new Cluster(hostedGames, secrets)) {
+            cluster.awaitLiveNodes(cluster.members.subList(0, 2), 2);
+            for (ClusterMembership member : cluster.members) {
+                assertFalse(member.awaitLiveNodes(NODES, 1000));
+            }
+
+            // The node without the secret is not asked about its games.
+            assertNull(findHost(cluster.members.get(0), game));
+        }
+    }
+
+    private static ClusterNode findHost(ClusterMembership member, GameID gameID) throws Exception {
+        return member.findHost(gameID).get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,79 @@
+package net.royalur.backend.cluster;
+
+import net.royalur.backend.game.GameID;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HashRingTest {
+
+    private static final int GAMES = 30000;
+
+    private static List<ClusterNode> createNodes(int count) {
+        List<ClusterNode> nodes = new ArrayList<>();
+        for (int index = 0; index < count; ++index) {
+            nodes.add(new ClusterNode("node-" + index, "localhost", 9120 + index, "http://localhost:" + index));
+        }
+        return nodes;
+    }
+
+    private static List<GameID> createGameIDs() {
+        Random random = new Random(42);
+        List<GameID> gameIDs = new ArrayList<>();
+        for (int index = 0; index < GAMES; ++index) {
+            gameIDs.add(GameID.random(random));
+        }
+        return gameIDs;
+    }
+
+    @Test
+    public void testBalanced() {
+        HashRing ring = new HashRing(createNodes(4));
+        Map<String, Integer> counts = new HashMap<>();
+        for (GameID gameID : createGameIDs()) {
+            counts.merge(ring.getOwner(gameID).id(), 1, Integer::sum);
+        }
+
+        assertEquals(4, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(count > GAMES / 4 * 0.75, "Unbalanced ring: " + counts);
+            assertTrue(count < GAMES / 4 * 1.25, "Unbalanced ring: " + counts);
+        }
+    }
+
+    @Test
+    public void testAddingNodeOnlyMovesItsShare() {
+        List<ClusterNode> nodes = createNodes(5);
+        HashRing before = new HashRing(nodes.subList(0, 4));
+        HashRing after = new HashRing(nodes);
+
+        int moved = 0;
+        for (GameID gameID : createGameIDs()) {
+            ClusterNode oldOwner = before.getOwner(gameID);
+            ClusterNode newOwner = after.getOwner(gameID);
+            if (!oldOwner.equals(newOwner)) {
+                // Games may only move to the new node.
+                assertEquals(nodes.get(4), newOwner);
+                moved += 1;
+            }
+        }
+        assertTrue(moved < GAMES / 5 * 1.25, "Too many games moved: " + moved);
+    }
+
+    @Test
+    public void testOrderIndependent() {
+        List<ClusterNode> nodes = createNodes(3);
+        HashRing ring = new HashRing(nodes);
+        HashRing reversed = new HashRing(List.of(nodes.get(2), nodes.get(1), nodes.get(0)));
+        for (GameID gameID : createGameIDs()) {
+            assertEquals(ring.getOwner(gameID), reversed.getOwner(gameID));
+        }
+    }
+}
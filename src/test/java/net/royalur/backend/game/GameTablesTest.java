@@ -0,0 +1,44 @@
+package net.royalur.backend.game;
+
+import net.royalur.backend.ai.BotPosition;
+import net.royalur.model.Player;
+import net.royalur.model.Tile;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameTablesTest {
+
+    @Test
+    public void testStandardBoard() {
+        GameTables tables = GameSettings.STANDARD.getTables();
+        assertSame(tables, GameTables.of(GameSettings.STANDARD));
+        assertEquals(20, tables.getBoardTileCount());
+        assertFalse(tables.isOnBoard(-1, 0));
+        assertFalse(tables.isOnBoard(tables.width, 0));
+        assertNull(tables.getBoardTile(0, tables.height));
+
+        for (Player player : new Player[] {Player.LIGHT, Player.DARK}) {
+            Tile start = tables.getStartTile(player);
+            Tile end = tables.getEndTile(player);
+            assertNull(tables.getBoardTile(start.ix, start.iy));
+            assertNull(tables.getBoardTile(end.ix, end.iy));
+        }
+    }
+
+    @Test
+    public void testStandardPaths() {
+        GameTables tables = GameSettings.STANDARD.getTables();
+        for (Player player : new Player[] {Player.LIGHT, Player.DARK}) {
+            boolean light = (player == Player.LIGHT);
+            assertEquals(BotPosition.PATH_LENGTH, tables.getPathLength(player));
+            for (int pathIndex = 0; pathIndex < BotPosition.PATH_LENGTH; ++pathIndex) {
+                Tile tile = tables.getPathTile(player, pathIndex);
+                assertEquals(BotPosition.getTileX(light, pathIndex), tile.ix);
+                assertEquals(BotPosition.getTileY(pathIndex), tile.iy);
+                assertEquals(pathIndex, tables.getPathIndex(player, tile.ix, tile.iy));
+                assertEquals(tile, tables.getBoardTile(tile.ix, tile.iy));
+            }
+        }
+    }
+}
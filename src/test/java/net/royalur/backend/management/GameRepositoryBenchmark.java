@@ -0,0 +1,66 @@
+package net.royalur.backend.management;
+
+import net.royalur.backend.RoyalUrNetIdentity;
+import net.royalur.backend.game.GameID;
+import net.royalur.backend.game.GameSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares reserving a batch of game IDs through the bulk reservation
+ * of {@link GameRepository}, against one call per game, before the
+ * games are created.
+ * <p>
+ * Run with: {@code java net.royalur.backend.management.GameRepositoryBenchmark [games] [rounds]}
+ */
+public class GameRepositoryBenchmark {
+
+    private static final RoyalUrNetIdentity LIGHT = new RoyalUrNetIdentity("benchmark-light", "Light");
+    private static final RoyalUrNetIdentity DARK = new RoyalUrNetIdentity("benchmark-dark", "Dark");
+
+    public static void main(String[] args) {
+        int games = (args.length > 0 ? Integer.parseInt(args[0]) : 500);
+        int rounds = (args.length > 1 ? Integer.parseInt(args[1]) : 200);
+
+        // Warm up both before measuring either.
+        run(games, rounds / 10, false);
+        run(games, rounds / 10, true);
+
+        long single = run(games, rounds, false);
+        long bulk = run(games, rounds, true);
+        System.out.printf("single: %8.2f ms per %d games%n", single / 1e6 / rounds, games);
+        System.out.printf("bulk:   %8.2f ms per %d games%n", bulk / 1e6 / rounds, games);
+        System.out.printf("The bulk reservation takes %.2fx the time of single calls%n", (double) bulk / single);
+    }
+
+    /**
+     * @return The total nanoseconds taken to reserve and create {@param games} games, {@param rounds} times.
+     */
+    private static long run(int games, int rounds, boolean bulk) {
+        long totalNanos = 0;
+        int created = 0;
+        for (int round = 0; round < rounds; ++round) {
+            GameRepository repository = new GameRepository();
+            long start = System.nanoTime();
+            List<GameID> gameIDs;
+            if (bulk) {
+                gameIDs = repository.reserveGameIDs(GameSettings.STANDARD, LIGHT, games);
+            } else {
+                gameIDs = new ArrayList<>(games);
+                for (int index = 0; index < games; ++index) {
+                    gameIDs.add(repository.reserveGameID(GameSettings.STANDARD, LIGHT));
+                }
+            }
+            for (GameID gameID : gameIDs) {
+                repository.createGame(gameID, LIGHT, DARK);
+                created += 1;
+            }
+            totalNanos += System.nanoTime() - start;
+        }
+        if (created != games * rounds)
+            throw new IllegalStateException("Expected " + (games * rounds) + " games, but created " + created);
+
+        return totalNanos;
+    }
+}
@@ -0,0 +1,72 @@
+package net.royalur.backend.management;
+
+import net.royalur.backend.game.GameID;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GameSummaryIndexTest {
+
+    private static GameSummary summary(long id, long startTimeMillis) {
+        return new GameSummary(new GameID(id), "light" + id, "dark" + id, 0, 0, startTimeMillis);
+    }
+
+    private static List<Long> ids(List<GameSummary> summaries) {
+        List<Long> ids = new ArrayList<>();
+        for (GameSummary summary : summaries) {
+            ids.add(summary.gameID().getNumericID());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testNewestPages() {
+        GameSummaryIndex index = new GameSummaryIndex();
+        for (long id = 1; id <= 5; ++id) {
+            index.add(summary(id, 1000 + id));
+        }
+
+        assertEquals(List.of(5L, 4L), ids(index.page(GameSummaryIndex.Order.NEWEST, 0, 2)));
+        assertEquals(List.of(3L, 2L), ids(index.page(GameSummaryIndex.Order.NEWEST, 1, 2)));
+        assertEquals(List.of(1L), ids(index.page(GameSummaryIndex.Order.NEWEST, 2, 2)));
+        assertTrue(index.page(GameSummaryIndex.Order.NEWEST, 3, 2).isEmpty());
+    }
+
+    @Test
+    public void testQueryAfter() {
+        GameSummaryIndex index = new GameSummaryIndex();
+        for (long id = 1; id <= 5; ++id) {
+            index.add(summary(id, 1000 + id));
+        }
+
+        List<GameSummary> first = index.query(GameSummaryIndex.Order.NEWEST, null, 2);
+        List<GameSummary> second = index.query(GameSummaryIndex.Order.NEWEST, first.get(1), 2);
+        assertEquals(List.of(3L, 2L), ids(second));
+    }
+
+    @Test
+    public void testUpdatesReorder() {
+        GameSummaryIndex index = new GameSummaryIndex();
+        for (long id = 1; id <= 3; ++id) {
+            index.add(summary(id, 1000 + id));
+        }
+
+        index.onSpectatorsChanged(new GameID(1), 4);
+        index.onSpectatorsChanged(new GameID(2), 2);
+        index.onMove(new GameID(2));
+        index.onMove(new GameID(2));
+        assertEquals(List.of(1L, 2L, 3L), ids(index.page(GameSummaryIndex.Order.MOST_SPECTATED, 0, 10)));
+        assertEquals(2, index.get(new GameID(2)).turns());
+
+        index.remove(new GameID(1));
+        assertNull(index.get(new GameID(1)));
+        assertEquals(2, index.size());
+        assertEquals(List.of(2L, 3L), ids(index.page(GameSummaryIndex.Order.MOST_SPECTATED, 0, 10)));
+        assertEquals(List.of(3L, 2L), ids(index.page(GameSummaryIndex.Order.NEWEST, 0, 10)));
+    }
+}
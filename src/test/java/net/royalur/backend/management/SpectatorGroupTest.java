@@ -0,0 +1,63 @@
+package net.royalur.backend.management;
+
+import net.royalur.backend.network.Client;
+import net.royalur.backend.network.Connection;
+import net.royalur.backend.network.outgoing.PacketOut;
+import net.royalur.backend.network.outgoing.PacketOutError;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SpectatorGroupTest {
+
+    /** A connection that remembers the packets sent over it. **/
+    private static class RecordingConnection implements Connection {
+
+        final List<String> sent = new CopyOnWriteArrayList<>();
+
+        @Override
+        public @Nonnull String getRemoteAddress() {
+            return "127.0.0.1";
+        }
+
+        @Override
+        public void send(@Nonnull String message) {
+            sent.add(message);
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    private static Client connect(RecordingConnection connection) {
+        return new Client("Spectator", UUID.randomUUID(), connection) {{
+            onConnect(connection);
+        }};
+    }
+
+    @Test
+    public void testLateSpectatorSkipsQueuedPackets() {
+        // The cadence holds the packets in the queue whilst the second spectator joins.
+        SpectatorDelivery delivery = new SpectatorDelivery(1, 1, 50);
+        SpectatorGroup group = delivery.createGroup();
+
+        RecordingConnection early = new RecordingConnection();
+        RecordingConnection late = new RecordingConnection();
+        PacketOut first = new PacketOutError("first");
+        PacketOut second = new PacketOutError("second");
+
+        group.subscribe(connect(early));
+        group.publish(first);
+        group.subscribe(connect(late));
+        group.publish(second);
+        delivery.stop();
+
+        assertEquals(List.of(first.write(), second.write()), early.sent);
+        assertEquals(List.of(second.write()), late.sent);
+    }
+}
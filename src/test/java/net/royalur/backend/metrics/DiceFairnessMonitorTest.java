@@ -0,0 +1,105 @@
+package net.royalur.backend.metrics;
+
+import net.royalur.backend.game.DiceValue;
+import net.royalur.backend.game.RoyalUrNetDice;
+import net.royalur.backend.game.RoyalUrNetDiceRoll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DiceFairnessMonitorTest {
+
+    private static final int WINDOW = 4096;
+    private static final double ALERT_P_VALUE = 1e-4;
+
+    private static RoyalUrNetDiceRoll randomRoll(Random random) {
+        DiceValue[] values = new DiceValue[RoyalUrNetDice.DICE_COUNT];
+        for (int dice = 0; dice < values.length; ++dice) {
+            values[dice] = DiceValue.random(random);
+        }
+        return new RoyalUrNetDiceRoll(values);
+    }
+
+    @Test
+    public void testCounts() {
+        DiceFairnessMonitor monitor = new DiceFairnessMonitor(WINDOW, ALERT_P_VALUE);
+        DiceValue[] values = {DiceValue.UP_1, DiceValue.DOWN_2, DiceValue.UP_3, DiceValue.UP_1};
+        monitor.record(new RoyalUrNetDiceRoll(values));
+        monitor.record(new RoyalUrNetDiceRoll(values));
+
+        assertEquals(2, monitor.getRollCount());
+        assertEquals(2, monitor.getTotalCount(3));
+        assertEquals(0, monitor.getTotalCount(2));
+        assertEquals(2, monitor.getFaceCount(1, DiceValue.DOWN_2));
+        assertEquals(0, monitor.getFaceCount(1, DiceValue.UP_1));
+
+        // Windows are only tested once they are full.
+        assertNull(monitor.check());
+    }
+
+    @Test
+    public void testFairDice() {
+        DiceFairnessMonitor monitor = new DiceFairnessMonitor(WINDOW, ALERT_P_VALUE);
+        Random random = new Random(42);
+        for (int window = 0; window < 4; ++window) {
+            for (int index = 0; index < WINDOW; ++index) {
+                monitor.record(randomRoll(random));
+            }
+            DiceFairnessMonitor.WindowResult result = monitor.check();
+            assertNotNull(result);
+            assertTrue(result.getMinPValue() > ALERT_P_VALUE, result.toString());
+        }
+        assertNull(monitor.check());
+    }
+
+    @Test
+    public void testBiasedDice() {
+        DiceFairnessMonitor monitor = new DiceFairnessMonitor(WINDOW, ALERT_P_VALUE);
+        Random random = new Random(42);
+        for (int index = 0; index < WINDOW; ++index) {
+            RoyalUrNetDiceRoll roll = randomRoll(random);
+            // The first dice lands up seven twelfths of the time.
+            if (index % 6 == 0) {
+                roll.values[0] = DiceValue.UP_2;
+            }
+            monitor.record(roll);
+        }
+        DiceFairnessMonitor.WindowResult result = monitor.check();
+        assertNotNull(result);
+        assertTrue(result.facesPValue() < ALERT_P_VALUE, result.toString());
+    }
+
+    @Test
+    public void testCorrelatedRolls() {
+        DiceFairnessMonitor monitor = new DiceFairnessMonitor(WINDOW, ALERT_P_VALUE);
+        Random random = new Random(42);
+        RoyalUrNetDiceRoll last = randomRoll(random);
+        for (int index = 0; index < WINDOW; ++index) {
+            // Each roll repeats the last roll a third of the time.
+            RoyalUrNetDiceRoll roll = (random.nextInt(3) == 0 ? last : randomRoll(random));
+            monitor.record(roll);
+            last = roll;
+        }
+        DiceFairnessMonitor.WindowResult result = monitor.check();
+        assertNotNull(result);
+        assertTrue(result.serialPValue() < ALERT_P_VALUE, result.toString());
+    }
+
+    @Test
+    public void testAlternatingDice() {
+        DiceFairnessMonitor monitor = new DiceFairnessMonitor(WINDOW, ALERT_P_VALUE);
+        DiceValue[] values = {DiceValue.UP_1, DiceValue.DOWN_1, DiceValue.UP_2, DiceValue.DOWN_2};
+        for (int index = 0; index < WINDOW; ++index) {
+            monitor.record(new RoyalUrNetDiceRoll(values));
+        }
+        DiceFairnessMonitor.WindowResult result = monitor.check();
+        assertNotNull(result);
+        assertTrue(result.runsPValue() < ALERT_P_VALUE, result.toString());
+        assertTrue(result.totalsPValue() < ALERT_P_VALUE, result.toString());
+    }
+}
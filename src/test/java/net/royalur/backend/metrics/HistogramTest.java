@@ -0,0 +1,38 @@
+package net.royalur.backend.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HistogramTest {
+
+    @Test
+    public void testExponentialBounds() {
+        assertArrayEquals(new long[] {1, 2, 5, 10, 20, 50, 100, 200, 500}, Histogram.exponentialBounds(1, 100));
+    }
+
+    @Test
+    public void testQuantiles() {
+        Histogram histogram = new Histogram("test", new long[] {10, 20, 50});
+        assertEquals(0, histogram.getQuantile(0.5));
+
+        for (int value = 1; value <= 100; ++value) {
+            histogram.record(value);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(10, histogram.getQuantile(0.1));
+        assertEquals(50, histogram.getQuantile(0.5));
+        // Values above the last bound are only known to be at most the max.
+        assertEquals(100, histogram.getQuantile(0.9));
+        assertEquals(100, histogram.getMax());
+    }
+
+    @Test
+    public void testValuesOnBoundsAreInclusive() {
+        Histogram histogram = new Histogram("test", new long[] {10, 20});
+        histogram.record(10);
+        histogram.record(-5);
+        assertEquals(10, histogram.getQuantile(1));
+    }
+}
@@ -0,0 +1,27 @@
+package net.royalur.backend.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StatisticsTest {
+
+    @Test
+    public void testChiSquarePValue() {
+        // The 5% critical values of the chi-square distribution.
+        assertEquals(0.05, Statistics.chiSquarePValue(3.841, 1), 1e-4);
+        assertEquals(0.05, Statistics.chiSquarePValue(9.488, 4), 1e-4);
+        assertEquals(0.05, Statistics.chiSquarePValue(31.410, 20), 1e-4);
+        assertEquals(0.001, Statistics.chiSquarePValue(45.315, 20), 1e-5);
+        assertEquals(1, Statistics.chiSquarePValue(0, 4), 1e-12);
+        assertEquals(Math.exp(-1), Statistics.chiSquarePValue(2, 2), 1e-12);
+    }
+
+    @Test
+    public void testNormalTwoSidedPValue() {
+        assertEquals(1, Statistics.normalTwoSidedPValue(0), 1e-6);
+        assertEquals(0.05, Statistics.normalTwoSidedPValue(1.95996), 1e-6);
+        assertEquals(0.05, Statistics.normalTwoSidedPValue(-1.95996), 1e-6);
+        assertEquals(0.0027, Statistics.normalTwoSidedPValue(3), 1e-4);
+    }
+}
@@ -0,0 +1,81 @@
+package net.royalur.backend.network;
+
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionAdmissionTest {
+
+    private static class TestConnection implements Connection {
+
+        private final String ip;
+
+        TestConnection(String ip) {
+            this.ip = ip;
+        }
+
+        @Override
+        public @Nonnull String getRemoteAddress() {
+            return ip;
+        }
+
+        @Override
+        public void send(@Nonnull String message) {}
+
+        @Override
+        public void close() {}
+    }
+
+    private static ConnectionAdmission createAdmission() {
+        return new ConnectionAdmission(10, 2, 100, 0);
+    }
+
+    @Test
+    public void testCountsConnections() {
+        ConnectionAdmission admission = createAdmission();
+        Connection first = new TestConnection("10.0.0.1");
+        Connection second = new TestConnection("10.0.0.1");
+
+        admission.onConnected(first);
+        admission.onConnected(second);
+        assertEquals(2, admission.countConnections());
+        assertEquals(2, admission.countConnections("10.0.0.1"));
+        assertEquals(ConnectionAdmission.Decision.REJECT, admission.admit("10.0.0.1"));
+        assertEquals(ConnectionAdmission.Decision.ADMIT, admission.admit("10.0.0.2"));
+
+        admission.onDisconnected(first);
+        assertEquals(1, admission.countConnections());
+        assertEquals(1, admission.countConnections("10.0.0.1"));
+    }
+
+    @Test
+    public void testIgnoresRefusedConnections() {
+        ConnectionAdmission admission = createAdmission();
+        admission.onConnected(new TestConnection("10.0.0.1"));
+
+        // A connection that was closed before being counted still reports its disconnection.
+        admission.onDisconnected(new TestConnection("10.0.0.1"));
+        admission.onDisconnected(new TestConnection("10.0.0.2"));
+        assertEquals(1, admission.countConnections());
+        assertEquals(1, admission.countConnections("10.0.0.1"));
+        assertEquals(0, admission.countConnections("10.0.0.2"));
+    }
+
+    @Test
+    public void testIgnoresRepeatedDisconnections() {
+        ConnectionAdmission admission = createAdmission();
+        Connection connection = new TestConnection("10.0.0.1");
+        admission.onConnected(connection);
+        admission.onConnected(connection);
+
+        admission.onDisconnected(connection);
+        admission.onDisconnected(connection);
+        assertEquals(0, admission.countConnections());
+        assertEquals(0, admission.countConnections("10.0.0.1"));
+
+        admission.onConnected(new TestConnection("10.0.0.1"));
+        assertEquals(1, admission.countConnections());
+    }
+}
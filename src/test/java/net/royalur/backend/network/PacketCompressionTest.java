@@ -0,0 +1,43 @@
+package net.royalur.backend.network;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class PacketCompressionTest {
+
+    @Test
+    public void testSmallPacketsAreNotCompressed() {
+        PacketCompression compression = new PacketCompression(64, 6, 1);
+        assertNull(compression.compress("move{\"from\":[1,2],\"to\":[1,3]}"));
+    }
+
+    @Test
+    public void testLargePacketsRoundTrip() throws DataFormatException {
+        PacketCompression compression = new PacketCompression(64, 6, 1);
+        String message = "state" + "{\"tiles\":[0,0,0,0,0,0,0,0]}".repeat(40);
+
+        // Compress twice to make sure pooled deflaters are reset between uses.
+        for (int attempt = 0; attempt < 2; ++attempt) {
+            byte[] compressed = compression.compress(message);
+            assertNotNull(compressed);
+            assertEquals(message, inflate(compressed));
+        }
+    }
+
+    private static String inflate(byte[] compressed) throws DataFormatException {
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(compressed);
+
+        byte[] buffer = new byte[8192];
+        int length = inflater.inflate(buffer);
+        inflater.end();
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+}
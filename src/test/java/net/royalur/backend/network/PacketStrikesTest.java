@@ -0,0 +1,102 @@
+package net.royalur.backend.network;
+
+import net.royalur.backend.network.incoming.PacketIn;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PacketStrikesTest {
+
+    private static final int MAX_PER_CONNECTION = 3;
+    private static final int MAX_PER_IP = 5;
+    private static final int WINDOW_SECS = 60;
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(WINDOW_SECS);
+
+    private static class TestConnection implements Connection {
+
+        private final String ip;
+
+        TestConnection(String ip) {
+            this.ip = ip;
+        }
+
+        @Override
+        public @Nonnull String getRemoteAddress() {
+            return ip;
+        }
+
+        @Override
+        public void send(@Nonnull String message) {}
+
+        @Override
+        public void close() {}
+    }
+
+    private static PacketStrikes.Verdict strike(PacketStrikes strikes, Connection connection, long now) {
+        return strikes.strike(connection, "5abc", PacketIn.Type.ROLL, "The packet has unexpected data", now);
+    }
+
+    @Test
+    public void testDisconnectsAfterConnectionLimit() {
+        PacketStrikes strikes = new PacketStrikes(MAX_PER_CONNECTION, MAX_PER_IP, WINDOW_SECS);
+        Connection connection = new TestConnection("10.0.0.1");
+        long now = System.nanoTime();
+
+        for (int strike = 1; strike < MAX_PER_CONNECTION; ++strike) {
+            assertEquals(PacketStrikes.Verdict.DROP, strike(strikes, connection, now));
+        }
+        assertEquals(PacketStrikes.Verdict.DISCONNECT, strike(strikes, connection, now));
+        assertFalse(strikes.isRefused("10.0.0.1", now));
+
+        // A new connection from the same IP starts with no strikes of its own.
+        strikes.onDisconnected(connection);
+        assertEquals(PacketStrikes.Verdict.DROP, strike(strikes, new TestConnection("10.0.0.1"), now));
+    }
+
+    @Test
+    public void testRefusesIPAfterIPLimit() {
+        PacketStrikes strikes = new PacketStrikes(MAX_PER_CONNECTION, MAX_PER_IP, WINDOW_SECS);
+        long now = System.nanoTime();
+
+        // Each connection stays under its own limit, but the IP reaches its limit.
+        for (int strike = 1; strike < MAX_PER_IP; ++strike) {
+            assertEquals(PacketStrikes.Verdict.DROP, strike(strikes, new TestConnection("10.0.0.1"), now));
+        }
+        assertEquals(PacketStrikes.Verdict.DISCONNECT, strike(strikes, new TestConnection("10.0.0.1"), now));
+        assertTrue(strikes.isRefused("10.0.0.1", now));
+        assertFalse(strikes.isRefused("10.0.0.2", now));
+    }
+
+    @Test
+    public void testStrikesDecayAfterWindow() {
+        PacketStrikes strikes = new PacketStrikes(MAX_PER_CONNECTION, MAX_PER_IP, WINDOW_SECS);
+        long now = System.nanoTime();
+        for (int strike = 0; strike < MAX_PER_IP; ++strike) {
+            strike(strikes, new TestConnection("10.0.0.1"), now);
+        }
+        strike(strikes, new TestConnection("10.0.0.2"), now + WINDOW_NANOS / 2);
+        assertTrue(strikes.isRefused("10.0.0.1", now + WINDOW_NANOS - 1));
+
+        long later = now + WINDOW_NANOS;
+        assertFalse(strikes.isRefused("10.0.0.1", later));
+        assertEquals(PacketStrikes.Verdict.DROP, strike(strikes, new TestConnection("10.0.0.1"), later));
+
+        // Only IPs without strikes in their current window are forgotten.
+        strikes.purge(later + WINDOW_NANOS);
+        assertEquals(0, strikes.countTrackedIPs());
+    }
+
+    @Test
+    public void testPurgeKeepsRecentStrikes() {
+        PacketStrikes strikes = new PacketStrikes(MAX_PER_CONNECTION, MAX_PER_IP, WINDOW_SECS);
+        long now = System.nanoTime();
+        strike(strikes, new TestConnection("10.0.0.1"), now);
+        strike(strikes, new TestConnection("10.0.0.2"), now + WINDOW_NANOS / 2);
+
+        strikes.purge(now + WINDOW_NANOS);
+        assertEquals(1, strikes.countTrackedIPs());
+    }
+}
@@ -0,0 +1,37 @@
+package net.royalur.backend.network;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RoundTripTimerTest {
+
+    @Test
+    public void testSmoothedRoundTrip() {
+        RoundTripTimer timer = new RoundTripTimer();
+        assertEquals(-1, timer.getSmoothedNanos());
+
+        int nonce = timer.start(1000);
+        assertEquals(800, timer.finish(nonce, 1800));
+        assertEquals(800, timer.getSmoothedNanos());
+
+        nonce = timer.start(2000);
+        assertEquals(1600, timer.finish(nonce, 3600));
+        assertEquals(1600, timer.getLastNanos());
+        assertEquals(900, timer.getSmoothedNanos());
+    }
+
+    @Test
+    public void testMismatchedPongsAreIgnored() {
+        RoundTripTimer timer = new RoundTripTimer();
+        int first = timer.start(0);
+        int second = timer.start(100);
+        assertEquals(-1, timer.finish(first, 500));
+        assertEquals(400, timer.finish(second, 500));
+        assertEquals(-1, timer.finish(second, 600));
+
+        int cancelled = timer.start(1000);
+        timer.cancel();
+        assertEquals(-1, timer.finish(cancelled, 1100));
+    }
+}
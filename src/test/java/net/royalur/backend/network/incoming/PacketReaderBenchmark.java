@@ -0,0 +1,78 @@
+package net.royalur.backend.network.incoming;
+
+import net.royalur.backend.network.ProtocolViolation;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Consumer;
+
+/**
+ * Measures the time and memory allocated to read valid packets, and
+ * to reject malformed packets, as every packet received is parsed
+ * on the thread that handles the client's connection.
+ * <p>
+ * Run with: {@code java net.royalur.backend.network.incoming.PacketReaderBenchmark [iterations]}
+ */
+public class PacketReaderBenchmark {
+
+    private static final String[] VALID_PACKETS = {
+            PacketIn.Type.ROLL.getId() + "ABCDEF12",
+            PacketIn.Type.MOVE.getId() + "ABCDEF120102"
+    };
+    private static final String[] INVALID_PACKETS = {
+            PacketIn.Type.ROLL.getId() + "ABCD",
+            PacketIn.Type.MOVE.getId() + "ABCDEF1201x2",
+            PacketIn.Type.MOVE.getId() + "ABCDEF1201020"
+    };
+
+    private static final com.sun.management.ThreadMXBean threads = (
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()
+    );
+
+    private static int sink;
+
+    public static void main(String[] args) {
+        int iterations = (args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000);
+
+        // Warm up everything before measuring anything.
+        for (int round = 0; round < 3; ++round) {
+            run("valid", VALID_PACKETS, iterations / 10, PacketReaderBenchmark::readPacket);
+            run("rejected", INVALID_PACKETS, iterations / 10, PacketReaderBenchmark::rejectPacket);
+        }
+
+        run("valid", VALID_PACKETS, iterations, PacketReaderBenchmark::readPacket);
+        run("rejected", INVALID_PACKETS, iterations, PacketReaderBenchmark::rejectPacket);
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private static void run(String name, String[] packets, int iterations, Consumer<String> reader) {
+        long threadID = Thread.currentThread().getId();
+        long startBytes = threads.getThreadAllocatedBytes(threadID);
+        long start = System.nanoTime();
+        for (int index = 0; index < iterations; ++index) {
+            reader.accept(packets[index % packets.length]);
+        }
+        long nanos = System.nanoTime() - start;
+        long bytes = threads.getThreadAllocatedBytes(threadID) - startBytes;
+
+        System.out.printf(
+                "%-9s %8.1f ns/packet %8.1f bytes/packet%n",
+                name, (double) nanos / iterations, (double) bytes / iterations
+        );
+    }
+
+    private static void readPacket(String message) {
+        PacketReader reader = new PacketReader(message);
+        PacketIn packet = reader.type.newPacket();
+        packet.read(reader);
+        sink += packet.type.getId();
+    }
+
+    private static void rejectPacket(String message) {
+        try {
+            readPacket(message);
+            throw new IllegalStateException("Expected \"" + message + "\" to be rejected");
+        } catch (ProtocolViolation violation) {
+            sink += violation.getMessage().length();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package net.royalur.backend.replay;
+
+import net.royalur.model.Player;
+import net.royalur.model.Tile;
+import net.royalur.backend.game.DiceValue;
+import net.royalur.backend.game.GameID;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReplayStateTest {
+
+    private static final DiceValue[] ROLL_TWO = {
+            DiceValue.UP_1, DiceValue.DOWN_2, DiceValue.UP_3, DiceValue.DOWN_1
+    };
+
+    @Test
+    public void testEventsRoundTrip() {
+        int roll = GameEvent.roll(Player.DARK, ROLL_TWO, true, false, Player.DARK, false);
+        assertEquals(GameEvent.ROLL, GameEvent.getType(roll));
+        assertEquals(1, GameEvent.getPlayer(roll));
+        assertTrue(GameEvent.isWaitingForMove(roll));
+        assertFalse(GameEvent.hasMoves(roll));
+        for (int index = 0; index < ROLL_TWO.length; ++index) {
+            assertEquals(ROLL_TWO[index].getId(), GameEvent.getDiceID(roll, index));
+        }
+
+        int move = GameEvent.move(Player.LIGHT, null, Tile.fromIndices(2, 7), Player.DARK, true);
+        assertEquals(GameEvent.MOVE, GameEvent.getType(move));
+        assertFalse(GameEvent.hasSource(move));
+        assertTrue(GameEvent.hasDestination(move));
+        assertEquals(2, GameEvent.getDestinationX(move));
+        assertEquals(7, GameEvent.getDestinationY(move));
+        assertEquals(1, GameEvent.getNextTurn(move));
+        assertTrue(GameEvent.isFinished(move));
+    }
+
+    @Test
+    public void testCaptureReturnsPiece() {
+        ReplayState state = new ReplayState(3, 8, 7);
+        ReplayState initial = state.copy();
+        GameID gameID = new GameID(1234);
+
+        // Introduce a light piece and a dark piece, then have dark capture the light piece.
+        state.apply(GameEvent.move(Player.LIGHT, null, Tile.fromIndices(1, 4), Player.DARK, false));
+        state.apply(GameEvent.move(Player.DARK, null, Tile.fromIndices(2, 3), Player.LIGHT, false));
+        String beforeCapture = state.writePacket(gameID);
+        state.apply(GameEvent.move(Player.DARK, Tile.fromIndices(2, 3), Tile.fromIndices(1, 4), Player.LIGHT, false));
+
+        ReplayState expected = initial.copy();
+        expected.apply(GameEvent.move(Player.DARK, null, Tile.fromIndices(1, 4), Player.LIGHT, false));
+        assertEquals(expected.writePacket(gameID), state.writePacket(gameID));
+
+        state.copyFrom(initial);
+        state.apply(GameEvent.move(Player.LIGHT, null, Tile.fromIndices(1, 4), Player.DARK, false));
+        state.apply(GameEvent.move(Player.DARK, null, Tile.fromIndices(2, 3), Player.LIGHT, false));
+        assertEquals(beforeCapture, state.writePacket(gameID));
+    }
+}
@@ -0,0 +1,71 @@
+package net.royalur.backend.session;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Uses two stores on the same file, as two processes would.
+ */
+public class FileSessionStoreTest {
+
+    private static SessionRecord createRecord(String name, long deadlineMillis) {
+        return new SessionRecord(UUID.randomUUID(), name, List.of(), deadlineMillis);
+    }
+
+    @Test
+    public void testRecordRoundTrip() {
+        SessionRecord record = createRecord("Mittens\tthe cat", 1234);
+        assertEquals(record, SessionRecord.read(record.write()));
+    }
+
+    @Test
+    public void testSharedBetweenStores(@TempDir Path directory) {
+        Path file = directory.resolve("sessions.txt");
+        FileSessionStore first = new FileSessionStore(file, 0);
+        FileSessionStore second = new FileSessionStore(file, 60_000);
+        try {
+            long deadline = System.currentTimeMillis() + 60_000;
+            SessionRecord panda = createRecord("Panda", deadline);
+            SessionRecord lion = createRecord("Lion", deadline);
+
+            // Unwritten changes are visible to the store they were made through.
+            first.put(panda);
+            assertEquals(panda, first.get(panda.sessionID()));
+
+            first.put(lion);
+            first.flush();
+            Map<UUID, SessionRecord> found = second.getAll(List.of(panda.sessionID(), lion.sessionID()));
+            assertEquals(Map.of(panda.sessionID(), panda, lion.sessionID(), lion), found);
+
+            second.remove(panda.sessionID());
+            assertNull(second.get(panda.sessionID()));
+            second.flush();
+            assertNull(first.get(panda.sessionID()));
+            assertEquals(lion, first.get(lion.sessionID()));
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    @Test
+    public void testExpiredSessionsAreIgnored(@TempDir Path directory) {
+        FileSessionStore store = new FileSessionStore(directory.resolve("sessions.txt"), 0);
+        try {
+            SessionRecord expired = createRecord("Tiger", System.currentTimeMillis() - 1);
+            store.put(expired);
+            assertNull(store.get(expired.sessionID()));
+            store.flush();
+            assertNull(store.get(expired.sessionID()));
+        } finally {
+            store.close();
+        }
+    }
+}
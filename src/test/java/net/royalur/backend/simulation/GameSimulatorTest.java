@@ -0,0 +1,62 @@
+package net.royalur.backend.simulation;
+
+import net.royalur.backend.game.GameSettings;
+import net.royalur.backend.game.RoyalUrNetDice;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class GameSimulatorTest {
+
+    private static final int GAMES = 300;
+    private static final int THREADS = 2;
+
+    private static void assertConsistent(SimulationReport report, long games) {
+        assertEquals(games, report.getGames());
+        assertEquals(games, report.getLightWins() + report.getDarkWins() + report.getUnfinished());
+        assertEquals(0, report.getUnfinished());
+
+        // Every turn starts with a roll of the dice.
+        long rolls = 0;
+        for (int value = 0; value <= RoyalUrNetDice.DICE_COUNT; ++value) {
+            rolls += report.getRollCount(value);
+        }
+        assertEquals(report.getTotalTurns(), rolls);
+    }
+
+    @Test
+    public void testPoliciesFinishEveryGame() throws InterruptedException {
+        for (StandardMovePolicy policy : StandardMovePolicy.values()) {
+            GameSimulator simulator = new GameSimulator(GameSettings.STANDARD, policy, policy);
+            assertConsistent(simulator.run(GAMES, THREADS), GAMES);
+        }
+    }
+
+    @Test
+    public void testMixedPolicies() throws InterruptedException {
+        GameSimulator simulator = new GameSimulator(
+                GameSettings.STANDARD, StandardMovePolicy.GREEDY, StandardMovePolicy.RANDOM
+        );
+        assertConsistent(simulator.run(GAMES, THREADS), GAMES);
+    }
+
+    @Test
+    public void testPlayGame() {
+        GameSimulator simulator = new GameSimulator(
+                GameSettings.STANDARD, StandardMovePolicy.FIRST_LEGAL, StandardMovePolicy.RANDOM
+        );
+        SimulationReport report = new SimulationReport(GameSimulator.MAX_TURNS);
+        for (int index = 0; index < 10; ++index) {
+            simulator.playGame(report);
+        }
+        assertConsistent(report, 10);
+    }
+
+    @Test
+    public void testNoGames() throws InterruptedException {
+        GameSimulator simulator = new GameSimulator(
+                GameSettings.STANDARD, StandardMovePolicy.RANDOM, StandardMovePolicy.RANDOM
+        );
+        assertConsistent(simulator.run(0, THREADS), 0);
+    }
+}
@@ -0,0 +1,53 @@
+package net.royalur.backend.simulation;
+
+import net.royalur.model.Player;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SimulationReportTest {
+
+    @Test
+    public void testExpectedRollFractions() {
+        double[] expected = {1.0 / 16, 4.0 / 16, 6.0 / 16, 4.0 / 16, 1.0 / 16};
+        for (int value = 0; value < expected.length; ++value) {
+            assertEquals(expected[value], SimulationReport.getExpectedRollFraction(value), 1e-12);
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        SimulationReport first = new SimulationReport(100);
+        first.recordWin(Player.LIGHT, 40);
+        first.recordWin(Player.DARK, 60);
+        first.recordRoll(2);
+
+        SimulationReport second = new SimulationReport(100);
+        second.recordWin(Player.LIGHT, 50);
+        second.recordUnfinished(100);
+        second.recordRoll(2);
+        second.recordRoll(0);
+
+        first.merge(second);
+        assertEquals(4, first.getGames());
+        assertEquals(2, first.getLightWins());
+        assertEquals(1, first.getDarkWins());
+        assertEquals(1, first.getUnfinished());
+        assertEquals(2.0 / 3, first.getLightWinRate(), 1e-12);
+        assertEquals(62.5, first.getMeanTurns(), 1e-12);
+        assertEquals(2, first.getRollCount(2));
+        assertEquals(1, first.getRollCount(0));
+    }
+
+    @Test
+    public void testTurnsQuantiles() {
+        SimulationReport report = new SimulationReport(1000);
+        for (int turns = 1; turns <= 100; ++turns) {
+            report.recordWin(Player.LIGHT, turns);
+        }
+        assertEquals(1, report.getTurnsQuantile(0));
+        assertEquals(50, report.getTurnsQuantile(0.5));
+        assertEquals(90, report.getTurnsQuantile(0.9));
+        assertEquals(100, report.getTurnsQuantile(1));
+    }
+}
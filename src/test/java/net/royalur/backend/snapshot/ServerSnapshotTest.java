@@ -0,0 +1,117 @@
+package net.royalur.backend.snapshot;
+
+import net.royalur.Game;
+import net.royalur.backend.RoyalUrNetIdentity;
+import net.royalur.backend.game.GameID;
+import net.royalur.backend.game.GameSettings;
+import net.royalur.backend.game.RoyalUrNetDiceRoll;
+import net.royalur.backend.replay.GameEventLog;
+import net.royalur.backend.replay.ReplayState;
+import net.royalur.backend.session.SessionRecord;
+import net.royalur.model.Move;
+import net.royalur.model.PlayerState;
+import net.royalur.rules.simple.SimplePiece;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Writes a game that is part way through to a snapshot, reads it back,
+ * and replays it, as is done when the server restarts.
+ */
+public class ServerSnapshotTest {
+
+    private static final RoyalUrNetIdentity LIGHT = new RoyalUrNetIdentity("session(light)", "Panda");
+    private static final RoyalUrNetIdentity DARK = new RoyalUrNetIdentity("session(dark)", "Lion");
+    private static final int KEYFRAME_INTERVAL = 16;
+
+    /** Plays random turns of {@param game} until {@param events} events have been logged in {@param log}. **/
+    private static void playEvents(
+            Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game,
+            GameEventLog log,
+            int events,
+            Random random
+    ) {
+        while (log.size() < events && !game.isFinished()) {
+            if (game.isWaitingForRoll()) {
+                log.appendRoll(game.getTurnPlayer().player, game.rollDice(), game);
+            } else {
+                List<Move<SimplePiece>> moves = game.findAvailableMoves();
+                Move<SimplePiece> move = moves.get(random.nextInt(moves.size()));
+                game.makeMove(move);
+                log.appendMove(move, game);
+            }
+        }
+
+        // Finish the turn, so that the state does not depend on the faces of the dice.
+        while (game.isWaitingForMove()) {
+            Move<SimplePiece> move = game.findAvailableMoves().get(0);
+            game.makeMove(move);
+            log.appendMove(move, game);
+        }
+    }
+
+    @Test
+    public void testRoundTrip(@TempDir Path directory) throws IOException {
+        GameID gameID = new GameID(1234);
+        Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> game = GameSettings.STANDARD.create(LIGHT, DARK);
+        GameEventLog log = new GameEventLog(gameID, ReplayState.capture(game), KEYFRAME_INTERVAL);
+        playEvents(game, log, 60, new Random(42));
+
+        UUID lightSession = UUID.randomUUID();
+        UUID darkSession = UUID.randomUUID();
+        SessionRecord session = new SessionRecord(lightSession, "Panda", List.of(gameID), 1234567);
+        ServerSnapshot snapshot = new ServerSnapshot(
+                List.of(new GameSnapshot(
+                        gameID, GameSettings.STANDARD, LIGHT, DARK, lightSession, darkSession, log.toArray()
+                )),
+                List.of(session)
+        );
+
+        Path file = directory.resolve("snapshot.bin");
+        snapshot.write(file);
+        ServerSnapshot read = ServerSnapshot.read(file);
+
+        assertEquals(List.of(session), read.sessions());
+        assertEquals(1, read.games().size());
+        GameSnapshot readGame = read.games().get(0);
+        assertEquals(gameID, readGame.gameID());
+        assertEquals(GameSettings.STANDARD, readGame.settings());
+        assertEquals(LIGHT.getID(), readGame.lightIdentity().getID());
+        assertEquals(LIGHT.name, readGame.lightIdentity().name);
+        assertEquals(DARK.getID(), readGame.darkIdentity().getID());
+        assertEquals(DARK.name, readGame.darkIdentity().name);
+        assertEquals(lightSession, readGame.lightSession());
+        assertEquals(darkSession, readGame.darkSession());
+        assertArrayEquals(log.toArray(), readGame.events());
+
+        // Replaying the events should reach the same state as the original game.
+        Game<SimplePiece, PlayerState, RoyalUrNetDiceRoll> restored = readGame.settings().create(
+                readGame.lightIdentity(), readGame.darkIdentity()
+        );
+        GameEventLog restoredLog = new GameEventLog(gameID, ReplayState.capture(restored), KEYFRAME_INTERVAL);
+        restoredLog.replay(readGame.events(), restored);
+
+        assertArrayEquals(log.toArray(), restoredLog.toArray());
+        assertEquals(ReplayState.capture(game).writePacket(gameID), ReplayState.capture(restored).writePacket(gameID));
+        assertEquals(
+                log.seek(log.size()).getState().writePacket(gameID),
+                restoredLog.seek(restoredLog.size()).getState().writePacket(gameID)
+        );
+    }
+
+    @Test
+    public void testRejectsOtherFiles(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("snapshot.bin");
+        Files.writeString(file, "not a snapshot");
+        assertThrows(IOException.class, () -> ServerSnapshot.read(file));
+    }
+}
@@ -0,0 +1,114 @@
+package net.royalur.backend.ssl;
+
+import javax.net.ssl.*;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of full TLS handshakes using RSA and
+ * ECDSA certificates over the loopback interface.
+ * <p>
+ * Run with: {@code java net.royalur.backend.ssl.HandshakeBenchmark [seconds]}
+ */
+public class HandshakeBenchmark {
+
+    private static final String PASSWORD = "benchmark";
+
+    public static void main(String[] args) throws Exception {
+        int seconds = (args.length > 0 ? Integer.parseInt(args[0]) : 5);
+
+        Path dir = Files.createTempDirectory("handshake-benchmark");
+        File rsaKeyStore = generateKeyStore(dir, "rsa", "-keyalg", "RSA", "-keysize", "2048");
+        File ecKeyStore = generateKeyStore(dir, "ec", "-keyalg", "EC", "-groupname", "secp256r1");
+
+        // Warm up both before measuring either.
+        run("RSA-2048", rsaKeyStore, 1);
+        run("ECDSA-P256", ecKeyStore, 1);
+
+        double rsa = run("RSA-2048", rsaKeyStore, seconds);
+        double ec = run("ECDSA-P256", ecKeyStore, seconds);
+        System.out.printf("ECDSA-P256 is %.2fx the handshake throughput of RSA-2048%n", ec / rsa);
+    }
+
+    private static File generateKeyStore(Path dir, String name, String... keyArgs) throws Exception {
+        File file = dir.resolve(name + ".p12").toFile();
+        String keytool = Path.of(System.getProperty("java.home"), "bin", "keytool").toString();
+
+        String[] baseArgs = {
+                keytool, "-genkeypair", "-alias", name, "-dname", "CN=localhost", "-validity", "1",
+                "-storetype", "PKCS12", "-keystore", file.getPath(),
+                "-storepass", PASSWORD, "-keypass", PASSWORD
+        };
+        String[] command = new String[baseArgs.length + keyArgs.length];
+        System.arraycopy(baseArgs, 0, command, 0, baseArgs.length);
+        System.arraycopy(keyArgs, 0, command, baseArgs.length, keyArgs.length);
+
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        if (process.waitFor() != 0)
+            throw new IllegalStateException("keytool failed to generate " + file);
+
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static double run(String name, File keyStoreFile, int seconds) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = new FileInputStream(keyStoreFile)) {
+            keyStore.load(in, PASSWORD.toCharArray());
+        }
+
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, PASSWORD.toCharArray());
+        SSLContext serverContext = SSLContext.getInstance("TLS");
+        serverContext.init(kmf.getKeyManagers(), null, null);
+
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(keyStore);
+        SSLContext clientContext = SSLContext.getInstance("TLS");
+        clientContext.init(null, tmf.getTrustManagers(), null);
+
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (SSLServerSocket serverSocket = (SSLServerSocket) serverContext.getServerSocketFactory()
+                .createServerSocket(0, 128, loopback)) {
+
+            Thread acceptor = new Thread(() -> acceptLoop(serverSocket), "handshake-benchmark-server");
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            SSLSocketFactory clientFactory = clientContext.getSocketFactory();
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            long start = System.nanoTime();
+            int handshakes = 0;
+            while (System.nanoTime() < end) {
+                try (SSLSocket socket = (SSLSocket) clientFactory.createSocket(loopback, serverSocket.getLocalPort())) {
+                    socket.startHandshake();
+                    // Invalidating the session forces the next handshake to be a full one.
+                    socket.getSession().invalidate();
+                }
+                handshakes += 1;
+            }
+
+            double rate = handshakes / ((System.nanoTime() - start) / 1e9d);
+            System.out.printf("%-10s %8d handshakes in %ds, %8.1f handshakes/sec%n", name, handshakes, seconds, rate);
+            return rate;
+        }
+    }
+
+    private static void acceptLoop(SSLServerSocket serverSocket) {
+        while (!serverSocket.isClosed()) {
+            try (SSLSocket socket = (SSLSocket) serverSocket.accept()) {
+                socket.startHandshake();
+            } catch (IOException e) {
+                if (serverSocket.isClosed())
+                    return;
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package net.royalur.backend.ssl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HandshakeCounterTest {
+
+    private static final int SESSION_TIMEOUT_SECS = 60;
+    private static final long SESSION_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(SESSION_TIMEOUT_SECS);
+
+    private static HandshakeCounter createCounter() {
+        return new HandshakeCounter(new TLSSessionSettings(100, SESSION_TIMEOUT_SECS, true, 3600));
+    }
+
+    @Test
+    public void testResumedSessionsHaveSeenIDs() {
+        HandshakeCounter counter = createCounter();
+        long now = System.nanoTime();
+
+        assertFalse(counter.isResumed(new byte[] {1, 2, 3}, now));
+        assertFalse(counter.isResumed(new byte[] {4, 5, 6}, now));
+
+        // Old sessions are only resumed if their ID has been seen, however old they are.
+        assertTrue(counter.isResumed(new byte[] {1, 2, 3}, now + 1));
+        assertTrue(counter.isResumed(new byte[] {4, 5, 6}, now + SESSION_TIMEOUT_NANOS / 2));
+        assertFalse(counter.isResumed(new byte[] {7, 8, 9}, now + SESSION_TIMEOUT_NANOS / 2));
+    }
+
+    @Test
+    public void testSessionsWithoutIDsAreFull() {
+        HandshakeCounter counter = createCounter();
+        long now = System.nanoTime();
+        assertFalse(counter.isResumed(new byte[0], now));
+        assertFalse(counter.isResumed(new byte[0], now));
+    }
+
+    @Test
+    public void testForgetsExpiredSessions() {
+        HandshakeCounter counter = createCounter();
+        long now = System.nanoTime();
+        assertFalse(counter.isResumed(new byte[] {1, 2, 3}, now));
+
+        // A session that can no longer be resumed must have been created again.
+        assertFalse(counter.isResumed(new byte[] {1, 2, 3}, now + SESSION_TIMEOUT_NANOS));
+        assertTrue(counter.isResumed(new byte[] {1, 2, 3}, now + SESSION_TIMEOUT_NANOS + 1));
+    }
+}